@@ -0,0 +1,77 @@
+package io.rsocket.core;
+
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Closeable;
+import io.rsocket.RSocket;
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.transport.local.LocalClientTransport;
+import io.rsocket.transport.local.LocalServerTransport;
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import io.rsocket.util.DefaultPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+/**
+ * Connections per second established with a SETUP carrying mime types and a small setup payload,
+ * over the local transport and TCP loopback, each connection closed once accepted by the server.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(value = 1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ConnectionSetupPerf {
+
+  @Param({"local", "tcp"})
+  String transport;
+
+  Closeable server;
+  ClientTransport clientTransport;
+  RSocketConnector connector;
+
+  @Setup
+  public void setUp() {
+    RSocketServer rSocketServer =
+        RSocketServer.create((setup, sendingSocket) -> Mono.just(new AbstractRSocket() {}));
+    if ("tcp".equals(transport)) {
+      CloseableChannel channel =
+          rSocketServer.bind(TcpServerTransport.create("localhost", 0)).block();
+      clientTransport = TcpClientTransport.create(channel.address());
+      server = channel;
+    } else {
+      server = rSocketServer.bind(LocalServerTransport.create("setup")).block();
+      clientTransport = LocalClientTransport.create("setup");
+    }
+
+    connector =
+        RSocketConnector.create()
+            .metadataMimeType("message/x.rsocket.composite-metadata.v0")
+            .dataMimeType("application/json")
+            .setupPayload(DefaultPayload.create("{\"client\":\"perf\"}", "setup metadata"));
+  }
+
+  @TearDown
+  public void tearDown() {
+    server.dispose();
+  }
+
+  @Benchmark
+  public void connect() {
+    RSocket rSocket = connector.connect(clientTransport).block();
+    rSocket.dispose();
+    // the requester terminates with a CancellationException once disposed
+    rSocket.onClose().onErrorResume(e -> Mono.empty()).block();
+  }
+}
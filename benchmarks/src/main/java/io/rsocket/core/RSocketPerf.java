@@ -9,6 +9,7 @@
 import io.rsocket.frame.decoder.PayloadDecoder;
 import io.rsocket.transport.local.LocalClientTransport;
 import io.rsocket.transport.local.LocalServerTransport;
+import io.rsocket.util.DefaultPayload;
 import io.rsocket.util.EmptyPayload;
 import java.lang.reflect.Field;
 import java.util.Queue;
@@ -20,6 +21,7 @@
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -31,6 +33,11 @@
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+/**
+ * Throughput of the interactions over the local transport. Run with {@code -prof gc} to compare the
+ * allocations per operation, e.g. of the request-responses and short-lived streams of small
+ * payloads, with the baseline.
+ */
 @BenchmarkMode(Mode.Throughput)
 @Fork(
     value = 1 // , jvmArgsAppend = {"-Dio.netty.leakDetection.level=advanced"}
@@ -42,6 +49,8 @@ public class RSocketPerf {
 
   static final Payload PAYLOAD = EmptyPayload.INSTANCE;
   static final Mono<Payload> PAYLOAD_MONO = Mono.just(PAYLOAD);
+  static final Payload SMALL_PAYLOAD = DefaultPayload.create("0123456789abcdef", "metadata");
+  static final int BURST = 64;
   static final Flux<Payload> PAYLOAD_FLUX =
       Flux.fromArray(IntStream.range(0, 100000).mapToObj(__ -> PAYLOAD).toArray(Payload[]::new));
 
@@ -78,12 +87,20 @@ public Mono<Void> fireAndForget(Payload payload) {
 
                           @Override
                           public Mono<Payload> requestResponse(Payload payload) {
+                            if (payload.hasMetadata()) {
+                              // echoes the small payloads
+                              return Mono.just(payload);
+                            }
                             payload.release();
                             return PAYLOAD_MONO;
                           }
 
                           @Override
                           public Flux<Payload> requestStream(Payload payload) {
+                            if (payload.hasMetadata()) {
+                              // short-lived streams of the small payloads
+                              return Flux.just(payload);
+                            }
                             payload.release();
                             return PAYLOAD_FLUX;
                           }
@@ -128,6 +145,29 @@ public PayloadsPerfSubscriber requestResponse(Blackhole blackhole) throws Interr
     return subscriber;
   }
 
+  @Benchmark
+  public PayloadsPerfSubscriber requestResponseSmallPayload(Blackhole blackhole)
+      throws InterruptedException {
+    PayloadsPerfSubscriber subscriber = new PayloadsPerfSubscriber(blackhole);
+    client.requestResponse(SMALL_PAYLOAD).subscribe(subscriber);
+    subscriber.await();
+
+    return subscriber;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BURST)
+  public PayloadsMaxPerfSubscriber requestResponseSmallPayloadBurst(Blackhole blackhole)
+      throws InterruptedException {
+    PayloadsMaxPerfSubscriber subscriber = new PayloadsMaxPerfSubscriber(blackhole);
+    Flux.range(0, BURST)
+        .flatMap(i -> client.requestResponse(SMALL_PAYLOAD), BURST)
+        .subscribe(subscriber);
+    subscriber.await();
+
+    return subscriber;
+  }
+
   @Benchmark
   public PayloadsPerfSubscriber requestStreamWithRequestByOneStrategy(Blackhole blackhole)
       throws InterruptedException {
@@ -148,6 +188,19 @@ public PayloadsMaxPerfSubscriber requestStreamWithRequestAllStrategy(Blackhole b
     return subscriber;
   }
 
+  @Benchmark
+  @OperationsPerInvocation(BURST)
+  public PayloadsMaxPerfSubscriber requestStreamShortLivedBurst(Blackhole blackhole)
+      throws InterruptedException {
+    PayloadsMaxPerfSubscriber subscriber = new PayloadsMaxPerfSubscriber(blackhole);
+    Flux.range(0, BURST)
+        .flatMap(i -> client.requestStream(SMALL_PAYLOAD), BURST)
+        .subscribe(subscriber);
+    subscriber.await();
+
+    return subscriber;
+  }
+
   @Benchmark
   public PayloadsPerfSubscriber requestChannelWithRequestByOneStrategy(Blackhole blackhole)
       throws InterruptedException {
@@ -7,12 +7,19 @@
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
 
+/**
+ * Throughput of the stream id allocation. Compare {@code jmh} with {@code jmhBaseline}, whose
+ * supplier looks every id up in the active streams, e.g. in {@link #benchmarkStreamIdContended}
+ * where many requesting threads start and end streams over the same connection.
+ */
 @BenchmarkMode(Mode.Throughput)
 @Fork(
     value = 1 // , jvmArgsAppend = {"-Dio.netty.leakDetection.level=advanced"}
@@ -27,6 +34,15 @@ public void benchmarkStreamId(Input input) {
     input.bh.consume(i);
   }
 
+  @Benchmark
+  @Threads(16)
+  public void benchmarkStreamIdContended(ContendedInput input) {
+    IntObjectMap<Object> map = input.map;
+    int i = input.supplier.nextStreamId(map);
+    map.put(i, input);
+    map.remove(i);
+  }
+
   @State(Scope.Benchmark)
   public static class Input {
     Blackhole bh;
@@ -40,4 +56,23 @@ public void setup(Blackhole bh) {
       this.map = new SynchronizedIntObjectHashMap();
     }
   }
+
+  @State(Scope.Benchmark)
+  public static class ContendedInput {
+    @Param({"0", "1000"})
+    int activeStreams;
+
+    IntObjectMap<Object> map;
+    StreamIdSupplier supplier;
+
+    @Setup
+    public void setup() {
+      this.supplier = StreamIdSupplier.clientSupplier();
+      this.map = new SynchronizedIntObjectHashMap<>();
+      // long-lived streams staying active during the measurement
+      for (int i = 0; i < activeStreams; i++) {
+        map.put(supplier.nextStreamId(map), this);
+      }
+    }
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.rsocket.frame.FrameLengthFlyweight;
+import io.rsocket.frame.PayloadFrameFlyweight;
+import java.nio.charset.StandardCharsets;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the compression of JSON frames, in frames and bytes per second of a single thread,
+ * against the ratio of compressed to original bytes reported by the {@link Bytes} counters.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(value = 1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class PayloadCompressionPerf {
+  private static final byte[] DICTIONARY =
+      "[{\"id\":,\"name\":\"item-\",\"description\":\"\",\"price\":,\"quantity\":,\"tags\":[\"\"]}]"
+          .getBytes(StandardCharsets.UTF_8);
+
+  @Param({"1", "6"})
+  int level;
+
+  @Param({"false", "true"})
+  boolean dictionary;
+
+  @Param({"4", "64"})
+  int items;
+
+  FrameCompressor compressor;
+  ByteBuf frame;
+  ByteBuf compressed;
+
+  @Setup
+  public void setup() {
+    PayloadCompression compression = PayloadCompression.deflate().level(level);
+    if (dictionary) {
+      compression.dictionary(DICTIONARY);
+    }
+    compressor = compression.newCompressor();
+    frame =
+        PayloadFrameFlyweight.encode(
+            ByteBufAllocator.DEFAULT, 1, false, false, true, null, Unpooled.wrappedBuffer(json()));
+    compressed = compressor.compress(ByteBufAllocator.DEFAULT, frame, Integer.MAX_VALUE);
+  }
+
+  @TearDown
+  public void tearDown() {
+    frame.release();
+    compressed.release();
+  }
+
+  @Benchmark
+  public void compress(Bytes bytes) {
+    ByteBuf buffer = compressor.compress(ByteBufAllocator.DEFAULT, frame, Integer.MAX_VALUE);
+    bytes.originalBytes += frame.readableBytes();
+    bytes.compressedBytes += buffer.readableBytes();
+    buffer.release();
+  }
+
+  @Benchmark
+  public void decompress(Bytes bytes) {
+    ByteBuf buffer =
+        compressor.decompress(
+            ByteBufAllocator.DEFAULT, compressed, FrameLengthFlyweight.FRAME_LENGTH_MASK);
+    bytes.originalBytes += buffer.readableBytes();
+    bytes.compressedBytes += compressed.readableBytes();
+    buffer.release();
+  }
+
+  private byte[] json() {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < items; i++) {
+      json.append(i == 0 ? "" : ",")
+          .append("{\"id\":")
+          .append(i)
+          .append(",\"name\":\"item-")
+          .append(i % 13)
+          .append("\",\"description\":\"")
+          .append(Integer.toHexString(i * 0x9E3779B9))
+          .append("\",\"price\":")
+          .append(i * 37 % 1000)
+          .append(",\"quantity\":")
+          .append(i % 5)
+          .append(",\"tags\":[\"t")
+          .append(i % 3)
+          .append("\"]}");
+    }
+    return json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** Bytes before and after compression, per second. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Bytes {
+    public long originalBytes;
+    public long compressedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      originalBytes = 0;
+      compressedBytes = 0;
+    }
+  }
+}
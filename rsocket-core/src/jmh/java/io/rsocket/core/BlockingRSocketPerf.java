@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.util.EmptyPayload;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Time to serve a burst of {@code concurrency} requests whose handlers block for {@code
+ * blockMillis}, with {@link BlockingRSocket} on virtual threads against the usual {@code
+ * Mono.fromCallable(...).subscribeOn(Schedulers.boundedElastic())}, whose pool is capped at 10
+ * threads per core.
+ *
+ * <p>The {@code virtualThreads} handler requires JDK 21+.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BlockingRSocketPerf {
+
+  @Param({"boundedElastic", "virtualThreads"})
+  String handler;
+
+  @Param({"100", "1000", "10000"})
+  int concurrency;
+
+  @Param({"1"})
+  int blockMillis;
+
+  RSocket rSocket;
+
+  @Setup
+  public void setup() {
+    if ("virtualThreads".equals(handler)) {
+      rSocket = BlockingRSocket.create().onRequestResponse(this::handle);
+    } else {
+      rSocket =
+          new AbstractRSocket() {
+            @Override
+            public Mono<Payload> requestResponse(Payload payload) {
+              return Mono.fromCallable(() -> handle(payload))
+                  .subscribeOn(Schedulers.boundedElastic());
+            }
+          };
+    }
+  }
+
+  Payload handle(Payload payload) throws InterruptedException {
+    // stands for a JDBC call
+    Thread.sleep(blockMillis);
+    return EmptyPayload.INSTANCE;
+  }
+
+  @Benchmark
+  public Payload burst() {
+    return Flux.range(0, concurrency)
+        .flatMap(i -> rSocket.requestResponse(EmptyPayload.INSTANCE), concurrency)
+        .blockLast();
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.rsocket.DuplexConnection;
+import io.rsocket.Payload;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.lease.RequesterLeaseHandler;
+import io.rsocket.util.ByteBufPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * Throughput of sending small fire-and-forget requests one call at a time against {@link
+ * RSocketRequester#fireAndForgetMany(Publisher)}, over a connection that releases the frames as
+ * soon as they are sent. Run with {@code -prof gc} to compare the allocations per request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(value = 1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FireAndForgetManyPerf {
+
+  static final int COUNT = 1024;
+
+  RSocketRequester requester;
+
+  @Setup
+  public void setup() {
+    requester =
+        new RSocketRequester(
+            new DiscardingConnection(),
+            PayloadDecoder.ZERO_COPY,
+            t -> {},
+            StreamIdSupplier.clientSupplier(),
+            0,
+            0,
+            0,
+            null,
+            RequesterLeaseHandler.None);
+  }
+
+  @TearDown
+  public void tearDown() {
+    requester.dispose();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public void perCall() {
+    Flux.range(0, COUNT).concatMap(i -> requester.fireAndForget(payload())).blockLast();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(COUNT)
+  public void many() {
+    requester.fireAndForgetMany(Flux.range(0, COUNT).map(i -> payload())).block();
+  }
+
+  static Payload payload() {
+    return ByteBufPayload.create("0123456789abcdef", "metadata");
+  }
+
+  static final class DiscardingConnection implements DuplexConnection {
+
+    final MonoProcessor<Void> onClose = MonoProcessor.create();
+
+    @Override
+    public Mono<Void> send(Publisher<ByteBuf> frames) {
+      return Flux.from(frames).doOnNext(ByteBuf::release).then();
+    }
+
+    @Override
+    public Flux<ByteBuf> receive() {
+      return Flux.never();
+    }
+
+    @Override
+    public ByteBufAllocator alloc() {
+      return PooledByteBufAllocator.DEFAULT;
+    }
+
+    @Override
+    public Mono<Void> onClose() {
+      return onClose;
+    }
+
+    @Override
+    public void dispose() {
+      onClose.onComplete();
+    }
+
+    @Override
+    public boolean isDisposed() {
+      return onClose.isTerminated();
+    }
+  }
+}
@@ -35,6 +35,21 @@ public interface RSocket extends Availability, Closeable {
    */
   Mono<Void> fireAndForget(Payload payload);
 
+  /**
+   * Fire and Forget interaction model of {@code RSocket} for many payloads at once.
+   *
+   * <p>The default implementation sends the payloads one by one with {@link
+   * #fireAndForget(Payload)}. The requester of a connection sends them in batches, amortizing the
+   * lease checks, the stream id allocations and the buffer allocations over each batch.
+   *
+   * @param payloads Request payloads.
+   * @return {@code Publisher} that completes when all the {@code payloads} are successfully
+   *     handled, otherwise errors.
+   */
+  default Mono<Void> fireAndForgetMany(Publisher<Payload> payloads) {
+    return Flux.from(payloads).concatMap(this::fireAndForget).then();
+  }
+
   /**
    * Request-Response interaction model of {@code RSocket}.
    *
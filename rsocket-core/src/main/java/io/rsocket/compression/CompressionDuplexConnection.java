@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.DuplexConnection;
+import io.rsocket.exceptions.ConnectionErrorException;
+import io.rsocket.frame.FrameHeaderFlyweight;
+import io.rsocket.frame.FrameLengthFlyweight;
+import io.rsocket.frame.FrameType;
+import io.rsocket.frame.SetupFrameFlyweight;
+import io.rsocket.metadata.CompositeMetadata;
+import io.rsocket.metadata.WellKnownMimeType;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compresses the frames of streams once compression is negotiated, and decompresses the compressed
+ * frames received after that, rejecting them otherwise.
+ *
+ * <p>A client starts compressing when it receives the ACCEPT frame of the server, a server when it
+ * receives a SETUP frame offering a matching compression, to which it replies with the ACCEPT
+ * frame. Frames on stream 0 are never compressed.
+ */
+final class CompressionDuplexConnection implements DuplexConnection {
+  private static final Logger logger = LoggerFactory.getLogger(CompressionDuplexConnection.class);
+  private static final String COMPOSITE_METADATA =
+      WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString();
+
+  private final DuplexConnection delegate;
+  private final PayloadCompression compression;
+  private final FrameCompressor compressor;
+  private final boolean client;
+  private final int maxFrameLength;
+
+  private volatile boolean compressing;
+
+  CompressionDuplexConnection(
+      DuplexConnection delegate,
+      PayloadCompression compression,
+      boolean client,
+      int maxFrameLength) {
+    this.delegate = delegate;
+    this.compression = compression;
+    this.compressor = compression.newCompressor();
+    this.client = client;
+    this.maxFrameLength = maxFrameLength;
+  }
+
+  @Override
+  public Mono<Void> send(Publisher<ByteBuf> frames) {
+    return delegate.send(Flux.from(frames).map(this::compress));
+  }
+
+  @Override
+  public Mono<Void> sendOne(ByteBuf frame) {
+    return delegate.sendOne(compress(frame));
+  }
+
+  @Override
+  public Flux<ByteBuf> receive() {
+    return delegate
+        .receive()
+        .handle(
+            (frame, sink) -> {
+              if (CompressionFrameFlyweight.isCompressed(frame)) {
+                try {
+                  if (!compressing) {
+                    throw new ConnectionErrorException("Compression was not negotiated");
+                  }
+                  sink.next(
+                      compressor.decompress(
+                          alloc(), frame, FrameLengthFlyweight.FRAME_LENGTH_MASK));
+                } finally {
+                  frame.release();
+                }
+              } else if (client && CompressionFrameFlyweight.isAccept(frame)) {
+                compressing = compression.matches(CompressionFrameFlyweight.accepted(frame));
+                frame.release();
+              } else {
+                if (!client && FrameHeaderFlyweight.frameType(frame) == FrameType.SETUP) {
+                  accept(frame);
+                }
+                sink.next(frame);
+              }
+            });
+  }
+
+  private ByteBuf compress(ByteBuf frame) {
+    int length = frame.readableBytes();
+    if (!compressing
+        || length < compression.threshold()
+        || FrameHeaderFlyweight.streamId(frame) == 0) {
+      return frame;
+    }
+    ByteBuf compressed = compressor.compress(alloc(), frame, Math.min(length - 1, maxFrameLength));
+    if (compressed == null) {
+      return frame;
+    }
+    frame.release();
+    return compressed;
+  }
+
+  private void accept(ByteBuf setupFrame) {
+    if (!COMPOSITE_METADATA.equals(SetupFrameFlyweight.metadataMimeType(setupFrame))) {
+      return;
+    }
+    ByteBuf metadata = SetupFrameFlyweight.metadata(setupFrame);
+    if (metadata == null) {
+      return;
+    }
+    for (CompositeMetadata.Entry entry : new CompositeMetadata(metadata, false)) {
+      if (PayloadCompression.MIME_TYPE.equals(entry.getMimeType())
+          && compression.matches(entry.getContent())) {
+        compressing = true;
+        delegate
+            .sendOne(
+                CompressionFrameFlyweight.encodeAccept(alloc(), compression.encodeOffer(alloc())))
+            .subscribe(null, e -> logger.debug("Failed to accept compression", e));
+        return;
+      }
+    }
+  }
+
+  @Override
+  public ByteBufAllocator alloc() {
+    return delegate.alloc();
+  }
+
+  @Override
+  public double availability() {
+    return delegate.availability();
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return delegate.onClose();
+  }
+
+  @Override
+  public void dispose() {
+    delegate.dispose();
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return delegate.isDisposed();
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.rsocket.frame.ExtensionFrameFlyweight;
+import io.rsocket.frame.FrameHeaderFlyweight;
+import io.rsocket.frame.FrameType;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes the frames and the SETUP metadata entry used by {@link PayloadCompression}.
+ *
+ * <p>The SETUP entry and the ACCEPT frame hold the dictionary id on 4 bytes followed by the UTF-8
+ * name of the algorithm. A compressed frame is an extension frame with the stream id of the
+ * original frame, holding the length of the original frame on 4 bytes followed by the compressed
+ * original frame.
+ */
+public final class CompressionFrameFlyweight {
+  /** Extended type of the frames holding a compressed frame. */
+  public static final int COMPRESSED_FRAME_TYPE = 0x4346_0001;
+  /** Extended type of the frame sent on stream 0 by a server accepting compression. */
+  public static final int ACCEPT_FRAME_TYPE = 0x4346_0002;
+
+  private static final int EXTENDED_TYPE_OFFSET = FrameHeaderFlyweight.size();
+  private static final int LENGTH_OFFSET = EXTENDED_TYPE_OFFSET + Integer.BYTES;
+  private static final int COMPRESSED_DATA_OFFSET = LENGTH_OFFSET + Integer.BYTES;
+
+  private CompressionFrameFlyweight() {}
+
+  /**
+   * Encodes the content of the SETUP metadata entry or of the ACCEPT frame.
+   *
+   * @param allocator the allocator of the buffer
+   * @param algorithm the name of the compression algorithm
+   * @param dictionaryId the id of the dictionary, 0 without dictionary
+   * @return a new buffer holding the content
+   */
+  public static ByteBuf encodeOffer(
+      ByteBufAllocator allocator, String algorithm, int dictionaryId) {
+    ByteBuf buffer = allocator.buffer(Integer.BYTES + ByteBufUtil.utf8MaxBytes(algorithm));
+    buffer.writeInt(dictionaryId);
+    ByteBufUtil.writeUtf8(buffer, algorithm);
+    return buffer;
+  }
+
+  /**
+   * @param offer the content of the SETUP metadata entry or of the ACCEPT frame
+   * @return whether it matches the given algorithm and dictionary
+   */
+  public static boolean matches(ByteBuf offer, String algorithm, int dictionaryId) {
+    int index = offer.readerIndex();
+    return offer.readableBytes() >= Integer.BYTES
+        && offer.getInt(index) == dictionaryId
+        && algorithm.equals(
+            offer.toString(
+                index + Integer.BYTES,
+                offer.readableBytes() - Integer.BYTES,
+                StandardCharsets.UTF_8));
+  }
+
+  /** Encodes the ACCEPT frame sent by a server on stream 0, consuming the offer. */
+  public static ByteBuf encodeAccept(ByteBufAllocator allocator, ByteBuf offer) {
+    return ExtensionFrameFlyweight.encode(allocator, 0, ACCEPT_FRAME_TYPE, null, offer);
+  }
+
+  /**
+   * Encodes the header of a compressed frame, the compressed bytes are then written to the returned
+   * buffer.
+   *
+   * @param allocator the allocator of the buffer
+   * @param streamId the stream id of the original frame
+   * @param length the length of the original frame
+   * @param capacity the expected capacity of the compressed frame
+   * @return a new buffer holding the header
+   */
+  public static ByteBuf encodeCompressedHeader(
+      ByteBufAllocator allocator, int streamId, int length, int capacity) {
+    ByteBuf buffer =
+        FrameHeaderFlyweight.encode(allocator, streamId, FrameType.EXT, 0)
+            .writeInt(COMPRESSED_FRAME_TYPE)
+            .writeInt(length);
+    buffer.ensureWritable(Math.max(0, capacity - COMPRESSED_DATA_OFFSET));
+    return buffer;
+  }
+
+  /** @return whether the frame is an ACCEPT frame */
+  public static boolean isAccept(ByteBuf frame) {
+    return isExtension(frame, ACCEPT_FRAME_TYPE);
+  }
+
+  /** @return whether the frame is a compressed frame */
+  public static boolean isCompressed(ByteBuf frame) {
+    return isExtension(frame, COMPRESSED_FRAME_TYPE);
+  }
+
+  /** @return the content of an ACCEPT frame */
+  public static ByteBuf accepted(ByteBuf frame) {
+    return ExtensionFrameFlyweight.data(frame);
+  }
+
+  /** @return the length of the original frame of a compressed frame */
+  public static int length(ByteBuf frame) {
+    return frame.getInt(frame.readerIndex() + LENGTH_OFFSET);
+  }
+
+  /** @return a slice of the compressed bytes of a compressed frame */
+  public static ByteBuf compressedData(ByteBuf frame) {
+    return frame.slice(
+        frame.readerIndex() + COMPRESSED_DATA_OFFSET,
+        frame.readableBytes() - COMPRESSED_DATA_OFFSET);
+  }
+
+  private static boolean isExtension(ByteBuf frame, int extendedType) {
+    return frame.readableBytes() >= COMPRESSED_DATA_OFFSET - Integer.BYTES
+        && FrameHeaderFlyweight.frameType(frame) == FrameType.EXT
+        && frame.getInt(frame.readerIndex() + EXTENDED_TYPE_OFFSET) == extendedType;
+  }
+}
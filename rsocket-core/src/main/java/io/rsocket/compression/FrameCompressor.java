@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.exceptions.ConnectionErrorException;
+import io.rsocket.frame.FrameHeaderFlyweight;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import reactor.util.annotation.Nullable;
+
+/**
+ * Deflates and inflates whole frames, each frame independently of the others so that they can be
+ * sent in any order. Frames are compressed against the optional preset dictionary, which is where
+ * small frames sharing the same structure gain the most.
+ *
+ * <p>The deflater and the inflater are not thread safe and each guarded by its own lock.
+ */
+final class FrameCompressor {
+  private static final int CHUNK_SIZE = 8192;
+  // larger frames use a temporary array rather than growing the cached one
+  private static final int MAX_CACHED_INPUT = 64 * 1024;
+
+  @Nullable private final byte[] dictionary;
+  private final Deflater deflater;
+  private final Inflater inflater;
+  private final byte[] chunk = new byte[CHUNK_SIZE];
+  private final byte[] overflow = new byte[1];
+  private byte[] deflaterInput = new byte[CHUNK_SIZE];
+  private byte[] inflaterInput = new byte[CHUNK_SIZE];
+
+  FrameCompressor(int level, @Nullable byte[] dictionary) {
+    this.dictionary = dictionary;
+    this.deflater = new Deflater(level, true);
+    this.inflater = new Inflater(true);
+  }
+
+  /**
+   * @param frame the frame to compress, left untouched
+   * @param maxLength the maximum length of the compressed frame
+   * @return the compressed frame, or {@code null} if it would be larger than {@code maxLength}
+   */
+  @Nullable
+  ByteBuf compress(ByteBufAllocator allocator, ByteBuf frame, int maxLength) {
+    int length = frame.readableBytes();
+    int streamId = FrameHeaderFlyweight.streamId(frame);
+    synchronized (deflater) {
+      byte[] input = deflaterInput.length >= length ? deflaterInput : new byte[length];
+      if (input.length <= MAX_CACHED_INPUT) {
+        deflaterInput = input;
+      }
+      frame.getBytes(frame.readerIndex(), input, 0, length);
+
+      deflater.reset();
+      if (dictionary != null) {
+        deflater.setDictionary(dictionary);
+      }
+      deflater.setInput(input, 0, length);
+      deflater.finish();
+
+      ByteBuf compressed =
+          CompressionFrameFlyweight.encodeCompressedHeader(allocator, streamId, length, length / 2);
+      while (!deflater.finished()) {
+        int n = deflater.deflate(chunk);
+        if (compressed.readableBytes() + n > maxLength) {
+          compressed.release();
+          return null;
+        }
+        compressed.writeBytes(chunk, 0, n);
+      }
+      return compressed;
+    }
+  }
+
+  /**
+   * @param frame the compressed frame, left untouched
+   * @param maxLength the maximum length of the original frame
+   * @return the original frame
+   * @throws ConnectionErrorException if the compressed frame is invalid or the original frame would
+   *     be larger than {@code maxLength}
+   */
+  ByteBuf decompress(ByteBufAllocator allocator, ByteBuf frame, int maxLength) {
+    int length = CompressionFrameFlyweight.length(frame);
+    // checked before allocating, the length is sent by the peer
+    if (length < 0 || length > maxLength) {
+      throw new ConnectionErrorException("Invalid compressed frame length: " + length);
+    }
+    ByteBuf data = CompressionFrameFlyweight.compressedData(frame);
+    int dataLength = data.readableBytes();
+    synchronized (inflater) {
+      byte[] input = inflaterInput.length >= dataLength ? inflaterInput : new byte[dataLength];
+      if (input.length <= MAX_CACHED_INPUT) {
+        inflaterInput = input;
+      }
+      data.getBytes(data.readerIndex(), input, 0, dataLength);
+
+      inflater.reset();
+      if (dictionary != null) {
+        inflater.setDictionary(dictionary);
+      }
+      inflater.setInput(input, 0, dataLength);
+
+      ByteBuf decompressed = allocator.heapBuffer(length, length);
+      try {
+        byte[] array = decompressed.array();
+        int offset = decompressed.arrayOffset();
+        int written = 0;
+        while (!inflater.finished()) {
+          if (written == length) {
+            // the original frame must end exactly at its length
+            if (inflater.inflate(overflow) != 0) {
+              throw new ConnectionErrorException("Invalid compressed frame length");
+            }
+            break;
+          }
+          int n = inflater.inflate(array, offset + written, length - written);
+          if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          written += n;
+        }
+        if (written != length || !inflater.finished()) {
+          throw new ConnectionErrorException("Invalid compressed frame length");
+        }
+        return decompressed.writerIndex(length);
+      } catch (DataFormatException e) {
+        decompressed.release();
+        throw new ConnectionErrorException("Invalid compressed frame", e);
+      } catch (RuntimeException e) {
+        decompressed.release();
+        throw e;
+      }
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.rsocket.Payload;
+import io.rsocket.frame.FrameLengthFlyweight;
+import io.rsocket.metadata.CompositeMetadataFlyweight;
+import io.rsocket.plugins.DuplexConnectionInterceptor;
+import io.rsocket.util.ByteBufPayload;
+import java.util.Objects;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import reactor.util.annotation.Nullable;
+
+/**
+ * Opt-in compression of the frames of a connection, negotiated at SETUP.
+ *
+ * <p>The client offers compression with an entry of its composite SETUP metadata, and the server
+ * accepts it with an extension frame on stream 0 when it is configured with the same algorithm and
+ * dictionary. From then on, both sides compress the frames of streams reaching the {@link
+ * #threshold(int) threshold}, data and metadata included, and keep the compressed frame only when
+ * it is smaller. Frames on stream 0 are never compressed. Each frame is compressed independently,
+ * against the optional dictionary shared by both sides, so that frames can be sent concurrently and
+ * replayed on resumption.
+ *
+ * <p>Compressed frames are extension frames, which are never fragmented: frames whose compressed
+ * form would not fit in the mtu are sent uncompressed and fragmented as usual.
+ *
+ * <pre>{@code
+ * PayloadCompression compression = PayloadCompression.deflate().dictionary(dictionary);
+ *
+ * RSocketServer.create(acceptor).compression(compression).bind(serverTransport);
+ *
+ * RSocketConnector.create()
+ *     .metadataMimeType(WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString())
+ *     .compression(compression)
+ *     .connect(clientTransport);
+ * }</pre>
+ */
+public final class PayloadCompression {
+  /** The mime type of the SETUP metadata entry offering compression. */
+  public static final String MIME_TYPE = "message/x.rsocket.compression.v0";
+
+  public static final String DEFLATE = "deflate";
+
+  private final String algorithm;
+  private int level = Deflater.BEST_SPEED;
+  private int threshold = 512;
+  @Nullable private byte[] dictionary;
+  private int dictionaryId;
+
+  private PayloadCompression(String algorithm) {
+    this.algorithm = algorithm;
+  }
+
+  /** @return a compression using the raw DEFLATE format */
+  public static PayloadCompression deflate() {
+    return new PayloadCompression(DEFLATE);
+  }
+
+  /**
+   * @param level the compression level, from 0 to 9, defaults to {@link Deflater#BEST_SPEED}
+   * @return this compression
+   */
+  public PayloadCompression level(int level) {
+    if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    this.level = level;
+    return this;
+  }
+
+  /**
+   * @param threshold the length from which frames are compressed, defaults to 512 bytes
+   * @return this compression
+   */
+  public PayloadCompression threshold(int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Invalid compression threshold: " + threshold);
+    }
+    this.threshold = threshold;
+    return this;
+  }
+
+  /**
+   * Sets the preset dictionary both sides compress against, typically made of strings frequently
+   * found in payloads. Both sides must use the same dictionary, which is identified by its Adler-32
+   * checksum when negotiating.
+   *
+   * @param dictionary the dictionary, at most 32KB are used
+   * @return this compression
+   */
+  public PayloadCompression dictionary(byte[] dictionary) {
+    Objects.requireNonNull(dictionary);
+    Adler32 checksum = new Adler32();
+    checksum.update(dictionary, 0, dictionary.length);
+    this.dictionary = dictionary.clone();
+    this.dictionaryId = (int) checksum.getValue();
+    return this;
+  }
+
+  public String algorithm() {
+    return algorithm;
+  }
+
+  public int threshold() {
+    return threshold;
+  }
+
+  /** @return the Adler-32 checksum of the dictionary, 0 without dictionary */
+  public int dictionaryId() {
+    return dictionaryId;
+  }
+
+  /**
+   * Adds the entry offering this compression to the composite metadata of a SETUP payload. The
+   * returned payload takes over the buffers of the given payload, like the SETUP frame does.
+   *
+   * @param allocator the allocator of the new buffers
+   * @param setupPayload the SETUP payload, with composite metadata if any
+   * @return the SETUP payload offering compression
+   */
+  public Payload offer(ByteBufAllocator allocator, Payload setupPayload) {
+    CompositeByteBuf metadata = allocator.compositeBuffer();
+    if (setupPayload.hasMetadata()) {
+      metadata.addComponent(true, setupPayload.sliceMetadata());
+    }
+    CompositeMetadataFlyweight.encodeAndAddMetadata(
+        metadata, allocator, MIME_TYPE, encodeOffer(allocator));
+    return ByteBufPayload.create(setupPayload.sliceData(), metadata);
+  }
+
+  /**
+   * @param client whether the intercepted connections are client connections
+   * @param mtu the mtu of the connections, 0 without fragmentation
+   * @return an interceptor compressing {@link DuplexConnectionInterceptor.Type#SOURCE source}
+   *     connections
+   */
+  public DuplexConnectionInterceptor interceptor(boolean client, int mtu) {
+    int maxFrameLength = mtu > 0 ? mtu : FrameLengthFlyweight.FRAME_LENGTH_MASK;
+    return (type, connection) ->
+        type == DuplexConnectionInterceptor.Type.SOURCE
+            ? new CompressionDuplexConnection(connection, this, client, maxFrameLength)
+            : connection;
+  }
+
+  ByteBuf encodeOffer(ByteBufAllocator allocator) {
+    return CompressionFrameFlyweight.encodeOffer(allocator, algorithm, dictionaryId);
+  }
+
+  boolean matches(ByteBuf offer) {
+    return CompressionFrameFlyweight.matches(offer, algorithm, dictionaryId);
+  }
+
+  FrameCompressor newCompressor() {
+    return new FrameCompressor(level, dictionary);
+  }
+
+  @Override
+  public String toString() {
+    return "PayloadCompression{"
+        + "algorithm="
+        + algorithm
+        + ", level="
+        + level
+        + ", threshold="
+        + threshold
+        + ", dictionaryId="
+        + dictionaryId
+        + '}';
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.netty.util.ReferenceCountUtil;
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Payload;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.annotation.Nullable;
+
+/**
+ * Responder whose requests are handled by plain blocking methods, each call running on its own
+ * virtual thread on JDK 21+, instead of wrapping them in {@code
+ * Mono.fromCallable(...).subscribeOn(Schedulers.boundedElastic())}.
+ *
+ * <pre>{@code
+ * RSocket handler =
+ *     BlockingRSocket.create()
+ *         .onRequestResponse(payload -> DefaultPayload.create(dao.find(payload.getDataUtf8())));
+ *
+ * RSocketServer.create((setup, sendingSocket) -> Mono.just(handler)).bind(transport)
+ * }</pre>
+ *
+ * <p>The request payload is released once the handler returns, handlers that keep it longer must
+ * {@link Payload#retain() retain} it. When the requester cancels the stream, the thread running the
+ * handler is interrupted, which aborts most blocking calls, and the response is released.
+ */
+public final class BlockingRSocket extends AbstractRSocket {
+  private final Executor executor;
+  @Nullable private Handler requestResponseHandler;
+  @Nullable private VoidHandler fireAndForgetHandler;
+
+  private BlockingRSocket(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * @return a responder running each call on its own virtual thread
+   * @throws UnsupportedOperationException if the JDK does not support virtual threads
+   * @see ResponderExecution#isVirtualThreadsSupported()
+   */
+  public static BlockingRSocket create() {
+    ThreadFactory threadFactory = VirtualThreads.factory("rsocket-blocking-");
+    return new BlockingRSocket(task -> threadFactory.newThread(task).start());
+  }
+
+  /**
+   * @param executor the executor running the calls, which must not run them on the calling thread
+   * @return a responder running the calls on the given executor, for JDKs without virtual threads
+   */
+  public static BlockingRSocket create(Executor executor) {
+    return new BlockingRSocket(Objects.requireNonNull(executor));
+  }
+
+  public BlockingRSocket onRequestResponse(Handler handler) {
+    this.requestResponseHandler = Objects.requireNonNull(handler);
+    return this;
+  }
+
+  public BlockingRSocket onFireAndForget(VoidHandler handler) {
+    this.fireAndForgetHandler = Objects.requireNonNull(handler);
+    return this;
+  }
+
+  @Override
+  public Mono<Payload> requestResponse(Payload payload) {
+    Handler handler = requestResponseHandler;
+    if (handler == null) {
+      return super.requestResponse(payload);
+    }
+    return Mono.create(sink -> execute(sink, payload, handler));
+  }
+
+  @Override
+  public Mono<Void> fireAndForget(Payload payload) {
+    VoidHandler handler = fireAndForgetHandler;
+    if (handler == null) {
+      return super.fireAndForget(payload);
+    }
+    return Mono.create(
+        sink ->
+            execute(
+                sink,
+                payload,
+                p -> {
+                  handler.handle(p);
+                  return null;
+                }));
+  }
+
+  private <T> void execute(MonoSink<T> sink, Payload payload, Handler handler) {
+    try {
+      executor.execute(new Call<>(sink, payload, handler));
+    } catch (RejectedExecutionException e) {
+      // the executor is shut down or saturated
+      ReferenceCountUtil.safeRelease(payload);
+      sink.error(e);
+    }
+  }
+
+  /** Blocking handler of a request with a response. */
+  @FunctionalInterface
+  public interface Handler {
+    /**
+     * @param payload the request, released once this method returns
+     * @return the response, or {@code null} for an empty response
+     * @throws Exception sent to the requester as an application error
+     */
+    @Nullable
+    Payload handle(Payload payload) throws Exception;
+  }
+
+  /** Blocking handler of a request without response. */
+  @FunctionalInterface
+  public interface VoidHandler {
+    /**
+     * @param payload the request, released once this method returns
+     * @throws Exception reported to the error consumer of the responder
+     */
+    void handle(Payload payload) throws Exception;
+  }
+
+  /** A call of a handler, interrupted while it runs if its stream is cancelled. */
+  private static final class Call<T> implements Runnable, Disposable {
+    private final MonoSink<T> sink;
+    private final Payload payload;
+    private final Handler handler;
+
+    // guarded by this
+    @Nullable private Thread thread;
+    private boolean cancelled;
+
+    Call(MonoSink<T> sink, Payload payload, Handler handler) {
+      this.sink = sink;
+      this.payload = payload;
+      this.handler = handler;
+      sink.onCancel(this);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+      synchronized (this) {
+        if (cancelled) {
+          ReferenceCountUtil.safeRelease(payload);
+          return;
+        }
+        thread = Thread.currentThread();
+      }
+
+      Payload response = null;
+      Throwable error = null;
+      try {
+        response = handler.handle(payload);
+      } catch (Throwable t) {
+        error = t;
+      } finally {
+        ReferenceCountUtil.safeRelease(payload);
+      }
+
+      boolean cancelled;
+      synchronized (this) {
+        thread = null;
+        cancelled = this.cancelled;
+        // clears an interrupt that raced with the end of the handler
+        Thread.interrupted();
+      }
+      if (cancelled) {
+        if (response != null) {
+          response.release();
+        }
+      } else if (error != null) {
+        sink.error(error);
+      } else {
+        sink.success((T) response);
+      }
+    }
+
+    @Override
+    public synchronized void dispose() {
+      cancelled = true;
+      if (thread != null) {
+        thread.interrupt();
+      }
+    }
+
+    @Override
+    public synchronized boolean isDisposed() {
+      return cancelled;
+    }
+  }
+}
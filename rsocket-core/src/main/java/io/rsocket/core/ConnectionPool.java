@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import java.time.Duration;
+
+/**
+ * Configures the pool of connections maintained by a {@link RSocketConnector} to the same target.
+ *
+ * <p>The pool opens {@link #minConnections(int) minConnections} connections up front and dispatches
+ * each request to the connection with the fewest streams in flight. When every connection has at
+ * least {@link #targetStreams(int) targetStreams} streams in flight, it opens another one, up to
+ * {@link #maxConnections(int) maxConnections}. Connections without streams in flight for {@link
+ * #idleTimeout(Duration) idleTimeout} are closed, down to {@code minConnections}, and closed
+ * connections are replaced on demand.
+ *
+ * <p>Transports such as TCP assign each new connection to the next event loop of their group, so
+ * that the connections of a pool are spread across event loops.
+ */
+public class ConnectionPool {
+  private int minConnections = 1;
+  private int maxConnections = Runtime.getRuntime().availableProcessors();
+  private int targetStreams = 256;
+  private Duration idleTimeout = Duration.ofMinutes(1);
+
+  public ConnectionPool() {}
+
+  /**
+   * @param minConnections the number of connections kept open, defaults to 1
+   * @return this pool
+   */
+  public ConnectionPool minConnections(int minConnections) {
+    if (minConnections < 1) {
+      throw new IllegalArgumentException("minConnections must be > 0: " + minConnections);
+    }
+    this.minConnections = minConnections;
+    this.maxConnections = Math.max(maxConnections, minConnections);
+    return this;
+  }
+
+  /**
+   * @param maxConnections the maximum number of connections, defaults to the number of processors
+   * @return this pool
+   */
+  public ConnectionPool maxConnections(int maxConnections) {
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("maxConnections must be > 0: " + maxConnections);
+    }
+    this.maxConnections = maxConnections;
+    this.minConnections = Math.min(minConnections, maxConnections);
+    return this;
+  }
+
+  /**
+   * @param targetStreams the number of streams in flight on every connection from which the pool
+   *     grows, defaults to 256
+   * @return this pool
+   */
+  public ConnectionPool targetStreams(int targetStreams) {
+    if (targetStreams < 1) {
+      throw new IllegalArgumentException("targetStreams must be > 0: " + targetStreams);
+    }
+    this.targetStreams = targetStreams;
+    return this;
+  }
+
+  /**
+   * @param idleTimeout the time after which a connection without streams in flight is closed,
+   *     defaults to 1 minute
+   * @return this pool
+   */
+  public ConnectionPool idleTimeout(Duration idleTimeout) {
+    if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+      throw new IllegalArgumentException("idleTimeout must be > 0: " + idleTimeout);
+    }
+    this.idleTimeout = idleTimeout;
+    return this;
+  }
+
+  int getMinConnections() {
+    return minConnections;
+  }
+
+  int getMaxConnections() {
+    return maxConnections;
+  }
+
+  int getTargetStreams() {
+    return targetStreams;
+  }
+
+  Duration getIdleTimeout() {
+    return idleTimeout;
+  }
+}
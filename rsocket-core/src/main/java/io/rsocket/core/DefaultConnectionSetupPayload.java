@@ -21,6 +21,7 @@
 import io.rsocket.ConnectionSetupPayload;
 import io.rsocket.frame.FrameHeaderFlyweight;
 import io.rsocket.frame.SetupFrameFlyweight;
+import reactor.util.annotation.Nullable;
 
 /**
  * Default implementation of {@link ConnectionSetupPayload}. Primarily for internal use within
@@ -29,9 +30,19 @@
 public class DefaultConnectionSetupPayload extends ConnectionSetupPayload {
 
   private final ByteBuf setupFrame;
+  @Nullable private final String metadataMimeType;
+  @Nullable private final String dataMimeType;
 
   public DefaultConnectionSetupPayload(ByteBuf setupFrame) {
+    this(setupFrame, null, null);
+  }
+
+  /** With the mime types of the frame already known, otherwise decoded from the frame. */
+  DefaultConnectionSetupPayload(
+      ByteBuf setupFrame, @Nullable String metadataMimeType, @Nullable String dataMimeType) {
     this.setupFrame = setupFrame;
+    this.metadataMimeType = metadataMimeType;
+    this.dataMimeType = dataMimeType;
   }
 
   @Override
@@ -62,11 +73,17 @@ public ByteBuf metadata() {
 
   @Override
   public String metadataMimeType() {
+    if (metadataMimeType != null) {
+      return metadataMimeType;
+    }
     return SetupFrameFlyweight.metadataMimeType(setupFrame);
   }
 
   @Override
   public String dataMimeType() {
+    if (dataMimeType != null) {
+      return dataMimeType;
+    }
     return SetupFrameFlyweight.dataMimeType(setupFrame);
   }
 
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.rsocket.DuplexConnection;
+import io.rsocket.fragmentation.ReassemblyDuplexConnection;
+import io.rsocket.plugins.ConnectionStats;
+import io.rsocket.plugins.InitializingInterceptorRegistry;
+import java.util.function.LongConsumer;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+
+/** Default implementation of {@link ConnectionStats}, reading the requester and responder state. */
+final class DefaultConnectionStats implements ConnectionStats {
+
+  private final String side;
+
+  private final DuplexConnection sourceConnection;
+
+  @Nullable private final ReassemblyDuplexConnection reassemblyConnection;
+
+  private final RSocketRequester requester;
+
+  private final RSocketResponder responder;
+
+  private DefaultConnectionStats(
+      String side,
+      DuplexConnection sourceConnection,
+      RSocketRequester requester,
+      RSocketResponder responder) {
+    this.side = side;
+    this.sourceConnection = sourceConnection;
+    this.reassemblyConnection =
+        sourceConnection instanceof ReassemblyDuplexConnection
+            ? (ReassemblyDuplexConnection) sourceConnection
+            : null;
+    this.requester = requester;
+    this.responder = responder;
+  }
+
+  /**
+   * Gives the state of a connection to the registered {@link
+   * io.rsocket.plugins.ConnectionInstrumentation}s, if any. {@code sourceConnection} must be the
+   * connection given by the transport, before compression or the connection interceptors wrap it,
+   * as it is the one reassembling fragments.
+   */
+  static void instrument(
+      InitializingInterceptorRegistry interceptors,
+      String side,
+      DuplexConnection sourceConnection,
+      RSocketRequester requester,
+      RSocketResponder responder) {
+    LongConsumer latencyConsumer =
+        interceptors.initInstrumentation(
+            new DefaultConnectionStats(side, sourceConnection, requester, responder));
+
+    if (latencyConsumer != null) {
+      requester.sampleSendLatency(latencyConsumer);
+      responder.sampleSendLatency(latencyConsumer);
+    }
+  }
+
+  @Override
+  public String side() {
+    return side;
+  }
+
+  @Override
+  public int pendingSendFrames() {
+    return requester.pendingFrames() + responder.pendingFrames();
+  }
+
+  @Override
+  public int activeSenders() {
+    return requester.activeSenders() + responder.activeSenders();
+  }
+
+  @Override
+  public int activeReceivers() {
+    return requester.activeReceivers();
+  }
+
+  @Override
+  public int activeChannelProcessors() {
+    return responder.activeChannelProcessors();
+  }
+
+  @Override
+  public long reassemblyBytes() {
+    return reassemblyConnection != null ? reassemblyConnection.reassemblyBytes() : 0;
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return sourceConnection.onClose();
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionStats{side="
+        + side
+        + ", pendingSendFrames="
+        + pendingSendFrames()
+        + ", activeSenders="
+        + activeSenders()
+        + ", activeReceivers="
+        + activeReceivers()
+        + ", activeChannelProcessors="
+        + activeChannelProcessors()
+        + ", reassemblyBytes="
+        + reassemblyBytes()
+        + '}';
+  }
+}
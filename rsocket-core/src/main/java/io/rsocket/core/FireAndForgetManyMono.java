@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.netty.util.ReferenceCountUtil;
+import io.rsocket.Payload;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Exceptions;
+import reactor.core.Fuseable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.util.annotation.Nullable;
+import reactor.util.concurrent.Queues;
+import reactor.util.context.Context;
+
+/**
+ * Sends the payloads of a {@code Publisher} as fire-and-forget requests, completing when all of
+ * them have been handed to the connection.
+ *
+ * <p>The payloads are sent in batches of what is available when the subscriber drains, up to {@link
+ * #BATCH_SIZE}, so that a whole batch is sent with a single lease check, stream id reservation and
+ * buffer. Synchronous sources are polled a batch at a time and asynchronous fuseable sources are
+ * drained without an intermediate queue.
+ */
+final class FireAndForgetManyMono extends Mono<Void> {
+
+  static final int BATCH_SIZE = Queues.SMALL_BUFFER_SIZE;
+
+  final RSocketRequester requester;
+  final Flux<Payload> source;
+
+  FireAndForgetManyMono(RSocketRequester requester, Publisher<Payload> source) {
+    this.requester = requester;
+    this.source = Flux.from(source);
+  }
+
+  @Override
+  public void subscribe(CoreSubscriber<? super Void> actual) {
+    source.subscribe(new FireAndForgetManySubscriber(requester, actual));
+  }
+
+  static final class FireAndForgetManySubscriber implements CoreSubscriber<Payload>, Subscription {
+
+    static final int LIMIT = BATCH_SIZE - (BATCH_SIZE >> 2);
+
+    static final AtomicIntegerFieldUpdater<FireAndForgetManySubscriber> WIP =
+        AtomicIntegerFieldUpdater.newUpdater(FireAndForgetManySubscriber.class, "wip");
+
+    final RSocketRequester requester;
+    final CoreSubscriber<? super Void> actual;
+    final Payload[] batch = new Payload[BATCH_SIZE];
+
+    Subscription s;
+    Queue<Payload> queue;
+    int sourceMode;
+    int produced;
+
+    volatile boolean done;
+    @Nullable Throwable error;
+    volatile boolean cancelled;
+
+    volatile int wip;
+
+    FireAndForgetManySubscriber(RSocketRequester requester, CoreSubscriber<? super Void> actual) {
+      this.requester = requester;
+      this.actual = actual;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      if (!Operators.validate(this.s, s)) {
+        return;
+      }
+      this.s = s;
+
+      if (s instanceof Fuseable.QueueSubscription) {
+        @SuppressWarnings("unchecked")
+        Fuseable.QueueSubscription<Payload> qs = (Fuseable.QueueSubscription<Payload>) s;
+        int mode = qs.requestFusion(Fuseable.ANY);
+        if (mode == Fuseable.SYNC) {
+          sourceMode = mode;
+          queue = qs;
+          done = true;
+          actual.onSubscribe(this);
+          drain();
+          return;
+        }
+        if (mode == Fuseable.ASYNC) {
+          sourceMode = mode;
+          queue = qs;
+          actual.onSubscribe(this);
+          s.request(BATCH_SIZE);
+          return;
+        }
+      }
+
+      queue = Queues.<Payload>get(BATCH_SIZE).get();
+      actual.onSubscribe(this);
+      s.request(BATCH_SIZE);
+    }
+
+    @Override
+    public void onNext(Payload payload) {
+      if (sourceMode == Fuseable.ASYNC) {
+        drain();
+        return;
+      }
+      if (done || cancelled) {
+        ReferenceCountUtil.safeRelease(payload);
+        return;
+      }
+      if (!queue.offer(payload)) {
+        ReferenceCountUtil.safeRelease(payload);
+        s.cancel();
+        onError(Exceptions.failWithOverflow(Exceptions.BACKPRESSURE_ERROR_QUEUE_FULL));
+        return;
+      }
+      drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      if (done) {
+        Operators.onErrorDropped(t, actual.currentContext());
+        return;
+      }
+      error = t;
+      done = true;
+      drain();
+    }
+
+    @Override
+    public void onComplete() {
+      if (done) {
+        return;
+      }
+      done = true;
+      drain();
+    }
+
+    @Override
+    public void request(long n) {
+      // nothing is emitted
+    }
+
+    @Override
+    public void cancel() {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      s.cancel();
+      if (WIP.getAndIncrement(this) == 0) {
+        clear();
+      }
+    }
+
+    @Override
+    public Context currentContext() {
+      return actual.currentContext();
+    }
+
+    private void drain() {
+      if (WIP.getAndIncrement(this) != 0) {
+        return;
+      }
+
+      int missed = 1;
+      for (; ; ) {
+        for (; ; ) {
+          if (cancelled) {
+            clear();
+            return;
+          }
+
+          boolean d = done;
+          int n = 0;
+          try {
+            Payload payload;
+            while (n < BATCH_SIZE && (payload = queue.poll()) != null) {
+              batch[n++] = payload;
+            }
+          } catch (Throwable t) {
+            releaseBatch(n);
+            terminate(Operators.onOperatorError(s, t, actual.currentContext()));
+            return;
+          }
+
+          if (n > 0) {
+            Throwable failure = requester.sendFireAndForgetBatch(batch, n);
+            if (failure != null) {
+              terminate(failure);
+              return;
+            }
+            if (sourceMode != Fuseable.SYNC) {
+              produced += n;
+              if (produced >= LIMIT) {
+                s.request(produced);
+                produced = 0;
+              }
+            }
+          }
+
+          if (n < BATCH_SIZE && (d || sourceMode == Fuseable.SYNC)) {
+            // the source is exhausted, a synchronous source signals it with a null
+            cancelled = true;
+            Throwable e = error;
+            if (e != null) {
+              actual.onError(e);
+            } else {
+              actual.onComplete();
+            }
+            return;
+          }
+
+          if (n < BATCH_SIZE) {
+            break;
+          }
+        }
+
+        missed = WIP.addAndGet(this, -missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    private void terminate(Throwable e) {
+      cancelled = true;
+      s.cancel();
+      clear();
+      actual.onError(e);
+    }
+
+    private void releaseBatch(int n) {
+      for (int i = 0; i < n; i++) {
+        ReferenceCountUtil.safeRelease(batch[i]);
+        batch[i] = null;
+      }
+    }
+
+    private void clear() {
+      if (sourceMode == Fuseable.SYNC) {
+        queue.clear();
+        return;
+      }
+      for (; ; ) {
+        Payload payload;
+        try {
+          payload = queue.poll();
+        } catch (Throwable t) {
+          return;
+        }
+        if (payload == null) {
+          return;
+        }
+        ReferenceCountUtil.safeRelease(payload);
+      }
+    }
+  }
+}
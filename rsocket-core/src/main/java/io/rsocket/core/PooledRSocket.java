@@ -0,0 +1,342 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.netty.util.ReferenceCountUtil;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.SignalType;
+import reactor.util.annotation.Nullable;
+
+/**
+ * {@link RSocket} over a pool of connections to the same target, see {@link ConnectionPool}.
+ *
+ * <p>Every request is dispatched to the connection with the fewest streams in flight. The members
+ * are kept in a copy-on-write array so that the selection only reads a volatile field and bumps a
+ * counter, while connections are added and removed under the pool monitor. Once the pool is
+ * saturated, or a connection is being opened, the selection never takes the monitor.
+ */
+final class PooledRSocket implements RSocket {
+  private static final Member[] EMPTY = new Member[0];
+
+  private final Mono<RSocket> source;
+  private final int minConnections;
+  private final int maxConnections;
+  private final int targetStreams;
+  private final long idleTimeoutNanos;
+  private final MonoProcessor<Void> onClose = MonoProcessor.create();
+  private final Disposable idleTask;
+
+  private volatile Member[] members = EMPTY;
+  private volatile boolean disposed;
+
+  // written under this, read without locking by grow
+  private volatile int pendingConnections;
+  // guarded by this
+  private Mono<Void> pendingConnection = Mono.empty();
+
+  PooledRSocket(Mono<RSocket> source, ConnectionPool pool) {
+    this.source = source;
+    this.minConnections = pool.getMinConnections();
+    this.maxConnections = pool.getMaxConnections();
+    this.targetStreams = pool.getTargetStreams();
+    this.idleTimeoutNanos = pool.getIdleTimeout().toNanos();
+    this.idleTask =
+        maxConnections > minConnections
+            ? Flux.interval(pool.getIdleTimeout()).subscribe(i -> closeIdle())
+            : Disposables.disposed();
+  }
+
+  /** Opens the minimum number of connections, completes once the first one is established. */
+  Mono<RSocket> start() {
+    Mono<Void> first = connect();
+    for (int i = 1; i < minConnections; i++) {
+      connect();
+    }
+    return first.doOnError(e -> dispose()).thenReturn(this);
+  }
+
+  @Override
+  public Mono<Void> fireAndForget(Payload payload) {
+    return Mono.defer(() -> select(payload))
+        .flatMap(member -> member.rSocket.fireAndForget(payload).doFinally(member));
+  }
+
+  @Override
+  public Mono<Void> fireAndForgetMany(Publisher<Payload> payloads) {
+    return Mono.defer(() -> select(null))
+        .flatMap(member -> member.rSocket.fireAndForgetMany(payloads).doFinally(member));
+  }
+
+  @Override
+  public Mono<Payload> requestResponse(Payload payload) {
+    return Mono.defer(() -> select(payload))
+        .flatMap(member -> member.rSocket.requestResponse(payload).doFinally(member));
+  }
+
+  @Override
+  public Flux<Payload> requestStream(Payload payload) {
+    return Mono.defer(() -> select(payload))
+        .flatMapMany(member -> member.rSocket.requestStream(payload).doFinally(member));
+  }
+
+  @Override
+  public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+    return Mono.defer(() -> select(null))
+        .flatMapMany(member -> member.rSocket.requestChannel(payloads).doFinally(member));
+  }
+
+  @Override
+  public Mono<Void> metadataPush(Payload payload) {
+    return Mono.defer(() -> select(payload))
+        .flatMap(member -> member.rSocket.metadataPush(payload).doFinally(member));
+  }
+
+  @Override
+  public double availability() {
+    double availability = 0.0;
+    for (Member member : members) {
+      availability = Math.max(availability, member.rSocket.availability());
+    }
+    return availability;
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return onClose;
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return disposed;
+  }
+
+  @Override
+  public void dispose() {
+    Member[] members;
+    synchronized (this) {
+      if (disposed) {
+        return;
+      }
+      disposed = true;
+      members = this.members;
+      this.members = EMPTY;
+    }
+    idleTask.dispose();
+    for (Member member : members) {
+      member.rSocket.dispose();
+    }
+    onClose.onComplete();
+  }
+
+  /** @return the number of established connections */
+  int size() {
+    return members.length;
+  }
+
+  private Mono<Member> select(@Nullable Payload payload) {
+    Member member = acquire();
+    if (member != null) {
+      return Mono.just(member);
+    }
+
+    Mono<Void> connection;
+    synchronized (this) {
+      connection = disposed ? Mono.error(new CancellationException("Disposed")) : pendingConnection;
+    }
+    // no connection yet, wait for the one in progress and select again
+    return connection
+        .then(Mono.defer(() -> select(payload)))
+        .doOnError(
+            e -> {
+              if (payload != null) {
+                ReferenceCountUtil.safeRelease(payload);
+              }
+            });
+  }
+
+  @Nullable
+  private Member acquire() {
+    boolean grown = false;
+    for (; ; ) {
+      Member[] members = this.members;
+      Member selected = null;
+      int selectedInFlight = Integer.MAX_VALUE;
+      int live = 0;
+      for (Member member : members) {
+        int inFlight = member.inFlight;
+        if (inFlight < 0 || member.rSocket.isDisposed()) {
+          continue;
+        }
+        live++;
+        if (inFlight < selectedInFlight) {
+          selected = member;
+          selectedInFlight = inFlight;
+        }
+      }
+
+      if (!grown && (selected == null || selectedInFlight >= targetStreams)) {
+        grown = true;
+        // select again if the connection was established synchronously
+        if (grow(live) && this.members != members) {
+          continue;
+        }
+      }
+      if (selected != null && !selected.tryAcquire()) {
+        // closed as idle since, select again
+        continue;
+      }
+      return selected;
+    }
+  }
+
+  private boolean grow(int live) {
+    // checked first without locking, so that a saturated pool selects the least loaded connection
+    if (pendingConnections > 0 || live >= maxConnections) {
+      return false;
+    }
+    synchronized (this) {
+      // connections are added one at a time
+      if (pendingConnections > 0 || live >= maxConnections) {
+        return false;
+      }
+    }
+    connect();
+    return true;
+  }
+
+  private Mono<Void> connect() {
+    Mono<Void> connection =
+        source
+            .doOnNext(this::add)
+            .doFinally(
+                s -> {
+                  synchronized (this) {
+                    pendingConnections--;
+                  }
+                })
+            .then()
+            .cache();
+    synchronized (this) {
+      if (disposed) {
+        return Mono.error(new CancellationException("Disposed"));
+      }
+      pendingConnections++;
+      pendingConnection = connection;
+    }
+    // failures are reported to the requests waiting for this connection
+    connection.subscribe(null, e -> {});
+    return connection;
+  }
+
+  private void add(RSocket rSocket) {
+    Member member = new Member(rSocket);
+    synchronized (this) {
+      if (disposed) {
+        rSocket.dispose();
+        return;
+      }
+      Member[] members = this.members;
+      Member[] next = Arrays.copyOf(members, members.length + 1);
+      next[members.length] = member;
+      this.members = next;
+    }
+    rSocket.onClose().doFinally(s -> remove(member)).subscribe(null, e -> {});
+  }
+
+  private void remove(Member member) {
+    boolean replace;
+    synchronized (this) {
+      Member[] members = this.members;
+      int index = Arrays.asList(members).indexOf(member);
+      if (index < 0) {
+        return;
+      }
+      Member[] next = new Member[members.length - 1];
+      System.arraycopy(members, 0, next, 0, index);
+      System.arraycopy(members, index + 1, next, index, next.length - index);
+      this.members = next;
+      replace = !disposed && next.length + pendingConnections < minConnections;
+    }
+    if (replace) {
+      connect();
+    }
+  }
+
+  private void closeIdle() {
+    long now = System.nanoTime();
+    for (Member member : members) {
+      if (members.length <= minConnections) {
+        return;
+      }
+      if (member.inFlight == 0
+          && now - member.idleSince >= idleTimeoutNanos
+          && Member.IN_FLIGHT.compareAndSet(member, 0, Member.CLOSING)) {
+        remove(member);
+        member.rSocket.dispose();
+      }
+    }
+  }
+
+  /**
+   * A connection of the pool, released by {@code doFinally} when a stream terminates. An idle
+   * connection is claimed with {@link #CLOSING} before being closed, so that it is never acquired
+   * meanwhile.
+   */
+  static final class Member implements Consumer<SignalType> {
+    static final AtomicIntegerFieldUpdater<Member> IN_FLIGHT =
+        AtomicIntegerFieldUpdater.newUpdater(Member.class, "inFlight");
+    static final int CLOSING = -1;
+
+    final RSocket rSocket;
+    volatile int inFlight;
+    volatile long idleSince = System.nanoTime();
+
+    Member(RSocket rSocket) {
+      this.rSocket = rSocket;
+    }
+
+    boolean tryAcquire() {
+      for (; ; ) {
+        int inFlight = this.inFlight;
+        if (inFlight == CLOSING) {
+          return false;
+        }
+        if (IN_FLIGHT.compareAndSet(this, inFlight, inFlight + 1)) {
+          return true;
+        }
+      }
+    }
+
+    @Override
+    public void accept(SignalType signalType) {
+      if (IN_FLIGHT.decrementAndGet(this) == 0) {
+        idleSince = System.nanoTime();
+      }
+    }
+  }
+}
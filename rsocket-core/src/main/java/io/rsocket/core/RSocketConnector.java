@@ -16,6 +16,7 @@
 package io.rsocket.core;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.rsocket.AbstractRSocket;
 import io.rsocket.ConnectionSetupPayload;
@@ -23,6 +24,7 @@
 import io.rsocket.Payload;
 import io.rsocket.RSocket;
 import io.rsocket.SocketAcceptor;
+import io.rsocket.compression.PayloadCompression;
 import io.rsocket.frame.SetupFrameFlyweight;
 import io.rsocket.frame.decoder.PayloadDecoder;
 import io.rsocket.internal.ClientServerInputMultiplexer;
@@ -31,10 +33,13 @@
 import io.rsocket.lease.Leases;
 import io.rsocket.lease.RequesterLeaseHandler;
 import io.rsocket.lease.ResponderLeaseHandler;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.plugins.DuplexConnectionInterceptor.Type;
 import io.rsocket.plugins.InitializingInterceptorRegistry;
 import io.rsocket.plugins.InterceptorRegistry;
 import io.rsocket.resume.ClientRSocketSession;
 import io.rsocket.transport.ClientTransport;
+import io.rsocket.util.DefaultPayload;
 import io.rsocket.util.EmptyPayload;
 import java.time.Duration;
 import java.util.Objects;
@@ -65,6 +70,8 @@ public class RSocketConnector {
   private Retry retrySpec;
   private Resume resume;
   private Supplier<Leases<?>> leasesSupplier;
+  private PayloadCompression compression;
+  private ConnectionPool pool;
 
   private int mtu = 0;
   private PayloadDecoder payloadDecoder = PayloadDecoder.DEFAULT;
@@ -212,6 +219,34 @@ public RSocketConnector lease(Supplier<Leases<? extends LeaseStats>> supplier) {
     return this;
   }
 
+  /**
+   * Offers to compress the frames of the connection, which are compressed once the server accepts.
+   * The offer is an entry of the SETUP metadata, so the {@link #metadataMimeType(String) metadata
+   * mime type} must be composite metadata.
+   *
+   * @param compression the compression to offer
+   * @see PayloadCompression
+   */
+  public RSocketConnector compression(PayloadCompression compression) {
+    this.compression = Objects.requireNonNull(compression);
+    return this;
+  }
+
+  /**
+   * Maintains a pool of connections to the same target behind a single {@code RSocket}, which
+   * dispatches every request to the connection with the fewest streams in flight. Each subscription
+   * to the {@code Mono} returned by {@link #connect(Supplier)} creates a new pool that completes
+   * once its first connection is established. When {@link #reconnect(Retry)} is also set, the retry
+   * applies to every connection of the pool.
+   *
+   * @param pool the configuration of the pool
+   * @see ConnectionPool
+   */
+  public RSocketConnector pool(ConnectionPool pool) {
+    this.pool = Objects.requireNonNull(pool);
+    return this;
+  }
+
   public RSocketConnector fragment(int mtu) {
     if (mtu > 0 && mtu < MIN_MTU_SIZE || mtu < 0) {
       String msg =
@@ -244,6 +279,22 @@ public Mono<RSocket> connect(ClientTransport transport) {
   }
 
   public Mono<RSocket> connect(Supplier<ClientTransport> transportSupplier) {
+    if (compression != null
+        && !WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA
+            .getString()
+            .equals(metadataMimeType)) {
+      return Mono.error(
+          new IllegalStateException("compression requires composite metadata at SETUP"));
+    }
+    // encoded once for all the connections and reconnections
+    final String metadataMimeType = this.metadataMimeType;
+    final String dataMimeType = this.dataMimeType;
+    final ByteBuf setupTemplate;
+    try {
+      setupTemplate = setupTemplate();
+    } catch (Throwable e) {
+      return Mono.error(e);
+    }
     Mono<DuplexConnection> connectionMono =
         Mono.fromSupplier(transportSupplier).flatMap(t -> t.connect(mtu));
     return connectionMono
@@ -275,7 +326,12 @@ public Mono<RSocket> connect(Supplier<ClientTransport> transportSupplier) {
               }
 
               ClientServerInputMultiplexer multiplexer =
-                  new ClientServerInputMultiplexer(wrappedConnection, interceptors, true);
+                  new ClientServerInputMultiplexer(
+                      compression != null
+                          ? compression.interceptor(true, mtu).apply(Type.SOURCE, wrappedConnection)
+                          : wrappedConnection,
+                      interceptors,
+                      true);
 
               boolean leaseEnabled = leasesSupplier != null;
               Leases<?> leases = leaseEnabled ? leasesSupplier.get() : null;
@@ -284,7 +340,7 @@ public Mono<RSocket> connect(Supplier<ClientTransport> transportSupplier) {
                       ? new RequesterLeaseHandler.Impl(CLIENT_TAG, leases.receiver())
                       : RequesterLeaseHandler.None;
 
-              RSocket rSocketRequester =
+              RSocketRequester rSocketRequester =
                   new RSocketRequester(
                       multiplexer.asClientConnection(),
                       payloadDecoder,
@@ -299,17 +355,10 @@ public Mono<RSocket> connect(Supplier<ClientTransport> transportSupplier) {
               RSocket wrappedRSocketRequester = interceptors.initRequester(rSocketRequester);
 
               ByteBuf setupFrame =
-                  SetupFrameFlyweight.encode(
-                      wrappedConnection.alloc(),
-                      leaseEnabled,
-                      (int) keepAliveInterval.toMillis(),
-                      (int) keepAliveMaxLifeTime.toMillis(),
-                      resumeToken,
-                      metadataMimeType,
-                      dataMimeType,
-                      setupPayload);
+                  SetupFrameFlyweight.encode(wrappedConnection.alloc(), setupTemplate, resumeToken);
 
-              ConnectionSetupPayload setup = new DefaultConnectionSetupPayload(setupFrame);
+              ConnectionSetupPayload setup =
+                  new DefaultConnectionSetupPayload(setupFrame, metadataMimeType, dataMimeType);
 
               return interceptors
                   .initSocketAcceptor(acceptor)
@@ -328,7 +377,7 @@ public Mono<RSocket> connect(Supplier<ClientTransport> transportSupplier) {
                                     leases.stats())
                                 : ResponderLeaseHandler.None;
 
-                        RSocket rSocketResponder =
+                        RSocketResponder rSocketResponder =
                             new RSocketResponder(
                                 multiplexer.asServerConnection(),
                                 wrappedRSocketHandler,
@@ -337,6 +386,13 @@ public Mono<RSocket> connect(Supplier<ClientTransport> transportSupplier) {
                                 responderLeaseHandler,
                                 mtu);
 
+                        DefaultConnectionStats.instrument(
+                            interceptors,
+                            CLIENT_TAG,
+                            connection,
+                            rSocketRequester,
+                            rSocketResponder);
+
                         return wrappedConnection
                             .sendOne(setupFrame)
                             .thenReturn(wrappedRSocketRequester);
@@ -344,7 +400,10 @@ public Mono<RSocket> connect(Supplier<ClientTransport> transportSupplier) {
             })
         .as(
             source -> {
-              if (retrySpec != null) {
+              if (pool != null) {
+                Mono<RSocket> connection = retrySpec != null ? source.retryWhen(retrySpec) : source;
+                return Mono.defer(() -> new PooledRSocket(connection, pool).start());
+              } else if (retrySpec != null) {
                 return new ReconnectMono<>(
                     source.retryWhen(retrySpec), Disposable::dispose, INVALIDATE_FUNCTION);
               } else {
@@ -352,4 +411,34 @@ public Mono<RSocket> connect(Supplier<ClientTransport> transportSupplier) {
               }
             });
   }
+
+  private ByteBuf setupTemplate() {
+    boolean leaseEnabled = leasesSupplier != null;
+    int keepAliveInterval = (int) this.keepAliveInterval.toMillis();
+    int keepAliveMaxLifeTime = (int) this.keepAliveMaxLifeTime.toMillis();
+    if (compression == null) {
+      return SetupFrameFlyweight.encodeTemplate(
+          leaseEnabled,
+          keepAliveInterval,
+          keepAliveMaxLifeTime,
+          metadataMimeType,
+          dataMimeType,
+          setupPayload);
+    }
+
+    // the offer takes over the buffers of the payload, so that it is given a copy
+    Payload offer =
+        compression.offer(ByteBufAllocator.DEFAULT, DefaultPayload.create(setupPayload));
+    try {
+      return SetupFrameFlyweight.encodeTemplate(
+          leaseEnabled,
+          keepAliveInterval,
+          keepAliveMaxLifeTime,
+          metadataMimeType,
+          dataMimeType,
+          offer);
+    } finally {
+      offer.release();
+    }
+  }
 }
@@ -40,18 +40,14 @@
 import io.rsocket.frame.RequestChannelFrameFlyweight;
 import io.rsocket.frame.RequestFireAndForgetFrameFlyweight;
 import io.rsocket.frame.RequestNFrameFlyweight;
-import io.rsocket.frame.RequestResponseFrameFlyweight;
-import io.rsocket.frame.RequestStreamFrameFlyweight;
 import io.rsocket.frame.decoder.PayloadDecoder;
 import io.rsocket.internal.SynchronizedIntObjectHashMap;
 import io.rsocket.internal.UnboundedProcessor;
 import io.rsocket.internal.UnicastMonoEmpty;
-import io.rsocket.internal.UnicastMonoProcessor;
 import io.rsocket.keepalive.KeepAliveFramesAcceptor;
 import io.rsocket.keepalive.KeepAliveHandler;
 import io.rsocket.keepalive.KeepAliveSupport;
 import io.rsocket.lease.RequesterLeaseHandler;
-import io.rsocket.util.MonoLifecycleHandler;
 import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,7 +55,6 @@
 import java.util.function.Consumer;
 import java.util.function.LongConsumer;
 import java.util.function.Supplier;
-import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.reactivestreams.Processor;
 import org.reactivestreams.Publisher;
@@ -158,6 +153,11 @@ public Mono<Void> fireAndForget(Payload payload) {
     return handleFireAndForget(payload);
   }
 
+  @Override
+  public Mono<Void> fireAndForgetMany(Publisher<Payload> payloads) {
+    return new FireAndForgetManyMono(this, payloads);
+  }
+
   @Override
   public Mono<Payload> requestResponse(Payload payload) {
     return handleRequestResponse(payload);
@@ -198,6 +198,22 @@ public Mono<Void> onClose() {
     return onClose;
   }
 
+  int pendingFrames() {
+    return sendProcessor.size();
+  }
+
+  int activeSenders() {
+    return senders.size();
+  }
+
+  int activeReceivers() {
+    return receivers.size();
+  }
+
+  void sampleSendLatency(LongConsumer latencyConsumer) {
+    sendProcessor.sampleLatency(latencyConsumer);
+  }
+
   private Mono<Void> handleFireAndForget(Payload payload) {
     Throwable err = checkAvailable();
     if (err != null) {
@@ -222,6 +238,77 @@ private Mono<Void> handleFireAndForget(Payload payload) {
         });
   }
 
+  /**
+   * Sends a REQUEST_FNF frame for each of the first {@code count} payloads, with a single lease
+   * check, a single reservation of stream ids and a single buffer holding all the frames.
+   *
+   * <p>All the payloads are released and the array is cleared. Stops at the first payload that
+   * cannot be sent.
+   *
+   * @return the reason why some payloads were not sent, or {@code null}
+   */
+  @Nullable
+  Throwable sendFireAndForgetBatch(Payload[] payloads, int count) {
+    Throwable error = this.terminationError;
+    int allowed = 0;
+    if (error == null) {
+      allowed = leaseHandler.useLeases(count);
+      if (allowed < count) {
+        error = leaseHandler.leaseError();
+      }
+    }
+
+    int valid = 0;
+    int length = 0;
+    while (valid < allowed) {
+      Payload payload = payloads[valid];
+      if (!PayloadValidationUtils.isValid(this.mtu, payload)) {
+        error = new IllegalArgumentException(INVALID_PAYLOAD_ERROR_MESSAGE);
+        break;
+      }
+      length += RequestFireAndForgetFrameFlyweight.encodedLength(payload);
+      valid++;
+    }
+
+    for (int i = valid; i < count; i++) {
+      ReferenceCountUtil.safeRelease(payloads[i]);
+      payloads[i] = null;
+    }
+
+    if (valid > 0) {
+      int[] streamIds = new int[valid];
+      streamIdSupplier.nextStreamIds(receivers, streamIds, valid);
+
+      ByteBuf buffer = allocator.buffer(length);
+      ByteBuf[] frames = new ByteBuf[valid];
+      int encoded = 0;
+      try {
+        for (; encoded < valid; encoded++) {
+          Payload payload = payloads[encoded];
+          payloads[encoded] = null;
+          int start = buffer.writerIndex();
+          RequestFireAndForgetFrameFlyweight.encodeReleasingPayload(
+              buffer, streamIds[encoded], payload);
+          frames[encoded] = buffer.retainedSlice(start, buffer.writerIndex() - start);
+        }
+      } catch (Throwable t) {
+        // a payload was released concurrently, the frames encoded so far are still sent
+        error = t;
+        for (int i = encoded + 1; i < valid; i++) {
+          ReferenceCountUtil.safeRelease(payloads[i]);
+          payloads[i] = null;
+        }
+      } finally {
+        buffer.release();
+      }
+      if (encoded > 0) {
+        sendProcessor.onNextMany(frames, encoded);
+      }
+    }
+
+    return error;
+  }
+
   private Mono<Payload> handleRequestResponse(final Payload payload) {
     Throwable err = checkAvailable();
     if (err != null) {
@@ -235,35 +322,12 @@ private Mono<Payload> handleRequestResponse(final Payload payload) {
     }
 
     int streamId = streamIdSupplier.nextStreamId(receivers);
-    final UnboundedProcessor<ByteBuf> sendProcessor = this.sendProcessor;
-
-    UnicastMonoProcessor<Payload> receiver =
-        UnicastMonoProcessor.create(
-            new MonoLifecycleHandler<Payload>() {
-              @Override
-              public void doOnSubscribe() {
-                final ByteBuf requestFrame =
-                    RequestResponseFrameFlyweight.encodeReleasingPayload(
-                        allocator, streamId, payload);
-
-                sendProcessor.onNext(requestFrame);
-              }
-
-              @Override
-              public void doOnTerminal(
-                  @Nonnull SignalType signalType,
-                  @Nullable Payload element,
-                  @Nullable Throwable e) {
-                if (signalType == SignalType.CANCEL) {
-                  sendProcessor.onNext(CancelFrameFlyweight.encode(allocator, streamId));
-                }
-                removeStreamReceiver(streamId);
-              }
-            });
+    RequestResponseRequesterMono receiver =
+        new RequestResponseRequesterMono(this, allocator, sendProcessor, streamId, payload);
 
     receivers.put(streamId, receiver);
 
-    return receiver.doOnDiscard(ReferenceCounted.class, DROPPED_ELEMENTS_CONSUMER);
+    return receiver;
   }
 
   private Flux<Payload> handleRequestStream(final Payload payload) {
@@ -279,69 +343,12 @@ private Flux<Payload> handleRequestStream(final Payload payload) {
     }
 
     int streamId = streamIdSupplier.nextStreamId(receivers);
-
-    final UnboundedProcessor<ByteBuf> sendProcessor = this.sendProcessor;
-    final UnicastProcessor<Payload> receiver = UnicastProcessor.create();
-    final AtomicInteger wip = new AtomicInteger(0);
+    RequestStreamRequesterFlux receiver =
+        new RequestStreamRequesterFlux(this, allocator, sendProcessor, streamId, payload);
 
     receivers.put(streamId, receiver);
 
-    return receiver
-        .doOnRequest(
-            new LongConsumer() {
-
-              boolean firstRequest = true;
-
-              @Override
-              public void accept(long n) {
-                if (firstRequest) {
-                  firstRequest = false;
-                  if (wip.getAndIncrement() != 0) {
-                    // no need to do anything.
-                    // stream was canceled and fist payload has already been discarded
-                    return;
-                  }
-                  int missed = 1;
-                  boolean firstHasBeenSent = false;
-                  for (; ; ) {
-                    if (!firstHasBeenSent) {
-                      sendProcessor.onNext(
-                          RequestStreamFrameFlyweight.encodeReleasingPayload(
-                              allocator, streamId, n, payload));
-                      firstHasBeenSent = true;
-                    } else {
-                      // if first frame was sent but we cycling again, it means that wip was
-                      // incremented at doOnCancel
-                      sendProcessor.onNext(CancelFrameFlyweight.encode(allocator, streamId));
-                      return;
-                    }
-
-                    missed = wip.addAndGet(-missed);
-                    if (missed == 0) {
-                      return;
-                    }
-                  }
-                } else if (!receiver.isDisposed()) {
-                  sendProcessor.onNext(RequestNFrameFlyweight.encode(allocator, streamId, n));
-                }
-              }
-            })
-        .doOnCancel(
-            () -> {
-              if (wip.getAndIncrement() != 0) {
-                return;
-              }
-
-              // check if we need to release payload
-              // only applicable if the cancel appears earlier than actual request
-              if (payload.refCnt() > 0) {
-                payload.release();
-              } else {
-                sendProcessor.onNext(CancelFrameFlyweight.encode(allocator, streamId));
-              }
-            })
-        .doFinally(s -> removeStreamReceiver(streamId))
-        .doOnDiscard(ReferenceCounted.class, DROPPED_ELEMENTS_CONSUMER);
+    return receiver;
   }
 
   private Flux<Payload> handleChannel(Flux<Payload> request) {
@@ -729,7 +736,7 @@ private void terminate(Throwable e) {
     onClose.onError(e);
   }
 
-  private void removeStreamReceiver(int streamId) {
+  void removeStreamReceiver(int streamId) {
     /*on termination receivers are explicitly cleared to avoid removing from map while iterating over one
     of its views*/
     if (terminationError == null) {
@@ -16,8 +16,6 @@
 
 package io.rsocket.core;
 
-import static io.rsocket.core.PayloadValidationUtils.INVALID_PAYLOAD_ERROR_MESSAGE;
-
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.util.IllegalReferenceCountException;
@@ -47,7 +45,6 @@
 import reactor.core.Disposable;
 import reactor.core.Exceptions;
 import reactor.core.publisher.*;
-import reactor.util.concurrent.Queues;
 
 /** Responder side of RSocket. Receives {@link ByteBuf}s from a peer's {@link RSocketRequester} */
 class RSocketResponder implements RSocket {
@@ -88,7 +85,6 @@ class RSocketResponder implements RSocket {
   private final UnboundedProcessor<ByteBuf> sendProcessor;
   private final ByteBufAllocator allocator;
 
-  @SuppressWarnings("deprecation")
   RSocketResponder(
       DuplexConnection connection,
       RSocket requestHandler,
@@ -96,10 +92,32 @@ class RSocketResponder implements RSocket {
       Consumer<Throwable> errorConsumer,
       ResponderLeaseHandler leaseHandler,
       int mtu) {
+    this(
+        connection,
+        requestHandler,
+        payloadDecoder,
+        errorConsumer,
+        leaseHandler,
+        mtu,
+        ResponderExecution.inline());
+  }
+
+  @SuppressWarnings("deprecation")
+  RSocketResponder(
+      DuplexConnection connection,
+      RSocket requestHandler,
+      PayloadDecoder payloadDecoder,
+      Consumer<Throwable> errorConsumer,
+      ResponderLeaseHandler leaseHandler,
+      int mtu,
+      ResponderExecution execution) {
     this.connection = connection;
     this.allocator = connection.alloc();
     this.mtu = mtu;
 
+    if (!execution.isInline()) {
+      requestHandler = new ScheduledRSocket(requestHandler, execution);
+    }
     this.requestHandler = requestHandler;
     this.responderRSocket =
         (requestHandler instanceof io.rsocket.ResponderRSocket)
@@ -261,6 +279,22 @@ public Mono<Void> onClose() {
     return onClose;
   }
 
+  int pendingFrames() {
+    return sendProcessor.size();
+  }
+
+  int activeSenders() {
+    return sendingSubscriptions.size();
+  }
+
+  int activeChannelProcessors() {
+    return channelProcessors.size();
+  }
+
+  void sampleSendLatency(LongConsumer latencyConsumer) {
+    sendProcessor.sampleLatency(latencyConsumer);
+  }
+
   private void cleanup(Throwable e) {
     cleanUpSendingSubscriptions();
     cleanUpChannelProcessors(e);
@@ -388,51 +422,11 @@ protected void hookFinally(SignalType type) {
   }
 
   private void handleRequestResponse(int streamId, Mono<Payload> response) {
-    final BaseSubscriber<Payload> subscriber =
-        new BaseSubscriber<Payload>() {
-          private boolean isEmpty = true;
-
-          @Override
-          protected void hookOnNext(Payload payload) {
-            if (isEmpty) {
-              isEmpty = false;
-            }
-
-            if (!PayloadValidationUtils.isValid(mtu, payload)) {
-              payload.release();
-              cancel();
-              final IllegalArgumentException t =
-                  new IllegalArgumentException(INVALID_PAYLOAD_ERROR_MESSAGE);
-              handleError(streamId, t);
-              return;
-            }
-
-            ByteBuf byteBuf =
-                PayloadFrameFlyweight.encodeNextCompleteReleasingPayload(
-                    allocator, streamId, payload);
-            sendProcessor.onNext(byteBuf);
-          }
-
-          @Override
-          protected void hookOnError(Throwable throwable) {
-            handleError(streamId, throwable);
-          }
-
-          @Override
-          protected void hookOnComplete() {
-            if (isEmpty) {
-              sendProcessor.onNext(PayloadFrameFlyweight.encodeComplete(allocator, streamId));
-            }
-          }
-
-          @Override
-          protected void hookFinally(SignalType type) {
-            sendingSubscriptions.remove(streamId, this);
-          }
-        };
+    RequestResponseResponderSubscriber subscriber =
+        new RequestResponseResponderSubscriber(this, allocator, sendProcessor, streamId, mtu);
 
     sendingSubscriptions.put(streamId, subscriber);
-    response.doOnDiscard(ReferenceCounted.class, DROPPED_ELEMENTS_CONSUMER).subscribe(subscriber);
+    response.subscribe(subscriber);
   }
 
   private void handleStream(
@@ -440,80 +434,12 @@ private void handleStream(
       Flux<Payload> response,
       long initialRequestN,
       @Nullable UnicastProcessor<Payload> requestChannel) {
-    final BaseSubscriber<Payload> subscriber =
-        new BaseSubscriber<Payload>() {
-
-          @Override
-          protected void hookOnSubscribe(Subscription s) {
-            s.request(initialRequestN);
-          }
-
-          @Override
-          protected void hookOnNext(Payload payload) {
-            if (!PayloadValidationUtils.isValid(mtu, payload)) {
-              payload.release();
-              // specifically for requestChannel case so when Payload is invalid we will not be
-              // sending CancelFrame and ErrorFrame
-              // Note: CancelFrame is redundant and due to spec
-              // (https://github.com/rsocket/rsocket/blob/master/Protocol.md#request-channel)
-              // Upon receiving an ERROR[APPLICATION_ERROR|REJECTED|CANCELED|INVALID], the stream is
-              // terminated on both Requester and Responder.
-              // Upon sending an ERROR[APPLICATION_ERROR|REJECTED|CANCELED|INVALID], the stream is
-              // terminated on both the Requester and Responder.
-              if (requestChannel != null) {
-                channelProcessors.remove(streamId, requestChannel);
-              }
-              cancel();
-              final IllegalArgumentException t =
-                  new IllegalArgumentException(INVALID_PAYLOAD_ERROR_MESSAGE);
-              handleError(streamId, t);
-              return;
-            }
-
-            ByteBuf byteBuf =
-                PayloadFrameFlyweight.encodeNextReleasingPayload(allocator, streamId, payload);
-            sendProcessor.onNext(byteBuf);
-          }
-
-          @Override
-          protected void hookOnComplete() {
-            sendProcessor.onNext(PayloadFrameFlyweight.encodeComplete(allocator, streamId));
-          }
-
-          @Override
-          protected void hookOnError(Throwable throwable) {
-            handleError(streamId, throwable);
-          }
-
-          @Override
-          protected void hookOnCancel() {
-            // specifically for requestChannel case so when requester sends Cancel frame so the
-            // whole chain MUST be terminated
-            // Note: CancelFrame is redundant from the responder side due to spec
-            // (https://github.com/rsocket/rsocket/blob/master/Protocol.md#request-channel)
-            // Upon receiving a CANCEL, the stream is terminated on the Responder.
-            // Upon sending a CANCEL, the stream is terminated on the Requester.
-            if (requestChannel != null) {
-              channelProcessors.remove(streamId, requestChannel);
-              try {
-                requestChannel.dispose();
-              } catch (Exception e) {
-                // might be thrown back if stream is cancelled
-              }
-            }
-          }
-
-          @Override
-          protected void hookFinally(SignalType type) {
-            sendingSubscriptions.remove(streamId);
-          }
-        };
+    RequestStreamResponderSubscriber subscriber =
+        new RequestStreamResponderSubscriber(
+            this, allocator, sendProcessor, streamId, mtu, initialRequestN, requestChannel);
 
     sendingSubscriptions.put(streamId, subscriber);
-    response
-        .limitRate(Queues.SMALL_BUFFER_SIZE)
-        .doOnDiscard(ReferenceCounted.class, DROPPED_ELEMENTS_CONSUMER)
-        .subscribe(subscriber);
+    response.subscribe(subscriber);
   }
 
   private void handleChannel(int streamId, Payload payload, long initialRequestN) {
@@ -586,7 +512,15 @@ private void handleCancelFrame(int streamId) {
     }
   }
 
-  private void handleError(int streamId, Throwable t) {
+  void removeSendingSubscription(int streamId, Subscription subscription) {
+    sendingSubscriptions.remove(streamId, subscription);
+  }
+
+  void removeChannelProcessor(int streamId, Processor<Payload, Payload> processor) {
+    channelProcessors.remove(streamId, processor);
+  }
+
+  void handleError(int streamId, Throwable t) {
     errorConsumer.accept(t);
     sendProcessor.onNext(ErrorFrameFlyweight.encode(allocator, streamId, t));
   }
@@ -23,6 +23,7 @@
 import io.rsocket.DuplexConnection;
 import io.rsocket.RSocket;
 import io.rsocket.SocketAcceptor;
+import io.rsocket.compression.PayloadCompression;
 import io.rsocket.exceptions.InvalidSetupException;
 import io.rsocket.exceptions.RejectedSetupException;
 import io.rsocket.frame.FrameHeaderFlyweight;
@@ -32,6 +33,7 @@
 import io.rsocket.lease.Leases;
 import io.rsocket.lease.RequesterLeaseHandler;
 import io.rsocket.lease.ResponderLeaseHandler;
+import io.rsocket.plugins.DuplexConnectionInterceptor.Type;
 import io.rsocket.plugins.InitializingInterceptorRegistry;
 import io.rsocket.plugins.InterceptorRegistry;
 import io.rsocket.resume.SessionManager;
@@ -51,6 +53,8 @@ public final class RSocketServer {
 
   private Resume resume;
   private Supplier<Leases<?>> leasesSupplier = null;
+  private PayloadCompression compression;
+  private ResponderExecution execution = ResponderExecution.inline();
 
   private Consumer<Throwable> errorConsumer = ex -> {};
   private PayloadDecoder payloadDecoder = PayloadDecoder.DEFAULT;
@@ -96,6 +100,29 @@ public RSocketServer lease(Supplier<Leases<?>> supplier) {
     return this;
   }
 
+  /**
+   * Accepts to compress the frames of the connections whose SETUP offers the same compression.
+   *
+   * @param compression the compression to accept
+   * @see PayloadCompression
+   */
+  public RSocketServer compression(PayloadCompression compression) {
+    this.compression = Objects.requireNonNull(compression);
+    return this;
+  }
+
+  /**
+   * Configures where the handlers of the requests run, on the event loops of the connections by
+   * default.
+   *
+   * @param execution the execution of the handlers
+   * @see ResponderExecution
+   */
+  public RSocketServer execution(ResponderExecution execution) {
+    this.execution = Objects.requireNonNull(execution);
+    return this;
+  }
+
   public RSocketServer payloadDecoder(PayloadDecoder payloadDecoder) {
     Objects.requireNonNull(payloadDecoder);
     this.payloadDecoder = payloadDecoder;
@@ -139,13 +166,18 @@ public Mono<T> get() {
 
   private Mono<Void> acceptor(ServerSetup serverSetup, DuplexConnection connection) {
     ClientServerInputMultiplexer multiplexer =
-        new ClientServerInputMultiplexer(connection, interceptors, false);
+        new ClientServerInputMultiplexer(
+            compression != null
+                ? compression.interceptor(false, mtu).apply(Type.SOURCE, connection)
+                : connection,
+            interceptors,
+            false);
 
     return multiplexer
         .asSetupConnection()
         .receive()
         .next()
-        .flatMap(startFrame -> accept(serverSetup, startFrame, multiplexer));
+        .flatMap(startFrame -> accept(serverSetup, startFrame, multiplexer, connection));
   }
 
   private Mono<Void> acceptResume(
@@ -154,10 +186,13 @@ private Mono<Void> acceptResume(
   }
 
   private Mono<Void> accept(
-      ServerSetup serverSetup, ByteBuf startFrame, ClientServerInputMultiplexer multiplexer) {
+      ServerSetup serverSetup,
+      ByteBuf startFrame,
+      ClientServerInputMultiplexer multiplexer,
+      DuplexConnection sourceConnection) {
     switch (FrameHeaderFlyweight.frameType(startFrame)) {
       case SETUP:
-        return acceptSetup(serverSetup, startFrame, multiplexer);
+        return acceptSetup(serverSetup, startFrame, multiplexer, sourceConnection);
       case RESUME:
         return acceptResume(serverSetup, startFrame, multiplexer);
       default:
@@ -175,7 +210,10 @@ private Mono<Void> accept(
   }
 
   private Mono<Void> acceptSetup(
-      ServerSetup serverSetup, ByteBuf setupFrame, ClientServerInputMultiplexer multiplexer) {
+      ServerSetup serverSetup,
+      ByteBuf setupFrame,
+      ClientServerInputMultiplexer multiplexer,
+      DuplexConnection sourceConnection) {
 
     if (!SetupFrameFlyweight.isSupportedVersion(setupFrame)) {
       return serverSetup
@@ -205,7 +243,7 @@ private Mono<Void> acceptSetup(
         setupFrame,
         multiplexer,
         (keepAliveHandler, wrappedMultiplexer) -> {
-          ConnectionSetupPayload setupPayload = new DefaultConnectionSetupPayload(setupFrame);
+          ConnectionSetupPayload setupPayload = serverSetup.setupPayload(setupFrame);
 
           Leases<?> leases = leaseEnabled ? leasesSupplier.get() : null;
           RequesterLeaseHandler requesterLeaseHandler =
@@ -213,7 +251,7 @@ private Mono<Void> acceptSetup(
                   ? new RequesterLeaseHandler.Impl(SERVER_TAG, leases.receiver())
                   : RequesterLeaseHandler.None;
 
-          RSocket rSocketRequester =
+          RSocketRequester rSocketRequester =
               new RSocketRequester(
                   wrappedMultiplexer.asServerConnection(),
                   payloadDecoder,
@@ -250,14 +288,22 @@ private Mono<Void> acceptSetup(
                                 leases.stats())
                             : ResponderLeaseHandler.None;
 
-                    RSocket rSocketResponder =
+                    RSocketResponder rSocketResponder =
                         new RSocketResponder(
                             connection,
                             wrappedRSocketHandler,
                             payloadDecoder,
                             errorConsumer,
                             responderLeaseHandler,
-                            mtu);
+                            mtu,
+                            execution);
+
+                    DefaultConnectionStats.instrument(
+                        interceptors,
+                        SERVER_TAG,
+                        sourceConnection,
+                        rSocketRequester,
+                        rSocketResponder);
                   })
               .doFinally(signalType -> setupPayload.release())
               .then();
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import io.rsocket.Payload;
+import io.rsocket.frame.CancelFrameFlyweight;
+import io.rsocket.frame.RequestResponseFrameFlyweight;
+import io.rsocket.internal.UnboundedProcessor;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.util.annotation.Nullable;
+import reactor.util.context.Context;
+
+/**
+ * Requester side of a request-response: a single object is the {@code Mono} returned to the
+ * application, its {@code Subscription} and the receiver of the response frames.
+ *
+ * <p>The whole lifecycle is one state word. The request frame is sent once the subscriber is ready,
+ * before the subscription is marked as such so that a CANCEL frame never precedes it, the response
+ * is delivered by whichever of the response, the request or the subscription completes the state,
+ * and a cancellation before the response sends a CANCEL frame.
+ */
+final class RequestResponseRequesterMono extends Mono<Payload>
+    implements Processor<Payload, Payload>, Subscription {
+
+  // onSubscribe has returned, signals can be delivered
+  static final int FLAG_SUBSCRIBED = 0b0001;
+  static final int FLAG_REQUESTED = 0b0010;
+  // a value, an error or the completion is stored
+  static final int FLAG_RESULT = 0b0100;
+  // the result was delivered or the subscription cancelled
+  static final int FLAG_TERMINATED = 0b1000;
+  // subscribe has been called
+  static final int FLAG_SUBSCRIBING = 0b1_0000;
+
+  static final AtomicIntegerFieldUpdater<RequestResponseRequesterMono> STATE =
+      AtomicIntegerFieldUpdater.newUpdater(RequestResponseRequesterMono.class, "state");
+
+  final RSocketRequester requester;
+  final ByteBufAllocator allocator;
+  final UnboundedProcessor<ByteBuf> sendProcessor;
+  final int streamId;
+
+  volatile int state;
+
+  @Nullable Payload payload;
+  @Nullable CoreSubscriber<? super Payload> actual;
+  @Nullable Payload value;
+  @Nullable Throwable error;
+
+  RequestResponseRequesterMono(
+      RSocketRequester requester,
+      ByteBufAllocator allocator,
+      UnboundedProcessor<ByteBuf> sendProcessor,
+      int streamId,
+      Payload payload) {
+    this.requester = requester;
+    this.allocator = allocator;
+    this.sendProcessor = sendProcessor;
+    this.streamId = streamId;
+    this.payload = payload;
+  }
+
+  @Override
+  public void subscribe(CoreSubscriber<? super Payload> actual) {
+    Objects.requireNonNull(actual, "subscribe");
+
+    int previous = markOnce();
+    if ((previous & FLAG_SUBSCRIBING) != 0) {
+      Operators.error(
+          actual,
+          new IllegalStateException(
+              "RequestResponseRequesterMono allows only a single Subscriber"));
+      return;
+    }
+
+    this.actual = actual;
+    actual.onSubscribe(this);
+
+    Payload payload = this.payload;
+    this.payload = null;
+    boolean sent = false;
+    if ((state & (FLAG_RESULT | FLAG_TERMINATED)) == 0) {
+      // sent before FLAG_SUBSCRIBED is set, so that a concurrent cancel cannot send its CANCEL
+      // frame ahead of the request, the cancel is then completed below
+      sendProcessor.onNext(
+          RequestResponseFrameFlyweight.encodeReleasingPayload(allocator, streamId, payload));
+      sent = true;
+    } else {
+      // cancelled from onSubscribe or terminated with the connection
+      ReferenceCountUtil.safeRelease(payload);
+    }
+
+    previous = markSubscribed();
+    if ((previous & FLAG_TERMINATED) != 0) {
+      if (sent && (previous & FLAG_RESULT) == 0) {
+        sendProcessor.onNext(CancelFrameFlyweight.encode(allocator, streamId));
+      }
+      requester.removeStreamReceiver(streamId);
+    } else if ((previous & FLAG_RESULT) != 0) {
+      tryDeliver();
+    }
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    subscription.request(Long.MAX_VALUE);
+  }
+
+  @Override
+  public void onNext(Payload value) {
+    if ((state & (FLAG_RESULT | FLAG_TERMINATED)) != 0) {
+      value.release();
+      return;
+    }
+    this.value = value;
+    if (!markResult()) {
+      this.value = null;
+      value.release();
+      return;
+    }
+    tryDeliver();
+  }
+
+  @Override
+  public void onComplete() {
+    if ((state & FLAG_RESULT) == 0 && markResult()) {
+      tryDeliver();
+    }
+  }
+
+  @Override
+  public void onError(Throwable error) {
+    if ((state & (FLAG_RESULT | FLAG_TERMINATED)) != 0) {
+      CoreSubscriber<? super Payload> actual = this.actual;
+      Operators.onErrorDropped(error, actual != null ? actual.currentContext() : Context.empty());
+      return;
+    }
+    this.error = error;
+    if (markResult()) {
+      tryDeliver();
+    }
+  }
+
+  @Override
+  public void request(long n) {
+    if (!Operators.validate(n)) {
+      return;
+    }
+    for (; ; ) {
+      int state = this.state;
+      if ((state & (FLAG_REQUESTED | FLAG_TERMINATED)) != 0) {
+        return;
+      }
+      if (STATE.compareAndSet(this, state, state | FLAG_REQUESTED)) {
+        if ((state & FLAG_RESULT) != 0) {
+          tryDeliver();
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void cancel() {
+    int previous = STATE.getAndUpdate(this, s -> s | FLAG_TERMINATED);
+    if ((previous & FLAG_TERMINATED) != 0) {
+      return;
+    }
+    if ((previous & FLAG_RESULT) != 0) {
+      Payload value = this.value;
+      this.value = null;
+      ReferenceCountUtil.safeRelease(value);
+    } else if ((previous & FLAG_SUBSCRIBED) != 0) {
+      sendProcessor.onNext(CancelFrameFlyweight.encode(allocator, streamId));
+    }
+    if ((previous & FLAG_SUBSCRIBED) != 0) {
+      requester.removeStreamReceiver(streamId);
+    }
+  }
+
+  private void tryDeliver() {
+    for (; ; ) {
+      int state = this.state;
+      if ((state & FLAG_TERMINATED) != 0
+          || (state & (FLAG_SUBSCRIBED | FLAG_RESULT)) != (FLAG_SUBSCRIBED | FLAG_RESULT)) {
+        return;
+      }
+      Payload value = this.value;
+      // a value waits for the request, the termination does not
+      if (value != null && (state & FLAG_REQUESTED) == 0) {
+        return;
+      }
+      if (STATE.compareAndSet(this, state, state | FLAG_TERMINATED)) {
+        CoreSubscriber<? super Payload> actual = this.actual;
+        this.value = null;
+        requester.removeStreamReceiver(streamId);
+        Throwable error = this.error;
+        if (value != null) {
+          actual.onNext(value);
+          actual.onComplete();
+        } else if (error != null) {
+          actual.onError(error);
+        } else {
+          actual.onComplete();
+        }
+        return;
+      }
+    }
+  }
+
+  private int markOnce() {
+    return STATE.getAndUpdate(this, s -> s | FLAG_SUBSCRIBING);
+  }
+
+  private int markSubscribed() {
+    return STATE.getAndUpdate(this, s -> s | FLAG_SUBSCRIBED);
+  }
+
+  private boolean markResult() {
+    for (; ; ) {
+      int state = this.state;
+      if ((state & (FLAG_RESULT | FLAG_TERMINATED)) != 0) {
+        return false;
+      }
+      if (STATE.compareAndSet(this, state, state | FLAG_RESULT)) {
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import static io.rsocket.core.PayloadValidationUtils.INVALID_PAYLOAD_ERROR_MESSAGE;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import io.rsocket.Payload;
+import io.rsocket.frame.PayloadFrameFlyweight;
+import io.rsocket.internal.UnboundedProcessor;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+/**
+ * Responder side of a request-response: subscribes to the response of the handler and is also the
+ * {@code Subscription} cancelled by a CANCEL frame, so that a single object per request replaces
+ * the subscriber and the {@code doOnDiscard} operator.
+ */
+final class RequestResponseResponderSubscriber implements CoreSubscriber<Payload>, Subscription {
+  // releases the payloads discarded by the operators of the handler
+  static final Context DISCARD_CONTEXT =
+      Operators.enableOnDiscard(
+          Context.empty(),
+          element -> {
+            if (element instanceof ReferenceCounted) {
+              ReferenceCountUtil.safeRelease(element);
+            }
+          });
+
+  static final AtomicReferenceFieldUpdater<RequestResponseResponderSubscriber, Subscription> S =
+      AtomicReferenceFieldUpdater.newUpdater(
+          RequestResponseResponderSubscriber.class, Subscription.class, "s");
+
+  final RSocketResponder responder;
+  final ByteBufAllocator allocator;
+  final UnboundedProcessor<ByteBuf> sendProcessor;
+  final int streamId;
+  final int mtu;
+
+  volatile Subscription s;
+  boolean done;
+
+  RequestResponseResponderSubscriber(
+      RSocketResponder responder,
+      ByteBufAllocator allocator,
+      UnboundedProcessor<ByteBuf> sendProcessor,
+      int streamId,
+      int mtu) {
+    this.responder = responder;
+    this.allocator = allocator;
+    this.sendProcessor = sendProcessor;
+    this.streamId = streamId;
+    this.mtu = mtu;
+  }
+
+  @Override
+  public Context currentContext() {
+    return DISCARD_CONTEXT;
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    if (Operators.setOnce(S, this, subscription)) {
+      subscription.request(Long.MAX_VALUE);
+    }
+  }
+
+  @Override
+  public void onNext(Payload payload) {
+    if (done || s == Operators.cancelledSubscription()) {
+      payload.release();
+      return;
+    }
+    done = true;
+    responder.removeSendingSubscription(streamId, this);
+
+    if (!PayloadValidationUtils.isValid(mtu, payload)) {
+      payload.release();
+      Operators.terminate(S, this);
+      responder.handleError(streamId, new IllegalArgumentException(INVALID_PAYLOAD_ERROR_MESSAGE));
+      return;
+    }
+
+    sendProcessor.onNext(
+        PayloadFrameFlyweight.encodeNextCompleteReleasingPayload(allocator, streamId, payload));
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    if (done) {
+      Operators.onErrorDropped(t, DISCARD_CONTEXT);
+      return;
+    }
+    if (s == Operators.cancelledSubscription()) {
+      // the requester is no longer interested
+      return;
+    }
+    done = true;
+    responder.removeSendingSubscription(streamId, this);
+    responder.handleError(streamId, t);
+  }
+
+  @Override
+  public void onComplete() {
+    if (done) {
+      return;
+    }
+    done = true;
+    responder.removeSendingSubscription(streamId, this);
+    if (s != Operators.cancelledSubscription()) {
+      sendProcessor.onNext(PayloadFrameFlyweight.encodeComplete(allocator, streamId));
+    }
+  }
+
+  @Override
+  public void request(long n) {
+    // the response is requested on subscription
+  }
+
+  @Override
+  public void cancel() {
+    Operators.terminate(S, this);
+  }
+}
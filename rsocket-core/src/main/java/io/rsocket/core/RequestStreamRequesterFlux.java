@@ -0,0 +1,308 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import io.rsocket.Payload;
+import io.rsocket.frame.CancelFrameFlyweight;
+import io.rsocket.frame.RequestNFrameFlyweight;
+import io.rsocket.frame.RequestStreamFrameFlyweight;
+import io.rsocket.internal.UnboundedProcessor;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.annotation.Nullable;
+import reactor.util.context.Context;
+
+/**
+ * Requester side of a request-stream: a single object is the {@code Flux} returned to the
+ * application, its {@code Subscription} and the receiver of the response frames.
+ *
+ * <p>One state word holds the demand not yet sent to the responder together with the lifecycle
+ * flags, so that requests, cancellation and termination are settled with a CAS each. The thread
+ * that sets {@link #FLAG_SENDING} writes the REQUEST_STREAM, REQUEST_N and CANCEL frames in order
+ * and the one that sets {@link #FLAG_EMITTING} delivers a response, which serializes a terminal
+ * signal of the connection with the frames of the stream. The responder never sends more than the
+ * demand it received, so the responses are delivered as they arrive without a queue.
+ */
+final class RequestStreamRequesterFlux extends Flux<Payload>
+    implements Processor<Payload, Payload>, Subscription {
+
+  // demand requested by the subscriber and not sent yet, Integer.MAX_VALUE means unbounded
+  static final long MASK_DEMAND = 0xFFFF_FFFFL;
+  // subscribe has been called
+  static final long FLAG_SUBSCRIBING = 1L << 32;
+  // onSubscribe has returned, frames can be sent and signals delivered
+  static final long FLAG_SUBSCRIBED = 1L << 33;
+  // a thread is sending the frames of the stream
+  static final long FLAG_SENDING = 1L << 34;
+  // the REQUEST_STREAM frame has been sent
+  static final long FLAG_FIRST_SENT = 1L << 35;
+  // an unbounded demand has been requested, further requests are ignored
+  static final long FLAG_UNBOUNDED = 1L << 36;
+  // a thread is delivering a response
+  static final long FLAG_EMITTING = 1L << 37;
+  // the responder or the connection terminated the stream
+  static final long FLAG_TERMINATED = 1L << 38;
+  static final long FLAG_CANCELLED = 1L << 39;
+
+  static final AtomicLongFieldUpdater<RequestStreamRequesterFlux> STATE =
+      AtomicLongFieldUpdater.newUpdater(RequestStreamRequesterFlux.class, "state");
+
+  final RSocketRequester requester;
+  final ByteBufAllocator allocator;
+  final UnboundedProcessor<ByteBuf> sendProcessor;
+  final int streamId;
+
+  volatile long state;
+
+  @Nullable Payload payload;
+  @Nullable CoreSubscriber<? super Payload> actual;
+  @Nullable Throwable error;
+
+  RequestStreamRequesterFlux(
+      RSocketRequester requester,
+      ByteBufAllocator allocator,
+      UnboundedProcessor<ByteBuf> sendProcessor,
+      int streamId,
+      Payload payload) {
+    this.requester = requester;
+    this.allocator = allocator;
+    this.sendProcessor = sendProcessor;
+    this.streamId = streamId;
+    this.payload = payload;
+  }
+
+  @Override
+  public void subscribe(CoreSubscriber<? super Payload> actual) {
+    Objects.requireNonNull(actual, "subscribe");
+
+    long previous = STATE.getAndUpdate(this, s -> s | FLAG_SUBSCRIBING);
+    if ((previous & FLAG_SUBSCRIBING) != 0) {
+      Operators.error(
+          actual,
+          new IllegalStateException("RequestStreamRequesterFlux allows only a single Subscriber"));
+      return;
+    }
+
+    this.actual = actual;
+    actual.onSubscribe(this);
+
+    for (; ; ) {
+      long state = this.state;
+      long next = state | FLAG_SUBSCRIBED;
+      boolean send =
+          (state & FLAG_SENDING) == 0
+              && ((state & MASK_DEMAND) != 0 || (state & (FLAG_CANCELLED | FLAG_TERMINATED)) != 0);
+      if (send) {
+        next |= FLAG_SENDING;
+      }
+      if (STATE.compareAndSet(this, state, next)) {
+        if ((state & (FLAG_TERMINATED | FLAG_CANCELLED)) == FLAG_TERMINATED) {
+          // the connection was terminated before the subscription
+          deliverTerminal();
+        }
+        if (send) {
+          drainFrames();
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    subscription.request(Long.MAX_VALUE);
+  }
+
+  @Override
+  public void onNext(Payload payload) {
+    for (; ; ) {
+      long state = this.state;
+      if ((state & (FLAG_CANCELLED | FLAG_TERMINATED)) != 0) {
+        payload.release();
+        return;
+      }
+      if (STATE.compareAndSet(this, state, state | FLAG_EMITTING)) {
+        break;
+      }
+    }
+
+    actual.onNext(payload);
+
+    long previous = STATE.getAndUpdate(this, s -> s & ~FLAG_EMITTING);
+    if ((previous & (FLAG_TERMINATED | FLAG_CANCELLED)) == FLAG_TERMINATED) {
+      // terminated while the response was delivered
+      deliverTerminal();
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    terminate(null);
+  }
+
+  @Override
+  public void onError(Throwable error) {
+    terminate(error);
+  }
+
+  private void terminate(@Nullable Throwable error) {
+    long state;
+    boolean send;
+    for (; ; ) {
+      state = this.state;
+      if ((state & FLAG_TERMINATED) != 0) {
+        if (error != null) {
+          CoreSubscriber<? super Payload> actual = this.actual;
+          Operators.onErrorDropped(
+              error, actual != null ? actual.currentContext() : Context.empty());
+        }
+        return;
+      }
+      this.error = error;
+      long next = state | FLAG_TERMINATED;
+      // releases the request payload if it has not been sent
+      send = (state & (FLAG_SUBSCRIBED | FLAG_SENDING | FLAG_FIRST_SENT)) == FLAG_SUBSCRIBED;
+      if (send) {
+        next |= FLAG_SENDING;
+      }
+      if (STATE.compareAndSet(this, state, next)) {
+        break;
+      }
+    }
+
+    requester.removeStreamReceiver(streamId);
+    if ((state & (FLAG_SUBSCRIBED | FLAG_EMITTING | FLAG_CANCELLED)) == FLAG_SUBSCRIBED) {
+      deliverTerminal();
+    }
+    if (send) {
+      drainFrames();
+    }
+  }
+
+  private void deliverTerminal() {
+    CoreSubscriber<? super Payload> actual = this.actual;
+    Throwable error = this.error;
+    if (error != null) {
+      actual.onError(error);
+    } else {
+      actual.onComplete();
+    }
+  }
+
+  @Override
+  public void request(long n) {
+    if (!Operators.validate(n)) {
+      return;
+    }
+    for (; ; ) {
+      long state = this.state;
+      if ((state & (FLAG_CANCELLED | FLAG_TERMINATED | FLAG_UNBOUNDED)) != 0) {
+        return;
+      }
+      long demand =
+          Math.min((state & MASK_DEMAND) + Math.min(n, Integer.MAX_VALUE), Integer.MAX_VALUE);
+      long next = (state & ~MASK_DEMAND) | demand;
+      if (demand == Integer.MAX_VALUE) {
+        next |= FLAG_UNBOUNDED;
+      }
+      boolean send = (state & (FLAG_SUBSCRIBED | FLAG_SENDING)) == FLAG_SUBSCRIBED;
+      if (send) {
+        next |= FLAG_SENDING;
+      }
+      if (STATE.compareAndSet(this, state, next)) {
+        if (send) {
+          drainFrames();
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void cancel() {
+    long state;
+    boolean send;
+    for (; ; ) {
+      state = this.state;
+      if ((state & (FLAG_CANCELLED | FLAG_TERMINATED)) != 0) {
+        return;
+      }
+      long next = state | FLAG_CANCELLED;
+      send = (state & (FLAG_SUBSCRIBED | FLAG_SENDING)) == FLAG_SUBSCRIBED;
+      if (send) {
+        next |= FLAG_SENDING;
+      }
+      if (STATE.compareAndSet(this, state, next)) {
+        break;
+      }
+    }
+
+    requester.removeStreamReceiver(streamId);
+    if (send) {
+      drainFrames();
+    }
+  }
+
+  /** Sends the frames of the stream, called by the thread that has set {@link #FLAG_SENDING}. */
+  private void drainFrames() {
+    for (; ; ) {
+      long state = this.state;
+
+      if ((state & (FLAG_CANCELLED | FLAG_TERMINATED)) != 0) {
+        if ((state & FLAG_FIRST_SENT) == 0) {
+          Payload payload = this.payload;
+          this.payload = null;
+          ReferenceCountUtil.safeRelease(payload);
+        } else if ((state & FLAG_TERMINATED) == 0) {
+          sendProcessor.onNext(CancelFrameFlyweight.encode(allocator, streamId));
+        }
+        // the stream is over, the flag is never released
+        return;
+      }
+
+      long demand = state & MASK_DEMAND;
+      if (demand == 0) {
+        if (STATE.compareAndSet(this, state, state & ~FLAG_SENDING)) {
+          return;
+        }
+        continue;
+      }
+
+      if (!STATE.compareAndSet(this, state, (state & ~MASK_DEMAND) | FLAG_FIRST_SENT)) {
+        continue;
+      }
+
+      if ((state & FLAG_FIRST_SENT) == 0) {
+        Payload payload = this.payload;
+        this.payload = null;
+        sendProcessor.onNext(
+            RequestStreamFrameFlyweight.encodeReleasingPayload(
+                allocator, streamId, demand, payload));
+      } else {
+        sendProcessor.onNext(RequestNFrameFlyweight.encode(allocator, streamId, demand));
+      }
+    }
+  }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import static io.rsocket.core.PayloadValidationUtils.INVALID_PAYLOAD_ERROR_MESSAGE;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.Payload;
+import io.rsocket.frame.PayloadFrameFlyweight;
+import io.rsocket.internal.UnboundedProcessor;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Fuseable;
+import reactor.core.publisher.Operators;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.util.annotation.Nullable;
+import reactor.util.concurrent.Queues;
+import reactor.util.context.Context;
+
+/**
+ * Responder side of a request-stream, or of the responses of a request-channel: subscribes to the
+ * response of the handler and is also the {@code Subscription} driven by the REQUEST_N and CANCEL
+ * frames, so that a single object per stream replaces the subscriber and the {@code limitRate} and
+ * {@code doOnDiscard} operators.
+ *
+ * <p>One state word holds the demand together with the lifecycle flags. Demand received before the
+ * handler subscribes is kept and requested on subscription. As with {@code limitRate}, no more than
+ * {@link #PREFETCH} responses are requested from the source at a time, and the window is
+ * replenished once three quarters of it have been received. Synchronous sources such as {@code
+ * Flux.range} or {@code Flux.fromIterable} are fused: the responses are polled from the source as
+ * the demand arrives, by the thread that has set {@link #FLAG_DRAINING}.
+ */
+final class RequestStreamResponderSubscriber implements CoreSubscriber<Payload>, Subscription {
+
+  // demand not yet requested from the source, or not yet polled when fused
+  static final long MASK_DEMAND = (1L << 58) - 1;
+  // onSubscribe has been called
+  static final long FLAG_SUBSCRIBED = 1L << 58;
+  // the source is polled instead of requested
+  static final long FLAG_FUSED = 1L << 59;
+  // a thread is polling the fused source
+  static final long FLAG_DRAINING = 1L << 60;
+  // the source completed or failed, or an invalid payload ended the stream
+  static final long FLAG_TERMINATED = 1L << 61;
+  static final long FLAG_CANCELLED = 1L << 62;
+
+  static final AtomicLongFieldUpdater<RequestStreamResponderSubscriber> STATE =
+      AtomicLongFieldUpdater.newUpdater(RequestStreamResponderSubscriber.class, "state");
+
+  // the most responses requested from a source that is not fused
+  static final int PREFETCH = Queues.SMALL_BUFFER_SIZE;
+  static final int LOW_TIDE = PREFETCH >> 2;
+
+  static final AtomicLongFieldUpdater<RequestStreamResponderSubscriber> UPSTREAM_REQUESTED =
+      AtomicLongFieldUpdater.newUpdater(
+          RequestStreamResponderSubscriber.class, "upstreamRequested");
+
+  final RSocketResponder responder;
+  final ByteBufAllocator allocator;
+  final UnboundedProcessor<ByteBuf> sendProcessor;
+  final int streamId;
+  final int mtu;
+  @Nullable final UnicastProcessor<Payload> requestChannel;
+
+  volatile long state;
+
+  // responses requested from the source and not yet received
+  volatile long upstreamRequested;
+
+  @Nullable Subscription s;
+
+  RequestStreamResponderSubscriber(
+      RSocketResponder responder,
+      ByteBufAllocator allocator,
+      UnboundedProcessor<ByteBuf> sendProcessor,
+      int streamId,
+      int mtu,
+      long initialRequestN,
+      @Nullable UnicastProcessor<Payload> requestChannel) {
+    this.responder = responder;
+    this.allocator = allocator;
+    this.sendProcessor = sendProcessor;
+    this.streamId = streamId;
+    this.mtu = mtu;
+    this.requestChannel = requestChannel;
+    this.state = addDemand(0, initialRequestN);
+  }
+
+  @Override
+  public Context currentContext() {
+    return RequestResponseResponderSubscriber.DISCARD_CONTEXT;
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    if (!Operators.validate(this.s, subscription)) {
+      return;
+    }
+    this.s = subscription;
+
+    boolean fused = false;
+    if (subscription instanceof Fuseable.QueueSubscription) {
+      @SuppressWarnings("unchecked")
+      Fuseable.QueueSubscription<Payload> qs = (Fuseable.QueueSubscription<Payload>) subscription;
+      // thread-affine sources, such as publishOn, decline the fusion
+      fused = qs.requestFusion(Fuseable.SYNC | Fuseable.THREAD_BARRIER) == Fuseable.SYNC;
+    }
+
+    for (; ; ) {
+      long state = this.state;
+      if ((state & FLAG_CANCELLED) != 0) {
+        subscription.cancel();
+        return;
+      }
+      long demand = state & MASK_DEMAND;
+      long next;
+      if (fused) {
+        next = state | FLAG_SUBSCRIBED | FLAG_FUSED;
+        if (demand != 0) {
+          next |= FLAG_DRAINING;
+        }
+      } else {
+        next = state | FLAG_SUBSCRIBED;
+      }
+      if (STATE.compareAndSet(this, state, next)) {
+        if (demand != 0) {
+          if (fused) {
+            drain();
+          } else {
+            requestUpstream();
+          }
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void onNext(Payload payload) {
+    if ((state & (FLAG_CANCELLED | FLAG_TERMINATED)) != 0) {
+      payload.release();
+      return;
+    }
+    if (sendNext(payload) && UPSTREAM_REQUESTED.decrementAndGet(this) <= LOW_TIDE) {
+      requestUpstream();
+    }
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    long previous = markTerminated();
+    if ((previous & FLAG_TERMINATED) != 0) {
+      Operators.onErrorDropped(t, currentContext());
+      return;
+    }
+    if ((previous & FLAG_CANCELLED) != 0) {
+      // the requester is no longer interested
+      return;
+    }
+    responder.removeSendingSubscription(streamId, this);
+    responder.handleError(streamId, t);
+  }
+
+  @Override
+  public void onComplete() {
+    long previous = markTerminated();
+    if ((previous & (FLAG_TERMINATED | FLAG_CANCELLED)) != 0) {
+      return;
+    }
+    responder.removeSendingSubscription(streamId, this);
+    sendProcessor.onNext(PayloadFrameFlyweight.encodeComplete(allocator, streamId));
+  }
+
+  @Override
+  public void request(long n) {
+    if (n <= 0) {
+      return;
+    }
+    for (; ; ) {
+      long state = this.state;
+      if ((state & (FLAG_CANCELLED | FLAG_TERMINATED)) != 0) {
+        return;
+      }
+      long next = (state & ~MASK_DEMAND) | addDemand(state & MASK_DEMAND, n);
+      boolean drain = (state & (FLAG_FUSED | FLAG_DRAINING)) == FLAG_FUSED;
+      if (drain) {
+        next |= FLAG_DRAINING;
+      }
+      if (STATE.compareAndSet(this, state, next)) {
+        if (drain) {
+          drain();
+        } else if ((state & (FLAG_SUBSCRIBED | FLAG_FUSED)) == FLAG_SUBSCRIBED) {
+          requestUpstream();
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void cancel() {
+    long state;
+    boolean clear;
+    for (; ; ) {
+      state = this.state;
+      if ((state & (FLAG_CANCELLED | FLAG_TERMINATED)) != 0) {
+        return;
+      }
+      long next = state | FLAG_CANCELLED;
+      // the fused source is cleared by the thread polling it
+      clear = (state & (FLAG_FUSED | FLAG_DRAINING)) == FLAG_FUSED;
+      if (clear) {
+        next |= FLAG_DRAINING;
+      }
+      if (STATE.compareAndSet(this, state, next)) {
+        break;
+      }
+    }
+
+    if ((state & FLAG_SUBSCRIBED) != 0) {
+      s.cancel();
+      if (clear) {
+        ((Fuseable.QueueSubscription<?>) s).clear();
+      }
+    }
+    disposeRequestChannel();
+  }
+
+  /** Polls the fused source, called by the thread that has set {@link #FLAG_DRAINING}. */
+  private void drain() {
+    @SuppressWarnings("unchecked")
+    Fuseable.QueueSubscription<Payload> qs = (Fuseable.QueueSubscription<Payload>) s;
+
+    for (; ; ) {
+      long state = this.state;
+      long demand = state & MASK_DEMAND;
+      long emitted = 0;
+
+      while (emitted != demand) {
+        if ((this.state & FLAG_CANCELLED) != 0) {
+          qs.clear();
+          return;
+        }
+
+        Payload payload;
+        try {
+          payload = qs.poll();
+        } catch (Throwable t) {
+          qs.clear();
+          onError(Operators.onOperatorError(t, currentContext()));
+          return;
+        }
+
+        if (payload == null) {
+          onComplete();
+          return;
+        }
+        if (!sendNext(payload)) {
+          qs.clear();
+          return;
+        }
+        if (demand != MASK_DEMAND) {
+          emitted++;
+        }
+      }
+
+      for (; ; ) {
+        state = this.state;
+        if ((state & FLAG_CANCELLED) != 0) {
+          qs.clear();
+          return;
+        }
+        long remaining = (state & MASK_DEMAND) - emitted;
+        long next = (state & ~MASK_DEMAND) | remaining;
+        if (remaining == 0) {
+          next &= ~FLAG_DRAINING;
+        }
+        if (STATE.compareAndSet(this, state, next)) {
+          if (remaining == 0) {
+            return;
+          }
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Moves demand to the source when fewer than {@link #LOW_TIDE} responses are still expected from
+   * it, so that at most {@link #PREFETCH} are. The window is reserved before the demand is taken,
+   * and what could not be taken is given back and the demand checked again, so that demand added by
+   * a thread that saw the reservation is not left behind.
+   */
+  private void requestUpstream() {
+    for (; ; ) {
+      long upstreamRequested = this.upstreamRequested;
+      if (upstreamRequested > LOW_TIDE || (state & MASK_DEMAND) == 0) {
+        return;
+      }
+      if (!UPSTREAM_REQUESTED.compareAndSet(this, upstreamRequested, PREFETCH)) {
+        continue;
+      }
+
+      long window = PREFETCH - upstreamRequested;
+      long taken = takeDemand(window);
+      if (taken != window) {
+        UPSTREAM_REQUESTED.addAndGet(this, taken - window);
+      }
+      if (taken != 0) {
+        s.request(taken);
+      }
+      if (taken == window) {
+        return;
+      }
+    }
+  }
+
+  private long takeDemand(long n) {
+    for (; ; ) {
+      long state = this.state;
+      if ((state & (FLAG_CANCELLED | FLAG_TERMINATED)) != 0) {
+        return 0;
+      }
+      long demand = state & MASK_DEMAND;
+      if (demand == MASK_DEMAND) {
+        return n;
+      }
+      long taken = Math.min(demand, n);
+      if (STATE.compareAndSet(this, state, state - taken)) {
+        return taken;
+      }
+    }
+  }
+
+  private boolean sendNext(Payload payload) {
+    if (!PayloadValidationUtils.isValid(mtu, payload)) {
+      payload.release();
+      // specifically for requestChannel case so when Payload is invalid we will not be
+      // sending CancelFrame and ErrorFrame
+      // Note: CancelFrame is redundant and due to spec
+      // (https://github.com/rsocket/rsocket/blob/master/Protocol.md#request-channel)
+      // Upon receiving an ERROR[APPLICATION_ERROR|REJECTED|CANCELED|INVALID], the stream is
+      // terminated on both Requester and Responder.
+      // Upon sending an ERROR[APPLICATION_ERROR|REJECTED|CANCELED|INVALID], the stream is
+      // terminated on both the Requester and Responder.
+      long previous = markTerminated();
+      if ((previous & (FLAG_TERMINATED | FLAG_CANCELLED)) == 0) {
+        s.cancel();
+        disposeRequestChannel();
+        responder.removeSendingSubscription(streamId, this);
+        responder.handleError(
+            streamId, new IllegalArgumentException(INVALID_PAYLOAD_ERROR_MESSAGE));
+      }
+      return false;
+    }
+
+    sendProcessor.onNext(
+        PayloadFrameFlyweight.encodeNextReleasingPayload(allocator, streamId, payload));
+    return true;
+  }
+
+  private void disposeRequestChannel() {
+    // specifically for requestChannel case so when requester sends Cancel frame so the
+    // whole chain MUST be terminated
+    // Note: CancelFrame is redundant from the responder side due to spec
+    // (https://github.com/rsocket/rsocket/blob/master/Protocol.md#request-channel)
+    // Upon receiving a CANCEL, the stream is terminated on the Responder.
+    // Upon sending a CANCEL, the stream is terminated on the Requester.
+    UnicastProcessor<Payload> requestChannel = this.requestChannel;
+    if (requestChannel != null) {
+      responder.removeChannelProcessor(streamId, requestChannel);
+      try {
+        requestChannel.dispose();
+      } catch (Exception e) {
+        // might be thrown back if stream is cancelled
+      }
+    }
+  }
+
+  private long markTerminated() {
+    return STATE.getAndUpdate(this, s -> s | FLAG_TERMINATED);
+  }
+
+  private static long addDemand(long demand, long n) {
+    long next = demand + n;
+    return next >= MASK_DEMAND || next < 0 ? MASK_DEMAND : next;
+  }
+}
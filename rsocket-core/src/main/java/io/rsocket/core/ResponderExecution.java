@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.netty.util.ReferenceCountUtil;
+import io.rsocket.Payload;
+import io.rsocket.exceptions.RejectedException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.Nullable;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Where the handlers of the requests received by a {@link RSocketServer} run.
+ *
+ * <ul>
+ *   <li>{@link #inline()} calls the handlers on the event loop of the connection, which is the
+ *       default and the cheapest when handlers never block nor burn CPU.
+ *   <li>{@link #workers(int, int)} calls them on a bounded pool of single threaded workers, one per
+ *       core by default. Each stream is pinned to one worker so that its signals stay ordered.
+ *   <li>{@link #virtualThreads(int)} calls the handler of every stream on its own virtual thread,
+ *       on JDK 21+.
+ * </ul>
+ *
+ * <p>The handler of a request is called, and its response subscribed to, on the worker of the
+ * stream, while the frames of a request channel are still delivered from the event loop. When more
+ * than {@code maxPending} handler calls are waiting for their worker or have responses in progress,
+ * new requests are rejected with {@link RejectedException REJECTED} errors until the workers catch
+ * up, while keepalives, cancels and the frames of the streams in progress keep flowing.
+ *
+ * <p>An execution can be shared by several servers and should be {@link #dispose() disposed} once
+ * they are closed.
+ */
+public final class ResponderExecution implements Disposable {
+  private static final ResponderExecution INLINE = new ResponderExecution(null, null, 0);
+
+  private static final AtomicIntegerFieldUpdater<ResponderExecution> PENDING =
+      AtomicIntegerFieldUpdater.newUpdater(ResponderExecution.class, "pending");
+  private static final AtomicIntegerFieldUpdater<ResponderExecution> NEXT =
+      AtomicIntegerFieldUpdater.newUpdater(ResponderExecution.class, "next");
+
+  @Nullable private final Scheduler[] workers;
+  @Nullable private final ThreadFactory virtualThreads;
+  private final int maxPending;
+
+  private volatile int pending;
+  private volatile int next;
+  private volatile boolean disposed;
+
+  private ResponderExecution(
+      @Nullable Scheduler[] workers, @Nullable ThreadFactory virtualThreads, int maxPending) {
+    this.workers = workers;
+    this.virtualThreads = virtualThreads;
+    this.maxPending = maxPending;
+  }
+
+  /** @return the execution calling the handlers on the event loops of the connections */
+  public static ResponderExecution inline() {
+    return INLINE;
+  }
+
+  /** @return an execution with one worker per core */
+  public static ResponderExecution workers() {
+    int workers = Runtime.getRuntime().availableProcessors();
+    return workers(workers, workers * Queues.SMALL_BUFFER_SIZE);
+  }
+
+  /**
+   * @param workers the number of single threaded workers
+   * @param maxPending the number of handler calls waiting for a worker or with responses in
+   *     progress from which new requests are rejected
+   * @return an execution over a bounded pool of workers
+   */
+  public static ResponderExecution workers(int workers, int maxPending) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("workers must be > 0: " + workers);
+    }
+    if (maxPending < 1) {
+      throw new IllegalArgumentException("maxPending must be > 0: " + maxPending);
+    }
+    Scheduler[] schedulers = new Scheduler[workers];
+    for (int i = 0; i < workers; i++) {
+      schedulers[i] = Schedulers.newSingle("rsocket-responder-" + i, true);
+    }
+    return new ResponderExecution(schedulers, null, maxPending);
+  }
+
+  /** @return an execution calling each handler on its own virtual thread */
+  public static ResponderExecution virtualThreads() {
+    return virtualThreads(Queues.SMALL_BUFFER_SIZE * 64);
+  }
+
+  /**
+   * @param maxPending the number of handler calls in progress from which new requests are rejected
+   * @return an execution calling each handler on its own virtual thread
+   * @throws UnsupportedOperationException if the JDK does not support virtual threads
+   */
+  public static ResponderExecution virtualThreads(int maxPending) {
+    if (maxPending < 1) {
+      throw new IllegalArgumentException("maxPending must be > 0: " + maxPending);
+    }
+    return new ResponderExecution(null, VirtualThreads.factory("rsocket-responder-"), maxPending);
+  }
+
+  /** @return whether {@link #virtualThreads()} is supported by the running JDK */
+  public static boolean isVirtualThreadsSupported() {
+    return VirtualThreads.isSupported();
+  }
+
+  boolean isInline() {
+    return workers == null && virtualThreads == null;
+  }
+
+  /** @return the number of handler calls waiting for a worker or with responses in progress */
+  int pending() {
+    return pending;
+  }
+
+  <T> Mono<T> schedule(@Nullable Payload payload, Supplier<Mono<T>> call) {
+    return Mono.defer(
+        () -> {
+          if (!tryAcquire()) {
+            return Mono.error(rejected(payload));
+          }
+          Task task = new Task(payload);
+          return Mono.defer(() -> task.start() ? call.get() : Mono.<T>empty())
+              .subscribeOn(task.scheduler)
+              .doFinally(task);
+        });
+  }
+
+  <T> Flux<T> scheduleMany(@Nullable Payload payload, Supplier<Flux<T>> call) {
+    return Flux.defer(
+        () -> {
+          if (!tryAcquire()) {
+            return Flux.error(rejected(payload));
+          }
+          Task task = new Task(payload);
+          return Flux.defer(() -> task.start() ? call.get() : Flux.<T>empty())
+              .subscribeOn(task.scheduler)
+              .doFinally(task);
+        });
+  }
+
+  private Scheduler nextScheduler() {
+    if (workers != null) {
+      return workers[(NEXT.getAndIncrement(this) & Integer.MAX_VALUE) % workers.length];
+    }
+    return Schedulers.fromExecutorService(Executors.newSingleThreadExecutor(virtualThreads));
+  }
+
+  private boolean tryAcquire() {
+    for (; ; ) {
+      int pending = this.pending;
+      if (pending >= maxPending) {
+        return false;
+      }
+      if (PENDING.compareAndSet(this, pending, pending + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private void release() {
+    PENDING.decrementAndGet(this);
+  }
+
+  private static RejectedException rejected(@Nullable Payload payload) {
+    if (payload != null) {
+      ReferenceCountUtil.safeRelease(payload);
+    }
+    return new RejectedException("Too many requests in progress");
+  }
+
+  @Override
+  public void dispose() {
+    disposed = true;
+    if (workers != null) {
+      for (Scheduler worker : workers) {
+        worker.dispose();
+      }
+    }
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return disposed;
+  }
+
+  /**
+   * The call of a handler, created once its response is subscribed to and pending until that
+   * response terminates or is cancelled, with the virtual thread it runs on if any.
+   */
+  private final class Task implements Consumer<SignalType> {
+    final Scheduler scheduler;
+    @Nullable Payload payload;
+    boolean started;
+
+    Task(@Nullable Payload payload) {
+      this.payload = payload;
+      this.scheduler = nextScheduler();
+    }
+
+    boolean start() {
+      synchronized (this) {
+        if (started) {
+          return false;
+        }
+        started = true;
+        payload = null;
+      }
+      return true;
+    }
+
+    @Override
+    public void accept(SignalType signalType) {
+      Payload payload;
+      synchronized (this) {
+        // not null when cancelled before the handler was called
+        payload = this.payload;
+        this.payload = null;
+        started = true;
+      }
+      if (payload != null) {
+        ReferenceCountUtil.safeRelease(payload);
+      }
+      release();
+      if (workers == null) {
+        scheduler.dispose();
+      }
+    }
+  }
+}
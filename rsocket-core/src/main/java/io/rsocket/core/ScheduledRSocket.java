@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.util.RSocketProxy;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/** Calls the handlers of a responder on the workers of a {@link ResponderExecution}. */
+@SuppressWarnings("deprecation")
+final class ScheduledRSocket extends RSocketProxy implements io.rsocket.ResponderRSocket {
+  private final ResponderExecution execution;
+
+  ScheduledRSocket(RSocket source, ResponderExecution execution) {
+    super(source);
+    this.execution = execution;
+  }
+
+  @Override
+  public Mono<Void> fireAndForget(Payload payload) {
+    return execution.schedule(payload, () -> source.fireAndForget(payload));
+  }
+
+  @Override
+  public Mono<Payload> requestResponse(Payload payload) {
+    return execution.schedule(payload, () -> source.requestResponse(payload));
+  }
+
+  @Override
+  public Flux<Payload> requestStream(Payload payload) {
+    return execution.scheduleMany(payload, () -> source.requestStream(payload));
+  }
+
+  @Override
+  public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+    return execution.scheduleMany(null, () -> source.requestChannel(payloads));
+  }
+
+  @Override
+  public Flux<Payload> requestChannel(Payload payload, Publisher<Payload> payloads) {
+    // the first payload is also the first element of the payloads, released with them
+    return execution.scheduleMany(
+        null,
+        () ->
+            source instanceof io.rsocket.ResponderRSocket
+                ? ((io.rsocket.ResponderRSocket) source).requestChannel(payload, payloads)
+                : source.requestChannel(payloads));
+  }
+
+  @Override
+  public Mono<Void> metadataPush(Payload payload) {
+    return execution.schedule(payload, () -> source.metadataPush(payload));
+  }
+}
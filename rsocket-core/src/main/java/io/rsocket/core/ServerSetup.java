@@ -19,6 +19,8 @@
 import static io.rsocket.keepalive.KeepAliveHandler.*;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.ConnectionSetupPayload;
 import io.rsocket.DuplexConnection;
 import io.rsocket.exceptions.RejectedResumeException;
 import io.rsocket.exceptions.UnsupportedSetupException;
@@ -29,11 +31,18 @@
 import io.rsocket.keepalive.KeepAliveHandler;
 import io.rsocket.resume.*;
 import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import reactor.core.publisher.Mono;
 
 abstract class ServerSetup {
+  static final int MAX_CACHED_MIME_TYPES = 64;
+
+  // metadata and data mime types of the previous setups, by their encoding in the SETUP frame,
+  // cleared once full so that clients sending arbitrary mime types cannot pin it
+  private final ConcurrentMap<ByteBuf, String[]> mimeTypes = new ConcurrentHashMap<>();
 
   abstract Mono<Void> acceptRSocketSetup(
       ByteBuf frame,
@@ -44,6 +53,34 @@ abstract Mono<Void> acceptRSocketSetup(
 
   void dispose() {}
 
+  /**
+   * Reads the setup payload of the frame. The clients of a server mostly connect with the same few
+   * mime types, which are then only decoded once rather than for every connection.
+   */
+  ConnectionSetupPayload setupPayload(ByteBuf setupFrame) {
+    ByteBuf encoded;
+    try {
+      encoded = SetupFrameFlyweight.mimeTypes(setupFrame);
+    } catch (IndexOutOfBoundsException e) {
+      // malformed, fails once the mime types are read
+      return new DefaultConnectionSetupPayload(setupFrame);
+    }
+
+    String[] names = mimeTypes.get(encoded);
+    if (names == null) {
+      names =
+          new String[] {
+            SetupFrameFlyweight.metadataMimeType(setupFrame),
+            SetupFrameFlyweight.dataMimeType(setupFrame)
+          };
+      if (mimeTypes.size() >= MAX_CACHED_MIME_TYPES) {
+        mimeTypes.clear();
+      }
+      mimeTypes.putIfAbsent(Unpooled.copiedBuffer(encoded), names);
+    }
+    return new DefaultConnectionSetupPayload(setupFrame, names[0], names[1]);
+  }
+
   Mono<Void> sendError(ClientServerInputMultiplexer multiplexer, Exception exception) {
     DuplexConnection duplexConnection = multiplexer.asSetupConnection();
     return duplexConnection
@@ -18,6 +18,14 @@
 import io.netty.util.collection.IntObjectMap;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
+/**
+ * Allocates the ids of the streams initiated by one side of a connection.
+ *
+ * <p>The ids are taken from a 64-bit counter, so the ids of its first pass over the 31-bit id space
+ * are unique and cannot be found among the active streams, which all got their ids from this
+ * supplier. Only once the counter has wrapped around are the ids looked up in the active streams
+ * and skipped while still in use.
+ */
 final class StreamIdSupplier {
   private static final int MASK = 0x7FFFFFFF;
 
@@ -39,13 +47,40 @@ static StreamIdSupplier serverSupplier() {
   }
 
   int nextStreamId(IntObjectMap<?> streamIds) {
+    long next;
     int streamId;
     do {
-      streamId = (int) STREAM_ID.addAndGet(this, 2) & MASK;
-    } while (streamId == 0 || streamIds.containsKey(streamId));
+      next = STREAM_ID.addAndGet(this, 2);
+      streamId = (int) next & MASK;
+    } while (streamId == 0 || isInUse(streamIds, next, streamId));
     return streamId;
   }
 
+  private static boolean isInUse(IntObjectMap<?> streamIds, long next, int streamId) {
+    // only the ids handed out after a wrap around may still be in use
+    return next > MASK && streamIds.containsKey(streamId);
+  }
+
+  /**
+   * Reserves the ids of {@code count} streams at once. After a wrap around, from the first id that
+   * is zero or still in use, the remaining ids are taken one by one.
+   */
+  void nextStreamIds(IntObjectMap<?> streamIds, int[] ids, int count) {
+    long last = STREAM_ID.addAndGet(this, 2L * count);
+    int i = 0;
+    for (; i < count; i++) {
+      long next = last - 2L * (count - 1 - i);
+      int streamId = (int) next & MASK;
+      if (streamId == 0 || isInUse(streamIds, next, streamId)) {
+        break;
+      }
+      ids[i] = streamId;
+    }
+    for (; i < count; i++) {
+      ids[i] = nextStreamId(streamIds);
+    }
+  }
+
   boolean isBeforeOrCurrent(int streamId) {
     return this.streamId >= streamId && streamId > 0;
   }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import reactor.util.annotation.Nullable;
+
+/**
+ * Access to the virtual threads of JDK 21+ through reflection, so that rsocket-core still compiles
+ * and runs on Java 8.
+ */
+final class VirtualThreads {
+  @Nullable private static final Method OF_VIRTUAL;
+  @Nullable private static final Method NAME;
+  @Nullable private static final Method FACTORY;
+
+  static {
+    Method ofVirtual = null;
+    Method name = null;
+    Method factory = null;
+    try {
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      name = builder.getMethod("name", String.class, long.class);
+      factory = builder.getMethod("factory");
+      // fails on JDKs where virtual threads are a preview feature that is not enabled
+      ofVirtual.invoke(null);
+    } catch (Throwable e) {
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    FACTORY = factory;
+  }
+
+  private VirtualThreads() {}
+
+  static boolean isSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * @param prefix the prefix of the names of the threads, followed by a counter
+   * @return a factory of virtual threads
+   * @throws UnsupportedOperationException if the JDK does not support virtual threads
+   */
+  static ThreadFactory factory(String prefix) {
+    if (OF_VIRTUAL == null) {
+      throw new UnsupportedOperationException(
+          "virtual threads require JDK 21+, running on " + System.getProperty("java.version"));
+    }
+    try {
+      Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+      return (ThreadFactory) FACTORY.invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      throw new UnsupportedOperationException("virtual threads are not available", e);
+    }
+  }
+}
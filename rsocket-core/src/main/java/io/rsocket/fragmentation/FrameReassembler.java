@@ -83,6 +83,21 @@ public boolean isDisposed() {
     return get();
   }
 
+  /** @return the number of bytes held until their frames are reassembled */
+  synchronized long heldBytes() {
+    long bytes = 0;
+    for (ByteBuf byteBuf : headers.values()) {
+      bytes += byteBuf.readableBytes();
+    }
+    for (ByteBuf byteBuf : metadata.values()) {
+      bytes += byteBuf.readableBytes();
+    }
+    for (ByteBuf byteBuf : data.values()) {
+      bytes += byteBuf.readableBytes();
+    }
+    return bytes;
+  }
+
   synchronized ByteBuf getHeader(int streamId) {
     return headers.get(streamId);
   }
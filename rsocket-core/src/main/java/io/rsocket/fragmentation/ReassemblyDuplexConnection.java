@@ -75,6 +75,11 @@ public Flux<ByteBuf> receive() {
             });
   }
 
+  /** @return the number of bytes of the fragments held until their frames are reassembled */
+  public long reassemblyBytes() {
+    return frameReassembler.heldBytes();
+  }
+
   @Override
   public ByteBufAllocator alloc() {
     return delegate.alloc();
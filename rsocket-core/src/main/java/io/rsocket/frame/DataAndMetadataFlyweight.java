@@ -9,7 +9,7 @@ class DataAndMetadataFlyweight {
 
   private DataAndMetadataFlyweight() {}
 
-  private static void encodeLength(final ByteBuf byteBuf, final int length) {
+  static void encodeLength(final ByteBuf byteBuf, final int length) {
     if ((length & ~FRAME_LENGTH_MASK) != 0) {
       throw new IllegalArgumentException("Length is larger than 24 bits");
     }
@@ -51,9 +51,13 @@ public static ByteBuf encode(
       throw new IllegalStateException("bad value for metadata flag");
     }
 
+    return encode(allocator.buffer(), streamId, frameType, flags);
+  }
+
+  static ByteBuf encode(ByteBuf target, int streamId, FrameType frameType, int flags) {
     short typeAndFlags = (short) (frameType.getEncodedType() << FRAME_TYPE_SHIFT | (short) flags);
 
-    return allocator.buffer().writeInt(streamId).writeShort(typeAndFlags);
+    return target.writeInt(streamId).writeShort(typeAndFlags);
   }
 
   public static boolean hasFollows(ByteBuf byteBuf) {
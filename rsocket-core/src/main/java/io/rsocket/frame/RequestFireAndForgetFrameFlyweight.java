@@ -43,6 +43,42 @@ public static ByteBuf encodeReleasingPayload(
     return FLYWEIGHT.encode(allocator, streamId, false, metadata, data);
   }
 
+  /**
+   * @return the length of the frame written by {@link #encodeReleasingPayload(ByteBuf, int,
+   *     Payload)} for the given payload
+   */
+  public static int encodedLength(Payload payload) {
+    int length = FrameHeaderFlyweight.size() + payload.data().readableBytes();
+    if (payload.hasMetadata()) {
+      length += 3 + payload.metadata().readableBytes();
+    }
+    return length;
+  }
+
+  /**
+   * Writes a frame at the end of the given buffer, copying the payload instead of composing it, so
+   * that the frames of many small payloads share a single buffer.
+   *
+   * @return the given buffer
+   */
+  public static ByteBuf encodeReleasingPayload(ByteBuf target, int streamId, Payload payload) {
+    try {
+      boolean hasMetadata = payload.hasMetadata();
+      FrameHeaderFlyweight.encode(
+          target, streamId, FrameType.REQUEST_FNF, hasMetadata ? FrameHeaderFlyweight.FLAGS_M : 0);
+      if (hasMetadata) {
+        ByteBuf metadata = payload.metadata();
+        DataAndMetadataFlyweight.encodeLength(target, metadata.readableBytes());
+        target.writeBytes(metadata, metadata.readerIndex(), metadata.readableBytes());
+      }
+      ByteBuf data = payload.data();
+      target.writeBytes(data, data.readerIndex(), data.readableBytes());
+      return target;
+    } finally {
+      payload.release();
+    }
+  }
+
   public static ByteBuf encode(
       ByteBufAllocator allocator,
       int streamId,
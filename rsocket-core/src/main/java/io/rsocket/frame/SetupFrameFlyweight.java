@@ -19,6 +19,7 @@ public class SetupFrameFlyweight {
 
   public static final int CURRENT_VERSION = VersionFlyweight.encode(1, 0);
 
+  private static final int FLAGS_OFFSET = Integer.BYTES;
   private static final int VERSION_FIELD_OFFSET = FrameHeaderFlyweight.size();
   private static final int KEEPALIVE_INTERVAL_FIELD_OFFSET = VERSION_FIELD_OFFSET + Integer.BYTES;
   private static final int KEEPALIVE_MAX_LIFETIME_FIELD_OFFSET =
@@ -54,10 +55,83 @@ public static ByteBuf encode(
       final String metadataMimeType,
       final String dataMimeType,
       final Payload setupPayload) {
+    final boolean hasMetadata = setupPayload.hasMetadata();
+    return encode(
+        allocator,
+        lease,
+        keepaliveInterval,
+        maxLifetime,
+        resumeToken,
+        metadataMimeType,
+        dataMimeType,
+        hasMetadata ? setupPayload.sliceMetadata() : null,
+        hasMetadata,
+        setupPayload.sliceData());
+  }
 
-    final ByteBuf data = setupPayload.sliceData();
+  /**
+   * Encodes a SETUP frame without resume token into an unpooled heap buffer that can be copied for
+   * every connection by {@link #encode(ByteBufAllocator, ByteBuf, ByteBuf)}, rather than encoding
+   * the mime types and the setup payload again. The setup payload is not released.
+   */
+  public static ByteBuf encodeTemplate(
+      final boolean lease,
+      final int keepaliveInterval,
+      final int maxLifetime,
+      final String metadataMimeType,
+      final String dataMimeType,
+      final Payload setupPayload) {
     final boolean hasMetadata = setupPayload.hasMetadata();
-    final ByteBuf metadata = hasMetadata ? setupPayload.sliceMetadata() : null;
+    final ByteBuf frame =
+        encode(
+            ByteBufAllocator.DEFAULT,
+            lease,
+            keepaliveInterval,
+            maxLifetime,
+            Unpooled.EMPTY_BUFFER,
+            metadataMimeType,
+            dataMimeType,
+            hasMetadata ? setupPayload.sliceMetadata().retain() : null,
+            hasMetadata,
+            setupPayload.sliceData().retain());
+    try {
+      return Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(frame));
+    } finally {
+      frame.release();
+    }
+  }
+
+  /**
+   * Encodes a SETUP frame by copying a template from {@link #encodeTemplate}, adding the resume
+   * token if it is not empty.
+   */
+  public static ByteBuf encode(
+      final ByteBufAllocator allocator, final ByteBuf template, final ByteBuf resumeToken) {
+    final int start = template.readerIndex();
+    final int length = template.readableBytes();
+    if (resumeToken == null || resumeToken.readableBytes() == 0) {
+      return allocator.buffer(length).writeBytes(template, start, length);
+    }
+
+    final int tokenLength = resumeToken.readableBytes();
+    final ByteBuf frame = allocator.buffer(length + Short.BYTES + tokenLength);
+    frame.writeBytes(template, start, VARIABLE_DATA_OFFSET);
+    frame.setShort(FLAGS_OFFSET, frame.getShort(FLAGS_OFFSET) | FLAGS_RESUME_ENABLE);
+    frame.writeShort(tokenLength).writeBytes(resumeToken, resumeToken.readerIndex(), tokenLength);
+    return frame.writeBytes(template, start + VARIABLE_DATA_OFFSET, length - VARIABLE_DATA_OFFSET);
+  }
+
+  private static ByteBuf encode(
+      final ByteBufAllocator allocator,
+      final boolean lease,
+      final int keepaliveInterval,
+      final int maxLifetime,
+      final ByteBuf resumeToken,
+      final String metadataMimeType,
+      final String dataMimeType,
+      final ByteBuf metadata,
+      final boolean hasMetadata,
+      final ByteBuf data) {
 
     int flags = 0;
 
@@ -186,6 +260,18 @@ public static String dataMimeType(ByteBuf byteBuf) {
     return mimeType;
   }
 
+  /**
+   * @return a slice of both length-prefixed mime types, identical for the frames with the same
+   *     metadata and data mime types
+   */
+  public static ByteBuf mimeTypes(ByteBuf byteBuf) {
+    int skip = bytesToSkipToMimeType(byteBuf);
+    int offset = byteBuf.readerIndex() + skip;
+    int metadataLength = byteBuf.getUnsignedByte(offset);
+    int dataLength = byteBuf.getUnsignedByte(offset + 1 + metadataLength);
+    return byteBuf.slice(offset, 2 + metadataLength + dataLength);
+  }
+
   public static ByteBuf metadata(ByteBuf byteBuf) {
     boolean hasMetadata = FrameHeaderFlyweight.hasMetadata(byteBuf);
     if (!hasMetadata) {
@@ -125,6 +125,11 @@ public ClientServerInputMultiplexer(
             });
   }
 
+  /** @return the connection given by the transport, before any interceptor is applied */
+  public DuplexConnection asSourceConnection() {
+    return source;
+  }
+
   public DuplexConnection asClientServerConnection() {
     return clientServerConnection;
   }
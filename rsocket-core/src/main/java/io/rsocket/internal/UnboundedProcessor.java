@@ -22,6 +22,8 @@
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.LongConsumer;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 import reactor.core.CoreSubscriber;
@@ -81,11 +83,61 @@
 
   boolean outputFused;
 
+  static final int SAMPLE_INTERVAL = 64;
+
+  static final Object SKIPPING = new Object();
+
+  volatile LongConsumer latencyConsumer;
+
+  // the element being timed, SKIPPING between two samples, or null to time the next element
+  volatile Object sample;
+
+  @SuppressWarnings("rawtypes")
+  static final AtomicReferenceFieldUpdater<UnboundedProcessor, Object> SAMPLE =
+      AtomicReferenceFieldUpdater.newUpdater(UnboundedProcessor.class, Object.class, "sample");
+
+  volatile long sampleStart;
+
+  int sampleSkip;
+
   public UnboundedProcessor() {
     this.queue = new MpscUnboundedArrayQueue<>(Queues.SMALL_BUFFER_SIZE);
     this.priorityQueue = new MpscUnboundedArrayQueue<>(Queues.SMALL_BUFFER_SIZE);
   }
 
+  /**
+   * Samples how long the elements given to {@link #onNext(Object)} wait before being handed to the
+   * subscriber. One element out of about {@value #SAMPLE_INTERVAL} is timed, and its latency in
+   * nanoseconds is given to {@code latencyConsumer} on the draining thread.
+   *
+   * @param latencyConsumer the consumer of the sampled latencies
+   */
+  public void sampleLatency(LongConsumer latencyConsumer) {
+    this.latencyConsumer = Objects.requireNonNull(latencyConsumer, "latencyConsumer");
+  }
+
+  void onEnqueue(T t) {
+    // the element must be claimed before it is offered, which publishes the start to the drainer
+    if (latencyConsumer != null && sample == null && SAMPLE.compareAndSet(this, null, t)) {
+      sampleStart = System.nanoTime();
+    }
+  }
+
+  void onDequeue(T t) {
+    Object sample = this.sample;
+    if (sample == null) {
+      return;
+    }
+
+    if (sample == t) {
+      latencyConsumer.accept(System.nanoTime() - sampleStart);
+      sampleSkip = SAMPLE_INTERVAL;
+      this.sample = SKIPPING;
+    } else if (sample == SKIPPING && --sampleSkip == 0) {
+      this.sample = null;
+    }
+  }
+
   @Override
   public int getBufferSize() {
     return Integer.MAX_VALUE;
@@ -131,6 +183,7 @@ void drainRegular(Subscriber<? super T> a) {
           break;
         }
 
+        onDequeue(t);
         a.onNext(t);
 
         e++;
@@ -281,7 +334,10 @@ public void onNext(T t) {
       return;
     }
 
+    onEnqueue(t);
+
     if (!queue.offer(t)) {
+      SAMPLE.compareAndSet(this, t, null);
       Throwable ex =
           Operators.onOperatorError(null, Exceptions.failWithOverflow(), t, currentContext());
       onError(Operators.onOperatorError(null, ex, t, currentContext()));
@@ -291,6 +347,34 @@ public void onNext(T t) {
     drain();
   }
 
+  /**
+   * Enqueues the first {@code count} elements of the array, in order, and drains them once.
+   *
+   * @param elements the elements to enqueue
+   * @param count the number of elements to enqueue
+   */
+  public void onNextMany(T[] elements, int count) {
+    for (int i = 0; i < count; i++) {
+      T t = elements[i];
+      if (done || cancelled) {
+        Operators.onNextDropped(t, currentContext());
+        release(t);
+        continue;
+      }
+
+      onEnqueue(t);
+
+      if (!queue.offer(t)) {
+        SAMPLE.compareAndSet(this, t, null);
+        Throwable ex =
+            Operators.onOperatorError(null, Exceptions.failWithOverflow(), t, currentContext());
+        onError(Operators.onOperatorError(null, ex, t, currentContext()));
+        release(t);
+      }
+    }
+    drain();
+  }
+
   @Override
   public void onError(Throwable t) {
     if (done || cancelled) {
@@ -362,7 +446,11 @@ public T poll() {
     if (!pq.isEmpty()) {
       return pq.poll();
     }
-    return queue.poll();
+    T t = queue.poll();
+    if (t != null) {
+      onDequeue(t);
+    }
+    return t;
   }
 
   @Override
@@ -397,6 +485,9 @@ public void clear() {
         }
       }
 
+      // the element being timed, if any, was discarded and will never be dequeued
+      sample = null;
+
       missed = DISCARD_GUARD.addAndGet(this, -missed);
       if (missed == 0) {
         break;
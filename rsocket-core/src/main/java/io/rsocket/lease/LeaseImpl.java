@@ -90,6 +90,19 @@ public boolean use() {
     return remaining >= 0;
   }
 
+  /**
+   * try use up to n allowed requests of Lease
+   *
+   * @return the number of requests used, 0 if Lease is expired or no allowed requests available
+   */
+  public int use(int n) {
+    if (isExpired()) {
+      return 0;
+    }
+    int previous = allowedRequests.getAndUpdate(cur -> cur > 0 ? Math.max(0, cur - n) : cur);
+    return Math.max(0, Math.min(previous, n));
+  }
+
   @Override
   public double availability() {
     return isValid() ? getAllowedRequests() / (double) getStartingAllowedRequests() : 0.0;
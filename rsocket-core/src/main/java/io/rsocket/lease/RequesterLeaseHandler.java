@@ -28,6 +28,15 @@ public interface RequesterLeaseHandler extends Availability, Disposable {
 
   boolean useLease();
 
+  /** @return the number of requests, up to n, allowed by the current lease */
+  default int useLeases(int n) {
+    int used = 0;
+    while (used < n && useLease()) {
+      used++;
+    }
+    return used;
+  }
+
   Exception leaseError();
 
   void receive(ByteBuf leaseFrame);
@@ -50,6 +59,11 @@ public boolean useLease() {
       return currentLease.use();
     }
 
+    @Override
+    public int useLeases(int n) {
+      return currentLease.use(n);
+    }
+
     @Override
     public Exception leaseError() {
       LeaseImpl l = this.currentLease;
@@ -94,6 +108,11 @@ public boolean useLease() {
           return true;
         }
 
+        @Override
+        public int useLeases(int n) {
+          return n;
+        }
+
         @Override
         public Exception leaseError() {
           throw new AssertionError("Error not possible with NOOP leases handler");
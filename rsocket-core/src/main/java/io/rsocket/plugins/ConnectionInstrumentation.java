@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.plugins;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Contract to observe the internal state of connections, such as how many frames wait to be sent
+ * and how many streams are active, in order to find the connections that back up under load.
+ *
+ * @see ConnectionStats
+ */
+public @FunctionalInterface interface ConnectionInstrumentation {
+
+  /**
+   * Called once for every connection, on the client and on the server, when its requester and
+   * responder are created.
+   *
+   * @param stats a live view of the connection, to be read until {@link ConnectionStats#onClose()}
+   *     terminates
+   * @return the consumer of the sampled times frames waited to be written on the connection, in
+   *     nanoseconds, called on the thread writing the frames
+   */
+  LongConsumer instrument(ConnectionStats stats);
+}
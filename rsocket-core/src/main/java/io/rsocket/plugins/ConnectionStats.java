@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.plugins;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * A live view of the internal state of a connection, given to {@link ConnectionInstrumentation}s.
+ * Every method is cheap enough to be polled by a gauge.
+ */
+public interface ConnectionStats {
+
+  /** @return {@code "client"} or {@code "server"}, the side of the connection */
+  String side();
+
+  /** @return the number of frames queued by the requester and responder, not yet written */
+  int pendingSendFrames();
+
+  /** @return the number of streams sending payloads from this side */
+  int activeSenders();
+
+  /** @return the number of streams receiving payloads on this side as a requester */
+  int activeReceivers();
+
+  /** @return the number of channels receiving payloads on this side as a responder */
+  int activeChannelProcessors();
+
+  /**
+   * @return the number of bytes of the fragments held until their frames are reassembled, 0 if the
+   *     transport does not reassemble frames
+   */
+  long reassemblyBytes();
+
+  /** @return a {@link Mono} terminating when the connection is closed */
+  Mono<Void> onClose();
+}
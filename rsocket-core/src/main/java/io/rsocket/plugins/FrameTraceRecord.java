@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.plugins;
+
+import io.rsocket.frame.FrameType;
+
+/** A frame recorded by a {@link FrameTracer}, without its payload. */
+public final class FrameTraceRecord {
+
+  /** The direction of a traced frame. */
+  public enum Direction {
+    INBOUND,
+    OUTBOUND
+  }
+
+  private static final FrameType[] FRAME_TYPES = FrameType.values();
+
+  private final long connectionId;
+  private final long timestamp;
+  private final Direction direction;
+  private final FrameType frameType;
+  private final int streamId;
+  private final int flags;
+  private final int size;
+
+  FrameTraceRecord(long connectionId, long timestamp, long ids, long meta) {
+    this.connectionId = connectionId;
+    this.timestamp = timestamp;
+    this.streamId = (int) (ids >>> 32);
+    this.size = (int) ids;
+    this.direction = FrameTraceRing.isOutbound(meta) ? Direction.OUTBOUND : Direction.INBOUND;
+    this.frameType = FRAME_TYPES[FrameTraceRing.frameTypeOrdinal(meta)];
+    this.flags = FrameTraceRing.flags(meta);
+  }
+
+  /** @return the sequence number of the traced connection in its {@link FrameTracer} */
+  public long connectionId() {
+    return connectionId;
+  }
+
+  /** @return the {@link System#nanoTime()} at which the frame was seen */
+  public long timestamp() {
+    return timestamp;
+  }
+
+  public Direction direction() {
+    return direction;
+  }
+
+  public FrameType frameType() {
+    return frameType;
+  }
+
+  public int streamId() {
+    return streamId;
+  }
+
+  public int flags() {
+    return flags;
+  }
+
+  /** @return the size of the frame in bytes */
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "FrameTraceRecord{connection="
+        + connectionId
+        + ", timestamp="
+        + timestamp
+        + ", direction="
+        + direction
+        + ", type="
+        + frameType
+        + ", streamId="
+        + streamId
+        + ", flags="
+        + Integer.toBinaryString(flags)
+        + ", size="
+        + size
+        + '}';
+  }
+}
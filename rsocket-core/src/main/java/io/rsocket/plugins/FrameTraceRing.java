@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.plugins;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.frame.FrameHeaderFlyweight;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free ring buffer of the frames traced on a connection. Each record is made of 4 longs: a
+ * stamp, the timestamp, the stream id and size, and the type, direction and flags. Writers claim a
+ * sequence number and publish the record by writing its stamp last, so that the single reader can
+ * tell complete records from the ones being written or overwritten.
+ */
+final class FrameTraceRing {
+
+  private static final int RECORD_LONGS = 4;
+  private static final long OUTBOUND = 1L << 10;
+  private static final int FLAGS_MASK = 0b11_1111_1111;
+
+  private final long connectionId;
+  private final int mask;
+  private final AtomicLongArray records;
+  private final AtomicLong head = new AtomicLong();
+
+  // only accessed by the reader, under the lock of the tracer
+  private long tail;
+  private long dropped;
+
+  volatile boolean closed;
+
+  FrameTraceRing(long connectionId, int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+    this.connectionId = connectionId;
+    this.mask = size - 1;
+    this.records = new AtomicLongArray(size * RECORD_LONGS);
+  }
+
+  void record(boolean outbound, ByteBuf frame) {
+    long meta =
+        (long) FrameHeaderFlyweight.frameType(frame).ordinal() << 11
+            | (outbound ? OUTBOUND : 0)
+            | FrameHeaderFlyweight.flags(frame);
+    long ids = (long) FrameHeaderFlyweight.streamId(frame) << 32 | frame.readableBytes();
+    long timestamp = System.nanoTime();
+
+    long sequence = head.getAndIncrement();
+    int index = (int) (sequence & mask) * RECORD_LONGS;
+    // invalidates the slot before overwriting it
+    records.set(index, 0);
+    records.lazySet(index + 1, timestamp);
+    records.lazySet(index + 2, ids);
+    records.lazySet(index + 3, meta);
+    records.lazySet(index, sequence + 1);
+  }
+
+  /** Gives the records written since the previous call to the consumer, oldest first. */
+  void drain(Consumer<? super FrameTraceRecord> consumer) {
+    long head = this.head.get();
+    long sequence = Math.max(tail, head - mask - 1);
+    dropped += sequence - tail;
+
+    for (; sequence < head; sequence++) {
+      int index = (int) (sequence & mask) * RECORD_LONGS;
+      long stamp = records.get(index);
+      if (stamp == sequence + 1) {
+        long timestamp = records.get(index + 1);
+        long ids = records.get(index + 2);
+        long meta = records.get(index + 3);
+        if (records.get(index) == stamp) {
+          consumer.accept(new FrameTraceRecord(connectionId, timestamp, ids, meta));
+          continue;
+        }
+      } else if (stamp <= sequence) {
+        // still being written, the next drain will pick it up
+        break;
+      }
+      dropped++;
+    }
+    tail = sequence;
+  }
+
+  long dropped() {
+    return dropped;
+  }
+
+  static boolean isOutbound(long meta) {
+    return (meta & OUTBOUND) != 0;
+  }
+
+  static int frameTypeOrdinal(long meta) {
+    return (int) (meta >>> 11);
+  }
+
+  static int flags(long meta) {
+    return (int) meta & FLAGS_MASK;
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.plugins;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.DuplexConnection;
+import io.rsocket.frame.FrameHeaderFlyweight;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import javax.annotation.Nullable;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A {@link DuplexConnectionInterceptor} tracing the frames of connections cheaply enough to be
+ * enabled in production, as opposed to the {@code io.rsocket.FrameLogger} debug logs.
+ *
+ * <p>Only the header of the sampled frames is recorded, as a few longs in a lock-free ring buffer
+ * per connection. The records are formatted off the I/O threads, by {@link #drain(Consumer)} or a
+ * dumper started with {@link #startDumping(Duration, Consumer)}. When frames are traced faster than
+ * they are drained, the oldest records are overwritten and counted by {@link #droppedRecords()}.
+ *
+ * <p>Frames are sampled by stream, so that all the frames of a traced stream are traced. The
+ * sampling rate and an optional stream id filter can be changed at runtime. The frames of the
+ * connection itself, on stream 0, are traced whenever the sampling rate is not 0.
+ *
+ * <pre>{@code
+ * FrameTracer tracer = new FrameTracer(1024);
+ * RSocketServer.create().interceptors(registry -> registry.forConnection(tracer));
+ * tracer.setSampleRate(0.01);
+ * tracer.startLogging(Duration.ofSeconds(1));
+ * }</pre>
+ */
+public final class FrameTracer implements DuplexConnectionInterceptor {
+
+  private static final Logger logger = LoggerFactory.getLogger(FrameTracer.class);
+
+  private static final long SAMPLE_ALL = 1L << 32;
+
+  private final int capacity;
+  private final AtomicLong connectionIds = new AtomicLong();
+  private final Set<FrameTraceRing> rings = ConcurrentHashMap.newKeySet();
+
+  private volatile long sampleThreshold;
+  private volatile IntPredicate streamFilter;
+
+  private long droppedRecords;
+
+  /** @param capacity the number of records kept per connection, rounded up to a power of 2 */
+  public FrameTracer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /** Creates a tracer keeping 1024 records per connection, with sampling disabled. */
+  public FrameTracer() {
+    this(1024);
+  }
+
+  /**
+   * Sets the proportion of the streams whose frames are traced.
+   *
+   * @param sampleRate between 0, to trace nothing, and 1, to trace every frame
+   */
+  public void setSampleRate(double sampleRate) {
+    if (sampleRate < 0.0 || sampleRate > 1.0) {
+      throw new IllegalArgumentException("sampleRate must be in [0, 1]: " + sampleRate);
+    }
+    this.sampleThreshold = (long) (sampleRate * SAMPLE_ALL);
+  }
+
+  /**
+   * Traces the streams accepted by a filter instead of sampling them.
+   *
+   * @param streamFilter the filter of the stream ids to trace, or {@code null} to go back to
+   *     sampling
+   */
+  public void setStreamFilter(@Nullable IntPredicate streamFilter) {
+    this.streamFilter = streamFilter;
+  }
+
+  boolean isTraced(int streamId) {
+    IntPredicate streamFilter = this.streamFilter;
+    if (streamFilter != null) {
+      return streamFilter.test(streamId);
+    }
+    long sampleThreshold = this.sampleThreshold;
+    // spreads consecutive stream ids uniformly, stream 0 is always below the threshold
+    return sampleThreshold != 0 && ((streamId * 0x9E3779B9) & 0xFFFFFFFFL) < sampleThreshold;
+  }
+
+  @Override
+  public DuplexConnection apply(Type type, DuplexConnection connection) {
+    if (type != Type.SOURCE) {
+      return connection;
+    }
+
+    FrameTraceRing ring = new FrameTraceRing(connectionIds.incrementAndGet(), capacity);
+    rings.add(ring);
+    connection.onClose().doFinally(s -> ring.closed = true).subscribe();
+
+    return new TracingDuplexConnection(connection, ring);
+  }
+
+  /**
+   * Gives the records traced since the previous drain to a consumer, connection by connection. The
+   * records of closed connections are dropped once drained.
+   *
+   * @param consumer the consumer of the records, called on the calling thread
+   */
+  public synchronized void drain(Consumer<? super FrameTraceRecord> consumer) {
+    for (FrameTraceRing ring : rings) {
+      boolean closed = ring.closed;
+      long dropped = ring.dropped();
+      ring.drain(consumer);
+      droppedRecords += ring.dropped() - dropped;
+      if (closed) {
+        rings.remove(ring);
+      }
+    }
+  }
+
+  /**
+   * Periodically drains the records on a background thread.
+   *
+   * @param period the period between two drains
+   * @param consumer the consumer of the records
+   * @return the {@link Disposable} to stop the dumper
+   */
+  public Disposable startDumping(Duration period, Consumer<? super FrameTraceRecord> consumer) {
+    Objects.requireNonNull(consumer, "consumer must not be null");
+    return Flux.interval(period, Schedulers.single())
+        .subscribe(
+            i -> drain(consumer),
+            t -> logger.error("Frame tracer dumper terminated with error", t));
+  }
+
+  /**
+   * Periodically logs the records on a background thread, at info level.
+   *
+   * @param period the period between two drains
+   * @return the {@link Disposable} to stop the dumper
+   */
+  public Disposable startLogging(Duration period) {
+    return startDumping(period, record -> logger.info("{}", record));
+  }
+
+  /** @return the number of records overwritten before they could be drained */
+  public synchronized long droppedRecords() {
+    return droppedRecords;
+  }
+
+  private final class TracingDuplexConnection implements DuplexConnection {
+
+    private final DuplexConnection delegate;
+
+    private final FrameTraceRing ring;
+
+    private TracingDuplexConnection(DuplexConnection delegate, FrameTraceRing ring) {
+      this.delegate = delegate;
+      this.ring = ring;
+    }
+
+    private void trace(boolean outbound, ByteBuf frame) {
+      if (isTraced(FrameHeaderFlyweight.streamId(frame))) {
+        ring.record(outbound, frame);
+      }
+    }
+
+    @Override
+    public Mono<Void> send(Publisher<ByteBuf> frames) {
+      return delegate.send(Flux.from(frames).doOnNext(frame -> trace(true, frame)));
+    }
+
+    @Override
+    public Mono<Void> sendOne(ByteBuf frame) {
+      trace(true, frame);
+      return delegate.sendOne(frame);
+    }
+
+    @Override
+    public Flux<ByteBuf> receive() {
+      return delegate.receive().doOnNext(frame -> trace(false, frame));
+    }
+
+    @Override
+    public ByteBufAllocator alloc() {
+      return delegate.alloc();
+    }
+
+    @Override
+    public double availability() {
+      return delegate.availability();
+    }
+
+    @Override
+    public Mono<Void> onClose() {
+      return delegate.onClose();
+    }
+
+    @Override
+    public void dispose() {
+      delegate.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+      return delegate.isDisposed();
+    }
+  }
+}
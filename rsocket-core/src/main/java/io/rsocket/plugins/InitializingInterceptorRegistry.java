@@ -18,6 +18,8 @@
 import io.rsocket.DuplexConnection;
 import io.rsocket.RSocket;
 import io.rsocket.SocketAcceptor;
+import java.util.function.LongConsumer;
+import javax.annotation.Nullable;
 
 public class InitializingInterceptorRegistry extends InterceptorRegistry {
 
@@ -49,4 +51,18 @@ public SocketAcceptor initSocketAcceptor(SocketAcceptor acceptor) {
     }
     return acceptor;
   }
+
+  /**
+   * @return the consumer of the sampled send latencies of the connection, or {@code null} if no
+   *     {@link ConnectionInstrumentation} is registered
+   */
+  @Nullable
+  public LongConsumer initInstrumentation(ConnectionStats stats) {
+    LongConsumer latencyConsumer = null;
+    for (ConnectionInstrumentation instrumentation : getConnectionInstrumentations()) {
+      LongConsumer consumer = instrumentation.instrument(stats);
+      latencyConsumer = latencyConsumer == null ? consumer : latencyConsumer.andThen(consumer);
+    }
+    return latencyConsumer;
+  }
 }
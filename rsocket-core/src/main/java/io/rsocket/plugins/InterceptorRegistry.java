@@ -24,6 +24,7 @@ public class InterceptorRegistry {
   private List<RSocketInterceptor> requesterInteceptors = new ArrayList<>();
   private List<RSocketInterceptor> responderInterceptors = new ArrayList<>();
   private List<SocketAcceptorInterceptor> socketAcceptorInterceptors = new ArrayList<>();
+  private List<ConnectionInstrumentation> connectionInstrumentations = new ArrayList<>();
 
   public InterceptorRegistry forConnection(DuplexConnectionInterceptor interceptor) {
     connectionInterceptors.add(interceptor);
@@ -65,6 +66,17 @@ public InterceptorRegistry forSocketAcceptor(Consumer<List<SocketAcceptorInterce
     return this;
   }
 
+  public InterceptorRegistry forInstrumentation(ConnectionInstrumentation instrumentation) {
+    connectionInstrumentations.add(instrumentation);
+    return this;
+  }
+
+  public InterceptorRegistry forInstrumentation(
+      Consumer<List<ConnectionInstrumentation>> consumer) {
+    consumer.accept(connectionInstrumentations);
+    return this;
+  }
+
   List<DuplexConnectionInterceptor> getConnectionInterceptors() {
     return connectionInterceptors;
   }
@@ -80,4 +92,8 @@ List<RSocketInterceptor> getResponderInterceptors() {
   List<SocketAcceptorInterceptor> getSocketAcceptorInterceptors() {
     return socketAcceptorInterceptors;
   }
+
+  List<ConnectionInstrumentation> getConnectionInstrumentations() {
+    return connectionInstrumentations;
+  }
 }
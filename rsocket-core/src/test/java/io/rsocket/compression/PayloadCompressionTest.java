@@ -0,0 +1,307 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.compression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.core.RSocketConnector;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.exceptions.ConnectionErrorException;
+import io.rsocket.frame.FrameHeaderFlyweight;
+import io.rsocket.frame.FrameLengthFlyweight;
+import io.rsocket.frame.FrameType;
+import io.rsocket.frame.PayloadFrameFlyweight;
+import io.rsocket.frame.RequestFireAndForgetFrameFlyweight;
+import io.rsocket.frame.RequestResponseFrameFlyweight;
+import io.rsocket.frame.SetupFrameFlyweight;
+import io.rsocket.metadata.CompositeMetadata;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.test.util.TestClientTransport;
+import io.rsocket.test.util.TestDuplexConnection;
+import io.rsocket.test.util.TestServerTransport;
+import io.rsocket.util.DefaultPayload;
+import io.rsocket.util.EmptyPayload;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class PayloadCompressionTest {
+  private static final String COMPOSITE_METADATA =
+      WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString();
+  private static final byte[] DICTIONARY =
+      "{\"id\":\"name\":\"price\":\"quantity\":}".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  void compressesAndDecompressesFrames() {
+    for (PayloadCompression compression :
+        new PayloadCompression[] {
+          PayloadCompression.deflate(), PayloadCompression.deflate().level(9).dictionary(DICTIONARY)
+        }) {
+      FrameCompressor compressor = compression.newCompressor();
+      ByteBuf frame = requestResponse(5, json(100));
+
+      ByteBuf compressed = compressor.compress(ByteBufAllocator.DEFAULT, frame, Integer.MAX_VALUE);
+      assertThat(compressed).isNotNull();
+      assertThat(CompressionFrameFlyweight.isCompressed(compressed)).isTrue();
+      assertThat(FrameHeaderFlyweight.streamId(compressed)).isEqualTo(5);
+      assertThat(compressed.readableBytes()).isLessThan(frame.readableBytes() / 4);
+
+      ByteBuf decompressed =
+          compressor.decompress(
+              ByteBufAllocator.DEFAULT, compressed, FrameLengthFlyweight.FRAME_LENGTH_MASK);
+      assertThat(decompressed).isEqualTo(frame);
+
+      frame.release();
+      compressed.release();
+      decompressed.release();
+    }
+  }
+
+  @Test
+  void rejectsInvalidLengths() {
+    FrameCompressor compressor = PayloadCompression.deflate().newCompressor();
+    ByteBuf frame = requestResponse(5, json(100));
+    ByteBuf compressed = compressor.compress(ByteBufAllocator.DEFAULT, frame, Integer.MAX_VALUE);
+    int length = frame.readableBytes();
+    // the length of the original frame follows the header and the extended type
+    int lengthIndex = compressed.readerIndex() + FrameHeaderFlyweight.size() + Integer.BYTES;
+
+    for (int invalid : new int[] {-1, Integer.MAX_VALUE, length - 1, length + 1}) {
+      compressed.setInt(lengthIndex, invalid);
+      assertThatThrownBy(() -> compressor.decompress(ByteBufAllocator.DEFAULT, compressed, 1024))
+          .isInstanceOf(ConnectionErrorException.class);
+    }
+    compressed.setInt(lengthIndex, length);
+    assertThatThrownBy(() -> compressor.decompress(ByteBufAllocator.DEFAULT, compressed, 64))
+        .isInstanceOf(ConnectionErrorException.class);
+
+    frame.release();
+    compressed.release();
+  }
+
+  @Test
+  void rejectsCompressedFramesUntilNegotiated() {
+    PayloadCompression compression = PayloadCompression.deflate();
+    TestDuplexConnection connection = new TestDuplexConnection(ByteBufAllocator.DEFAULT);
+    CompressionDuplexConnection compressionConnection =
+        new CompressionDuplexConnection(
+            connection, compression, true, FrameLengthFlyweight.FRAME_LENGTH_MASK);
+    ByteBuf frame = requestResponse(5, json(100));
+
+    StepVerifier.create(compressionConnection.receive())
+        .then(
+            () ->
+                connection.addToReceivedBuffer(
+                    compression
+                        .newCompressor()
+                        .compress(ByteBufAllocator.DEFAULT, frame, Integer.MAX_VALUE)))
+        .expectError(ConnectionErrorException.class)
+        .verify(Duration.ofSeconds(5));
+
+    frame.release();
+  }
+
+  @Test
+  void doesNotCompressIncompressibleFrames() {
+    FrameCompressor compressor = PayloadCompression.deflate().newCompressor();
+    byte[] random = new byte[2048];
+    ThreadLocalRandom.current().nextBytes(random);
+    ByteBuf frame = requestResponse(1, random);
+
+    assertThat(compressor.compress(ByteBufAllocator.DEFAULT, frame, frame.readableBytes() - 1))
+        .isNull();
+    assertThat(compressor.compress(ByteBufAllocator.DEFAULT, requestResponse(1, json(100)), 64))
+        .isNull();
+    frame.release();
+  }
+
+  @Test
+  void clientCompressesOnceAccepted() {
+    PayloadCompression compression = PayloadCompression.deflate();
+    TestClientTransport transport = new TestClientTransport();
+    RSocket rSocket =
+        RSocketConnector.create()
+            .metadataMimeType(COMPOSITE_METADATA)
+            .compression(compression)
+            .connect(transport)
+            .block();
+    TestDuplexConnection connection = transport.testConnection();
+
+    ByteBuf setupFrame = connection.getSent().iterator().next();
+    assertThat(FrameHeaderFlyweight.frameType(setupFrame)).isEqualTo(FrameType.SETUP);
+    assertThat(offers(setupFrame)).hasSize(1);
+    assertThat(compression.matches(offers(setupFrame).get(0))).isTrue();
+    connection.clearSendReceiveBuffers();
+
+    // not compressed before the server accepts
+    rSocket.fireAndForget(DefaultPayload.create(json(100))).block();
+    assertThat(FrameHeaderFlyweight.frameType(lastSent(connection)))
+        .isEqualTo(FrameType.REQUEST_FNF);
+
+    connection.addToReceivedBuffer(
+        CompressionFrameFlyweight.encodeAccept(
+            ByteBufAllocator.DEFAULT, compression.encodeOffer(ByteBufAllocator.DEFAULT)));
+
+    rSocket.fireAndForget(DefaultPayload.create(json(100))).block();
+    ByteBuf compressed = lastSent(connection);
+    assertThat(CompressionFrameFlyweight.isCompressed(compressed)).isTrue();
+    ByteBuf frame =
+        compression
+            .newCompressor()
+            .decompress(
+                ByteBufAllocator.DEFAULT, compressed, FrameLengthFlyweight.FRAME_LENGTH_MASK);
+    assertThat(FrameHeaderFlyweight.frameType(frame)).isEqualTo(FrameType.REQUEST_FNF);
+    assertThat(RequestFireAndForgetFrameFlyweight.data(frame).toString(StandardCharsets.UTF_8))
+        .isEqualTo(new String(json(100), StandardCharsets.UTF_8));
+
+    // small frames are never compressed
+    rSocket.fireAndForget(DefaultPayload.create("small")).block();
+    assertThat(FrameHeaderFlyweight.frameType(lastSent(connection)))
+        .isEqualTo(FrameType.REQUEST_FNF);
+
+    frame.release();
+    rSocket.dispose();
+  }
+
+  @Test
+  void clientRequiresCompositeMetadata() {
+    StepVerifier.create(
+            RSocketConnector.create()
+                .compression(PayloadCompression.deflate())
+                .connect(new TestClientTransport()))
+        .expectError(IllegalStateException.class)
+        .verify();
+  }
+
+  @Test
+  void serverAcceptsMatchingOffer() throws InterruptedException {
+    PayloadCompression compression = PayloadCompression.deflate().dictionary(DICTIONARY);
+    TestDuplexConnection connection = new TestDuplexConnection(ByteBufAllocator.DEFAULT);
+    List<String> requests = new ArrayList<>();
+    RSocketServer.create(
+            (setup, sendingSocket) ->
+                Mono.just(
+                    new AbstractRSocket() {
+                      @Override
+                      public Mono<Payload> requestResponse(Payload payload) {
+                        requests.add(payload.getDataUtf8());
+                        payload.release();
+                        return Mono.just(DefaultPayload.create(json(50)));
+                      }
+                    }))
+        .compression(compression)
+        .asConnectionAcceptor()
+        .apply(connection)
+        .subscribe();
+
+    connection.addToReceivedBuffer(setupFrame(compression));
+    ByteBuf accept = connection.awaitSend();
+    assertThat(CompressionFrameFlyweight.isAccept(accept)).isTrue();
+    assertThat(compression.matches(CompressionFrameFlyweight.accepted(accept))).isTrue();
+
+    FrameCompressor compressor = compression.newCompressor();
+    ByteBuf request = requestResponse(1, json(100));
+    connection.addToReceivedBuffer(
+        compressor.compress(ByteBufAllocator.DEFAULT, request, Integer.MAX_VALUE));
+    assertThat(requests).containsExactly(new String(json(100), StandardCharsets.UTF_8));
+
+    ByteBuf compressed = connection.awaitSend();
+    assertThat(CompressionFrameFlyweight.isCompressed(compressed)).isTrue();
+    ByteBuf response =
+        compressor.decompress(
+            ByteBufAllocator.DEFAULT, compressed, FrameLengthFlyweight.FRAME_LENGTH_MASK);
+    assertThat(FrameHeaderFlyweight.frameType(response)).isEqualTo(FrameType.NEXT_COMPLETE);
+    assertThat(PayloadFrameFlyweight.data(response).toString(StandardCharsets.UTF_8))
+        .isEqualTo(new String(json(50), StandardCharsets.UTF_8));
+
+    request.release();
+    response.release();
+  }
+
+  @Test
+  void serverIgnoresMismatchingOffer() {
+    TestServerTransport transport = new TestServerTransport();
+    RSocketServer.create().compression(PayloadCompression.deflate()).bind(transport).block();
+    TestDuplexConnection connection = transport.connect();
+
+    connection.addToReceivedBuffer(setupFrame(PayloadCompression.deflate().dictionary(DICTIONARY)));
+
+    assertThat(connection.getSent()).isEmpty();
+  }
+
+  private static ByteBuf setupFrame(PayloadCompression compression) {
+    return SetupFrameFlyweight.encode(
+        ByteBufAllocator.DEFAULT,
+        false,
+        1000,
+        30_000,
+        COMPOSITE_METADATA,
+        "application/json",
+        compression.offer(ByteBufAllocator.DEFAULT, EmptyPayload.INSTANCE));
+  }
+
+  private static List<ByteBuf> offers(ByteBuf setupFrame) {
+    List<ByteBuf> offers = new ArrayList<>();
+    for (CompositeMetadata.Entry entry :
+        new CompositeMetadata(SetupFrameFlyweight.metadata(setupFrame), false)) {
+      if (PayloadCompression.MIME_TYPE.equals(entry.getMimeType())) {
+        offers.add(entry.getContent());
+      }
+    }
+    return offers;
+  }
+
+  private static ByteBuf lastSent(TestDuplexConnection connection) {
+    ByteBuf last = null;
+    for (ByteBuf frame : connection.getSent()) {
+      last = frame;
+    }
+    return last;
+  }
+
+  private static ByteBuf requestResponse(int streamId, byte[] data) {
+    return RequestResponseFrameFlyweight.encode(
+        ByteBufAllocator.DEFAULT, streamId, false, null, Unpooled.wrappedBuffer(data));
+  }
+
+  private static byte[] json(int items) {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < items; i++) {
+      json.append(i == 0 ? "" : ",")
+          .append("{\"id\":")
+          .append(i)
+          .append(",\"name\":\"item-")
+          .append(i % 7)
+          .append("\",\"price\":")
+          .append(i * 3 % 100)
+          .append(",\"quantity\":1}");
+    }
+    return json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
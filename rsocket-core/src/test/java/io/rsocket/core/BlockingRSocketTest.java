@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.rsocket.Payload;
+import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.DefaultPayload;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+public class BlockingRSocketTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void handlesRequestResponseOnTheExecutorAndReleasesTheRequest() {
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    BlockingRSocket rSocket =
+        BlockingRSocket.create(executor)
+            .onRequestResponse(
+                payload -> {
+                  thread.set(Thread.currentThread());
+                  return DefaultPayload.create("hello " + payload.getDataUtf8());
+                });
+    Payload request = ByteBufPayload.create("world");
+
+    Payload response = rSocket.requestResponse(request).block(Duration.ofSeconds(5));
+
+    Assertions.assertThat(response.getDataUtf8()).isEqualTo("hello world");
+    Assertions.assertThat(thread.get()).isNotSameAs(Thread.currentThread());
+    Assertions.assertThat(request.refCnt()).isZero();
+  }
+
+  @Test
+  public void completesEmptyWhenTheHandlerReturnsNull() {
+    BlockingRSocket rSocket = BlockingRSocket.create(executor).onRequestResponse(payload -> null);
+
+    Assertions.assertThat(
+            rSocket.requestResponse(DefaultPayload.create("")).block(Duration.ofSeconds(5)))
+        .isNull();
+  }
+
+  @Test
+  public void propagatesTheErrorsOfTheHandler() {
+    BlockingRSocket rSocket =
+        BlockingRSocket.create(executor)
+            .onRequestResponse(
+                payload -> {
+                  throw new IllegalStateException("boom");
+                });
+
+    Assertions.assertThatThrownBy(
+            () -> rSocket.requestResponse(DefaultPayload.create("")).block(Duration.ofSeconds(5)))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("boom");
+  }
+
+  @Test
+  public void interruptsTheHandlerOfACancelledStream() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    BlockingRSocket rSocket =
+        BlockingRSocket.create(executor)
+            .onRequestResponse(
+                payload -> {
+                  started.countDown();
+                  try {
+                    Thread.sleep(10_000);
+                  } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                  }
+                  return payload;
+                });
+    Payload request = ByteBufPayload.create("request");
+
+    Disposable subscription = rSocket.requestResponse(request).subscribe();
+    Assertions.assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    subscription.dispose();
+
+    Assertions.assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    Thread.sleep(50);
+    Assertions.assertThat(request.refCnt()).isZero();
+  }
+
+  @Test
+  public void handlesFireAndForget() throws InterruptedException {
+    CountDownLatch handled = new CountDownLatch(1);
+    BlockingRSocket rSocket =
+        BlockingRSocket.create(executor)
+            .onFireAndForget(
+                payload -> {
+                  Assertions.assertThat(payload.getDataUtf8()).isEqualTo("event");
+                  handled.countDown();
+                });
+
+    rSocket.fireAndForget(DefaultPayload.create("event")).block(Duration.ofSeconds(5));
+
+    Assertions.assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void rejectsUnhandledInteractions() {
+    BlockingRSocket rSocket = BlockingRSocket.create(executor);
+
+    Assertions.assertThatThrownBy(
+            () -> rSocket.requestResponse(DefaultPayload.create("")).block(Duration.ofSeconds(5)))
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  public void releasesTheRequestWhenTheExecutorRejectsTheCall() {
+    BlockingRSocket rSocket =
+        BlockingRSocket.create(executor).onRequestResponse(payload -> payload);
+    executor.shutdown();
+    Payload request = ByteBufPayload.create("request");
+
+    Assertions.assertThatThrownBy(() -> rSocket.requestResponse(request).block())
+        .isInstanceOf(RejectedExecutionException.class);
+    Assertions.assertThat(request.refCnt()).isZero();
+  }
+
+  @Test
+  public void virtualThreadsRequireJdk21() {
+    Assumptions.assumeFalse(VirtualThreads.isSupported());
+
+    Assertions.assertThatThrownBy(BlockingRSocket::create)
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  public void runsEachCallOnAVirtualThread() {
+    Assumptions.assumeTrue(VirtualThreads.isSupported());
+    BlockingRSocket rSocket =
+        BlockingRSocket.create()
+            .onRequestResponse(payload -> DefaultPayload.create(Thread.currentThread().getName()));
+
+    Payload response =
+        rSocket.requestResponse(DefaultPayload.create("")).block(Duration.ofSeconds(5));
+
+    Assertions.assertThat(response.getDataUtf8()).startsWith("rsocket-blocking-");
+  }
+}
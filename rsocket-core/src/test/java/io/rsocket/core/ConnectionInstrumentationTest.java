@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.rsocket.RSocket;
+import io.rsocket.compression.PayloadCompression;
+import io.rsocket.fragmentation.ReassemblyDuplexConnection;
+import io.rsocket.frame.RequestResponseFrameFlyweight;
+import io.rsocket.frame.SetupFrameFlyweight;
+import io.rsocket.plugins.ConnectionStats;
+import io.rsocket.test.util.TestClientTransport;
+import io.rsocket.test.util.TestDuplexConnection;
+import io.rsocket.util.DefaultPayload;
+import io.rsocket.util.EmptyPayload;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+public class ConnectionInstrumentationTest {
+
+  @Test
+  void instrumentsClientConnections() {
+    AtomicReference<ConnectionStats> stats = new AtomicReference<>();
+    List<Long> latencies = new ArrayList<>();
+    TestClientTransport transport = new TestClientTransport();
+
+    RSocket rSocket =
+        RSocketConnector.create()
+            .interceptors(
+                registry ->
+                    registry.forInstrumentation(
+                        connectionStats -> {
+                          stats.set(connectionStats);
+                          return latencies::add;
+                        }))
+            .connect(transport)
+            .block();
+
+    assertThat(stats.get().side()).isEqualTo("client");
+    assertThat(stats.get().activeReceivers()).isZero();
+
+    Disposable stream = rSocket.requestStream(DefaultPayload.create("test")).subscribe();
+
+    assertThat(stats.get().activeReceivers()).isOne();
+    assertThat(stats.get().pendingSendFrames()).isZero();
+    assertThat(stats.get().reassemblyBytes()).isZero();
+    assertThat(latencies).hasSize(1);
+
+    stream.dispose();
+    assertThat(stats.get().activeReceivers()).isZero();
+    rSocket.dispose();
+  }
+
+  @Test
+  void instrumentsServerConnectionsReassemblingCompressedFrames() {
+    AtomicReference<ConnectionStats> stats = new AtomicReference<>();
+    TestDuplexConnection connection = new TestDuplexConnection(ByteBufAllocator.DEFAULT);
+    PayloadCompression compression = PayloadCompression.deflate();
+
+    RSocketServer.create()
+        .compression(compression)
+        .interceptors(
+            registry ->
+                registry.forInstrumentation(
+                    connectionStats -> {
+                      stats.set(connectionStats);
+                      return null;
+                    }))
+        .asConnectionAcceptor()
+        .apply(new ReassemblyDuplexConnection(connection, false))
+        .subscribe();
+
+    connection.addToReceivedBuffer(
+        SetupFrameFlyweight.encode(
+            ByteBufAllocator.DEFAULT,
+            false,
+            1000,
+            30_000,
+            "application/binary",
+            "application/binary",
+            compression.offer(ByteBufAllocator.DEFAULT, EmptyPayload.INSTANCE)));
+
+    assertThat(stats.get().side()).isEqualTo("server");
+    assertThat(stats.get().reassemblyBytes()).isZero();
+
+    connection.addToReceivedBuffer(
+        RequestResponseFrameFlyweight.encode(
+            ByteBufAllocator.DEFAULT, 1, true, null, Unpooled.wrappedBuffer(new byte[64])));
+
+    assertThat(stats.get().reassemblyBytes()).isPositive();
+  }
+}
@@ -76,6 +76,66 @@ void testSetupPayloadWithEmptyMetadata() {
     frame.release();
   }
 
+  @Test
+  void testServerSetupDecodesSameMimeTypesOnce() {
+    ServerSetup serverSetup = new ServerSetup.DefaultServerSetup();
+    ByteBuf frame = encodeSetupFrame(false, DefaultPayload.create("data"));
+    ByteBuf otherFrame = encodeSetupFrame(true, DefaultPayload.create("other data"));
+    ByteBuf textFrame =
+        SetupFrameFlyweight.encode(
+            ByteBufAllocator.DEFAULT,
+            false,
+            KEEP_ALIVE_INTERVAL,
+            KEEP_ALIVE_MAX_LIFETIME,
+            METADATA_TYPE,
+            "text/plain",
+            DefaultPayload.create("data"));
+
+    ConnectionSetupPayload setupPayload = serverSetup.setupPayload(frame);
+    ConnectionSetupPayload otherSetupPayload = serverSetup.setupPayload(otherFrame);
+    ConnectionSetupPayload textSetupPayload = serverSetup.setupPayload(textFrame);
+
+    assertEquals(METADATA_TYPE, setupPayload.metadataMimeType());
+    assertEquals(DATA_TYPE, setupPayload.dataMimeType());
+    assertSame(setupPayload.metadataMimeType(), otherSetupPayload.metadataMimeType());
+    assertSame(setupPayload.dataMimeType(), otherSetupPayload.dataMimeType());
+    assertTrue(otherSetupPayload.willClientHonorLease());
+    assertEquals("other data", otherSetupPayload.getDataUtf8());
+    assertEquals(METADATA_TYPE, textSetupPayload.metadataMimeType());
+    assertEquals("text/plain", textSetupPayload.dataMimeType());
+    setupPayload.release();
+    otherSetupPayload.release();
+    textSetupPayload.release();
+  }
+
+  @Test
+  void testServerSetupKeepsCachingOnceFull() {
+    ServerSetup serverSetup = new ServerSetup.DefaultServerSetup();
+    for (int i = 0; i < ServerSetup.MAX_CACHED_MIME_TYPES; i++) {
+      serverSetup.setupPayload(encodeSetupFrame("type/" + i)).release();
+    }
+
+    ConnectionSetupPayload setupPayload = serverSetup.setupPayload(encodeSetupFrame("text/plain"));
+    ConnectionSetupPayload otherSetupPayload =
+        serverSetup.setupPayload(encodeSetupFrame("text/plain"));
+
+    assertEquals("text/plain", setupPayload.dataMimeType());
+    assertSame(setupPayload.dataMimeType(), otherSetupPayload.dataMimeType());
+    setupPayload.release();
+    otherSetupPayload.release();
+  }
+
+  private static ByteBuf encodeSetupFrame(String dataMimeType) {
+    return SetupFrameFlyweight.encode(
+        ByteBufAllocator.DEFAULT,
+        false,
+        KEEP_ALIVE_INTERVAL,
+        KEEP_ALIVE_MAX_LIFETIME,
+        METADATA_TYPE,
+        dataMimeType,
+        DefaultPayload.create("data"));
+  }
+
   private static ByteBuf encodeSetupFrame(boolean leaseEnabled, Payload setupPayload) {
     return SetupFrameFlyweight.encode(
         ByteBufAllocator.DEFAULT,
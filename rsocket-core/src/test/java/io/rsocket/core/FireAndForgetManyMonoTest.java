@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import static io.rsocket.frame.FrameHeaderFlyweight.frameType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCounted;
+import io.rsocket.Payload;
+import io.rsocket.buffer.LeaksTrackingByteBufAllocator;
+import io.rsocket.frame.FrameHeaderFlyweight;
+import io.rsocket.frame.FrameType;
+import io.rsocket.frame.RequestFireAndForgetFrameFlyweight;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.lease.MissingLeaseException;
+import io.rsocket.lease.RequesterLeaseHandler;
+import io.rsocket.test.util.TestDuplexConnection;
+import io.rsocket.util.ByteBufPayload;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.test.StepVerifier;
+
+public class FireAndForgetManyMonoTest {
+
+  LeaksTrackingByteBufAllocator allocator;
+  TestDuplexConnection connection;
+
+  @BeforeEach
+  public void setUp() {
+    Hooks.onErrorDropped((t) -> {});
+    allocator = LeaksTrackingByteBufAllocator.instrument(ByteBufAllocator.DEFAULT);
+    connection = new TestDuplexConnection(allocator);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Hooks.resetOnErrorDropped();
+  }
+
+  @Test
+  public void sendsSynchronousSourceInOrder() {
+    RSocketRequester requester = requester(RequesterLeaseHandler.None);
+
+    StepVerifier.create(requester.fireAndForgetMany(Flux.range(0, 600).map(this::payload)))
+        .expectComplete()
+        .verify(Duration.ofSeconds(5));
+
+    assertSent(600);
+    allocator.assertHasNoLeaks();
+  }
+
+  @Test
+  public void sendsAsynchronousSourceInOrder() {
+    RSocketRequester requester = requester(RequesterLeaseHandler.None);
+    UnicastProcessor<Payload> fused = UnicastProcessor.create();
+
+    StepVerifier.create(requester.fireAndForgetMany(fused))
+        .then(
+            () -> {
+              for (int i = 0; i < 300; i++) {
+                fused.onNext(payload(i));
+              }
+              fused.onComplete();
+            })
+        .expectComplete()
+        .verify(Duration.ofSeconds(5));
+
+    assertSent(300);
+    allocator.assertHasNoLeaks();
+  }
+
+  @Test
+  public void stopsWhenLeaseIsExhausted() {
+    AtomicInteger allowed = new AtomicInteger(3);
+    RSocketRequester requester =
+        requester(
+            new RequesterLeaseHandler() {
+              @Override
+              public boolean useLease() {
+                return allowed.getAndDecrement() > 0;
+              }
+
+              @Override
+              public Exception leaseError() {
+                return new MissingLeaseException("test");
+              }
+
+              @Override
+              public void receive(ByteBuf leaseFrame) {}
+
+              @Override
+              public void dispose() {}
+
+              @Override
+              public double availability() {
+                return 1.0;
+              }
+            });
+
+    StepVerifier.create(requester.fireAndForgetMany(Flux.range(0, 10).map(this::payload).hide()))
+        .expectError(MissingLeaseException.class)
+        .verify(Duration.ofSeconds(5));
+
+    assertSent(3);
+    allocator.assertHasNoLeaks();
+  }
+
+  private void assertSent(int count) {
+    List<ByteBuf> sent = new ArrayList<>(connection.getSent());
+    Assertions.assertThat(sent).hasSize(count);
+    int previousStreamId = -1;
+    for (int i = 0; i < count; i++) {
+      ByteBuf frame = sent.get(i);
+      Assertions.assertThat(frameType(frame)).isEqualTo(FrameType.REQUEST_FNF);
+      int streamId = FrameHeaderFlyweight.streamId(frame);
+      Assertions.assertThat(streamId).isGreaterThan(previousStreamId);
+      previousStreamId = streamId;
+      Assertions.assertThat(
+              RequestFireAndForgetFrameFlyweight.data(frame).toString(StandardCharsets.UTF_8))
+          .isEqualTo("d" + i);
+      Assertions.assertThat(
+              RequestFireAndForgetFrameFlyweight.metadata(frame).toString(StandardCharsets.UTF_8))
+          .isEqualTo("m" + i);
+    }
+    sent.forEach(ReferenceCounted::release);
+  }
+
+  private Payload payload(int i) {
+    ByteBuf data = allocator.buffer().writeBytes(("d" + i).getBytes(StandardCharsets.UTF_8));
+    ByteBuf metadata = allocator.buffer().writeBytes(("m" + i).getBytes(StandardCharsets.UTF_8));
+    return ByteBufPayload.create(data, metadata);
+  }
+
+  private RSocketRequester requester(RequesterLeaseHandler leaseHandler) {
+    return new RSocketRequester(
+        connection,
+        PayloadDecoder.ZERO_COPY,
+        t -> {},
+        StreamIdSupplier.clientSupplier(),
+        0,
+        0,
+        0,
+        null,
+        leaseHandler);
+  }
+}
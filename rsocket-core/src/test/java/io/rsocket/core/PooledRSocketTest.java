@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.test.util.TestClientTransport;
+import io.rsocket.util.EmptyPayload;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.SignalType;
+
+public class PooledRSocketTest {
+
+  private final List<HangingRSocket> connections = new CopyOnWriteArrayList<>();
+  private final Mono<RSocket> source =
+      Mono.fromSupplier(
+          () -> {
+            HangingRSocket rSocket = new HangingRSocket();
+            connections.add(rSocket);
+            return rSocket;
+          });
+
+  @Test
+  public void opensTheMinimumNumberOfConnections() {
+    PooledRSocket pool = start(new ConnectionPool().minConnections(3).maxConnections(5));
+
+    Assertions.assertThat(pool.size()).isEqualTo(3);
+    Assertions.assertThat(connections).hasSize(3);
+    pool.dispose();
+  }
+
+  @Test
+  public void dispatchesToTheLeastLoadedConnection() {
+    PooledRSocket pool = start(new ConnectionPool().minConnections(3).maxConnections(3));
+
+    Disposable[] requests = new Disposable[9];
+    for (int i = 0; i < requests.length; i++) {
+      requests[i] = pool.requestResponse(EmptyPayload.INSTANCE).subscribe();
+    }
+    connections.forEach(c -> Assertions.assertThat(c.requests.get()).isEqualTo(3));
+
+    // the released connection gets the next request
+    requests[4].dispose();
+    pool.requestResponse(EmptyPayload.INSTANCE).subscribe();
+    Assertions.assertThat(connections.get(1).requests.get()).isEqualTo(4);
+    pool.dispose();
+  }
+
+  @Test
+  public void growsWhenEveryConnectionReachesTheTargetStreams() {
+    PooledRSocket pool =
+        start(new ConnectionPool().minConnections(1).maxConnections(3).targetStreams(2));
+
+    for (int i = 0; i < 10; i++) {
+      pool.requestStream(EmptyPayload.INSTANCE).subscribe();
+    }
+
+    Assertions.assertThat(pool.size()).isEqualTo(3);
+    // beyond the maximum, the streams are spread evenly
+    Assertions.assertThat(connections.get(0).requests.get()).isEqualTo(4);
+    Assertions.assertThat(connections.get(1).requests.get()).isEqualTo(3);
+    Assertions.assertThat(connections.get(2).requests.get()).isEqualTo(3);
+    pool.dispose();
+  }
+
+  @Test
+  public void saturatedPoolSelectsWithoutLocking() throws InterruptedException {
+    PooledRSocket pool =
+        start(new ConnectionPool().minConnections(2).maxConnections(2).targetStreams(1));
+    Thread dispatcher =
+        new Thread(
+            () -> {
+              for (int i = 0; i < 4; i++) {
+                pool.requestResponse(EmptyPayload.INSTANCE).subscribe();
+              }
+            });
+
+    synchronized (pool) {
+      dispatcher.start();
+      dispatcher.join(5_000);
+      Assertions.assertThat(dispatcher.isAlive()).isFalse();
+    }
+    connections.forEach(c -> Assertions.assertThat(c.requests.get()).isEqualTo(2));
+    pool.dispose();
+  }
+
+  @Test
+  public void replacesClosedConnections() {
+    PooledRSocket pool = start(new ConnectionPool().minConnections(2).maxConnections(2));
+
+    connections.get(0).dispose();
+
+    Assertions.assertThat(pool.size()).isEqualTo(2);
+    Assertions.assertThat(connections).hasSize(3);
+    pool.requestResponse(EmptyPayload.INSTANCE).subscribe();
+    Assertions.assertThat(connections.get(0).requests.get()).isZero();
+    pool.dispose();
+  }
+
+  @Test
+  public void closesIdleConnections() throws InterruptedException {
+    PooledRSocket pool =
+        start(
+            new ConnectionPool()
+                .minConnections(1)
+                .maxConnections(2)
+                .targetStreams(1)
+                .idleTimeout(Duration.ofMillis(50)));
+
+    Disposable first = pool.requestResponse(EmptyPayload.INSTANCE).subscribe();
+    Disposable second = pool.requestResponse(EmptyPayload.INSTANCE).subscribe();
+    Assertions.assertThat(pool.size()).isEqualTo(2);
+
+    first.dispose();
+    second.dispose();
+    Thread.sleep(300);
+
+    Assertions.assertThat(pool.size()).isEqualTo(1);
+    Assertions.assertThat(connections.stream().filter(RSocket::isDisposed)).hasSize(1);
+    pool.dispose();
+  }
+
+  @Test
+  public void idleConnectionsClaimedForClosingAreNotAcquired() {
+    PooledRSocket.Member member = new PooledRSocket.Member(new HangingRSocket());
+
+    Assertions.assertThat(member.tryAcquire()).isTrue();
+    // in flight, cannot be claimed
+    Assertions.assertThat(
+            PooledRSocket.Member.IN_FLIGHT.compareAndSet(member, 0, PooledRSocket.Member.CLOSING))
+        .isFalse();
+    member.accept(SignalType.ON_COMPLETE);
+
+    Assertions.assertThat(
+            PooledRSocket.Member.IN_FLIGHT.compareAndSet(member, 0, PooledRSocket.Member.CLOSING))
+        .isTrue();
+    Assertions.assertThat(member.tryAcquire()).isFalse();
+    Assertions.assertThat(member.inFlight).isEqualTo(PooledRSocket.Member.CLOSING);
+  }
+
+  @Test
+  public void failsAndDisposesWhenTheFirstConnectionFails() {
+    PooledRSocket pool =
+        new PooledRSocket(Mono.error(new IllegalStateException("boom")), new ConnectionPool());
+
+    Assertions.assertThatThrownBy(() -> pool.start().block())
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("boom");
+    Assertions.assertThat(pool.isDisposed()).isTrue();
+  }
+
+  @Test
+  public void disposesEveryConnection() {
+    PooledRSocket pool = start(new ConnectionPool().minConnections(2).maxConnections(2));
+
+    pool.dispose();
+
+    Assertions.assertThat(connections).allMatch(RSocket::isDisposed);
+    Assertions.assertThat(pool.onClose().block(Duration.ofSeconds(5))).isNull();
+    Assertions.assertThatThrownBy(() -> pool.requestResponse(EmptyPayload.INSTANCE).block())
+        .hasMessage("Disposed");
+  }
+
+  @Test
+  public void connectorCreatesAPool() {
+    RSocket rSocket =
+        RSocketConnector.create()
+            .pool(new ConnectionPool().minConnections(2).maxConnections(2))
+            .connect(TestClientTransport::new)
+            .block();
+
+    Assertions.assertThat(rSocket).isInstanceOf(PooledRSocket.class);
+    Assertions.assertThat(((PooledRSocket) rSocket).size()).isEqualTo(2);
+    rSocket.dispose();
+  }
+
+  private PooledRSocket start(ConnectionPool config) {
+    return (PooledRSocket) new PooledRSocket(source, config).start().block();
+  }
+
+  private static class HangingRSocket extends AbstractRSocket {
+    final AtomicInteger requests = new AtomicInteger();
+
+    @Override
+    public Mono<Payload> requestResponse(Payload payload) {
+      requests.incrementAndGet();
+      return MonoProcessor.create();
+    }
+
+    @Override
+    public Flux<Payload> requestStream(Payload payload) {
+      requests.incrementAndGet();
+      return Flux.never();
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import static io.rsocket.frame.FrameHeaderFlyweight.frameType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import io.rsocket.Payload;
+import io.rsocket.frame.FrameType;
+import io.rsocket.frame.PayloadFrameFlyweight;
+import io.rsocket.internal.subscriber.AssertSubscriber;
+import io.rsocket.util.ByteBufPayload;
+import java.util.ArrayList;
+import java.util.List;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runners.model.Statement;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.test.util.RaceTestUtils;
+
+public class RequestResponseRequesterMonoTest {
+
+  RSocketRequesterTest.ClientSocketRule rule;
+
+  @BeforeEach
+  public void setUp() throws Throwable {
+    Hooks.onNextDropped(ReferenceCountUtil::safeRelease);
+    Hooks.onErrorDropped((t) -> {});
+    rule = new RSocketRequesterTest.ClientSocketRule();
+    rule.apply(
+            new Statement() {
+              @Override
+              public void evaluate() {}
+            },
+            null)
+        .evaluate();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Hooks.resetOnErrorDropped();
+    Hooks.resetOnNextDropped();
+  }
+
+  @Test
+  public void responseIsHeldUntilRequested() {
+    Mono<Payload> response = rule.socket.requestResponse(ByteBufPayload.create("hello"));
+    AssertSubscriber<Payload> subscriber = AssertSubscriber.create(0);
+    response.subscribe(subscriber);
+
+    int streamId = rule.getStreamIdForRequestType(FrameType.REQUEST_RESPONSE);
+    rule.connection.addToReceivedBuffer(
+        PayloadFrameFlyweight.encodeNextCompleteReleasingPayload(
+            rule.alloc(), streamId, ByteBufPayload.create("world")));
+
+    subscriber.assertNoValues().assertNotTerminated();
+
+    subscriber.request(1);
+
+    subscriber.assertValueCount(1).assertComplete();
+    Assertions.assertThat(subscriber.values().get(0).getDataUtf8()).isEqualTo("world");
+    subscriber.values().forEach(ReferenceCounted::release);
+    Assertions.assertThat(rule.connection.getSent()).hasSize(1).allMatch(ReferenceCounted::release);
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void cancelBeforeResponseSendsCancelFrame() {
+    Mono<Payload> response = rule.socket.requestResponse(ByteBufPayload.create("hello"));
+    AssertSubscriber<Payload> subscriber = AssertSubscriber.create();
+    response.subscribe(subscriber);
+
+    subscriber.cancel();
+
+    List<ByteBuf> sent = new ArrayList<>(rule.connection.getSent());
+    Assertions.assertThat(sent).hasSize(2);
+    Assertions.assertThat(frameType(sent.get(0))).isEqualTo(FrameType.REQUEST_RESPONSE);
+    Assertions.assertThat(frameType(sent.get(1))).isEqualTo(FrameType.CANCEL);
+    subscriber.assertNoValues().assertNotTerminated();
+    sent.forEach(ReferenceCounted::release);
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void cancelRacingSubscribeNeverSendsCancelBeforeRequest() {
+    for (int i = 0; i < 10_000; i++) {
+      Mono<Payload> response = rule.socket.requestResponse(ByteBufPayload.create("hello"));
+      AssertSubscriber<Payload> subscriber = AssertSubscriber.create();
+
+      RaceTestUtils.race(() -> response.subscribe(subscriber), subscriber::cancel);
+
+      List<ByteBuf> sent = new ArrayList<>(rule.connection.getSent());
+      if (!sent.isEmpty()) {
+        Assertions.assertThat(sent).hasSize(2);
+        Assertions.assertThat(frameType(sent.get(0))).isEqualTo(FrameType.REQUEST_RESPONSE);
+        Assertions.assertThat(frameType(sent.get(1))).isEqualTo(FrameType.CANCEL);
+      }
+      subscriber.assertNoValues().assertNotTerminated();
+      sent.forEach(ReferenceCounted::release);
+      rule.connection.clearSendReceiveBuffers();
+    }
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void cancelAfterStoredResponseReleasesIt() {
+    Mono<Payload> response = rule.socket.requestResponse(ByteBufPayload.create("hello"));
+    AssertSubscriber<Payload> subscriber = AssertSubscriber.create(0);
+    response.subscribe(subscriber);
+
+    int streamId = rule.getStreamIdForRequestType(FrameType.REQUEST_RESPONSE);
+    rule.connection.addToReceivedBuffer(
+        PayloadFrameFlyweight.encodeNextCompleteReleasingPayload(
+            rule.alloc(), streamId, ByteBufPayload.create("world")));
+    subscriber.cancel();
+
+    subscriber.assertNoValues().assertNotTerminated();
+    // the response already completed the stream, no CANCEL frame is needed
+    Assertions.assertThat(rule.connection.getSent()).hasSize(1).allMatch(ReferenceCounted::release);
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void terminationBeforeSubscribeReleasesRequest() {
+    Mono<Payload> response = rule.socket.requestResponse(ByteBufPayload.create("hello"));
+    rule.socket.dispose();
+
+    AssertSubscriber<Payload> subscriber = AssertSubscriber.create();
+    response.subscribe(subscriber);
+
+    subscriber.assertTerminated().assertError();
+    Assertions.assertThat(rule.connection.getSent()).isEmpty();
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void rejectsSecondSubscriber() {
+    Mono<Payload> response = rule.socket.requestResponse(ByteBufPayload.create("hello"));
+    AssertSubscriber<Payload> first = AssertSubscriber.create();
+    AssertSubscriber<Payload> second = AssertSubscriber.create();
+    response.subscribe(first);
+    response.subscribe(second);
+
+    second
+        .assertError(IllegalStateException.class)
+        .assertErrorMessage("RequestResponseRequesterMono allows only a single Subscriber");
+    first.assertNotTerminated();
+
+    first.cancel();
+    Assertions.assertThat(rule.connection.getSent()).hasSize(2).allMatch(ReferenceCounted::release);
+    rule.assertHasNoLeaks();
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import static io.rsocket.frame.FrameHeaderFlyweight.frameType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import io.rsocket.Payload;
+import io.rsocket.frame.FrameType;
+import io.rsocket.frame.PayloadFrameFlyweight;
+import io.rsocket.frame.RequestNFrameFlyweight;
+import io.rsocket.frame.RequestStreamFrameFlyweight;
+import io.rsocket.internal.subscriber.AssertSubscriber;
+import io.rsocket.util.ByteBufPayload;
+import java.util.ArrayList;
+import java.util.List;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.runners.model.Statement;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+
+public class RequestStreamRequesterFluxTest {
+
+  RSocketRequesterTest.ClientSocketRule rule;
+
+  @BeforeEach
+  public void setUp() throws Throwable {
+    Hooks.onNextDropped(ReferenceCountUtil::safeRelease);
+    Hooks.onErrorDropped((t) -> {});
+    rule = new RSocketRequesterTest.ClientSocketRule();
+    rule.apply(
+            new Statement() {
+              @Override
+              public void evaluate() {}
+            },
+            null)
+        .evaluate();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Hooks.resetOnErrorDropped();
+    Hooks.resetOnNextDropped();
+  }
+
+  @Test
+  public void requestsAreSentInOrderAfterSubscription() {
+    Flux<Payload> stream = rule.socket.requestStream(ByteBufPayload.create("hello"));
+    BaseSubscriber<Payload> subscriber =
+        new BaseSubscriber<Payload>() {
+          @Override
+          protected void hookOnSubscribe(Subscription subscription) {
+            subscription.request(2);
+            subscription.request(3);
+            // nothing is sent before onSubscribe returns
+            Assertions.assertThat(rule.connection.getSent()).isEmpty();
+          }
+
+          @Override
+          protected void hookOnNext(Payload value) {
+            value.release();
+          }
+        };
+    stream.subscribe(subscriber);
+    subscriber.request(4);
+
+    List<ByteBuf> sent = new ArrayList<>(rule.connection.getSent());
+    Assertions.assertThat(sent).hasSize(2);
+    Assertions.assertThat(frameType(sent.get(0))).isEqualTo(FrameType.REQUEST_STREAM);
+    Assertions.assertThat(RequestStreamFrameFlyweight.initialRequestN(sent.get(0))).isEqualTo(5L);
+    Assertions.assertThat(frameType(sent.get(1))).isEqualTo(FrameType.REQUEST_N);
+    Assertions.assertThat(RequestNFrameFlyweight.requestN(sent.get(1))).isEqualTo(4L);
+
+    subscriber.dispose();
+    Assertions.assertThat(rule.connection.getSent()).hasSize(3).allMatch(ReferenceCounted::release);
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void unboundedDemandIsSentOnce() {
+    Flux<Payload> stream = rule.socket.requestStream(ByteBufPayload.create("hello"));
+    AssertSubscriber<Payload> subscriber = AssertSubscriber.create(Long.MAX_VALUE);
+    stream.subscribe(subscriber);
+    subscriber.request(10);
+
+    Assertions.assertThat(rule.connection.getSent()).hasSize(1);
+    ByteBuf frame = rule.connection.getSent().iterator().next();
+    Assertions.assertThat(RequestStreamFrameFlyweight.initialRequestN(frame))
+        .isEqualTo(Long.MAX_VALUE);
+
+    int streamId = rule.getStreamIdForRequestType(FrameType.REQUEST_STREAM);
+    rule.connection.addToReceivedBuffer(
+        PayloadFrameFlyweight.encodeNextReleasingPayload(
+            rule.alloc(), streamId, ByteBufPayload.create("a")),
+        PayloadFrameFlyweight.encodeNextCompleteReleasingPayload(
+            rule.alloc(), streamId, ByteBufPayload.create("b")));
+
+    subscriber.assertValueCount(2).assertComplete();
+    subscriber.values().forEach(ReferenceCounted::release);
+    Assertions.assertThat(rule.socket.activeReceivers()).isZero();
+    Assertions.assertThat(rule.connection.getSent()).hasSize(1).allMatch(ReferenceCounted::release);
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void cancelBeforeRequestReleasesPayload() {
+    Flux<Payload> stream = rule.socket.requestStream(ByteBufPayload.create("hello"));
+    AssertSubscriber<Payload> subscriber = AssertSubscriber.create(0);
+    stream.subscribe(subscriber);
+
+    subscriber.cancel();
+    subscriber.request(1);
+
+    Assertions.assertThat(rule.connection.getSent()).isEmpty();
+    Assertions.assertThat(rule.socket.activeReceivers()).isZero();
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void cancelAfterRequestSendsCancelFrame() {
+    Flux<Payload> stream = rule.socket.requestStream(ByteBufPayload.create("hello"));
+    AssertSubscriber<Payload> subscriber = AssertSubscriber.create(1);
+    stream.subscribe(subscriber);
+
+    subscriber.cancel();
+
+    List<ByteBuf> sent = new ArrayList<>(rule.connection.getSent());
+    Assertions.assertThat(sent).hasSize(2);
+    Assertions.assertThat(frameType(sent.get(0))).isEqualTo(FrameType.REQUEST_STREAM);
+    Assertions.assertThat(frameType(sent.get(1))).isEqualTo(FrameType.CANCEL);
+    sent.forEach(ReferenceCounted::release);
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void terminationBeforeSubscribeReleasesRequest() {
+    Flux<Payload> stream = rule.socket.requestStream(ByteBufPayload.create("hello"));
+    rule.socket.dispose();
+
+    AssertSubscriber<Payload> subscriber = AssertSubscriber.create();
+    stream.subscribe(subscriber);
+
+    subscriber.assertNoValues().assertError();
+    Assertions.assertThat(rule.connection.getSent()).isEmpty();
+    rule.assertHasNoLeaks();
+  }
+
+  @Test
+  public void rejectsSecondSubscriber() {
+    Flux<Payload> stream = rule.socket.requestStream(ByteBufPayload.create("hello"));
+    AssertSubscriber<Payload> first = AssertSubscriber.create(0);
+    AssertSubscriber<Payload> second = AssertSubscriber.create(0);
+    stream.subscribe(first);
+    stream.subscribe(second);
+
+    second
+        .assertError(IllegalStateException.class)
+        .assertErrorMessage("RequestStreamRequesterFlux allows only a single Subscriber");
+
+    first.cancel();
+    rule.assertHasNoLeaks();
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import static io.rsocket.frame.FrameHeaderFlyweight.frameType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCounted;
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.buffer.LeaksTrackingByteBufAllocator;
+import io.rsocket.frame.CancelFrameFlyweight;
+import io.rsocket.frame.FrameType;
+import io.rsocket.frame.RequestNFrameFlyweight;
+import io.rsocket.frame.RequestStreamFrameFlyweight;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.lease.ResponderLeaseHandler;
+import io.rsocket.test.util.TestDuplexConnection;
+import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.EmptyPayload;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+public class RequestStreamResponderSubscriberTest {
+
+  LeaksTrackingByteBufAllocator allocator;
+  TestDuplexConnection connection;
+  List<Throwable> errors;
+
+  @BeforeEach
+  public void setUp() {
+    allocator = LeaksTrackingByteBufAllocator.instrument(ByteBufAllocator.DEFAULT);
+    connection = new TestDuplexConnection(allocator);
+    errors = new ArrayList<>();
+  }
+
+  @Test
+  public void synchronousSourceIsPolledOnDemand() {
+    AtomicInteger generated = new AtomicInteger();
+    responder(
+        new AbstractRSocket() {
+          @Override
+          public Flux<Payload> requestStream(Payload payload) {
+            payload.release();
+            return Flux.range(0, 10)
+                .map(
+                    i -> {
+                      generated.incrementAndGet();
+                      return ByteBufPayload.create("" + i);
+                    });
+          }
+        });
+
+    connection.addToReceivedBuffer(request(1, 2));
+    Assertions.assertThat(generated).hasValue(2);
+    Assertions.assertThat(connection.getSent()).hasSize(2);
+
+    connection.addToReceivedBuffer(RequestNFrameFlyweight.encode(allocator, 1, 3));
+    Assertions.assertThat(generated).hasValue(5);
+
+    connection.addToReceivedBuffer(RequestNFrameFlyweight.encode(allocator, 1, 100));
+    List<ByteBuf> sent = new ArrayList<>(connection.getSent());
+    Assertions.assertThat(sent).hasSize(11);
+    Assertions.assertThat(frameType(sent.get(9))).isEqualTo(FrameType.NEXT);
+    Assertions.assertThat(frameType(sent.get(10))).isEqualTo(FrameType.COMPLETE);
+
+    sent.forEach(ReferenceCounted::release);
+    Assertions.assertThat(errors).isEmpty();
+    allocator.assertHasNoLeaks();
+  }
+
+  @Test
+  public void cancelStopsSynchronousSource() {
+    AtomicInteger generated = new AtomicInteger();
+    responder(
+        new AbstractRSocket() {
+          @Override
+          public Flux<Payload> requestStream(Payload payload) {
+            payload.release();
+            return Flux.range(0, 10)
+                .map(
+                    i -> {
+                      generated.incrementAndGet();
+                      return ByteBufPayload.create("" + i);
+                    });
+          }
+        });
+
+    connection.addToReceivedBuffer(request(1, 3));
+    connection.addToReceivedBuffer(CancelFrameFlyweight.encode(allocator, 1));
+    connection.addToReceivedBuffer(RequestNFrameFlyweight.encode(allocator, 1, 3));
+
+    Assertions.assertThat(generated).hasValue(3);
+    Assertions.assertThat(connection.getSent()).hasSize(3).allMatch(ReferenceCounted::release);
+    allocator.assertHasNoLeaks();
+  }
+
+  @Test
+  public void asynchronousSourceIsRequestedOnDemand() {
+    AtomicLong requested = new AtomicLong();
+    responder(
+        new AbstractRSocket() {
+          @Override
+          public Flux<Payload> requestStream(Payload payload) {
+            payload.release();
+            return Flux.<Payload>never().doOnRequest(requested::addAndGet);
+          }
+        });
+
+    connection.addToReceivedBuffer(request(1, 2));
+    connection.addToReceivedBuffer(RequestNFrameFlyweight.encode(allocator, 1, 3));
+
+    Assertions.assertThat(requested).hasValue(5);
+    connection.addToReceivedBuffer(CancelFrameFlyweight.encode(allocator, 1));
+    Assertions.assertThat(connection.getSent()).isEmpty();
+    allocator.assertHasNoLeaks();
+  }
+
+  @Test
+  public void asynchronousSourceIsRequestedInBoundedWindows() {
+    List<Long> requests = new ArrayList<>();
+    responder(
+        new AbstractRSocket() {
+          @Override
+          public Flux<Payload> requestStream(Payload payload) {
+            payload.release();
+            return Flux.range(0, 1000)
+                .map(i -> ByteBufPayload.create("" + i))
+                .hide()
+                .doOnRequest(requests::add);
+          }
+        });
+
+    connection.addToReceivedBuffer(request(1, Integer.MAX_VALUE));
+
+    Assertions.assertThat(requests.get(0)).isEqualTo(RequestStreamResponderSubscriber.PREFETCH);
+    Assertions.assertThat(requests).allMatch(n -> n <= RequestStreamResponderSubscriber.PREFETCH);
+    Assertions.assertThat(connection.getSent()).hasSize(1001).allMatch(ReferenceCounted::release);
+    allocator.assertHasNoLeaks();
+  }
+
+  private RSocketResponder responder(RSocket handler) {
+    return new RSocketResponder(
+        connection, handler, PayloadDecoder.ZERO_COPY, errors::add, ResponderLeaseHandler.None, 0);
+  }
+
+  private ByteBuf request(int streamId, long initialRequestN) {
+    return RequestStreamFrameFlyweight.encodeReleasingPayload(
+        allocator, streamId, initialRequestN, EmptyPayload.INSTANCE);
+  }
+}
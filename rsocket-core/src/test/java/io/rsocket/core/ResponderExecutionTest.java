@@ -0,0 +1,293 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.frame.CancelFrameFlyweight;
+import io.rsocket.frame.ErrorFrameFlyweight;
+import io.rsocket.frame.ErrorType;
+import io.rsocket.frame.FrameHeaderFlyweight;
+import io.rsocket.frame.FrameType;
+import io.rsocket.frame.RequestResponseFrameFlyweight;
+import io.rsocket.frame.RequestStreamFrameFlyweight;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.lease.ResponderLeaseHandler;
+import io.rsocket.test.util.TestDuplexConnection;
+import io.rsocket.util.DefaultPayload;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
+
+public class ResponderExecutionTest {
+
+  private final ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
+  private final TestDuplexConnection connection = new TestDuplexConnection(allocator);
+  private ResponderExecution execution;
+
+  @AfterEach
+  public void tearDown() {
+    if (execution != null) {
+      execution.dispose();
+    }
+  }
+
+  @Test
+  public void inlineCallsTheHandlersOnTheReceivingThread() {
+    List<String> threads = new CopyOnWriteArrayList<>();
+    responder(ResponderExecution.inline(), echo(threads));
+
+    connection.addToReceivedBuffer(requestResponse(1));
+
+    Assertions.assertThat(threads).containsExactly(Thread.currentThread().getName());
+    Assertions.assertThat(frameType(connection.getSent().iterator().next()))
+        .isEqualTo(FrameType.NEXT_COMPLETE);
+  }
+
+  @Test
+  public void workersCallTheHandlersOfEachStreamOnOneWorker() throws InterruptedException {
+    execution = ResponderExecution.workers(2, 16);
+    List<String> threads = new CopyOnWriteArrayList<>();
+    responder(execution, echo(threads));
+
+    connection.addToReceivedBuffer(requestResponse(1), requestResponse(3));
+
+    Assertions.assertThat(frameType(awaitSend())).isEqualTo(FrameType.NEXT_COMPLETE);
+    Assertions.assertThat(frameType(awaitSend())).isEqualTo(FrameType.NEXT_COMPLETE);
+    Assertions.assertThat(threads)
+        .extracting(name -> name.substring(0, name.lastIndexOf('-')))
+        .containsExactlyInAnyOrder("rsocket-responder-0", "rsocket-responder-1");
+  }
+
+  @Test
+  public void workersPreserveTheOrderOfAStream() throws InterruptedException {
+    execution = ResponderExecution.workers(2, 16);
+    responder(
+        execution,
+        new AbstractRSocket() {
+          @Override
+          public Flux<Payload> requestStream(Payload payload) {
+            payload.release();
+            return Flux.range(0, 100).map(i -> DefaultPayload.create(String.valueOf(i)));
+          }
+        });
+
+    connection.addToReceivedBuffer(
+        RequestStreamFrameFlyweight.encodeReleasingPayload(
+            allocator, 1, Long.MAX_VALUE, DefaultPayload.create("request")));
+
+    for (int i = 0; i < 100; i++) {
+      ByteBuf frame = awaitSend();
+      Assertions.assertThat(frameType(frame)).isEqualTo(FrameType.NEXT);
+      Assertions.assertThat(PayloadDecoder.DEFAULT.apply(frame).getDataUtf8())
+          .isEqualTo(String.valueOf(i));
+      frame.release();
+    }
+    Assertions.assertThat(frameType(awaitSend())).isEqualTo(FrameType.COMPLETE);
+  }
+
+  @Test
+  public void rejectsRequestsWhileTheWorkersAreSaturated() throws InterruptedException {
+    execution = ResponderExecution.workers(1, 4);
+    CountDownLatch blocked = new CountDownLatch(1);
+    responder(
+        execution,
+        new AbstractRSocket() {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            try {
+              blocked.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return Mono.just(payload);
+          }
+        });
+
+    ByteBuf rejected = requestResponse(11);
+    connection.addToReceivedBuffer(
+        requestResponse(1),
+        requestResponse(3),
+        requestResponse(5),
+        requestResponse(7),
+        requestResponse(9),
+        rejected);
+
+    for (int i = 0; i < 2; i++) {
+      ByteBuf frame = awaitSend();
+      Assertions.assertThat(frameType(frame)).isEqualTo(FrameType.ERROR);
+      Assertions.assertThat(ErrorFrameFlyweight.errorCode(frame)).isEqualTo(ErrorType.REJECTED);
+    }
+    Assertions.assertThat(rejected.refCnt()).isZero();
+    Assertions.assertThat(execution.pending()).isEqualTo(4);
+
+    // the connection keeps reading frames of the streams in progress
+    connection.addToReceivedBuffer(CancelFrameFlyweight.encode(allocator, 7));
+    Assertions.assertThat(execution.pending()).isEqualTo(3);
+
+    blocked.countDown();
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertThat(frameType(awaitSend())).isEqualTo(FrameType.NEXT_COMPLETE);
+    }
+  }
+
+  @Test
+  public void countsHandlerCallsUntilTheirResponsesTerminate() throws InterruptedException {
+    execution = ResponderExecution.workers(1, 16);
+    MonoProcessor<Payload> response = MonoProcessor.create();
+    CountDownLatch called = new CountDownLatch(1);
+    responder(
+        execution,
+        new AbstractRSocket() {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            payload.release();
+            called.countDown();
+            // lazy, completed later from another thread
+            return response;
+          }
+        });
+
+    connection.addToReceivedBuffer(requestResponse(1));
+    Assertions.assertThat(called.await(5, TimeUnit.SECONDS)).isTrue();
+    Thread.sleep(100);
+    Assertions.assertThat(execution.pending()).isEqualTo(1);
+
+    response.onNext(DefaultPayload.create("response"));
+    Assertions.assertThat(frameType(awaitSend())).isEqualTo(FrameType.NEXT_COMPLETE);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (execution.pending() != 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assertions.assertThat(execution.pending()).isZero();
+  }
+
+  @Test
+  public void releasesThePayloadOfStreamsCancelledBeforeTheirHandlerIsCalled()
+      throws InterruptedException {
+    execution = ResponderExecution.workers(1, 16);
+    CountDownLatch blocked = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    responder(
+        execution,
+        new AbstractRSocket() {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            if (calls.incrementAndGet() == 1) {
+              try {
+                blocked.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            return Mono.just(payload);
+          }
+        });
+
+    ByteBuf request = requestResponse(3);
+    connection.addToReceivedBuffer(requestResponse(1), request);
+    Assertions.assertThat(request.refCnt()).isEqualTo(1);
+    connection.addToReceivedBuffer(CancelFrameFlyweight.encode(allocator, 3));
+    blocked.countDown();
+
+    Assertions.assertThat(frameType(awaitSend())).isEqualTo(FrameType.NEXT_COMPLETE);
+    Thread.sleep(100);
+    Assertions.assertThat(request.refCnt()).isZero();
+    Assertions.assertThat(calls.get()).isEqualTo(1);
+    Assertions.assertThat(execution.pending()).isZero();
+  }
+
+  @Test
+  public void virtualThreadsRequireJdk21() {
+    Assumptions.assumeFalse(ResponderExecution.isVirtualThreadsSupported());
+
+    Assertions.assertThatThrownBy(ResponderExecution::virtualThreads)
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  public void virtualThreadsCallEachHandlerOnItsOwnThread() throws InterruptedException {
+    Assumptions.assumeTrue(ResponderExecution.isVirtualThreadsSupported());
+    execution = ResponderExecution.virtualThreads();
+    List<String> threads = new CopyOnWriteArrayList<>();
+    responder(execution, echo(threads));
+
+    connection.addToReceivedBuffer(requestResponse(1), requestResponse(3));
+
+    Assertions.assertThat(frameType(awaitSend())).isEqualTo(FrameType.NEXT_COMPLETE);
+    Assertions.assertThat(frameType(awaitSend())).isEqualTo(FrameType.NEXT_COMPLETE);
+    Assertions.assertThat(threads)
+        .hasSize(2)
+        .doesNotHaveDuplicates()
+        .allMatch(name -> name.startsWith("rsocket-responder-"));
+  }
+
+  private void responder(ResponderExecution execution, RSocket handler) {
+    newResponder(connection, execution, handler);
+  }
+
+  private static void newResponder(
+      TestDuplexConnection connection, ResponderExecution execution, RSocket handler) {
+    new RSocketResponder(
+        connection,
+        handler,
+        PayloadDecoder.ZERO_COPY,
+        t -> {},
+        ResponderLeaseHandler.None,
+        0,
+        execution);
+  }
+
+  private static RSocket echo(List<String> threads) {
+    return new AbstractRSocket() {
+      @Override
+      public Mono<Payload> requestResponse(Payload payload) {
+        threads.add(Thread.currentThread().getName());
+        return Mono.just(payload);
+      }
+    };
+  }
+
+  private ByteBuf requestResponse(int streamId) {
+    return RequestResponseFrameFlyweight.encodeReleasingPayload(
+        allocator, streamId, DefaultPayload.create("request"));
+  }
+
+  private ByteBuf awaitSend() throws InterruptedException {
+    return Mono.fromCallable(connection::awaitSend)
+        .subscribeOn(Schedulers.boundedElastic())
+        .block(Duration.ofSeconds(5));
+  }
+
+  private static FrameType frameType(ByteBuf frame) {
+    return FrameHeaderFlyweight.frameType(frame);
+  }
+}
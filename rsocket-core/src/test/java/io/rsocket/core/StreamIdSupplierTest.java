@@ -16,10 +16,12 @@
 
 package io.rsocket.core;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
 import io.rsocket.internal.SynchronizedIntObjectHashMap;
 import org.junit.Test;
@@ -110,10 +112,50 @@ public void testSkipFound() {
     IntObjectMap<Object> map = new SynchronizedIntObjectHashMap<>();
     map.put(5, new Object());
     map.put(9, new Object());
-    StreamIdSupplier s = StreamIdSupplier.clientSupplier();
+    // ids are only looked up once wrapped around
+    StreamIdSupplier s = new StreamIdSupplier(Integer.MAX_VALUE);
     assertEquals(1, s.nextStreamId(map));
     assertEquals(3, s.nextStreamId(map));
     assertEquals(7, s.nextStreamId(map));
     assertEquals(11, s.nextStreamId(map));
   }
+
+  @Test
+  public void testFirstPassDoesNotLookUp() {
+    IntObjectMap<Object> map =
+        new IntObjectHashMap<Object>() {
+          @Override
+          public boolean containsKey(int key) {
+            throw new AssertionError("looked up " + key);
+          }
+        };
+    StreamIdSupplier s = new StreamIdSupplier(Integer.MAX_VALUE - 4);
+    assertEquals(2147483645, s.nextStreamId(map));
+    assertEquals(2147483647, s.nextStreamId(map));
+
+    int[] ids = new int[2];
+    StreamIdSupplier.clientSupplier().nextStreamIds(map, ids, 2);
+    assertArrayEquals(new int[] {1, 3}, ids);
+  }
+
+  @Test
+  public void testRange() {
+    IntObjectMap<Object> map = new SynchronizedIntObjectHashMap<>();
+    StreamIdSupplier s = StreamIdSupplier.clientSupplier();
+    int[] ids = new int[3];
+    s.nextStreamIds(map, ids, 3);
+    assertArrayEquals(new int[] {1, 3, 5}, ids);
+    assertEquals(7, s.nextStreamId(map));
+  }
+
+  @Test
+  public void testRangeSkipFound() {
+    IntObjectMap<Object> map = new SynchronizedIntObjectHashMap<>();
+    map.put(5, new Object());
+    map.put(9, new Object());
+    StreamIdSupplier s = new StreamIdSupplier(Integer.MAX_VALUE);
+    int[] ids = new int[4];
+    s.nextStreamIds(map, ids, 4);
+    assertArrayEquals(new int[] {1, 3, 11, 13}, ids);
+  }
 }
@@ -54,4 +54,54 @@ void testEncodingResume() {
     assertEquals(SetupFrameFlyweight.CURRENT_VERSION, SetupFrameFlyweight.version(frame));
     frame.release();
   }
+
+  @Test
+  void testEncodingFromTemplate() {
+    ByteBuf metadata = Unpooled.wrappedBuffer(new byte[] {1, 2, 3, 4});
+    ByteBuf data = Unpooled.wrappedBuffer(new byte[] {5, 4, 3});
+    Payload payload = DefaultPayload.create(data, metadata);
+    ByteBuf template =
+        SetupFrameFlyweight.encodeTemplate(true, 5, 500, "metadata_type", "data_type", payload);
+    ByteBuf expected =
+        SetupFrameFlyweight.encode(
+            ByteBufAllocator.DEFAULT, true, 5, 500, "metadata_type", "data_type", payload);
+
+    ByteBuf frame = SetupFrameFlyweight.encode(ByteBufAllocator.DEFAULT, template, null);
+    assertEquals(expected, frame);
+    assertFalse(SetupFrameFlyweight.resumeEnabled(frame));
+    frame.release();
+    expected.release();
+
+    ByteBuf token = Unpooled.wrappedBuffer(new byte[] {7, 7, 7});
+    frame = SetupFrameFlyweight.encode(ByteBufAllocator.DEFAULT, template, token);
+    expected =
+        SetupFrameFlyweight.encode(
+            ByteBufAllocator.DEFAULT, true, 5, 500, token, "metadata_type", "data_type", payload);
+    assertEquals(expected, frame);
+    assertTrue(SetupFrameFlyweight.resumeEnabled(frame));
+    assertTrue(SetupFrameFlyweight.honorLease(frame));
+    assertEquals(token, SetupFrameFlyweight.resumeToken(frame));
+    assertEquals("data_type", SetupFrameFlyweight.dataMimeType(frame));
+    assertEquals(data, SetupFrameFlyweight.data(frame));
+    frame.release();
+    expected.release();
+  }
+
+  @Test
+  void testMimeTypes() {
+    Payload payload = DefaultPayload.create("data");
+    ByteBuf frame =
+        SetupFrameFlyweight.encode(
+            ByteBufAllocator.DEFAULT, false, 5, 500, "metadata_type", "data_type", payload);
+    ByteBuf token = Unpooled.wrappedBuffer(new byte[] {7, 7, 7});
+    ByteBuf resumeFrame =
+        SetupFrameFlyweight.encode(
+            ByteBufAllocator.DEFAULT, false, 5, 500, token, "metadata_type", "data_type", payload);
+
+    ByteBuf mimeTypes = SetupFrameFlyweight.mimeTypes(frame);
+    assertEquals(2 + "metadata_type".length() + "data_type".length(), mimeTypes.readableBytes());
+    assertEquals(mimeTypes, SetupFrameFlyweight.mimeTypes(resumeFrame));
+    frame.release();
+    resumeFrame.release();
+  }
 }
@@ -18,7 +18,10 @@
 
 import io.rsocket.Payload;
 import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.DefaultPayload;
 import io.rsocket.util.EmptyPayload;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import org.junit.Assert;
 import org.junit.Test;
@@ -113,6 +116,58 @@ public void testPrioritizedFused() {
     Assert.assertEquals(closestPayload.getDataUtf8(), "test");
   }
 
+  @Test
+  public void testSampleLatency() {
+    List<Long> latencies = new ArrayList<>();
+    UnboundedProcessor<Payload> processor = new UnboundedProcessor<>();
+    processor.sampleLatency(latencies::add);
+    List<Payload> received = new ArrayList<>();
+    processor.subscribe(received::add);
+
+    for (int i = 0; i < 1000; i++) {
+      processor.onNext(DefaultPayload.create("test"));
+    }
+
+    Assert.assertEquals(1000, received.size());
+    // one element is timed, then the next SAMPLE_INTERVAL are skipped
+    Assert.assertEquals(
+        (1000 + UnboundedProcessor.SAMPLE_INTERVAL) / (UnboundedProcessor.SAMPLE_INTERVAL + 1),
+        latencies.size());
+    for (long latency : latencies) {
+      Assert.assertTrue(latency >= 0);
+    }
+  }
+
+  @Test
+  public void testSampleLatencyFused() {
+    List<Long> latencies = new ArrayList<>();
+    UnboundedProcessor<Payload> processor = new UnboundedProcessor<>();
+    processor.sampleLatency(latencies::add);
+
+    for (int i = 0; i < 10; i++) {
+      processor.onNext(DefaultPayload.create("test"));
+    }
+    while (processor.poll() != null) {}
+
+    // the first element is claimed, and no other one until it is dequeued
+    Assert.assertEquals(1, latencies.size());
+  }
+
+  @Test
+  public void testSampleLatencyAfterClear() {
+    List<Long> latencies = new ArrayList<>();
+    UnboundedProcessor<Payload> processor = new UnboundedProcessor<>();
+    processor.sampleLatency(latencies::add);
+
+    processor.onNext(DefaultPayload.create("test"));
+    processor.clear();
+    processor.onNext(DefaultPayload.create("test"));
+    while (processor.poll() != null) {}
+
+    // the discarded element no longer holds the sample
+    Assert.assertEquals(1, latencies.size());
+  }
+
   public void testOnNextAfterSubscribeN(int n) throws Exception {
     CountDownLatch latch = new CountDownLatch(n);
     UnboundedProcessor<Payload> processor = new UnboundedProcessor<>();
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.plugins;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.DuplexConnection;
+import io.rsocket.frame.CancelFrameFlyweight;
+import io.rsocket.frame.FrameType;
+import io.rsocket.frame.RequestNFrameFlyweight;
+import io.rsocket.plugins.DuplexConnectionInterceptor.Type;
+import io.rsocket.test.util.TestDuplexConnection;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class FrameTracerTest {
+
+  private final TestDuplexConnection source = new TestDuplexConnection(ByteBufAllocator.DEFAULT);
+
+  @Test
+  void tracesSampledFramesInBothDirections() {
+    FrameTracer tracer = new FrameTracer();
+    tracer.setSampleRate(1.0);
+    DuplexConnection connection = tracer.apply(Type.SOURCE, source);
+    connection.receive().subscribe();
+
+    ByteBuf cancel = CancelFrameFlyweight.encode(ByteBufAllocator.DEFAULT, 1);
+    connection.sendOne(cancel).subscribe();
+    source.addToReceivedBuffer(RequestNFrameFlyweight.encode(ByteBufAllocator.DEFAULT, 2, 5));
+
+    List<FrameTraceRecord> records = drain(tracer);
+    assertThat(records).hasSize(2);
+    assertThat(records.get(0).direction()).isEqualTo(FrameTraceRecord.Direction.OUTBOUND);
+    assertThat(records.get(0).frameType()).isEqualTo(FrameType.CANCEL);
+    assertThat(records.get(0).streamId()).isEqualTo(1);
+    assertThat(records.get(0).size()).isEqualTo(cancel.readableBytes());
+    assertThat(records.get(1).direction()).isEqualTo(FrameTraceRecord.Direction.INBOUND);
+    assertThat(records.get(1).frameType()).isEqualTo(FrameType.REQUEST_N);
+    assertThat(records.get(1).streamId()).isEqualTo(2);
+
+    assertThat(drain(tracer)).isEmpty();
+  }
+
+  @Test
+  void tracesNothingByDefault() {
+    FrameTracer tracer = new FrameTracer();
+    DuplexConnection connection = tracer.apply(Type.SOURCE, source);
+
+    connection.sendOne(CancelFrameFlyweight.encode(ByteBufAllocator.DEFAULT, 1)).subscribe();
+
+    assertThat(drain(tracer)).isEmpty();
+  }
+
+  @Test
+  void onlyInterceptsSourceConnections() {
+    FrameTracer tracer = new FrameTracer();
+
+    assertThat(tracer.apply(Type.CLIENT, source)).isSameAs(source);
+    assertThat(tracer.apply(Type.SOURCE, source)).isNotSameAs(source);
+  }
+
+  @Test
+  void samplesWholeStreams() {
+    FrameTracer tracer = new FrameTracer();
+    tracer.setSampleRate(0.25);
+
+    int traced = 0;
+    for (int streamId = 1; streamId < 10_000; streamId++) {
+      if (tracer.isTraced(streamId)) {
+        traced++;
+      }
+      assertThat(tracer.isTraced(streamId)).isEqualTo(tracer.isTraced(streamId));
+    }
+    assertThat(traced).isBetween(2_000, 3_000);
+    assertThat(tracer.isTraced(0)).isTrue();
+  }
+
+  @Test
+  void streamFilterOverridesSampling() {
+    FrameTracer tracer = new FrameTracer();
+    tracer.setSampleRate(1.0);
+    tracer.setStreamFilter(streamId -> streamId == 3);
+    DuplexConnection connection = tracer.apply(Type.SOURCE, source);
+
+    for (int streamId = 1; streamId <= 5; streamId++) {
+      connection
+          .sendOne(CancelFrameFlyweight.encode(ByteBufAllocator.DEFAULT, streamId))
+          .subscribe();
+    }
+
+    List<FrameTraceRecord> records = drain(tracer);
+    assertThat(records).hasSize(1);
+    assertThat(records.get(0).streamId()).isEqualTo(3);
+  }
+
+  @Test
+  void overwritesTheOldestRecords() {
+    FrameTracer tracer = new FrameTracer(2);
+    tracer.setSampleRate(1.0);
+    DuplexConnection connection = tracer.apply(Type.SOURCE, source);
+
+    for (int streamId = 1; streamId <= 5; streamId++) {
+      connection
+          .sendOne(CancelFrameFlyweight.encode(ByteBufAllocator.DEFAULT, streamId))
+          .subscribe();
+    }
+
+    List<FrameTraceRecord> records = drain(tracer);
+    assertThat(records).extracting(FrameTraceRecord::streamId).containsExactly(4, 5);
+    assertThat(tracer.droppedRecords()).isEqualTo(3);
+  }
+
+  @Test
+  void forgetsClosedConnectionsOnceDrained() {
+    FrameTracer tracer = new FrameTracer();
+    tracer.setSampleRate(1.0);
+    DuplexConnection connection = tracer.apply(Type.SOURCE, source);
+
+    connection.sendOne(CancelFrameFlyweight.encode(ByteBufAllocator.DEFAULT, 1)).subscribe();
+    connection.dispose();
+
+    assertThat(drain(tracer)).hasSize(1);
+    connection.sendOne(CancelFrameFlyweight.encode(ByteBufAllocator.DEFAULT, 1)).subscribe();
+    assertThat(drain(tracer)).isEmpty();
+  }
+
+  private static List<FrameTraceRecord> drain(FrameTracer tracer) {
+    List<FrameTraceRecord> records = new ArrayList<>();
+    tracer.drain(records::add);
+    return records;
+  }
+}
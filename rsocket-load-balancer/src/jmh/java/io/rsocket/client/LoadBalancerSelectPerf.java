@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Availability;
+import io.rsocket.Closeable;
+import io.rsocket.RSocket;
+import io.rsocket.client.filter.RSocketSupplier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@BenchmarkMode(Mode.Throughput)
+@Fork(value = 1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class LoadBalancerSelectPerf {
+
+  @Param({"LoadBalancedRSocketMono", "P2CLoadBalancedRSocketMono"})
+  String balancer;
+
+  @Param({"10", "100"})
+  int size;
+
+  Supplier<RSocket> select;
+  Closeable closeable;
+
+  @Setup
+  public void setup() throws InterruptedException {
+    List<RSocketSupplier> suppliers = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      suppliers.add(new RSocketSupplier(() -> Mono.just(new AbstractRSocket() {})));
+    }
+    Flux<List<RSocketSupplier>> factories = Flux.just(suppliers);
+
+    if ("LoadBalancedRSocketMono".equals(balancer)) {
+      LoadBalancedRSocketMono mono =
+          LoadBalancedRSocketMono.create(
+              factories,
+              LoadBalancedRSocketMono.DEFAULT_EXP_FACTOR,
+              LoadBalancedRSocketMono.DEFAULT_LOWER_QUANTILE,
+              LoadBalancedRSocketMono.DEFAULT_HIGHER_QUANTILE,
+              LoadBalancedRSocketMono.DEFAULT_MIN_PENDING,
+              LoadBalancedRSocketMono.DEFAULT_MAX_PENDING,
+              size,
+              size,
+              LoadBalancedRSocketMono.DEFAULT_MAX_REFRESH_PERIOD_MS);
+      select = mono::select;
+      closeable = mono;
+    } else {
+      P2CLoadBalancedRSocketMono mono =
+          P2CLoadBalancedRSocketMono.create(
+              factories,
+              P2CLoadBalancedRSocketMono.DEFAULT_MIN_PENDING,
+              P2CLoadBalancedRSocketMono.DEFAULT_MAX_PENDING,
+              size,
+              size,
+              P2CLoadBalancedRSocketMono.DEFAULT_REFRESH_PERIOD,
+              P2CLoadBalancedRSocketMono.DEFAULT_LATENCY_HALF_LIFE);
+      select = mono::select;
+      closeable = mono;
+    }
+
+    while (((Availability) closeable).availability() == 0.0) {
+      Thread.sleep(1);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    closeable.dispose();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public RSocket select8Threads() {
+    return select.get();
+  }
+
+  @Benchmark
+  @Threads(32)
+  public RSocket select32Threads() {
+    return select.get();
+  }
+
+  @Benchmark
+  @Threads(128)
+  public RSocket select128Threads() {
+    return select.get();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.stat;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares the estimators shared by all the threads recording the latency of a socket. */
+@BenchmarkMode(Mode.Throughput)
+@Fork(value = 1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class StatContentionPerf {
+
+  @Param({"FrugalQuantile", "Median", "LogBucketQuantile"})
+  String quantile;
+
+  Quantile q;
+  Ewma ewma;
+  AtomicEwma atomicEwma;
+
+  @Setup
+  public void setup() {
+    switch (quantile) {
+      case "FrugalQuantile":
+        q = new FrugalQuantile(0.99);
+        break;
+      case "Median":
+        q = new Median();
+        break;
+      default:
+        q = new LogBucketQuantile(0.99);
+    }
+    ewma = new Ewma(5, TimeUnit.SECONDS, 0.0);
+    atomicEwma = new AtomicEwma(5, TimeUnit.SECONDS, 0.0);
+  }
+
+  private static double latency() {
+    return 100 + ThreadLocalRandom.current().nextInt(10_000);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void quantileInsert1() {
+    q.insert(latency());
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void quantileInsert8() {
+    q.insert(latency());
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void quantileInsert32() {
+    q.insert(latency());
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void ewmaInsert1() {
+    ewma.insert(latency());
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void ewmaInsert8() {
+    ewma.insert(latency());
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void atomicEwmaInsert1() {
+    atomicEwma.insert(latency());
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void atomicEwmaInsert8() {
+    atomicEwma.insert(latency());
+  }
+}
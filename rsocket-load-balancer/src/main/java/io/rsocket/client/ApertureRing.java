@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import java.util.Random;
+
+/**
+ * Geometry of the deterministic aperture. Clients and servers are both laid out evenly on a ring of
+ * circumference 1: client {@code i} out of {@code n} sits at coordinate {@code i / n} and server
+ * {@code j} out of {@code m} covers the arc {@code [j / m, (j + 1) / m)}.
+ *
+ * <p>A client only talks to the servers overlapping the arc {@code [offset, offset + width)}
+ * starting at its own coordinate, and picks servers by drawing uniform points on that arc. A server
+ * partially covered by the arc is therefore picked in proportion to the covered part, which keeps
+ * the load even across servers as long as every point of the ring is covered by the same number of
+ * clients.
+ */
+final class ApertureRing {
+
+  private static final double EPSILON = 1e-9;
+
+  static final ApertureRing EMPTY = new ApertureRing(0, 1, 0, 1);
+
+  final int size;
+  final double offset;
+  final double width;
+  private final int begin;
+  private final int end;
+
+  /**
+   * @param clientIndex the index of this client, in {@code [0, clientCount)}
+   * @param clientCount the total number of clients sharing the same servers
+   * @param size the number of servers
+   * @param minAperture the minimum number of servers a client talks to
+   */
+  ApertureRing(int clientIndex, int clientCount, int size, int minAperture) {
+    checkCoordinate(clientIndex, clientCount);
+    this.size = size;
+    this.offset = (double) clientIndex / clientCount;
+    this.width =
+        size == 0 ? 0.0 : Math.min(1.0, Math.max(1.0 / clientCount, (double) minAperture / size));
+    this.begin = (int) Math.floor(offset * size + EPSILON);
+    this.end =
+        size == 0
+            ? begin
+            : Math.max(
+                begin + 1,
+                Math.min(begin + size, (int) Math.ceil((offset + width) * size - EPSILON)));
+  }
+
+  static void checkCoordinate(int clientIndex, int clientCount) {
+    if (clientCount <= 0 || clientIndex < 0 || clientIndex >= clientCount) {
+      throw new IllegalArgumentException(
+          "Invalid coordinate: client " + clientIndex + " out of " + clientCount);
+    }
+  }
+
+  /** @return the number of servers overlapping the arc of this client */
+  int aperture() {
+    return end - begin;
+  }
+
+  /** @return the index of the {@code i}-th server overlapping the arc of this client */
+  int indexAt(int i) {
+    return (begin + i) % size;
+  }
+
+  /** @return the index of a server drawn in proportion to its overlap with the arc */
+  int pick(Random rng) {
+    int index = (int) ((offset + rng.nextDouble() * width) * size);
+    // stay within the servers returned by indexAt despite rounding errors
+    index = Math.max(begin, Math.min(end - 1, index));
+    return index % size;
+  }
+
+  @Override
+  public String toString() {
+    return "ApertureRing(size="
+        + size
+        + ", offset="
+        + offset
+        + ", width="
+        + width
+        + ", aperture="
+        + aperture()
+        + ")";
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.Availability;
+import io.rsocket.Closeable;
+import io.rsocket.RSocket;
+import io.rsocket.client.filter.RSocketSupplier;
+import io.rsocket.util.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * An implementation of {@link Mono} that load balances across a deterministic subset of the servers
+ * and emits one RSocket when it is subscribed to.
+ *
+ * <p>Each client is given a coordinate, i.e. its index among all the clients sharing the same
+ * servers, and only connects to the slice of the server ring starting at that coordinate (see
+ * {@link ApertureRing}). The number of connections per client stays around {@code minAperture} (or
+ * {@code servers / clients} if larger), whatever the size of the fleet, while the load stays even
+ * across the servers. Within its slice, the client uses the "power of two choices" between two
+ * servers drawn in proportion to their overlap with the slice.
+ *
+ * <p>All the clients must observe the servers in the same order, e.g. sorted by address, for their
+ * slices to line up.
+ */
+public class DeterministicApertureRSocketMono extends Mono<RSocket>
+    implements Availability, Closeable {
+
+  public static final int DEFAULT_MIN_APERTURE = 3;
+  public static final Duration DEFAULT_REFRESH_PERIOD = Duration.ofSeconds(1);
+  public static final Duration DEFAULT_LATENCY_HALF_LIFE = Duration.ofSeconds(5);
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(DeterministicApertureRSocketMono.class);
+  private static final long WEIGHTED_SOCKET_RETRIES = 5;
+  private static final Duration WEIGHTED_SOCKET_BACK_OFF = Duration.ofMillis(500);
+  private static final Duration WEIGHTED_SOCKET_MAX_BACK_OFF = Duration.ofSeconds(5);
+
+  private final int minAperture;
+  private final double tau;
+  private final Mono<RSocket> rSocketMono;
+  private final MonoProcessor<Void> onClose = MonoProcessor.create();
+  private final Disposable serversSubscription;
+  private final Disposable refreshTask;
+
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+  // all the following fields are guarded by the monitor of this and never touched on select()
+  private int clientIndex;
+  private int clientCount;
+  private List<RSocketSupplier> servers = Collections.emptyList();
+  private Set<RSocketSupplier> slice = Collections.emptySet();
+  private ApertureRing ring = ApertureRing.EMPTY;
+  private final Map<RSocketSupplier, WeightedRSocket> sockets = new HashMap<>();
+  private final Set<RSocketSupplier> connecting = new HashSet<>();
+
+  /**
+   * @param servers the source of the ordered list of servers, every client must observe the same
+   *     order
+   * @param clientIndex the index of this client, in {@code [0, clientCount)}
+   * @param clientCount the total number of clients
+   * @param minAperture the minimum number of servers to connect to
+   * @param refreshPeriod how often missing connections are re-established
+   * @param latencyHalfLife the half-life of the EWMA tracking the latency of each RSocket
+   */
+  private DeterministicApertureRSocketMono(
+      Publisher<? extends Collection<RSocketSupplier>> servers,
+      int clientIndex,
+      int clientCount,
+      int minAperture,
+      Duration refreshPeriod,
+      Duration latencyHalfLife) {
+    ApertureRing.checkCoordinate(clientIndex, clientCount);
+    this.clientIndex = clientIndex;
+    this.clientCount = clientCount;
+    this.minAperture = minAperture;
+    this.tau = Clock.unit().convert(latencyHalfLife.toNanos(), TimeUnit.NANOSECONDS) / Math.log(2);
+    this.rSocketMono = Mono.fromSupplier(this::select);
+
+    this.serversSubscription =
+        Flux.from(servers)
+            .subscribe(
+                this::handleNewServers, t -> logger.error("error streaming RSocketSuppliers", t));
+    this.refreshTask =
+        Flux.interval(refreshPeriod, Schedulers.parallel())
+            .subscribe(tick -> refresh(), t -> logger.error("error while refreshing", t));
+  }
+
+  public static DeterministicApertureRSocketMono create(
+      Publisher<? extends Collection<RSocketSupplier>> servers, int clientIndex, int clientCount) {
+    return create(
+        servers,
+        clientIndex,
+        clientCount,
+        DEFAULT_MIN_APERTURE,
+        DEFAULT_REFRESH_PERIOD,
+        DEFAULT_LATENCY_HALF_LIFE);
+  }
+
+  public static DeterministicApertureRSocketMono create(
+      Publisher<? extends Collection<RSocketSupplier>> servers,
+      int clientIndex,
+      int clientCount,
+      int minAperture,
+      Duration refreshPeriod,
+      Duration latencyHalfLife) {
+    return new DeterministicApertureRSocketMono(
+        servers, clientIndex, clientCount, minAperture, refreshPeriod, latencyHalfLife);
+  }
+
+  @Override
+  public void subscribe(CoreSubscriber<? super RSocket> actual) {
+    rSocketMono.subscribe(actual);
+  }
+
+  /**
+   * Updates the coordinate of this client, e.g. when the number of clients changes. Connections
+   * leaving the slice are closed and the ones entering it are established.
+   *
+   * @param clientIndex the index of this client, in {@code [0, clientCount)}
+   * @param clientCount the total number of clients
+   */
+  public synchronized void updateCoordinate(int clientIndex, int clientCount) {
+    ApertureRing.checkCoordinate(clientIndex, clientCount);
+    this.clientIndex = clientIndex;
+    this.clientCount = clientCount;
+    refresh();
+  }
+
+  RSocket select() {
+    Snapshot snapshot = this.snapshot;
+    WeightedRSocket[] connected = snapshot.connected;
+    if (connected.length == 0) {
+      return FailingRSocket.INSTANCE;
+    }
+
+    ThreadLocalRandom rng = ThreadLocalRandom.current();
+    WeightedRSocket rsc1 = snapshot.slots[snapshot.ring.pick(rng)];
+    WeightedRSocket rsc2 = snapshot.slots[snapshot.ring.pick(rng)];
+
+    if (rsc1 == null || rsc2 == null) {
+      if (rsc1 == null && rsc2 == null) {
+        // the picked servers are still connecting, fall back on any connected one
+        return connected[rng.nextInt(connected.length)];
+      }
+      return rsc1 == null ? rsc2 : rsc1;
+    }
+
+    return rsc1.weight() < rsc2.weight() ? rsc2 : rsc1;
+  }
+
+  private synchronized void handleNewServers(Collection<RSocketSupplier> newServers) {
+    List<RSocketSupplier> list = new ArrayList<>(newServers);
+    Set<RSocketSupplier> removed = new HashSet<>(servers);
+    removed.removeAll(list);
+    servers = list;
+
+    for (RSocketSupplier supplier : removed) {
+      try {
+        supplier.dispose();
+      } catch (Exception e) {
+        logger.warn("Exception while closing a RSocket", e);
+      }
+    }
+
+    refresh();
+  }
+
+  /** Recomputes the slice of this client and connects or disconnects accordingly. */
+  private synchronized void refresh() {
+    if (onClose.isDisposed()) {
+      return;
+    }
+
+    ring = new ApertureRing(clientIndex, clientCount, servers.size(), minAperture);
+    Set<RSocketSupplier> newSlice = new HashSet<>();
+    for (int i = 0; i < ring.aperture(); i++) {
+      newSlice.add(servers.get(ring.indexAt(i)));
+    }
+    slice = newSlice;
+
+    List<WeightedRSocket> toClose = new ArrayList<>();
+    sockets
+        .entrySet()
+        .removeIf(
+            entry -> {
+              if (!newSlice.contains(entry.getKey())) {
+                toClose.add(entry.getValue());
+                return true;
+              }
+              return false;
+            });
+
+    for (RSocketSupplier supplier : newSlice) {
+      if (!sockets.containsKey(supplier) && !connecting.contains(supplier)) {
+        connect(supplier);
+      }
+    }
+
+    publish();
+
+    for (WeightedRSocket socket : toClose) {
+      logger.debug("Disposing {} which left the aperture", socket);
+      socket.dispose();
+    }
+  }
+
+  private void connect(RSocketSupplier supplier) {
+    connecting.add(supplier);
+    supplier
+        .get()
+        .retryWhen(
+            Retry.backoff(WEIGHTED_SOCKET_RETRIES, WEIGHTED_SOCKET_BACK_OFF)
+                .maxBackoff(WEIGHTED_SOCKET_MAX_BACK_OFF))
+        .subscribe(
+            rSocket -> onConnect(supplier, rSocket),
+            t -> {
+              logger.error("error while connecting from factory {}", supplier, t);
+              onConnectError(supplier);
+            });
+  }
+
+  private synchronized void onConnect(RSocketSupplier supplier, RSocket rSocket) {
+    connecting.remove(supplier);
+    if (onClose.isDisposed() || !slice.contains(supplier)) {
+      rSocket.dispose();
+      return;
+    }
+
+    WeightedRSocket socket = new WeightedRSocket(supplier, rSocket, tau);
+    sockets.put(supplier, socket);
+    publish();
+    logger.debug("Added {} from factory {} to the aperture", socket, supplier);
+
+    // When RSocket is closed, remove it from the aperture
+    rSocket.onClose().doFinally(signalType -> remove(socket)).subscribe();
+    // When the factory is closed, close the RSocket
+    supplier.onClose().doFinally(signalType -> rSocket.dispose()).subscribe();
+  }
+
+  private synchronized void onConnectError(RSocketSupplier supplier) {
+    connecting.remove(supplier);
+  }
+
+  private synchronized void remove(WeightedRSocket socket) {
+    if (sockets.remove(socket.supplier, socket)) {
+      publish();
+      logger.debug("Removed {} from the aperture", socket);
+    }
+  }
+
+  private void publish() {
+    WeightedRSocket[] slots = new WeightedRSocket[ring.size];
+    for (int i = 0; i < ring.aperture(); i++) {
+      int index = ring.indexAt(i);
+      slots[index] = sockets.get(servers.get(index));
+    }
+    WeightedRSocket[] connected = sockets.values().toArray(new WeightedRSocket[0]);
+    snapshot = new Snapshot(ring, slots, connected);
+  }
+
+  @Override
+  public double availability() {
+    WeightedRSocket[] connected = snapshot.connected;
+    double currentAvailability = 0.0;
+    if (connected.length > 0) {
+      for (WeightedRSocket rs : connected) {
+        currentAvailability += rs.availability();
+      }
+      currentAvailability /= connected.length;
+    }
+
+    return currentAvailability;
+  }
+
+  @Override
+  public String toString() {
+    Snapshot snapshot = this.snapshot;
+    return "DeterministicApertureLoadBalancer(a:"
+        + snapshot.connected.length
+        + ", ring="
+        + snapshot.ring
+        + ")";
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (this) {
+      if (onClose.isDisposed()) {
+        return;
+      }
+      serversSubscription.dispose();
+      refreshTask.dispose();
+      onClose.onComplete();
+      snapshot = Snapshot.EMPTY;
+
+      List<WeightedRSocket> toClose = new ArrayList<>(sockets.values());
+      sockets.clear();
+      for (WeightedRSocket socket : toClose) {
+        socket.dispose();
+      }
+      for (RSocketSupplier supplier : servers) {
+        try {
+          supplier.dispose();
+        } catch (Throwable t) {
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return onClose.isDisposed();
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return onClose;
+  }
+
+  /** Immutable view of the aperture used by {@link #select()}. */
+  private static final class Snapshot {
+    static final Snapshot EMPTY =
+        new Snapshot(ApertureRing.EMPTY, new WeightedRSocket[0], new WeightedRSocket[0]);
+
+    final ApertureRing ring;
+    final WeightedRSocket[] slots; // indexed by server position, null when not connected
+    final WeightedRSocket[] connected;
+
+    Snapshot(ApertureRing ring, WeightedRSocket[] slots, WeightedRSocket[] connected) {
+      this.ring = ring;
+      this.slots = slots;
+      this.connected = connected;
+    }
+  }
+}
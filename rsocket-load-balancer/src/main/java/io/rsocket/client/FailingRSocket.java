@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * (Null Object Pattern) This failing RSocket never succeed, it is useful for simplifying the code
+ * when dealing with edge cases.
+ */
+final class FailingRSocket implements RSocket {
+
+  static final FailingRSocket INSTANCE = new FailingRSocket();
+
+  private static final Mono<Void> errorVoid = Mono.error(NoAvailableRSocketException.INSTANCE);
+  private static final Mono<Payload> errorPayload =
+      Mono.error(NoAvailableRSocketException.INSTANCE);
+
+  private FailingRSocket() {}
+
+  @Override
+  public Mono<Void> fireAndForget(Payload payload) {
+    return errorVoid;
+  }
+
+  @Override
+  public Mono<Payload> requestResponse(Payload payload) {
+    return errorPayload;
+  }
+
+  @Override
+  public Flux<Payload> requestStream(Payload payload) {
+    return errorPayload.flux();
+  }
+
+  @Override
+  public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+    return errorPayload.flux();
+  }
+
+  @Override
+  public Mono<Void> metadataPush(Payload payload) {
+    return errorVoid;
+  }
+
+  @Override
+  public double availability() {
+    return 0;
+  }
+
+  @Override
+  public void dispose() {}
+
+  @Override
+  public boolean isDisposed() {
+    return true;
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return Mono.empty();
+  }
+}
@@ -85,6 +85,7 @@ public abstract class LoadBalancedRSocketMono extends Mono<RSocket>
   private final long weightedSocketRetries;
   private final Duration weightedSocketBackOff;
   private final Duration weightedSocketMaxBackOff;
+  private final OutlierDetector outlierDetector;
   private volatile int targetAperture;
   private long lastApertureRefresh;
   private long refreshPeriod;
@@ -112,6 +113,7 @@ public abstract class LoadBalancedRSocketMono extends Mono<RSocket>
    * @param weightedSocketBackOff the duration a a weighted socket will add to each retry attempt.
    * @param weightedSocketMaxBackOff the max duration a weighted socket will delay before retrying
    *     to connect. The default is 5 seconds.
+   * @param outlierDetector the detector ejecting the outliers from the selection, or null
    */
   private LoadBalancedRSocketMono(
       Publisher<? extends Collection<RSocketSupplier>> factories,
@@ -125,7 +127,9 @@ private LoadBalancedRSocketMono(
       long maxRefreshPeriodMs,
       long weightedSocketRetries,
       Duration weightedSocketBackOff,
-      Duration weightedSocketMaxBackOff) {
+      Duration weightedSocketMaxBackOff,
+      OutlierDetector outlierDetector) {
+    this.outlierDetector = outlierDetector;
     this.weightedSocketRetries = weightedSocketRetries;
     this.weightedSocketBackOff = weightedSocketBackOff;
     this.weightedSocketMaxBackOff = weightedSocketMaxBackOff;
@@ -195,7 +199,8 @@ public static LoadBalancedRSocketMono create(
         maxRefreshPeriodMs,
         weightedSocketRetries,
         weightedSocketBackOff,
-        weightedSocketMaxBackOff) {
+        weightedSocketMaxBackOff,
+        null) {
       @Override
       public void subscribe(CoreSubscriber<? super RSocket> s) {
         rSocketMono.subscribe(s);
@@ -225,7 +230,35 @@ public static LoadBalancedRSocketMono create(
         maxRefreshPeriodMs,
         5,
         Duration.ofMillis(500),
-        Duration.ofSeconds(5)) {
+        Duration.ofSeconds(5),
+        null) {
+      @Override
+      public void subscribe(CoreSubscriber<? super RSocket> s) {
+        rSocketMono.subscribe(s);
+      }
+    };
+  }
+
+  /**
+   * Creates a load balancer ejecting the endpoints flagged as outliers by the given detector from
+   * the selection, until they are probed back in.
+   */
+  public static LoadBalancedRSocketMono create(
+      Publisher<? extends Collection<RSocketSupplier>> factories, OutlierDetector outlierDetector) {
+    return new LoadBalancedRSocketMono(
+        factories,
+        DEFAULT_EXP_FACTOR,
+        DEFAULT_LOWER_QUANTILE,
+        DEFAULT_HIGHER_QUANTILE,
+        DEFAULT_MIN_PENDING,
+        DEFAULT_MAX_PENDING,
+        DEFAULT_MIN_APERTURE,
+        DEFAULT_MAX_APERTURE,
+        DEFAULT_MAX_REFRESH_PERIOD_MS,
+        5,
+        Duration.ofMillis(500),
+        Duration.ofSeconds(5),
+        outlierDetector) {
       @Override
       public void subscribe(CoreSubscriber<? super RSocket> s) {
         rSocketMono.subscribe(s);
@@ -238,6 +271,9 @@ public void subscribe(CoreSubscriber<? super RSocket> s) {
    * match targetAperture - periodically append a new connection
    */
   private synchronized void refreshSockets() {
+    if (outlierDetector != null) {
+      outlierDetector.maybeAnalyze();
+    }
     refreshAperture();
     int n = activeSockets.size();
     if (n < targetAperture && !pool.isPoolEmpty()) {
@@ -278,6 +314,11 @@ private synchronized void addSockets(int numberOfNewSocket) {
 
       if (optional.isPresent()) {
         RSocketSupplier supplier = optional.get();
+        if (outlierDetector != null && outlierDetector.isEjected(supplier)) {
+          logger.debug("Skipping ejected factory {}", supplier);
+          pool.accept(supplier);
+          continue;
+        }
         WeightedSocket socket = new WeightedSocket(supplier, lowerQuantile, higherQuantile);
       } else {
         break;
@@ -373,7 +414,7 @@ public synchronized double availability() {
     return currentAvailability;
   }
 
-  private synchronized RSocket select() {
+  synchronized RSocket select() {
     refreshSockets();
 
     if (activeSockets.isEmpty()) {
@@ -462,7 +503,8 @@ public synchronized String toString() {
   @Override
   public void dispose() {
     synchronized (this) {
-      activeSockets.forEach(WeightedSocket::dispose);
+      // disposing a socket removes it from activeSockets
+      new ArrayList<>(activeSockets).forEach(WeightedSocket::dispose);
       activeSockets.clear();
       onClose.onComplete();
     }
@@ -553,6 +595,8 @@ private class WeightedSocket extends AbstractRSocket implements LoadBalancerSock
 
     private AtomicLong pendingStreams; // number of active streams
 
+    private final OutlierDetector.Endpoint outlier; // null without outlier detection
+
     private volatile double availability = 0.0;
 
     WeightedSocket(
@@ -572,6 +616,7 @@ private class WeightedSocket extends AbstractRSocket implements LoadBalancerSock
       this.median = new Median();
       this.interArrivalTime = new Ewma(1, TimeUnit.MINUTES, DEFAULT_INITIAL_INTER_ARRIVAL_TIME);
       this.pendingStreams = new AtomicLong();
+      this.outlier = outlierDetector == null ? null : outlierDetector.endpoint(factory);
 
       logger.debug("Creating WeightedSocket {} from factory {}", WeightedSocket.this, factory);
 
@@ -788,7 +833,7 @@ private synchronized void observe(double rtt) {
 
     @Override
     public double availability() {
-      return availability;
+      return outlier == null ? availability : availability * outlier.admission();
     }
 
     @Override
@@ -887,6 +932,9 @@ public void onError(Throwable t) {
         if (done.compareAndSet(false, true)) {
           child.onError(t);
           long now = decr(start);
+          if (socket.outlier != null) {
+            socket.outlier.onFailure();
+          }
           if (t instanceof TransportException || t instanceof ClosedChannelException) {
             socket.dispose();
           } else if (t instanceof TimeoutException) {
@@ -900,6 +948,9 @@ public void onComplete() {
         if (done.compareAndSet(false, true)) {
           long now = decr(start);
           observe(now - start);
+          if (socket.outlier != null) {
+            socket.outlier.onSuccess(now - start);
+          }
           child.onComplete();
         }
       }
@@ -932,6 +983,9 @@ public void onNext(U u) {
       @Override
       public void onError(Throwable t) {
         socket.pendingStreams.decrementAndGet();
+        if (socket.outlier != null) {
+          socket.outlier.onFailure();
+        }
         child.onError(t);
         if (t instanceof TransportException || t instanceof ClosedChannelException) {
           logger.debug("Disposing {} from activeSockets because of error {}", socket, t);
@@ -942,6 +996,9 @@ public void onError(Throwable t) {
       @Override
       public void onComplete() {
         socket.pendingStreams.decrementAndGet();
+        if (socket.outlier != null) {
+          socket.outlier.onSuccess();
+        }
         child.onComplete();
       }
     }
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.client.filter.RSocketSupplier;
+import io.rsocket.client.filter.WeightedRSocketSupplier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RSocketSupplierPool} aware of the weight and the locality of the endpoints (see {@link
+ * WeightedRSocketSupplier}, plain {@link RSocketSupplier}s have a weight of 1 and no zone).
+ *
+ * <p>Endpoints in the local zone are leased first, in proportion to their weight and availability.
+ * Endpoints from other zones are leased once every local endpoint is already leased or unhealthy,
+ * and proportionally to the unhealthy fraction of the local zone when it falls below {@code
+ * spilloverThreshold}.
+ *
+ * <p>New collections of endpoints are applied incrementally: only the added and removed endpoints
+ * are touched, and {@link #add(RSocketSupplier)}/{@link #remove(RSocketSupplier)} can be used
+ * directly by discovery mechanisms emitting individual events.
+ */
+public class LocalityAwareRSocketSupplierPool extends RSocketSupplierPool {
+  public static final double DEFAULT_SPILLOVER_THRESHOLD = 0.7;
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(LocalityAwareRSocketSupplierPool.class);
+
+  private final String localZone;
+  private final double spilloverThreshold;
+
+  // all the following fields are guarded by the monitor of this
+  private final Map<RSocketSupplier, Endpoint> endpoints = new HashMap<>();
+  private final ArrayList<Endpoint> availableLocal = new ArrayList<>();
+  private final ArrayList<Endpoint> availableRemote = new ArrayList<>();
+  private int localCount;
+  private long generation;
+
+  /**
+   * @param publisher the source of endpoints
+   * @param localZone the zone of this client, if {@code null} every endpoint is considered local
+   * @param spilloverThreshold the fraction of healthy local endpoints below which some connections
+   *     are spilled over to other zones
+   */
+  public LocalityAwareRSocketSupplierPool(
+      Publisher<? extends Collection<RSocketSupplier>> publisher,
+      String localZone,
+      double spilloverThreshold) {
+    this.localZone = localZone;
+    this.spilloverThreshold = spilloverThreshold;
+    subscribe(publisher);
+  }
+
+  public LocalityAwareRSocketSupplierPool(
+      Publisher<? extends Collection<RSocketSupplier>> publisher, String localZone) {
+    this(publisher, localZone, DEFAULT_SPILLOVER_THRESHOLD);
+  }
+
+  @Override
+  protected synchronized void handleNewFactories(Collection<RSocketSupplier> newFactories) {
+    long generation = ++this.generation;
+    int seen = 0;
+    for (RSocketSupplier supplier : newFactories) {
+      Endpoint endpoint = endpoints.get(supplier);
+      if (endpoint == null) {
+        endpoint = doAdd(supplier);
+      }
+      if (endpoint.generation != generation) {
+        endpoint.generation = generation;
+        seen++;
+      }
+    }
+
+    // only sweep when some known endpoints were not part of the new collection
+    if (seen < endpoints.size()) {
+      Iterator<Endpoint> it = endpoints.values().iterator();
+      while (it.hasNext()) {
+        Endpoint endpoint = it.next();
+        if (endpoint.generation != generation) {
+          it.remove();
+          doRemove(endpoint);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a single endpoint to the pool.
+   *
+   * @param supplier the new endpoint
+   */
+  public synchronized void add(RSocketSupplier supplier) {
+    if (!endpoints.containsKey(supplier)) {
+      doAdd(supplier).generation = generation;
+    }
+  }
+
+  /**
+   * Removes a single endpoint from the pool and disposes it.
+   *
+   * @param supplier the removed endpoint
+   */
+  public synchronized void remove(RSocketSupplier supplier) {
+    Endpoint endpoint = endpoints.remove(supplier);
+    if (endpoint != null) {
+      doRemove(endpoint);
+    }
+  }
+
+  private Endpoint doAdd(RSocketSupplier supplier) {
+    Endpoint endpoint = new Endpoint(supplier, isLocal(supplier));
+    endpoints.put(supplier, endpoint);
+    if (endpoint.local) {
+      localCount++;
+    }
+    makeAvailable(endpoint);
+    logger.debug("Added {} to the pool", supplier);
+    return endpoint;
+  }
+
+  private void doRemove(Endpoint endpoint) {
+    if (!endpoint.leased) {
+      ArrayList<Endpoint> list = endpoint.local ? availableLocal : availableRemote;
+      swapRemove(list, endpoint.index);
+    }
+    if (endpoint.local) {
+      localCount--;
+    }
+    try {
+      endpoint.supplier.dispose();
+    } catch (Exception e) {
+      logger.warn("Exception while closing a RSocket", e);
+    }
+    logger.debug("Removed {} from the pool", endpoint.supplier);
+  }
+
+  private boolean isLocal(RSocketSupplier supplier) {
+    if (localZone == null) {
+      return true;
+    }
+    return supplier instanceof WeightedRSocketSupplier
+        && Objects.equals(localZone, ((WeightedRSocketSupplier) supplier).zone());
+  }
+
+  @Override
+  public synchronized void accept(RSocketSupplier rSocketSupplier) {
+    Endpoint endpoint = endpoints.get(rSocketSupplier);
+    if (endpoint != null && endpoint.leased && !rSocketSupplier.isDisposed()) {
+      makeAvailable(endpoint);
+    }
+  }
+
+  @Override
+  public synchronized Optional<RSocketSupplier> get() {
+    Endpoint endpoint;
+    if (preferLocal()) {
+      endpoint = pick(availableLocal);
+      if (endpoint == null) {
+        endpoint = pick(availableRemote);
+      }
+    } else {
+      endpoint = pick(availableRemote);
+      if (endpoint == null) {
+        endpoint = pick(availableLocal);
+      }
+    }
+
+    if (endpoint == null) {
+      return Optional.empty();
+    }
+
+    swapRemove(endpoint.local ? availableLocal : availableRemote, endpoint.index);
+    endpoint.leased = true;
+    logger.debug("Leased {}", endpoint.supplier);
+    return Optional.of(endpoint.supplier);
+  }
+
+  private boolean preferLocal() {
+    if (availableLocal.isEmpty()) {
+      // every local endpoint is already leased
+      return false;
+    }
+    if (availableRemote.isEmpty()) {
+      return true;
+    }
+
+    int healthy = localCount - availableLocal.size();
+    for (Endpoint endpoint : availableLocal) {
+      if (endpoint.supplier.availability() > 0.0) {
+        healthy++;
+      }
+    }
+    double healthyFraction = (double) healthy / localCount;
+    return healthyFraction >= spilloverThreshold
+        || ThreadLocalRandom.current().nextDouble() < healthyFraction / spilloverThreshold;
+  }
+
+  /** Picks an endpoint in proportion to its weight times its availability. */
+  private static Endpoint pick(ArrayList<Endpoint> candidates) {
+    int size = candidates.size();
+    double total = 0.0;
+    for (int i = 0; i < size; i++) {
+      total += candidates.get(i).score();
+    }
+    if (total == 0.0) {
+      return null;
+    }
+
+    double target = ThreadLocalRandom.current().nextDouble() * total;
+    Endpoint last = null;
+    for (int i = 0; i < size; i++) {
+      Endpoint endpoint = candidates.get(i);
+      double score = endpoint.score();
+      if (score > 0.0) {
+        last = endpoint;
+        target -= score;
+        if (target < 0.0) {
+          return endpoint;
+        }
+      }
+    }
+    // rounding errors or availability changed between the two loops
+    return last;
+  }
+
+  private void makeAvailable(Endpoint endpoint) {
+    ArrayList<Endpoint> list = endpoint.local ? availableLocal : availableRemote;
+    endpoint.leased = false;
+    endpoint.index = list.size();
+    list.add(endpoint);
+  }
+
+  private static void swapRemove(ArrayList<Endpoint> list, int index) {
+    Endpoint last = list.remove(list.size() - 1);
+    if (index < list.size()) {
+      list.set(index, last);
+      last.index = index;
+    }
+  }
+
+  @Override
+  public synchronized int poolSize() {
+    return availableLocal.size() + availableRemote.size();
+  }
+
+  @Override
+  public synchronized boolean isPoolEmpty() {
+    return availableLocal.isEmpty() && availableRemote.isEmpty();
+  }
+
+  @Override
+  public void dispose() {
+    super.dispose();
+    synchronized (this) {
+      for (Endpoint endpoint : endpoints.values()) {
+        try {
+          endpoint.supplier.dispose();
+        } catch (Throwable t) {
+        }
+      }
+    }
+  }
+
+  private static final class Endpoint {
+    final RSocketSupplier supplier;
+    final double weight;
+    final boolean local;
+    boolean leased;
+    int index; // position in its available list when not leased
+    long generation;
+
+    Endpoint(RSocketSupplier supplier, boolean local) {
+      this.supplier = supplier;
+      this.weight =
+          supplier instanceof WeightedRSocketSupplier
+              ? ((WeightedRSocketSupplier) supplier).weight()
+              : 1.0;
+      this.local = local;
+      this.leased = true;
+    }
+
+    double score() {
+      return weight * supplier.availability();
+    }
+  }
+}
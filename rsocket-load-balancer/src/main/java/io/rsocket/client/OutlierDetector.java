@@ -0,0 +1,403 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.client.filter.RSocketSupplier;
+import io.rsocket.util.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects the endpoints behaving worse than their peers and ejects them from the selection of the
+ * load balancer.
+ *
+ * <p>An endpoint is ejected when it fails {@code consecutiveFailures} requests in a row, or at the
+ * end of an analysis interval when its success rate is more than {@code successRateStdevFactor}
+ * standard deviations below the mean of its peers, or when its mean latency is more than {@code
+ * latencyFactor} times the median of its peers. Ejections last {@code baseEjectionTime} doubled at
+ * each new ejection of the same endpoint, up to {@code maxEjectionTime}, then the endpoint
+ * progressively gets back its share of traffic during {@code probePeriod}. An endpoint neither
+ * ejected nor probing during a whole interval gets one ejection forgiven.
+ *
+ * <p>At most {@code maxEjectionPercent} of the endpoints are ejected at the same time, and the
+ * statistical checks require at least 3 endpoints having served {@code minRequests} requests during
+ * the interval.
+ *
+ * <p>A detector is meant to be used by a single load balancer, see {@link
+ * LoadBalancedRSocketMono#create(org.reactivestreams.Publisher, OutlierDetector)}.
+ */
+public class OutlierDetector {
+  public static final int DEFAULT_CONSECUTIVE_FAILURES = 5;
+  public static final double DEFAULT_SUCCESS_RATE_STDEV_FACTOR = 1.9;
+  public static final double DEFAULT_LATENCY_FACTOR = 3.0;
+  public static final int DEFAULT_MIN_REQUESTS = 20;
+  public static final double DEFAULT_MAX_EJECTION_PERCENT = 0.5;
+  public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(10);
+  public static final Duration DEFAULT_BASE_EJECTION_TIME = Duration.ofSeconds(30);
+  public static final Duration DEFAULT_MAX_EJECTION_TIME = Duration.ofMinutes(5);
+  public static final Duration DEFAULT_PROBE_PERIOD = Duration.ofSeconds(30);
+
+  private static final Logger logger = LoggerFactory.getLogger(OutlierDetector.class);
+
+  private static final AtomicLongFieldUpdater<Endpoint> EJECTED_UNTIL =
+      AtomicLongFieldUpdater.newUpdater(Endpoint.class, "ejectedUntil");
+  private static final AtomicIntegerFieldUpdater<Endpoint> EJECTIONS =
+      AtomicIntegerFieldUpdater.newUpdater(Endpoint.class, "ejections");
+
+  private static final int MIN_PEERS = 3;
+  // share of the traffic an endpoint gets at the very beginning of its probe period
+  private static final double MIN_PROBE_ADMISSION = 0.1;
+
+  private final int consecutiveFailures;
+  private final double successRateStdevFactor;
+  private final double latencyFactor;
+  private final int minRequests;
+  private final double maxEjectionPercent;
+  private final long interval;
+  private final long baseEjectionTime;
+  private final long maxEjectionTime;
+  private final long probePeriod;
+
+  // updated under the monitor of this, read without locking when ejecting
+  private final Map<RSocketSupplier, Endpoint> endpoints = new ConcurrentHashMap<>();
+  private volatile long nextAnalysis;
+  // guarded by the monitor of this
+  private long lastAnalysis;
+
+  public OutlierDetector(
+      int consecutiveFailures,
+      double successRateStdevFactor,
+      double latencyFactor,
+      int minRequests,
+      double maxEjectionPercent,
+      Duration interval,
+      Duration baseEjectionTime,
+      Duration maxEjectionTime,
+      Duration probePeriod) {
+    this.consecutiveFailures = consecutiveFailures;
+    this.successRateStdevFactor = successRateStdevFactor;
+    this.latencyFactor = latencyFactor;
+    this.minRequests = minRequests;
+    this.maxEjectionPercent = maxEjectionPercent;
+    this.interval = toClockUnit(interval);
+    this.baseEjectionTime = toClockUnit(baseEjectionTime);
+    this.maxEjectionTime = toClockUnit(maxEjectionTime);
+    this.probePeriod = Math.max(1, toClockUnit(probePeriod));
+    this.lastAnalysis = Clock.now();
+    this.nextAnalysis = lastAnalysis + this.interval;
+  }
+
+  public OutlierDetector() {
+    this(
+        DEFAULT_CONSECUTIVE_FAILURES,
+        DEFAULT_SUCCESS_RATE_STDEV_FACTOR,
+        DEFAULT_LATENCY_FACTOR,
+        DEFAULT_MIN_REQUESTS,
+        DEFAULT_MAX_EJECTION_PERCENT,
+        DEFAULT_INTERVAL,
+        DEFAULT_BASE_EJECTION_TIME,
+        DEFAULT_MAX_EJECTION_TIME,
+        DEFAULT_PROBE_PERIOD);
+  }
+
+  private static long toClockUnit(Duration duration) {
+    return Clock.unit().convert(duration.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the statistics of the given endpoint, which are kept across reconnections until the
+   * supplier is disposed.
+   */
+  public synchronized Endpoint endpoint(RSocketSupplier supplier) {
+    Endpoint endpoint = endpoints.get(supplier);
+    if (endpoint == null) {
+      endpoint = new Endpoint(supplier);
+      endpoints.put(supplier, endpoint);
+      supplier.onClose().doFinally(signalType -> remove(supplier)).subscribe();
+    }
+    return endpoint;
+  }
+
+  private synchronized void remove(RSocketSupplier supplier) {
+    endpoints.remove(supplier);
+  }
+
+  /** @return true if the endpoint of the given supplier is currently ejected */
+  public boolean isEjected(RSocketSupplier supplier) {
+    Endpoint endpoint = endpoints.get(supplier);
+    return endpoint != null && endpoint.isEjected();
+  }
+
+  /**
+   * Runs the analysis if the current interval is over, cheap enough to be called on every request.
+   */
+  public void maybeAnalyze() {
+    long now = Clock.now();
+    if (now >= nextAnalysis) {
+      analyze(now);
+    }
+  }
+
+  synchronized void analyze(long now) {
+    long start = lastAnalysis;
+    lastAnalysis = now;
+    nextAnalysis = now + interval;
+
+    List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+    for (Endpoint endpoint : endpoints.values()) {
+      endpoint.snapshot();
+      long until = endpoint.ejectedUntil;
+      if (now < until) {
+        continue;
+      }
+      if (until != 0
+          && now >= until + probePeriod
+          && EJECTED_UNTIL.compareAndSet(endpoint, until, 0)) {
+        endpoint.healthySince = until + probePeriod;
+      }
+      candidates.add(endpoint);
+    }
+
+    checkSuccessRates(candidates, now);
+    checkLatencies(candidates, now);
+
+    for (Endpoint endpoint : candidates) {
+      // ejectedUntil is only cleared once the probe period is over, when healthySince is set
+      if (endpoint.ejectedUntil == 0 && endpoint.healthySince <= start) {
+        endpoint.forgive();
+      }
+    }
+  }
+
+  private void checkSuccessRates(List<Endpoint> candidates, long now) {
+    List<Endpoint> eligible = new ArrayList<>(candidates.size());
+    double sum = 0.0;
+    for (Endpoint endpoint : candidates) {
+      long requests = endpoint.lastSuccesses + endpoint.lastFailures;
+      if (requests >= minRequests) {
+        eligible.add(endpoint);
+        sum += (double) endpoint.lastSuccesses / requests;
+      }
+    }
+    if (eligible.size() < MIN_PEERS) {
+      return;
+    }
+
+    double mean = sum / eligible.size();
+    double variance = 0.0;
+    for (Endpoint endpoint : eligible) {
+      double delta = endpoint.successRate() - mean;
+      variance += delta * delta;
+    }
+    double threshold = mean - successRateStdevFactor * Math.sqrt(variance / eligible.size());
+
+    for (Endpoint endpoint : eligible) {
+      if (endpoint.successRate() < threshold) {
+        eject(endpoint, now, "success rate " + endpoint.successRate() + " below " + threshold);
+      }
+    }
+  }
+
+  private void checkLatencies(List<Endpoint> candidates, long now) {
+    List<Endpoint> eligible = new ArrayList<>(candidates.size());
+    for (Endpoint endpoint : candidates) {
+      if (endpoint.lastLatencyCount >= minRequests && now >= endpoint.ejectedUntil) {
+        eligible.add(endpoint);
+      }
+    }
+    if (eligible.size() < MIN_PEERS) {
+      return;
+    }
+
+    double[] latencies = new double[eligible.size()];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = eligible.get(i).meanLatency();
+    }
+    Arrays.sort(latencies);
+    double median = latencies[latencies.length / 2];
+    double threshold = latencyFactor * median;
+
+    for (Endpoint endpoint : eligible) {
+      if (endpoint.meanLatency() > threshold) {
+        eject(endpoint, now, "latency " + endpoint.meanLatency() + " above " + threshold);
+      }
+    }
+  }
+
+  /**
+   * Ejects an endpoint without locking, racing ejections of the same endpoint are settled by a CAS
+   * on its {@code ejectedUntil}. Racing ejections of different endpoints may briefly exceed {@code
+   * maxEjectionPercent} by one endpoint each.
+   */
+  private void eject(Endpoint endpoint, long now, String reason) {
+    if (now < endpoint.ejectedUntil) {
+      return;
+    }
+
+    int ejected = 0;
+    for (Endpoint e : endpoints.values()) {
+      if (now < e.ejectedUntil) {
+        ejected++;
+      }
+    }
+    if (ejected + 1 > (int) (maxEjectionPercent * endpoints.size())) {
+      logger.debug("Not ejecting {} ({}), too many endpoints are ejected", endpoint, reason);
+      return;
+    }
+
+    double duration;
+    for (; ; ) {
+      long until = endpoint.ejectedUntil;
+      if (now < until) {
+        // ejected by another thread meanwhile
+        return;
+      }
+      duration = Math.min(maxEjectionTime, baseEjectionTime * Math.pow(2, endpoint.ejections));
+      if (EJECTED_UNTIL.compareAndSet(endpoint, until, now + (long) duration)) {
+        break;
+      }
+    }
+    EJECTIONS.incrementAndGet(endpoint);
+    endpoint.consecutiveFailures.set(0);
+    logger.info(
+        "Ejecting {} for {}ms: {}",
+        endpoint,
+        TimeUnit.MILLISECONDS.convert((long) duration, Clock.unit()),
+        reason);
+  }
+
+  /** Statistics of an endpoint, recorded lock-free on the request path. */
+  public final class Endpoint {
+    private final RSocketSupplier supplier;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+
+    // claimed with a CAS by the thread ejecting the endpoint, cleared by the analysis
+    volatile long ejectedUntil;
+    volatile int ejections;
+    // the rest is written under the monitor of the detector
+    private long healthySince;
+    private long lastSuccesses;
+    private long lastFailures;
+    private long lastLatencySum;
+    private long lastLatencyCount;
+
+    private Endpoint(RSocketSupplier supplier) {
+      this.supplier = supplier;
+    }
+
+    /** Records a successful stream or fire-and-forget. */
+    public void onSuccess() {
+      successes.increment();
+      if (consecutiveFailures.get() != 0) {
+        consecutiveFailures.set(0);
+      }
+    }
+
+    /**
+     * Records a successful request-response.
+     *
+     * @param rtt the latency of the request, in {@link Clock#unit()}
+     */
+    public void onSuccess(long rtt) {
+      onSuccess();
+      latencySum.add(rtt);
+      latencyCount.increment();
+    }
+
+    public void onFailure() {
+      onFailure(Clock.now());
+    }
+
+    void onFailure(long now) {
+      failures.increment();
+      if (consecutiveFailures.incrementAndGet() >= OutlierDetector.this.consecutiveFailures) {
+        eject(this, now, consecutiveFailures.get() + " consecutive failures");
+      }
+    }
+
+    /**
+     * @return the share of its normal traffic the endpoint should get: 0 when ejected, growing
+     *     linearly during the probe period and 1 otherwise
+     */
+    public double admission() {
+      if (ejectedUntil == 0) {
+        return 1.0;
+      }
+      return admission(Clock.now());
+    }
+
+    double admission(long now) {
+      long until = ejectedUntil;
+      if (now < until) {
+        return 0.0;
+      }
+      long probing = now - until;
+      if (until == 0 || probing >= probePeriod) {
+        return 1.0;
+      }
+      return Math.max(MIN_PROBE_ADMISSION, (double) probing / probePeriod);
+    }
+
+    public boolean isEjected() {
+      return ejectedUntil != 0 && Clock.now() < ejectedUntil;
+    }
+
+    private void forgive() {
+      for (; ; ) {
+        int ejections = this.ejections;
+        if (ejections == 0 || EJECTIONS.compareAndSet(this, ejections, ejections - 1)) {
+          return;
+        }
+      }
+    }
+
+    private void snapshot() {
+      lastSuccesses = successes.sumThenReset();
+      lastFailures = failures.sumThenReset();
+      lastLatencySum = latencySum.sumThenReset();
+      lastLatencyCount = latencyCount.sumThenReset();
+    }
+
+    private double successRate() {
+      return (double) lastSuccesses / (lastSuccesses + lastFailures);
+    }
+
+    private double meanLatency() {
+      return (double) lastLatencySum / lastLatencyCount;
+    }
+
+    @Override
+    public String toString() {
+      return "Endpoint(" + supplier + ", ejections=" + ejections + ")";
+    }
+  }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.Availability;
+import io.rsocket.Closeable;
+import io.rsocket.RSocket;
+import io.rsocket.client.filter.RSocketSupplier;
+import io.rsocket.stat.Ewma;
+import io.rsocket.util.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * An implementation of {@link Mono} that load balances across a pool of RSockets using the "power
+ * of two choices" algorithm and emits one when it is subscribed to.
+ *
+ * <p>Unlike {@link LoadBalancedRSocketMono}, selecting an RSocket never takes a lock: the set of
+ * active RSockets is an immutable array replaced on every change (copy-on-write), and the
+ * per-RSocket statistics (outstanding requests and a peak-sensitive EWMA of the latency) are kept
+ * in lock-free cells. The aperture, i.e. the number of connections to maintain, is recomputed
+ * periodically on a background scheduler rather than on the request path.
+ */
+public class P2CLoadBalancedRSocketMono extends Mono<RSocket> implements Availability, Closeable {
+
+  public static final double DEFAULT_MIN_PENDING = 1.0;
+  public static final double DEFAULT_MAX_PENDING = 2.0;
+  public static final int DEFAULT_MIN_APERTURE = 3;
+  public static final int DEFAULT_MAX_APERTURE = 100;
+  public static final Duration DEFAULT_REFRESH_PERIOD = Duration.ofSeconds(1);
+  public static final Duration DEFAULT_LATENCY_HALF_LIFE = Duration.ofSeconds(5);
+
+  private static final Logger logger = LoggerFactory.getLogger(P2CLoadBalancedRSocketMono.class);
+  private static final long APERTURE_REFRESH_PERIOD = Clock.unit().convert(15, TimeUnit.SECONDS);
+  private static final long COLD_REFRESH_PERIOD = Clock.unit().convert(100, TimeUnit.MILLISECONDS);
+  private static final long WEIGHTED_SOCKET_RETRIES = 5;
+  private static final Duration WEIGHTED_SOCKET_BACK_OFF = Duration.ofMillis(500);
+  private static final Duration WEIGHTED_SOCKET_MAX_BACK_OFF = Duration.ofSeconds(5);
+  private static final WeightedRSocket[] EMPTY = new WeightedRSocket[0];
+
+  private final double minPendings;
+  private final double maxPendings;
+  private final int minAperture;
+  private final int maxAperture;
+  private final double tau;
+  private final RSocketSupplierPool pool;
+  private final Ewma pendings;
+  private final Mono<RSocket> rSocketMono;
+  private final MonoProcessor<Void> onClose = MonoProcessor.create();
+  private final Disposable refreshTask;
+
+  private static final AtomicLongFieldUpdater<P2CLoadBalancedRSocketMono> LAST_COLD_REFRESH =
+      AtomicLongFieldUpdater.newUpdater(P2CLoadBalancedRSocketMono.class, "lastColdRefresh");
+
+  /** Immutable snapshot of the connected RSockets, replaced under the monitor of this. */
+  private volatile WeightedRSocket[] activeSockets = EMPTY;
+
+  /** When select() last refreshed for lack of connected RSockets, claimed with a CAS. */
+  private volatile long lastColdRefresh;
+
+  // all the following fields are guarded by the monitor of this and never touched on select()
+  private int targetAperture;
+  private int connectingSockets;
+  private long lastApertureRefresh;
+
+  /**
+   * @param pool the pool of RSocketSupplier to pick new connections from
+   * @param minPendings The lower band of the average outstanding messages per server.
+   * @param maxPendings The higher band of the average outstanding messages per server.
+   * @param minAperture the minimum number of connections we want to maintain, independently of the
+   *     load.
+   * @param maxAperture the maximum number of connections we want to maintain, independently of the
+   *     load.
+   * @param refreshPeriod how often the aperture is re-evaluated and missing connections are
+   *     established.
+   * @param latencyHalfLife the half-life of the EWMA tracking the latency of each RSocket.
+   */
+  private P2CLoadBalancedRSocketMono(
+      RSocketSupplierPool pool,
+      double minPendings,
+      double maxPendings,
+      int minAperture,
+      int maxAperture,
+      Duration refreshPeriod,
+      Duration latencyHalfLife) {
+    this.minPendings = minPendings;
+    this.maxPendings = maxPendings;
+    this.minAperture = minAperture;
+    this.maxAperture = maxAperture;
+    this.targetAperture = minAperture;
+    this.tau = Clock.unit().convert(latencyHalfLife.toNanos(), TimeUnit.NANOSECONDS) / Math.log(2);
+    this.pendings = new Ewma(15, TimeUnit.SECONDS, (minPendings + maxPendings) / 2.0);
+    this.lastApertureRefresh = Clock.now();
+    // the first select refreshes right away, the factories may have been delivered since
+    this.lastColdRefresh = lastApertureRefresh - COLD_REFRESH_PERIOD;
+    this.pool = pool;
+    this.rSocketMono = Mono.fromSupplier(this::select);
+
+    refresh();
+
+    this.refreshTask =
+        Flux.interval(refreshPeriod, Schedulers.parallel())
+            .subscribe(
+                tick -> refresh(), t -> logger.error("error while refreshing the aperture", t));
+
+    onClose.doFinally(signalType -> pool.dispose()).subscribe();
+  }
+
+  public static P2CLoadBalancedRSocketMono create(
+      Publisher<? extends Collection<RSocketSupplier>> factories) {
+    return create(
+        factories,
+        DEFAULT_MIN_PENDING,
+        DEFAULT_MAX_PENDING,
+        DEFAULT_MIN_APERTURE,
+        DEFAULT_MAX_APERTURE,
+        DEFAULT_REFRESH_PERIOD,
+        DEFAULT_LATENCY_HALF_LIFE);
+  }
+
+  public static P2CLoadBalancedRSocketMono create(
+      Publisher<? extends Collection<RSocketSupplier>> factories,
+      double minPendings,
+      double maxPendings,
+      int minAperture,
+      int maxAperture,
+      Duration refreshPeriod,
+      Duration latencyHalfLife) {
+    return create(
+        new RSocketSupplierPool(factories),
+        minPendings,
+        maxPendings,
+        minAperture,
+        maxAperture,
+        refreshPeriod,
+        latencyHalfLife);
+  }
+
+  /**
+   * Creates a balancer picking the RSockets to connect to from the given pool, e.g. a {@link
+   * LocalityAwareRSocketSupplierPool}. The pool is disposed along with the balancer.
+   */
+  public static P2CLoadBalancedRSocketMono create(
+      RSocketSupplierPool pool,
+      double minPendings,
+      double maxPendings,
+      int minAperture,
+      int maxAperture,
+      Duration refreshPeriod,
+      Duration latencyHalfLife) {
+    return new P2CLoadBalancedRSocketMono(
+        pool, minPendings, maxPendings, minAperture, maxAperture, refreshPeriod, latencyHalfLife);
+  }
+
+  @Override
+  public void subscribe(CoreSubscriber<? super RSocket> actual) {
+    rSocketMono.subscribe(actual);
+  }
+
+  RSocket select() {
+    WeightedRSocket[] sockets = activeSockets;
+    int size = sockets.length;
+
+    if (size == 0) {
+      // nothing is connected, a single caller per period refreshes and the others fail fast
+      long now = Clock.now();
+      long last = lastColdRefresh;
+      if (now - last >= COLD_REFRESH_PERIOD && LAST_COLD_REFRESH.compareAndSet(this, last, now)) {
+        refresh();
+        sockets = activeSockets;
+        size = sockets.length;
+      }
+      if (size == 0) {
+        return FailingRSocket.INSTANCE;
+      }
+    }
+
+    if (size == 1) {
+      return sockets[0];
+    }
+
+    ThreadLocalRandom rng = ThreadLocalRandom.current();
+    int i1 = rng.nextInt(size);
+    int i2 = rng.nextInt(size - 1);
+    if (i2 >= i1) {
+      i2++;
+    }
+
+    WeightedRSocket rsc1 = sockets[i1];
+    WeightedRSocket rsc2 = sockets[i2];
+    return rsc1.weight() < rsc2.weight() ? rsc2 : rsc1;
+  }
+
+  /**
+   * Responsible for: - refreshing the aperture - adding/removing RSockets to match targetAperture.
+   * Runs periodically on a background scheduler.
+   */
+  private synchronized void refresh() {
+    if (onClose.isDisposed()) {
+      return;
+    }
+
+    WeightedRSocket[] sockets = activeSockets;
+    int n = sockets.length;
+    if (n > 0) {
+      double p = 0.0;
+      for (WeightedRSocket socket : sockets) {
+        p += socket.pending();
+      }
+      p /= n + connectingSockets;
+      pendings.insert(p);
+      double avgPending = pendings.value();
+
+      long now = Clock.now();
+      if (now - lastApertureRefresh > APERTURE_REFRESH_PERIOD) {
+        if (avgPending < minPendings) {
+          updateAperture(targetAperture - 1, now);
+        } else if (maxPendings < avgPending) {
+          updateAperture(targetAperture + 1, now);
+        }
+      }
+    }
+
+    int total = n + connectingSockets;
+    if (total < targetAperture && !pool.isPoolEmpty()) {
+      logger.debug(
+          "aperture {} is below target {}, adding {} sockets",
+          total,
+          targetAperture,
+          targetAperture - total);
+      addSockets(targetAperture - total);
+    } else if (targetAperture < n) {
+      logger.debug("aperture {} is above target {}, quicking 1 socket", n, targetAperture);
+      quickSlowestRS(sockets);
+    }
+  }
+
+  private void updateAperture(int newValue, long now) {
+    int previous = targetAperture;
+    int maxAperture =
+        Math.min(this.maxAperture, activeSockets.length + connectingSockets + pool.poolSize());
+    targetAperture = Math.min(maxAperture, Math.max(minAperture, newValue));
+    lastApertureRefresh = now;
+    pendings.reset((minPendings + maxPendings) / 2);
+
+    if (targetAperture != previous) {
+      logger.debug("new target={}, previous target={}", targetAperture, previous);
+    }
+  }
+
+  private void addSockets(int numberOfNewSocket) {
+    int n = Math.min(numberOfNewSocket, pool.poolSize());
+    for (int i = 0; i < n; i++) {
+      Optional<RSocketSupplier> optional = pool.get();
+      if (!optional.isPresent()) {
+        break;
+      }
+
+      RSocketSupplier supplier = optional.get();
+      connectingSockets++;
+      supplier
+          .get()
+          .retryWhen(
+              Retry.backoff(WEIGHTED_SOCKET_RETRIES, WEIGHTED_SOCKET_BACK_OFF)
+                  .maxBackoff(WEIGHTED_SOCKET_MAX_BACK_OFF))
+          .subscribe(
+              rSocket -> onConnect(supplier, rSocket),
+              t -> {
+                logger.error("error while connecting from factory {}", supplier, t);
+                onConnectError(supplier);
+              });
+    }
+  }
+
+  private synchronized void onConnect(RSocketSupplier supplier, RSocket rSocket) {
+    connectingSockets--;
+    if (onClose.isDisposed()) {
+      rSocket.dispose();
+      return;
+    }
+
+    WeightedRSocket socket = new WeightedRSocket(supplier, rSocket, tau);
+    WeightedRSocket[] sockets = activeSockets;
+    WeightedRSocket[] newSockets = Arrays.copyOf(sockets, sockets.length + 1);
+    newSockets[sockets.length] = socket;
+    activeSockets = newSockets;
+    logger.debug("Added {} from factory {} to activeSockets", socket, supplier);
+
+    // When RSocket is closed, remove it from the active set
+    rSocket.onClose().doFinally(signalType -> remove(socket)).subscribe();
+    // When the factory is closed, close the RSocket
+    supplier.onClose().doFinally(signalType -> rSocket.dispose()).subscribe();
+  }
+
+  private synchronized void onConnectError(RSocketSupplier supplier) {
+    connectingSockets--;
+    pool.accept(supplier);
+  }
+
+  private synchronized void remove(WeightedRSocket socket) {
+    WeightedRSocket[] sockets = activeSockets;
+    int n = sockets.length;
+    for (int i = 0; i < n; i++) {
+      if (sockets[i] == socket) {
+        WeightedRSocket[] newSockets = new WeightedRSocket[n - 1];
+        System.arraycopy(sockets, 0, newSockets, 0, i);
+        System.arraycopy(sockets, i + 1, newSockets, i, n - i - 1);
+        activeSockets = newSockets;
+        pool.accept(socket.supplier);
+        logger.debug("Removed {} from factory {} from activeSockets", socket, socket.supplier);
+        return;
+      }
+    }
+  }
+
+  private void quickSlowestRS(WeightedRSocket[] sockets) {
+    if (sockets.length <= 1) {
+      return;
+    }
+
+    WeightedRSocket slowest = null;
+    double lowestWeight = Double.MAX_VALUE;
+    for (WeightedRSocket socket : sockets) {
+      double weight = socket.weight();
+      if (weight < lowestWeight) {
+        lowestWeight = weight;
+        slowest = socket;
+      }
+    }
+
+    if (slowest != null) {
+      logger.debug("Disposing slowest WeightedRSocket {}", slowest);
+      slowest.dispose();
+    }
+  }
+
+  @Override
+  public double availability() {
+    WeightedRSocket[] sockets = activeSockets;
+    double currentAvailability = 0.0;
+    if (sockets.length > 0) {
+      for (WeightedRSocket rs : sockets) {
+        currentAvailability += rs.availability();
+      }
+      currentAvailability /= sockets.length;
+    }
+
+    return currentAvailability;
+  }
+
+  @Override
+  public String toString() {
+    return "P2CLoadBalancer(a:"
+        + activeSockets.length
+        + ", f: "
+        + pool.poolSize()
+        + ", avgPendings="
+        + pendings.value()
+        + ", targetAperture="
+        + targetAperture
+        + ")";
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (this) {
+      refreshTask.dispose();
+      WeightedRSocket[] sockets = activeSockets;
+      activeSockets = EMPTY;
+      onClose.onComplete();
+      for (WeightedRSocket socket : sockets) {
+        socket.dispose();
+      }
+    }
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return onClose.isDisposed();
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return onClose;
+  }
+}
@@ -26,10 +26,21 @@
   private final MonoProcessor<Void> onClose;
 
   public RSocketSupplierPool(Publisher<? extends Collection<RSocketSupplier>> publisher) {
+    this();
+    subscribe(publisher);
+  }
+
+  /**
+   * Creates a pool without subscribing to any source, subclasses must call {@link
+   * #subscribe(Publisher)} once their own state is initialized.
+   */
+  protected RSocketSupplierPool() {
     this.onClose = MonoProcessor.create();
     this.factoryPool = new ArrayList<>();
     this.leasedSuppliers = new ArrayList<>();
+  }
 
+  protected final void subscribe(Publisher<? extends Collection<RSocketSupplier>> publisher) {
     Disposable disposable =
         Flux.from(publisher)
             .doOnNext(this::handleNewFactories)
@@ -43,7 +54,7 @@ public RSocketSupplierPool(Publisher<? extends Collection<RSocketSupplier>> publ
     onClose.doFinally(s -> disposable.dispose()).subscribe();
   }
 
-  private synchronized void handleNewFactories(Collection<RSocketSupplier> newFactories) {
+  protected synchronized void handleNewFactories(Collection<RSocketSupplier> newFactories) {
     Set<RSocketSupplier> current = new HashSet<>(factoryPool.size() + leasedSuppliers.size());
     current.addAll(factoryPool);
     current.addAll(leasedSuppliers);
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.client.filter.RSocketSupplier;
+import io.rsocket.util.Clock;
+import io.rsocket.util.RSocketProxy;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Wrapper of a connected RSocket used by the lock-free balancers. It counts the outstanding
+ * requests and tracks a peak-sensitive EWMA of the request/response latency using only atomic field
+ * updates.
+ */
+class WeightedRSocket extends RSocketProxy {
+
+  private static final Logger logger = LoggerFactory.getLogger(WeightedRSocket.class);
+  private static final double STARTUP_PENALTY = Long.MAX_VALUE >> 12;
+
+  private static final AtomicIntegerFieldUpdater<WeightedRSocket> PENDING =
+      AtomicIntegerFieldUpdater.newUpdater(WeightedRSocket.class, "pending");
+
+  private static final AtomicLongFieldUpdater<WeightedRSocket> LATENCY =
+      AtomicLongFieldUpdater.newUpdater(WeightedRSocket.class, "latency");
+
+  final RSocketSupplier supplier;
+  private final double tau;
+
+  private volatile int pending;
+  private volatile long latency; // raw bits of the EWMA value, in Clock units
+  private volatile long stamp; // last time the latency was observed
+
+  /**
+   * @param supplier the supplier this RSocket has been obtained from
+   * @param source the connected RSocket
+   * @param tau the time constant of the latency EWMA, in {@link Clock#unit()}
+   */
+  WeightedRSocket(RSocketSupplier supplier, RSocket source, double tau) {
+    super(source);
+    this.supplier = supplier;
+    this.tau = tau;
+    this.stamp = Clock.now();
+  }
+
+  /**
+   * The higher the better. It is a function of availability, predicted latency and outstanding
+   * requests, computed from a few volatile reads only.
+   */
+  double weight() {
+    double availability = source.availability();
+    if (availability == 0.0) {
+      return 0.0;
+    }
+
+    int pending = this.pending;
+    double latency = Double.longBitsToDouble(this.latency);
+    if (latency == 0.0) {
+      // no history yet, penalize it as soon as it has something outstanding
+      return pending == 0 ? availability : availability / (1.0 + STARTUP_PENALTY + pending);
+    }
+
+    // decay toward zero while idle so that a slow RSocket is eventually probed again
+    long elapsed = Math.max(0L, Clock.now() - stamp);
+    latency *= Math.exp(-elapsed / tau);
+
+    return availability / (1.0 + latency * (pending + 1));
+  }
+
+  int pending() {
+    return pending;
+  }
+
+  void observe(long rtt) {
+    long now = Clock.now();
+    long elapsed = Math.max(0L, now - stamp);
+    for (; ; ) {
+      long bits = latency;
+      double prev = Double.longBitsToDouble(bits);
+      double next;
+      if (prev < rtt) {
+        // peak sensitive: react immediately to a latency increase
+        next = rtt;
+      } else {
+        double w = Math.exp(-elapsed / tau);
+        next = prev * w + rtt * (1.0 - w);
+      }
+      if (LATENCY.compareAndSet(this, bits, Double.doubleToRawLongBits(next))) {
+        break;
+      }
+    }
+    stamp = now;
+  }
+
+  @Override
+  public Mono<Payload> requestResponse(Payload payload) {
+    // Mono.from would cancel the source on the first element, before the latency is observed
+    return Mono.fromDirect(
+        subscriber ->
+            source
+                .requestResponse(payload)
+                .subscribe(new WeightedSubscriber<>(subscriber, this, true)));
+  }
+
+  @Override
+  public Flux<Payload> requestStream(Payload payload) {
+    return Flux.from(
+        subscriber ->
+            source
+                .requestStream(payload)
+                .subscribe(new WeightedSubscriber<>(subscriber, this, false)));
+  }
+
+  @Override
+  public Mono<Void> fireAndForget(Payload payload) {
+    return Mono.fromDirect(
+        subscriber ->
+            source
+                .fireAndForget(payload)
+                .subscribe(new WeightedSubscriber<>(subscriber, this, false)));
+  }
+
+  @Override
+  public Mono<Void> metadataPush(Payload payload) {
+    return Mono.fromDirect(
+        subscriber ->
+            source
+                .metadataPush(payload)
+                .subscribe(new WeightedSubscriber<>(subscriber, this, false)));
+  }
+
+  @Override
+  public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+    return Flux.from(
+        subscriber ->
+            source
+                .requestChannel(payloads)
+                .subscribe(new WeightedSubscriber<>(subscriber, this, false)));
+  }
+
+  @Override
+  public String toString() {
+    return "WeightedRSocket(latency="
+        + Double.longBitsToDouble(latency)
+        + " pending="
+        + pending
+        + " availability= "
+        + availability()
+        + ")->"
+        + source;
+  }
+
+  /**
+   * Subscriber wrapper counting the outstanding requests of a {@link WeightedRSocket} and,
+   * optionally, measuring the latency of the interaction. It is its own {@link Subscription} so
+   * that only one object is allocated per request.
+   */
+  private static final class WeightedSubscriber<U> implements CoreSubscriber<U>, Subscription {
+    private final Subscriber<? super U> child;
+    private final WeightedRSocket socket;
+    private final boolean measureLatency;
+    private Subscription s;
+    private long start;
+
+    private volatile int done;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<WeightedSubscriber> DONE =
+        AtomicIntegerFieldUpdater.newUpdater(WeightedSubscriber.class, "done");
+
+    WeightedSubscriber(
+        Subscriber<? super U> child, WeightedRSocket socket, boolean measureLatency) {
+      this.child = child;
+      this.socket = socket;
+      this.measureLatency = measureLatency;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      this.s = s;
+      this.start = Clock.now();
+      PENDING.incrementAndGet(socket);
+      child.onSubscribe(this);
+    }
+
+    @Override
+    public void request(long n) {
+      s.request(n);
+    }
+
+    @Override
+    public void cancel() {
+      if (DONE.compareAndSet(this, 0, 1)) {
+        s.cancel();
+        PENDING.decrementAndGet(socket);
+      }
+    }
+
+    @Override
+    public void onNext(U u) {
+      child.onNext(u);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      if (DONE.compareAndSet(this, 0, 1)) {
+        PENDING.decrementAndGet(socket);
+        child.onError(t);
+        if (t instanceof TransportException || t instanceof ClosedChannelException) {
+          logger.debug("Disposing {} because of error {}", socket, t);
+          socket.dispose();
+        } else if (measureLatency && t instanceof TimeoutException) {
+          socket.observe(Clock.now() - start);
+        }
+      }
+    }
+
+    @Override
+    public void onComplete() {
+      if (DONE.compareAndSet(this, 0, 1)) {
+        PENDING.decrementAndGet(socket);
+        if (measureLatency) {
+          socket.observe(Clock.now() - start);
+        }
+        child.onComplete();
+      }
+    }
+  }
+}
@@ -16,215 +16,595 @@
 
 package io.rsocket.client.filter;
 
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.rsocket.Availability;
+import io.rsocket.Closeable;
 import io.rsocket.Payload;
 import io.rsocket.RSocket;
-import io.rsocket.stat.FrugalQuantile;
-import io.rsocket.stat.Quantile;
+import io.rsocket.stat.LogBucketQuantile;
 import io.rsocket.util.Clock;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Supplier;
 import org.reactivestreams.Publisher;
-import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
 
+/**
+ * Hedges requests: when a request did not produce its first element after the given quantile of the
+ * observed latencies, a backup request is sent and the first one to answer wins, the other one
+ * being cancelled.
+ *
+ * <p>The extra load is bounded by a {@link HedgeBudget}. {@code requestStream} is only hedged when
+ * enabled, as it requires the streams to be idempotent: the stream producing the first element wins
+ * and carries the rest of the demand. When created with {@link #balanced}, every request picks its
+ * socket from the load balancer and backups are routed to a different socket than the original
+ * request.
+ *
+ * <p>Backup requests are scheduled on a timer wheel ticking every 10 milliseconds, shared by all
+ * the instances and stopped once they are all closed, unless a {@link ScheduledExecutorService} is
+ * provided. The latencies are recorded in lock-free {@link LogBucketQuantile}s.
+ */
 public class BackupRequestSocket implements RSocket {
-  private final ScheduledExecutorService executor;
-  private final RSocket child;
-  private final Quantile q;
+  private static final int HEDGE_PENDING = 0;
+  private static final int HEDGE_SENT = 1;
+  private static final int HEDGE_ABANDONED = 2;
+
+  // how many times the balancer is asked for a socket different from the original one
+  private static final int MAX_SELECTIONS = 3;
+
+  // backups cannot be sent more precisely than the tick of the timer wheel
+  private static final long TICK_MILLIS = 10;
+  private static final double RELATIVE_ACCURACY = 0.05;
+
+  private final Mono<RSocket> sockets;
+  private final boolean balanced;
+  private final Availability availability;
+  private final Closeable closeable;
+  private final HedgeTimer timer;
+  private final HedgeBudget budget;
+  private final boolean hedgeStreams;
+  private final LatencyQuantile q;
+  private final LatencyQuantile streamQ;
+
+  private BackupRequestSocket(
+      Mono<RSocket> sockets,
+      boolean balanced,
+      Availability availability,
+      Closeable closeable,
+      double quantile,
+      HedgeBudget budget,
+      boolean hedgeStreams,
+      HedgeTimer timer) {
+    this.sockets = sockets;
+    this.balanced = balanced;
+    this.availability = availability;
+    this.closeable = closeable;
+    this.timer = timer;
+    this.budget = budget;
+    this.hedgeStreams = hedgeStreams;
+    this.q = new LatencyQuantile(quantile);
+    this.streamQ = new LatencyQuantile(quantile);
+    closeable.onClose().doFinally(s -> timer.dispose()).subscribe(null, e -> {});
+  }
+
+  /**
+   * @param child the socket to send the requests and their backups to
+   * @param quantile the quantile of latency after which a backup request is sent
+   * @param budget the budget bounding the number of backup requests
+   * @param hedgeStreams whether {@code requestStream} is hedged, streams must then be idempotent
+   */
+  public BackupRequestSocket(
+      RSocket child, double quantile, HedgeBudget budget, boolean hedgeStreams) {
+    this(
+        Mono.just(child),
+        false,
+        child,
+        child,
+        quantile,
+        budget,
+        hedgeStreams,
+        SharedTimer.acquire());
+  }
 
   public BackupRequestSocket(RSocket child, double quantile, ScheduledExecutorService executor) {
-    this.child = child;
-    this.executor = executor;
-    q = new FrugalQuantile(quantile);
+    this(
+        Mono.just(child),
+        false,
+        child,
+        child,
+        quantile,
+        new HedgeBudget(),
+        false,
+        new HedgeTimer() {
+          @Override
+          public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+            ScheduledFuture<?> future = executor.schedule(task, delay, unit);
+            return () -> future.cancel(false);
+          }
+
+          @Override
+          public void dispose() {
+            // the executor is owned by the caller
+          }
+        });
   }
 
   public BackupRequestSocket(RSocket child, double quantile) {
-    this(child, quantile, Executors.newScheduledThreadPool(2));
+    this(child, quantile, new HedgeBudget(), false);
   }
 
   public BackupRequestSocket(RSocket child) {
     this(child, 0.99);
   }
 
+  /**
+   * Hedges the requests sent through a load balancer, each request and each backup request picking
+   * its own socket.
+   *
+   * @param balancer the load balancer, e.g. a {@link io.rsocket.client.LoadBalancedRSocketMono}
+   * @param quantile the quantile of latency after which a backup request is sent
+   * @param budget the budget bounding the number of backup requests
+   * @param hedgeStreams whether {@code requestStream} is hedged, streams must then be idempotent
+   */
+  public static <B extends Mono<RSocket> & Availability & Closeable> BackupRequestSocket balanced(
+      B balancer, double quantile, HedgeBudget budget, boolean hedgeStreams) {
+    return new BackupRequestSocket(
+        balancer, true, balancer, balancer, quantile, budget, hedgeStreams, SharedTimer.acquire());
+  }
+
   @Override
   public Mono<Void> fireAndForget(Payload payload) {
-    return child.fireAndForget(payload);
+    return sockets.flatMap(rSocket -> rSocket.fireAndForget(payload));
   }
 
   @Override
   public Mono<Payload> requestResponse(Payload payload) {
-    return Mono.from(
-        subscriber -> {
-          Subscriber<? super Payload> oneSubscriber = new OneSubscriber<>(subscriber);
-          Subscriber<? super Payload> backupRequest =
-              new FirstRequestSubscriber(oneSubscriber, () -> child.requestResponse(payload));
-          child.requestResponse(payload).subscribe(backupRequest);
-        });
+    return new HedgedMono(payload);
   }
 
   @Override
   public Flux<Payload> requestStream(Payload payload) {
-    return child.requestStream(payload);
+    if (hedgeStreams) {
+      return new HedgedFlux(payload);
+    }
+    return sockets.flatMapMany(rSocket -> rSocket.requestStream(payload));
   }
 
   @Override
   public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
-    return child.requestChannel(payloads);
+    return sockets.flatMapMany(rSocket -> rSocket.requestChannel(payloads));
   }
 
   @Override
   public Mono<Void> metadataPush(Payload payload) {
-    return child.metadataPush(payload);
+    return sockets.flatMap(rSocket -> rSocket.metadataPush(payload));
   }
 
   @Override
   public double availability() {
-    return child.availability();
+    return availability.availability();
   }
 
   @Override
   public void dispose() {
-    child.dispose();
+    closeable.dispose();
   }
 
   @Override
   public boolean isDisposed() {
-    return child.isDisposed();
+    return closeable.isDisposed();
   }
 
   @Override
   public Mono<Void> onClose() {
-    return child.onClose();
+    return closeable.onClose();
   }
 
   @Override
   public String toString() {
-    return "BackupRequest(q=" + q + ")->" + child;
+    return "BackupRequest(q=" + q + ", budget=" + budget + ")->" + closeable;
   }
 
-  private static class OneSubscriber<T> implements Subscriber<T> {
-    private final Subscriber<T> subscriber;
-    private final AtomicBoolean firstEvent;
-    private final AtomicBoolean firstTerminal;
+  private Mono<RSocket> selectBackupSocket(RSocket original) {
+    if (!balanced || original == null) {
+      return sockets;
+    }
+    return sockets
+        .repeat(MAX_SELECTIONS - 1)
+        .filter(rSocket -> rSocket != original)
+        .next()
+        .defaultIfEmpty(original);
+  }
+
+  /** Schedules the backup requests, disposed once the socket is closed. */
+  private interface HedgeTimer extends Disposable {
+    Disposable schedule(Runnable task, long delay, TimeUnit unit);
+  }
 
-    private OneSubscriber(Subscriber<T> subscriber) {
-      this.subscriber = subscriber;
-      this.firstEvent = new AtomicBoolean(false);
-      this.firstTerminal = new AtomicBoolean(false);
+  /**
+   * The timer wheel shared by the instances, created by the first one and stopped by the last one
+   * to be closed, so that an idle process does not keep a thread waking up every tick.
+   */
+  private static final class SharedTimer implements HedgeTimer {
+    private static HashedWheelTimer wheel; // guarded by SharedTimer.class
+    private static int references; // guarded by SharedTimer.class
+
+    private final HashedWheelTimer timer;
+    private volatile boolean disposed;
+
+    private SharedTimer(HashedWheelTimer timer) {
+      this.timer = timer;
     }
 
-    @Override
-    public void onSubscribe(Subscription s) {
-      subscriber.onSubscribe(s);
+    static synchronized SharedTimer acquire() {
+      if (references++ == 0) {
+        wheel =
+            new HashedWheelTimer(
+                new DefaultThreadFactory("rsocket-backup-request", true),
+                TICK_MILLIS,
+                TimeUnit.MILLISECONDS,
+                512);
+      }
+      return new SharedTimer(wheel);
     }
 
     @Override
-    public void onNext(T t) {
-      if (firstEvent.compareAndSet(false, true)) {
-        subscriber.onNext(t);
+    public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+      if (disposed) {
+        // the socket is closed, no backup is needed
+        return () -> {};
       }
+      Timeout timeout = timer.newTimeout(t -> task.run(), delay, unit);
+      return timeout::cancel;
     }
 
     @Override
-    public void onError(Throwable t) {
-      if (firstTerminal.compareAndSet(false, true)) {
-        subscriber.onError(t);
+    public void dispose() {
+      synchronized (SharedTimer.class) {
+        if (disposed) {
+          return;
+        }
+        disposed = true;
+        if (--references == 0) {
+          wheel.stop();
+          wheel = null;
+        }
       }
     }
 
     @Override
-    public void onComplete() {
-      if (firstTerminal.compareAndSet(false, true)) {
-        subscriber.onComplete();
-      }
+    public boolean isDisposed() {
+      return disposed;
     }
   }
 
-  private class FirstRequestSubscriber implements Subscriber<Payload> {
-    private final Subscriber<? super Payload> oneSubscriber;
-    private final Supplier<Publisher<Payload>> action;
-    private long start;
-    private ScheduledFuture<?> future;
-
-    private FirstRequestSubscriber(
-        Subscriber<? super Payload> oneSubscriber, Supplier<Publisher<Payload>> action) {
-      this.oneSubscriber = oneSubscriber;
-      this.action = action;
+  /**
+   * Records latencies in a lock-free sketch. Estimating reads all its buckets, so the estimation
+   * used by the requests is refreshed by the inserts at most once per tick of the timer.
+   */
+  private static final class LatencyQuantile {
+    private static final long REFRESH_PERIOD =
+        Clock.unit().convert(TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+    private final LogBucketQuantile quantile;
+    private volatile double estimation;
+    private volatile long estimatedAt = Long.MIN_VALUE;
+
+    private LatencyQuantile(double quantile) {
+      this.quantile =
+          new LogBucketQuantile(quantile, RELATIVE_ACCURACY, LogBucketQuantile.DEFAULT_MAX_VALUE);
     }
 
-    @Override
-    public void onSubscribe(Subscription s) {
-      start = Clock.now();
-      if (q.estimation() > 0) {
-        future =
-            executor.schedule(
-                () -> action.get().subscribe(new BackupRequestSubscriber<>(oneSubscriber, s)),
-                (long) q.estimation(),
-                TimeUnit.MICROSECONDS);
+    void insert(double latency) {
+      quantile.insert(latency);
+      long now = Clock.now();
+      long estimatedAt = this.estimatedAt;
+      if (estimatedAt == Long.MIN_VALUE || now - estimatedAt >= REFRESH_PERIOD) {
+        this.estimatedAt = now;
+        estimation = quantile.estimation();
       }
-      oneSubscriber.onSubscribe(s);
     }
 
-    @Override
-    public void onNext(Payload t) {
-      if (future != null) {
-        future.cancel(true);
-      }
-      oneSubscriber.onNext(t);
-      long latency = Clock.now() - start;
-      q.insert(latency);
+    double estimation() {
+      return estimation;
     }
 
     @Override
-    public void onError(Throwable t) {
-      oneSubscriber.onError(t);
+    public String toString() {
+      return quantile.toString();
+    }
+  }
+
+  private final class HedgedMono extends Mono<Payload> {
+    private final Payload payload;
+
+    private HedgedMono(Payload payload) {
+      this.payload = payload;
     }
 
     @Override
-    public void onComplete() {
-      oneSubscriber.onComplete();
+    public void subscribe(CoreSubscriber<? super Payload> actual) {
+      actual.onSubscribe(new HedgedRequest(actual, payload, false));
     }
   }
 
-  private class BackupRequestSubscriber<T> implements Subscriber<T> {
-    private final Subscriber<? super T> oneSubscriber;
-    private final Subscription firstRequestSubscription;
-    private long start;
+  private final class HedgedFlux extends Flux<Payload> {
+    private final Payload payload;
 
-    private BackupRequestSubscriber(
-        Subscriber<? super T> oneSubscriber, Subscription firstRequestSubscription) {
-      this.oneSubscriber = oneSubscriber;
-      this.firstRequestSubscription = firstRequestSubscription;
+    private HedgedFlux(Payload payload) {
+      this.payload = payload;
     }
 
     @Override
-    public void onSubscribe(Subscription s) {
-      start = Clock.now();
-      s.request(1);
+    public void subscribe(CoreSubscriber<? super Payload> actual) {
+      actual.onSubscribe(new HedgedRequest(actual, payload, true));
+    }
+  }
+
+  /**
+   * Coordinates the original request and its backup. State transitions happen under the monitor of
+   * this and at most twice per request, once a winner is elected its elements are forwarded without
+   * locking.
+   */
+  private final class HedgedRequest implements Subscription, Runnable {
+    private final CoreSubscriber<? super Payload> actual;
+    private final Payload payload;
+    private final boolean stream;
+
+    private volatile Attempt winner;
+
+    // all the following fields are guarded by the monitor of this
+    private Attempt original;
+    private Attempt backup;
+    private long requested;
+    private boolean cancelled;
+    private int hedgeState = HEDGE_ABANDONED;
+    private Disposable timeout;
+
+    private HedgedRequest(CoreSubscriber<? super Payload> actual, Payload payload, boolean stream) {
+      this.actual = actual;
+      this.payload = payload;
+      this.stream = stream;
     }
 
     @Override
-    public void onNext(T t) {
-      firstRequestSubscription.cancel();
-      oneSubscriber.onNext(t);
-      long latency = Clock.now() - start;
-      q.insert(latency);
+    public void request(long n) {
+      if (!Operators.validate(n)) {
+        return;
+      }
+
+      Attempt w = winner;
+      if (w != null) {
+        w.request(n);
+        return;
+      }
+
+      Attempt attempt;
+      boolean start = false;
+      double estimation = 0.0;
+      synchronized (this) {
+        w = winner;
+        if (w == null) {
+          if (cancelled) {
+            return;
+          }
+          requested = Operators.addCap(requested, n);
+          if (original == null) {
+            start = true;
+            original = new Attempt();
+            estimation = (stream ? streamQ : q).estimation();
+            if (estimation > 0) {
+              // the requester releases the payload once sent, keep it for the backup
+              payload.retain();
+              hedgeState = HEDGE_PENDING;
+            }
+          }
+        }
+        attempt = original;
+      }
+
+      if (w != null) {
+        w.request(n);
+      } else if (start) {
+        budget.deposit();
+        if (estimation > 0) {
+          Disposable t = timer.schedule(this, (long) estimation, Clock.unit());
+          synchronized (this) {
+            if (hedgeState == HEDGE_PENDING) {
+              timeout = t;
+            } else {
+              t.dispose();
+            }
+          }
+        }
+        attempt.request(n);
+        send(attempt, sockets);
+      } else {
+        attempt.request(n);
+      }
     }
 
+    /** Sends the backup request once the timer expires. */
     @Override
-    public void onError(Throwable t) {
-      oneSubscriber.onError(t);
+    public void run() {
+      Attempt attempt;
+      RSocket avoid;
+      synchronized (this) {
+        if (hedgeState != HEDGE_PENDING) {
+          return;
+        }
+        timeout = null;
+        if (!budget.tryWithdraw()) {
+          abandonHedge();
+          return;
+        }
+        hedgeState = HEDGE_SENT;
+        attempt = backup = new Attempt();
+        avoid = original.rSocket;
+      }
+
+      // only the first element is hedged, the rest of the demand is requested from the winner
+      attempt.request(1);
+      send(attempt, selectBackupSocket(avoid));
     }
 
     @Override
-    public void onComplete() {
-      oneSubscriber.onComplete();
+    public void cancel() {
+      Attempt o;
+      Attempt b;
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        cancelled = true;
+        abandonHedge();
+        o = original;
+        b = backup;
+      }
+      if (o != null) {
+        o.cancel();
+      }
+      if (b != null) {
+        b.cancel();
+      }
+    }
+
+    private void send(Attempt attempt, Mono<RSocket> selection) {
+      // the payload is only released by the socket it is sent to
+      selection = selection.doOnError(e -> ReferenceCountUtil.safeRelease(payload));
+      if (stream) {
+        selection
+            .flatMapMany(
+                rSocket -> {
+                  attempt.rSocket = rSocket;
+                  return rSocket.requestStream(payload);
+                })
+            .subscribe(attempt);
+      } else {
+        selection
+            .flatMap(
+                rSocket -> {
+                  attempt.rSocket = rSocket;
+                  return rSocket.requestResponse(payload);
+                })
+            .subscribe(attempt);
+      }
+    }
+
+    /** Must be called under the monitor of this. */
+    private void abandonHedge() {
+      if (hedgeState == HEDGE_PENDING) {
+        hedgeState = HEDGE_ABANDONED;
+        if (timeout != null) {
+          timeout.dispose();
+          timeout = null;
+        }
+        payload.release();
+      }
+    }
+
+    private void onNext(Attempt attempt, Payload p) {
+      Attempt w = winner;
+      if (w == null) {
+        w = elect(attempt);
+      }
+      if (w == attempt) {
+        actual.onNext(p);
+      } else {
+        p.release();
+      }
+    }
+
+    private Attempt elect(Attempt attempt) {
+      Attempt loser;
+      long remaining;
+      synchronized (this) {
+        if (winner != null) {
+          return winner;
+        }
+        winner = attempt;
+        abandonHedge();
+        loser = attempt == original ? backup : original;
+        remaining = requested;
+      }
+
+      // a lower bound of the original latency when the backup wins
+      (stream ? streamQ : q).insert(Clock.now() - original.start);
+      if (loser != null) {
+        loser.cancel();
+      }
+      if (stream && attempt != original) {
+        // the backup only requested its first element so far
+        long r = remaining == Long.MAX_VALUE ? remaining : remaining - 1;
+        if (r > 0) {
+          attempt.request(r);
+        }
+      }
+      return attempt;
+    }
+
+    private void onTerminate(Attempt attempt, Throwable t) {
+      synchronized (this) {
+        attempt.done = true;
+        if (winner == null) {
+          Attempt other = attempt == original ? backup : original;
+          if (other != null && !other.done) {
+            // let the other attempt decide of the outcome
+            return;
+          }
+          winner = attempt;
+          abandonHedge();
+        } else if (winner != attempt) {
+          return;
+        }
+      }
+
+      if (t == null) {
+        actual.onComplete();
+      } else {
+        actual.onError(t);
+      }
+    }
+
+    private final class Attempt extends Operators.DeferredSubscription
+        implements CoreSubscriber<Payload> {
+      private final long start = Clock.now();
+      private volatile RSocket rSocket;
+      private boolean done; // guarded by the monitor of the HedgedRequest
+
+      @Override
+      public Context currentContext() {
+        return actual.currentContext();
+      }
+
+      @Override
+      public void onSubscribe(Subscription s) {
+        set(s);
+      }
+
+      @Override
+      public void onNext(Payload p) {
+        HedgedRequest.this.onNext(this, p);
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        onTerminate(this, t);
+      }
+
+      @Override
+      public void onComplete() {
+        onTerminate(this, null);
+      }
     }
   }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client.filter;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Token bucket bounding the extra load added by hedged requests: every original request deposits
+ * {@code ratio} token and every hedge withdraws a whole token, so that hedges never exceed {@code
+ * ratio} of the traffic. Up to {@code maxBurst} tokens can be accumulated while the hedges are not
+ * needed, the bucket starts full.
+ *
+ * <p>A budget can be shared by several {@link BackupRequestSocket}s to bound their total extra
+ * load.
+ */
+public final class HedgeBudget {
+  public static final double DEFAULT_RATIO = 0.05;
+  public static final int DEFAULT_MAX_BURST = 10;
+
+  // tokens are stored in fixed point to keep the bucket a single atomic long
+  private static final long SCALE = 1_000_000L;
+
+  private static final AtomicLongFieldUpdater<HedgeBudget> BALANCE =
+      AtomicLongFieldUpdater.newUpdater(HedgeBudget.class, "balance");
+
+  private final double ratio;
+  private final long deposit;
+  private final long max;
+
+  private volatile long balance;
+
+  /**
+   * @param ratio the maximum fraction of requests which can be hedged, in {@code [0, 1]}
+   * @param maxBurst the maximum number of hedges which can be sent in a row
+   */
+  public HedgeBudget(double ratio, int maxBurst) {
+    if (ratio < 0.0 || ratio > 1.0) {
+      throw new IllegalArgumentException("ratio must be in [0, 1]: " + ratio);
+    }
+    if (maxBurst < 0) {
+      throw new IllegalArgumentException("maxBurst must be positive: " + maxBurst);
+    }
+    this.ratio = ratio;
+    this.deposit = (long) (ratio * SCALE);
+    this.max = maxBurst * SCALE;
+    this.balance = max;
+  }
+
+  public HedgeBudget() {
+    this(DEFAULT_RATIO, DEFAULT_MAX_BURST);
+  }
+
+  /** Records an original request, earning a fraction of a hedge. */
+  public void deposit() {
+    for (; ; ) {
+      long b = balance;
+      if (b >= max) {
+        // no write at all on the common path where the bucket is full
+        return;
+      }
+      if (BALANCE.compareAndSet(this, b, Math.min(max, b + deposit))) {
+        return;
+      }
+    }
+  }
+
+  /** @return true if a hedge can be sent, in which case its token has been consumed */
+  public boolean tryWithdraw() {
+    for (; ; ) {
+      long b = balance;
+      if (b < SCALE) {
+        return false;
+      }
+      if (BALANCE.compareAndSet(this, b, b - SCALE)) {
+        return true;
+      }
+    }
+  }
+
+  /** @return the number of hedges which can currently be sent */
+  public double balance() {
+    return (double) balance / SCALE;
+  }
+
+  @Override
+  public String toString() {
+    return "HedgeBudget(ratio=" + ratio + ", balance=" + balance() + ")";
+  }
+}
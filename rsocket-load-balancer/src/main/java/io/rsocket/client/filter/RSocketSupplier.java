@@ -20,7 +20,7 @@
 import io.rsocket.Closeable;
 import io.rsocket.Payload;
 import io.rsocket.RSocket;
-import io.rsocket.stat.Ewma;
+import io.rsocket.stat.AtomicEwma;
 import io.rsocket.util.Clock;
 import io.rsocket.util.RSocketProxy;
 import java.util.concurrent.TimeUnit;
@@ -40,14 +40,14 @@ public class RSocketSupplier implements Availability, Supplier<Mono<RSocket>>, C
   private final MonoProcessor<Void> onClose;
 
   private final long tau;
-  private long stamp;
-  private final Ewma errorPercentage;
+  private volatile long stamp;
+  private final AtomicEwma errorPercentage;
 
   public RSocketSupplier(Supplier<Mono<RSocket>> rSocketSupplier, long halfLife, TimeUnit unit) {
     this.rSocketSupplier = rSocketSupplier;
     this.tau = Clock.unit().convert((long) (halfLife / Math.log(2)), unit);
     this.stamp = Clock.now();
-    this.errorPercentage = new Ewma(halfLife, unit, 1.0);
+    this.errorPercentage = new AtomicEwma(halfLife, unit, 1.0);
     this.onClose = MonoProcessor.create();
   }
 
@@ -72,7 +72,7 @@ public double availability() {
     return e;
   }
 
-  private synchronized void updateErrorPercentage(double value) {
+  private void updateErrorPercentage(double value) {
     errorPercentage.insert(value);
     stamp = Clock.now();
   }
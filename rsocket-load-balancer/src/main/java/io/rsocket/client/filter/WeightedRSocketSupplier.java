@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client.filter;
+
+import io.rsocket.RSocket;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link RSocketSupplier} for an endpoint carrying a relative weight and a locality (zone, rack,
+ * ...), as used by {@link io.rsocket.client.LocalityAwareRSocketSupplierPool}.
+ */
+public class WeightedRSocketSupplier extends RSocketSupplier {
+
+  private final double weight;
+  private final String zone;
+
+  public WeightedRSocketSupplier(
+      Supplier<Mono<RSocket>> rSocketSupplier,
+      double weight,
+      String zone,
+      long halfLife,
+      TimeUnit unit) {
+    super(rSocketSupplier, halfLife, unit);
+    if (weight <= 0.0) {
+      throw new IllegalArgumentException("weight must be positive: " + weight);
+    }
+    this.weight = weight;
+    this.zone = zone;
+  }
+
+  public WeightedRSocketSupplier(
+      Supplier<Mono<RSocket>> rSocketSupplier, double weight, String zone) {
+    this(rSocketSupplier, weight, zone, 5, TimeUnit.SECONDS);
+  }
+
+  /** @return the relative weight of this endpoint, higher means more traffic */
+  public double weight() {
+    return weight;
+  }
+
+  /** @return the locality of this endpoint, or {@code null} if unknown */
+  public String zone() {
+    return zone;
+  }
+
+  @Override
+  public String toString() {
+    return "WeightedRSocketSupplier(weight=" + weight + ", zone=" + zone + ")";
+  }
+}
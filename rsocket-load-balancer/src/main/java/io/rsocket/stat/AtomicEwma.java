@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.stat;
+
+import io.rsocket.util.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Lock-free version of {@link Ewma}: the value is stored as the raw bits of a double and updated
+ * with a CAS loop, and the timestamp is swapped atomically so that every elapsed interval is
+ * accounted for exactly once.
+ *
+ * <p>The total decay matches the elapsed time. The weight of an inserted value grows with the time
+ * elapsed since the previous insert, so a value inserted concurrently with another one may see no
+ * elapsed time and be ignored, as with {@link Ewma} when two values are inserted at the same time.
+ * Values inserted concurrently may also be applied in a different order than their timestamps.
+ */
+public class AtomicEwma {
+  private static final AtomicLongFieldUpdater<AtomicEwma> STAMP =
+      AtomicLongFieldUpdater.newUpdater(AtomicEwma.class, "stamp");
+  private static final AtomicLongFieldUpdater<AtomicEwma> EWMA =
+      AtomicLongFieldUpdater.newUpdater(AtomicEwma.class, "ewma");
+
+  private final double tau;
+  private volatile long stamp;
+  private volatile long ewma; // raw bits of the double value
+
+  public AtomicEwma(long halfLife, TimeUnit unit, double initialValue) {
+    this.tau = Clock.unit().convert((long) (halfLife / Math.log(2)), unit);
+    this.stamp = 0L;
+    this.ewma = Double.doubleToRawLongBits(initialValue);
+  }
+
+  public void insert(double x) {
+    long now = Clock.now();
+    long previous = STAMP.getAndSet(this, now);
+    double w = Math.exp(-Math.max(0, now - previous) / tau);
+
+    for (; ; ) {
+      long bits = ewma;
+      double next = w * Double.longBitsToDouble(bits) + (1.0 - w) * x;
+      if (EWMA.compareAndSet(this, bits, Double.doubleToRawLongBits(next))) {
+        return;
+      }
+    }
+  }
+
+  public void reset(double value) {
+    stamp = 0L;
+    ewma = Double.doubleToRawLongBits(value);
+  }
+
+  public double value() {
+    return Double.longBitsToDouble(ewma);
+  }
+
+  @Override
+  public String toString() {
+    return "AtomicEwma(value=" + value() + ", age=" + (Clock.now() - stamp) + ")";
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.stat;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Quantile sketch with logarithmic buckets, in the spirit of DDSketch.
+ *
+ * <p>Reference: Masson, Charles, Jee E. Rim, and Homin K. Lee. "DDSketch: A Fast and
+ * Fully-Mergeable Quantile Sketch with Relative-Error Guarantees." PVLDB 12(12), 2019.
+ *
+ * <p>Bucket {@code i > 0} covers {@code (gamma^(i-2), gamma^(i-1)]} with {@code gamma = (1 + a) /
+ * (1 - a)}, so that any quantile of the values in {@code [1, maxValue]} is estimated within a
+ * relative error of {@code a}. Bucket 0 counts the values below 1, estimated as 0, and values above
+ * {@code maxValue} are counted as {@code maxValue}.
+ *
+ * <p>Inserts are lock-free and spread over several stripes of counters picked by thread, so that
+ * concurrent threads rarely touch the same cache lines. Estimations sum all the stripes and are
+ * meant to be read much less often than values are inserted. Sketches with the same accuracy and
+ * range can be merged.
+ */
+public class LogBucketQuantile implements Quantile {
+  public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+  // one hour in microseconds, the unit of io.rsocket.util.Clock
+  public static final double DEFAULT_MAX_VALUE = 3_600_000_000.0;
+
+  private static final int DEFAULT_STRIPES =
+      Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+  private final double quantile;
+  private final double relativeAccuracy;
+  private final double maxValue;
+  private final double gamma;
+  private final double logGamma;
+  private final int buckets;
+  private final AtomicLongArray[] stripes;
+  private final int mask;
+
+  /**
+   * @param quantile the quantile returned by {@link #estimation()}
+   * @param relativeAccuracy the maximum relative error of the estimations, in {@code (0, 1)}
+   * @param maxValue the largest value tracked accurately
+   * @param stripes the number of stripes of counters, rounded up to a power of 2
+   */
+  public LogBucketQuantile(double quantile, double relativeAccuracy, double maxValue, int stripes) {
+    if (relativeAccuracy <= 0.0 || relativeAccuracy >= 1.0) {
+      throw new IllegalArgumentException("relativeAccuracy must be in (0, 1): " + relativeAccuracy);
+    }
+    if (maxValue < 1.0) {
+      throw new IllegalArgumentException("maxValue must be at least 1: " + maxValue);
+    }
+    this.quantile = quantile;
+    this.relativeAccuracy = relativeAccuracy;
+    this.maxValue = maxValue;
+    this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    this.logGamma = Math.log(gamma);
+    // bucket 0 counts the values below 1
+    this.buckets = 2 + (int) Math.ceil(Math.log(maxValue) / logGamma);
+
+    int n = Integer.highestOneBit(Math.max(1, stripes) * 2 - 1);
+    this.stripes = new AtomicLongArray[n];
+    for (int i = 0; i < n; i++) {
+      this.stripes[i] = new AtomicLongArray(buckets);
+    }
+    this.mask = n - 1;
+  }
+
+  public LogBucketQuantile(double quantile, double relativeAccuracy, double maxValue) {
+    this(quantile, relativeAccuracy, maxValue, DEFAULT_STRIPES);
+  }
+
+  public LogBucketQuantile(double quantile) {
+    this(quantile, DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_VALUE);
+  }
+
+  @Override
+  public void insert(double x) {
+    stripe().incrementAndGet(index(x));
+  }
+
+  private AtomicLongArray stripe() {
+    long id = Thread.currentThread().getId();
+    // spread consecutive thread ids over the stripes
+    int h = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+    return stripes[h & mask];
+  }
+
+  private int index(double x) {
+    if (!(x >= 1.0)) {
+      return 0;
+    }
+    if (x >= maxValue) {
+      return buckets - 1;
+    }
+    return 1 + (int) Math.ceil(Math.log(x) / logGamma);
+  }
+
+  private double value(int index) {
+    if (index == 0) {
+      return 0.0;
+    }
+    // the middle of the bucket in relative terms, at most relativeAccuracy away from its values
+    return Math.min(maxValue, 2.0 * Math.pow(gamma, index - 1) / (gamma + 1.0));
+  }
+
+  /** @return the estimation of the quantile given at construction */
+  @Override
+  public double estimation() {
+    return quantile(quantile);
+  }
+
+  /**
+   * @param q the quantile to estimate, in {@code [0, 1]}
+   * @return the estimation of the quantile {@code q} of the inserted values, 0 if empty
+   */
+  public double quantile(double q) {
+    long[] counts = snapshot();
+    long count = 0;
+    for (long c : counts) {
+      count += c;
+    }
+    if (count == 0) {
+      return 0.0;
+    }
+
+    double rank = q * (count - 1);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen > rank) {
+        return value(i);
+      }
+    }
+    return value(counts.length - 1);
+  }
+
+  /** @return the number of inserted values */
+  public long count() {
+    long count = 0;
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i < buckets; i++) {
+        count += stripe.get(i);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Adds the values of another sketch to this one.
+   *
+   * @param other a sketch with the same accuracy and range
+   */
+  public void merge(LogBucketQuantile other) {
+    if (other.relativeAccuracy != relativeAccuracy || other.maxValue != maxValue) {
+      throw new IllegalArgumentException("Cannot merge " + other + " into " + this);
+    }
+    long[] counts = other.snapshot();
+    AtomicLongArray stripe = stripe();
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        stripe.addAndGet(i, counts[i]);
+      }
+    }
+  }
+
+  /** Removes all the values, concurrent inserts may or may not be kept. */
+  public void reset() {
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i < buckets; i++) {
+        stripe.set(i, 0L);
+      }
+    }
+  }
+
+  private long[] snapshot() {
+    long[] counts = new long[buckets];
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i < buckets; i++) {
+        counts[i] += stripe.get(i);
+      }
+    }
+    return counts;
+  }
+
+  @Override
+  public String toString() {
+    return "LogBucketQuantile(q="
+        + quantile
+        + ", accuracy="
+        + relativeAccuracy
+        + ", v="
+        + estimation()
+        + ")";
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.RSocket;
+import io.rsocket.client.filter.RSocketSupplier;
+import io.rsocket.util.EmptyPayload;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class DeterministicApertureRSocketMonoTest {
+
+  /**
+   * Simulates a fleet of clients and checks that every client holds a small number of connections
+   * while the servers receive an even share of the requests, whereas picking random subsets of the
+   * same size does not.
+   */
+  @Test
+  public void testLoadDistributionSimulation() {
+    int clients = 300;
+    int servers = 50;
+    int minAperture = 4;
+    int requestsPerClient = 2_000;
+    Random rng = new Random(42);
+
+    long[] deterministicLoad = new long[servers];
+    long[] randomLoad = new long[servers];
+    for (int c = 0; c < clients; c++) {
+      ApertureRing ring = new ApertureRing(c, clients, servers, minAperture);
+      Assert.assertTrue(ring.toString(), ring.aperture() <= minAperture + 1);
+
+      for (int r = 0; r < requestsPerClient; r++) {
+        deterministicLoad[ring.pick(rng)]++;
+      }
+
+      List<Integer> randomSubset = new ArrayList<>();
+      while (randomSubset.size() < ring.aperture()) {
+        int server = rng.nextInt(servers);
+        if (!randomSubset.contains(server)) {
+          randomSubset.add(server);
+        }
+      }
+      for (int r = 0; r < requestsPerClient; r++) {
+        randomLoad[randomSubset.get(rng.nextInt(randomSubset.size()))]++;
+      }
+    }
+
+    double deterministicSpread = spread(deterministicLoad);
+    double randomSpread = spread(randomLoad);
+    Assert.assertTrue("max/min load: " + deterministicSpread, deterministicSpread < 1.1);
+    Assert.assertTrue(
+        "deterministic: " + deterministicSpread + ", random: " + randomSpread,
+        deterministicSpread < randomSpread);
+  }
+
+  @Test
+  public void testEveryServerIsCoveredWhenThereAreMoreServersThanClients() {
+    int clients = 7;
+    int servers = 100;
+    boolean[] covered = new boolean[servers];
+
+    for (int c = 0; c < clients; c++) {
+      ApertureRing ring = new ApertureRing(c, clients, servers, 3);
+      for (int i = 0; i < ring.aperture(); i++) {
+        covered[ring.indexAt(i)] = true;
+      }
+    }
+
+    for (int s = 0; s < servers; s++) {
+      Assert.assertTrue("server " + s + " is never used", covered[s]);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsInvalidCoordinate() {
+    DeterministicApertureRSocketMono.create(Flux.never(), 2, 2);
+  }
+
+  @Test(timeout = 10_000L)
+  public void testOnlyConnectsToItsSlice() {
+    List<TestingRSocket> sockets = new ArrayList<>();
+    List<RSocketSupplier> suppliers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      TestingRSocket socket = new TestingRSocket(Function.identity());
+      sockets.add(socket);
+      suppliers.add(succeedingFactory(socket));
+    }
+
+    DeterministicApertureRSocketMono balancer =
+        DeterministicApertureRSocketMono.create(
+            Flux.just(suppliers),
+            1,
+            2,
+            1,
+            DeterministicApertureRSocketMono.DEFAULT_REFRESH_PERIOD,
+            DeterministicApertureRSocketMono.DEFAULT_LATENCY_HALF_LIFE);
+
+    Flux.range(0, 100)
+        .flatMap(i -> balancer.flatMap(rSocket -> rSocket.requestResponse(EmptyPayload.INSTANCE)))
+        .blockLast();
+
+    Assert.assertEquals(0, sockets.get(0).countMessageReceived());
+    Assert.assertEquals(0, sockets.get(1).countMessageReceived());
+    Assert.assertEquals(
+        100, sockets.get(2).countMessageReceived() + sockets.get(3).countMessageReceived());
+    Mockito.verify(suppliers.get(0), Mockito.never()).get();
+    Mockito.verify(suppliers.get(1), Mockito.never()).get();
+    balancer.dispose();
+  }
+
+  @Test(timeout = 10_000L)
+  public void testMovesConnectionsWhenTheCoordinateChanges() {
+    TestingRSocket socket0 = new TestingRSocket(Function.identity());
+    TestingRSocket socket1 = new TestingRSocket(Function.identity());
+    List<RSocketSupplier> suppliers = new ArrayList<>();
+    suppliers.add(succeedingFactory(socket0));
+    suppliers.add(succeedingFactory(socket1));
+
+    DirectProcessor<List<RSocketSupplier>> servers = DirectProcessor.create();
+    DeterministicApertureRSocketMono balancer =
+        DeterministicApertureRSocketMono.create(
+            servers,
+            0,
+            2,
+            1,
+            DeterministicApertureRSocketMono.DEFAULT_REFRESH_PERIOD,
+            DeterministicApertureRSocketMono.DEFAULT_LATENCY_HALF_LIFE);
+    servers.onNext(suppliers);
+
+    balancer.flatMap(rSocket -> rSocket.requestResponse(EmptyPayload.INSTANCE)).block();
+    Assert.assertEquals(1, socket0.countMessageReceived());
+
+    balancer.updateCoordinate(1, 2);
+    Assert.assertTrue(socket0.isDisposed());
+
+    balancer.flatMap(rSocket -> rSocket.requestResponse(EmptyPayload.INSTANCE)).block();
+    Assert.assertEquals(1, socket1.countMessageReceived());
+    balancer.dispose();
+  }
+
+  private static double spread(long[] load) {
+    long min = Long.MAX_VALUE;
+    long max = 0;
+    for (long l : load) {
+      min = Math.min(min, l);
+      max = Math.max(max, l);
+    }
+    return min == 0 ? Double.POSITIVE_INFINITY : (double) max / min;
+  }
+
+  private static RSocketSupplier succeedingFactory(RSocket socket) {
+    RSocketSupplier mock = Mockito.mock(RSocketSupplier.class);
+
+    Mockito.when(mock.availability()).thenReturn(1.0);
+    Mockito.when(mock.get()).thenReturn(Mono.just(socket));
+    Mockito.when(mock.onClose()).thenReturn(Mono.never());
+
+    return mock;
+  }
+}
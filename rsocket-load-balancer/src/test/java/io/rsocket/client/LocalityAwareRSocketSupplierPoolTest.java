@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.client.filter.RSocketSupplier;
+import io.rsocket.client.filter.WeightedRSocketSupplier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+
+public class LocalityAwareRSocketSupplierPoolTest {
+
+  @Test
+  public void testPrefersLocalEndpointsAndSpillsOverWhenSaturated() {
+    WeightedRSocketSupplier local1 = supplier(1.0, "a", 1.0);
+    WeightedRSocketSupplier local2 = supplier(1.0, "a", 1.0);
+    WeightedRSocketSupplier remote = supplier(1.0, "b", 1.0);
+    LocalityAwareRSocketSupplierPool pool =
+        new LocalityAwareRSocketSupplierPool(Flux.just(Arrays.asList(remote, local1, local2)), "a");
+
+    Assert.assertEquals(3, pool.poolSize());
+    RSocketSupplier first = pool.get().get();
+    RSocketSupplier second = pool.get().get();
+    Assert.assertNotSame(remote, first);
+    Assert.assertNotSame(remote, second);
+    Assert.assertSame(remote, pool.get().get());
+    Assert.assertFalse(pool.get().isPresent());
+
+    pool.accept(first);
+    Assert.assertSame(first, pool.get().get());
+    pool.dispose();
+  }
+
+  @Test
+  public void testLeasesInProportionToTheWeight() {
+    WeightedRSocketSupplier light = supplier(1.0, "a", 1.0);
+    WeightedRSocketSupplier heavy = supplier(9.0, "a", 1.0);
+    LocalityAwareRSocketSupplierPool pool =
+        new LocalityAwareRSocketSupplierPool(Flux.just(Arrays.asList(light, heavy)), "a");
+
+    int heavyCount = 0;
+    int n = 10_000;
+    for (int i = 0; i < n; i++) {
+      RSocketSupplier leased = pool.get().get();
+      if (leased == heavy) {
+        heavyCount++;
+      }
+      pool.accept(leased);
+    }
+
+    double ratio = (double) heavyCount / n;
+    Assert.assertTrue("heavy ratio: " + ratio, ratio > 0.85 && ratio < 0.95);
+    pool.dispose();
+  }
+
+  @Test
+  public void testSpillsOverWhenTheLocalZoneIsUnhealthy() {
+    WeightedRSocketSupplier healthy = supplier(1.0, "a", 1.0);
+    WeightedRSocketSupplier unhealthy1 = supplier(1.0, "a", 0.0);
+    WeightedRSocketSupplier unhealthy2 = supplier(1.0, "a", 0.0);
+    WeightedRSocketSupplier remote = supplier(1.0, "b", 1.0);
+    LocalityAwareRSocketSupplierPool pool =
+        new LocalityAwareRSocketSupplierPool(
+            Flux.just(Arrays.asList(healthy, unhealthy1, unhealthy2, remote)), "a");
+
+    int remoteCount = 0;
+    int n = 10_000;
+    for (int i = 0; i < n; i++) {
+      RSocketSupplier leased = pool.get().get();
+      Assert.assertTrue(leased == healthy || leased == remote);
+      if (leased == remote) {
+        remoteCount++;
+      }
+      pool.accept(leased);
+    }
+
+    // a third of the local zone is healthy, below the default threshold of 0.7
+    double expected =
+        1.0 - (1.0 / 3.0) / LocalityAwareRSocketSupplierPool.DEFAULT_SPILLOVER_THRESHOLD;
+    double ratio = (double) remoteCount / n;
+    Assert.assertEquals(expected, ratio, 0.05);
+    pool.dispose();
+  }
+
+  @Test
+  public void testAppliesUpdatesIncrementally() {
+    WeightedRSocketSupplier kept = supplier(1.0, "a", 1.0);
+    WeightedRSocketSupplier removed = supplier(1.0, "a", 1.0);
+    WeightedRSocketSupplier leased = supplier(1.0, "a", 1.0);
+    WeightedRSocketSupplier added = supplier(1.0, "a", 1.0);
+
+    DirectProcessor<List<RSocketSupplier>> servers = DirectProcessor.create();
+    LocalityAwareRSocketSupplierPool pool = new LocalityAwareRSocketSupplierPool(servers, "a");
+    servers.onNext(Arrays.asList(leased));
+    Assert.assertSame(leased, pool.get().get());
+
+    servers.onNext(Arrays.asList(kept, removed, leased));
+    Assert.assertEquals(2, pool.poolSize());
+
+    servers.onNext(Arrays.asList(kept, leased, added));
+    Assert.assertEquals(2, pool.poolSize());
+    Mockito.verify(removed).dispose();
+    Mockito.verify(kept, Mockito.never()).dispose();
+    Mockito.verify(leased, Mockito.never()).dispose();
+
+    pool.accept(leased);
+    Assert.assertEquals(3, pool.poolSize());
+
+    pool.remove(kept);
+    pool.add(removed);
+    Mockito.verify(kept).dispose();
+    Assert.assertEquals(3, pool.poolSize());
+
+    Optional<RSocketSupplier> supplier;
+    int count = 0;
+    while ((supplier = pool.get()).isPresent()) {
+      Assert.assertNotSame(kept, supplier.get());
+      count++;
+    }
+    Assert.assertEquals(3, count);
+    pool.dispose();
+  }
+
+  private static WeightedRSocketSupplier supplier(double weight, String zone, double availability) {
+    WeightedRSocketSupplier mock = Mockito.mock(WeightedRSocketSupplier.class);
+    Mockito.when(mock.weight()).thenReturn(weight);
+    Mockito.when(mock.zone()).thenReturn(zone);
+    Mockito.when(mock.availability()).thenReturn(availability);
+    return mock;
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.client.filter.RSocketSupplier;
+import io.rsocket.util.Clock;
+import io.rsocket.util.EmptyPayload;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class OutlierDetectorTest {
+
+  private static final long SECOND = Clock.unit().convert(1, TimeUnit.SECONDS);
+
+  private static OutlierDetector detector() {
+    return new OutlierDetector(
+        3,
+        1.0,
+        3.0,
+        10,
+        0.5,
+        Duration.ofSeconds(10),
+        Duration.ofSeconds(10),
+        Duration.ofSeconds(35),
+        Duration.ofSeconds(10));
+  }
+
+  @Test
+  public void testEjectsAfterConsecutiveFailures() {
+    OutlierDetector detector = detector();
+    OutlierDetector.Endpoint endpoint = detector.endpoint(supplier());
+    detector.endpoint(supplier());
+    long now = Clock.now();
+
+    endpoint.onFailure(now);
+    endpoint.onFailure(now);
+    endpoint.onSuccess();
+    endpoint.onFailure(now);
+    endpoint.onFailure(now);
+    Assert.assertEquals(1.0, endpoint.admission(now), 0.0);
+
+    endpoint.onFailure(now);
+    Assert.assertEquals(0.0, endpoint.admission(now), 0.0);
+  }
+
+  @Test
+  public void testEjectionGrowsExponentiallyAndProbesBackGradually() {
+    OutlierDetector detector = detector();
+    OutlierDetector.Endpoint endpoint = detector.endpoint(supplier());
+    detector.endpoint(supplier());
+    long now = Clock.now();
+
+    eject(endpoint, now);
+    Assert.assertEquals(0.0, endpoint.admission(now + 10 * SECOND - 1), 0.0);
+    Assert.assertEquals(0.5, endpoint.admission(now + 15 * SECOND), 1e-6);
+    Assert.assertEquals(1.0, endpoint.admission(now + 20 * SECOND), 0.0);
+
+    now += 15 * SECOND;
+    eject(endpoint, now);
+    Assert.assertEquals(0.0, endpoint.admission(now + 20 * SECOND - 1), 0.0);
+    Assert.assertTrue(endpoint.admission(now + 20 * SECOND) > 0.0);
+
+    now += 25 * SECOND;
+    eject(endpoint, now);
+    // capped by the max ejection time
+    Assert.assertEquals(0.0, endpoint.admission(now + 35 * SECOND - 1), 0.0);
+    Assert.assertTrue(endpoint.admission(now + 35 * SECOND) > 0.0);
+  }
+
+  @Test
+  public void testForgivesEjectionsOfHealthyEndpoints() {
+    OutlierDetector detector = detector();
+    OutlierDetector.Endpoint endpoint = detector.endpoint(supplier());
+    detector.endpoint(supplier());
+    long now = Clock.now();
+
+    eject(endpoint, now);
+    now += 20 * SECOND;
+    detector.analyze(now);
+    now += 10 * SECOND;
+    detector.analyze(now);
+
+    eject(endpoint, now);
+    // back to the base ejection time
+    Assert.assertTrue(endpoint.admission(now + 10 * SECOND) > 0.0);
+  }
+
+  @Test
+  public void testDoesNotForgiveEjectionsDuringAPartlyProbedInterval() {
+    OutlierDetector detector = detector();
+    OutlierDetector.Endpoint endpoint = detector.endpoint(supplier());
+    detector.endpoint(supplier());
+    long now = Clock.now();
+
+    eject(endpoint, now);
+    detector.analyze(now + 15 * SECOND);
+    // the probe period ended 5s into this interval
+    detector.analyze(now + 25 * SECOND);
+
+    now += 25 * SECOND;
+    eject(endpoint, now);
+    // the second ejection lasts twice the base ejection time
+    Assert.assertEquals(0.0, endpoint.admission(now + 20 * SECOND - 1), 0.0);
+  }
+
+  @Test
+  public void testEjectsSuccessRateOutliers() {
+    OutlierDetector detector = detector();
+    List<OutlierDetector.Endpoint> endpoints =
+        Arrays.asList(
+            detector.endpoint(supplier()),
+            detector.endpoint(supplier()),
+            detector.endpoint(supplier()),
+            detector.endpoint(supplier()));
+    for (int i = 0; i < 100; i++) {
+      for (OutlierDetector.Endpoint endpoint : endpoints) {
+        if (endpoint == endpoints.get(0) && i % 2 == 0) {
+          endpoint.onFailure(0);
+        } else {
+          endpoint.onSuccess();
+        }
+      }
+    }
+
+    long now = Clock.now();
+    detector.analyze(now);
+
+    Assert.assertEquals(0.0, endpoints.get(0).admission(now), 0.0);
+    for (int i = 1; i < endpoints.size(); i++) {
+      Assert.assertEquals(1.0, endpoints.get(i).admission(now), 0.0);
+    }
+  }
+
+  @Test
+  public void testEjectsLatencyOutliers() {
+    OutlierDetector detector = detector();
+    List<OutlierDetector.Endpoint> endpoints =
+        Arrays.asList(
+            detector.endpoint(supplier()),
+            detector.endpoint(supplier()),
+            detector.endpoint(supplier()),
+            detector.endpoint(supplier()));
+    for (int i = 0; i < 100; i++) {
+      for (OutlierDetector.Endpoint endpoint : endpoints) {
+        endpoint.onSuccess(endpoint == endpoints.get(3) ? 5_000 : 1_000 + i);
+      }
+    }
+
+    long now = Clock.now();
+    detector.analyze(now);
+
+    Assert.assertEquals(0.0, endpoints.get(3).admission(now), 0.0);
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(1.0, endpoints.get(i).admission(now), 0.0);
+    }
+  }
+
+  @Test
+  public void testNeverEjectsMoreThanTheMaxEjectionPercent() {
+    OutlierDetector detector = detector();
+    OutlierDetector.Endpoint endpoint1 = detector.endpoint(supplier());
+    OutlierDetector.Endpoint endpoint2 = detector.endpoint(supplier());
+    long now = Clock.now();
+
+    eject(endpoint1, now);
+    eject(endpoint2, now);
+
+    Assert.assertEquals(0.0, endpoint1.admission(now), 0.0);
+    Assert.assertEquals(1.0, endpoint2.admission(now), 0.0);
+  }
+
+  @Test(timeout = 10_000L)
+  public void testLoadBalancerStopsSelectingEjectedSockets() {
+    TestingRSocket failing =
+        new TestingRSocket(Function.identity()) {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            return Mono.error(new RuntimeException("outlier"));
+          }
+        };
+    TestingRSocket healthy1 = new TestingRSocket(Function.identity());
+    TestingRSocket healthy2 = new TestingRSocket(Function.identity());
+    List<RSocketSupplier> factories =
+        Arrays.asList(
+            succeedingFactory(failing), succeedingFactory(healthy1), succeedingFactory(healthy2));
+
+    LoadBalancedRSocketMono balancer =
+        LoadBalancedRSocketMono.create(Flux.just(factories), detector());
+    while (balancer.availability() < 1.0) {
+      balancer.rSocketMono.block();
+    }
+
+    Flux.range(0, 100)
+        .concatMap(
+            i ->
+                balancer
+                    .flatMap(rSocket -> rSocket.requestResponse(EmptyPayload.INSTANCE))
+                    .onErrorResume(t -> Mono.empty()))
+        .blockLast();
+    int served = healthy1.countMessageReceived() + healthy2.countMessageReceived();
+
+    Assert.assertTrue("served " + served, served >= 97);
+    balancer.dispose();
+  }
+
+  private static void eject(OutlierDetector.Endpoint endpoint, long now) {
+    for (int i = 0; i < 3; i++) {
+      endpoint.onFailure(now);
+    }
+  }
+
+  private static RSocketSupplier supplier() {
+    RSocketSupplier mock = Mockito.mock(RSocketSupplier.class);
+    Mockito.when(mock.onClose()).thenReturn(Mono.never());
+    return mock;
+  }
+
+  private static RSocketSupplier succeedingFactory(RSocket socket) {
+    RSocketSupplier mock = supplier();
+    Mockito.when(mock.availability()).thenReturn(1.0);
+    Mockito.when(mock.get()).thenReturn(Mono.just(socket));
+    return mock;
+  }
+}
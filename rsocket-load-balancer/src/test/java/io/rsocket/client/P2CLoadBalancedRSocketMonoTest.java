@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.client.filter.RSocketSupplier;
+import io.rsocket.util.EmptyPayload;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class P2CLoadBalancedRSocketMonoTest {
+
+  @Test(timeout = 10_000L)
+  public void testNeverSelectFailingFactories() throws InterruptedException {
+    TestingRSocket socket = new TestingRSocket(Function.identity());
+    RSocketSupplier failing = failingClient();
+    RSocketSupplier succeeding = succeedingFactory(socket);
+    List<RSocketSupplier> factories = Arrays.asList(failing, succeeding);
+
+    testBalancer(factories);
+  }
+
+  @Test(timeout = 10_000L)
+  public void testNeverSelectFailingSocket() throws InterruptedException {
+    TestingRSocket socket = new TestingRSocket(Function.identity());
+    TestingRSocket failingSocket =
+        new TestingRSocket(Function.identity()) {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            return Mono.error(new RuntimeException("You shouldn't be here"));
+          }
+
+          @Override
+          public double availability() {
+            return 0.0;
+          }
+        };
+
+    RSocketSupplier failing = succeedingFactory(failingSocket);
+    RSocketSupplier succeeding = succeedingFactory(socket);
+    List<RSocketSupplier> clients = Arrays.asList(failing, succeeding);
+
+    testBalancer(clients);
+  }
+
+  @Test(timeout = 10_000L)
+  public void testRefreshesSocketsOnSelectBeforeReturningFailedAfterNewFactoriesDelivered() {
+    TestingRSocket socket = new TestingRSocket(Function.identity());
+
+    CompletableFuture<RSocketSupplier> laterSupplier = new CompletableFuture<>();
+    Flux<List<RSocketSupplier>> factories =
+        Flux.create(
+            s -> {
+              s.next(Collections.emptyList());
+
+              laterSupplier.handle(
+                  (RSocketSupplier result, Throwable t) -> {
+                    s.next(Collections.singletonList(result));
+                    return null;
+                  });
+            });
+
+    P2CLoadBalancedRSocketMono balancer = P2CLoadBalancedRSocketMono.create(factories);
+
+    Assert.assertEquals(0.0, balancer.availability(), 0);
+
+    laterSupplier.complete(succeedingFactory(socket));
+    balancer.block();
+
+    Assert.assertEquals(1.0, balancer.availability(), 0);
+    balancer.dispose();
+  }
+
+  @Test(timeout = 10_000L)
+  public void testFavorsTheFastestSocket() {
+    TestingRSocket fast = new TestingRSocket(Function.identity());
+    TestingRSocket slow =
+        new TestingRSocket(Function.identity()) {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            return super.requestResponse(payload).delayElement(Duration.ofMillis(20));
+          }
+        };
+
+    Publisher<List<RSocketSupplier>> src =
+        Flux.just(Arrays.asList(succeedingFactory(fast), succeedingFactory(slow)));
+    P2CLoadBalancedRSocketMono balancer = P2CLoadBalancedRSocketMono.create(src);
+
+    Flux.range(0, 200)
+        .concatMap(i -> balancer.flatMap(rSocket -> rSocket.requestResponse(EmptyPayload.INSTANCE)))
+        .blockLast();
+
+    Assert.assertTrue(
+        "fast: " + fast.countMessageReceived() + ", slow: " + slow.countMessageReceived(),
+        fast.countMessageReceived() > 4 * slow.countMessageReceived());
+    balancer.dispose();
+  }
+
+  @Test(timeout = 10_000L)
+  public void testRemovesClosedSocketFromSelection() {
+    TestingRSocket socket1 = new TestingRSocket(Function.identity());
+    TestingRSocket socket2 = new TestingRSocket(Function.identity());
+
+    Publisher<List<RSocketSupplier>> src =
+        Flux.just(Arrays.asList(succeedingFactory(socket1), succeedingFactory(socket2)));
+    P2CLoadBalancedRSocketMono balancer = P2CLoadBalancedRSocketMono.create(src);
+
+    socket1.dispose();
+
+    Flux.range(0, 100)
+        .flatMap(i -> balancer.flatMap(rSocket -> rSocket.requestResponse(EmptyPayload.INSTANCE)))
+        .blockLast();
+
+    Assert.assertEquals(0, socket1.countMessageReceived());
+    Assert.assertEquals(100, socket2.countMessageReceived());
+    balancer.dispose();
+  }
+
+  private void testBalancer(List<RSocketSupplier> factories) throws InterruptedException {
+    Publisher<List<RSocketSupplier>> src =
+        s -> {
+          s.onNext(factories);
+          s.onComplete();
+        };
+
+    P2CLoadBalancedRSocketMono balancer = P2CLoadBalancedRSocketMono.create(src);
+
+    while (balancer.availability() == 0.0) {
+      Thread.sleep(1);
+    }
+
+    Flux.range(0, 100)
+        .flatMap(i -> balancer.flatMap(rSocket -> rSocket.requestResponse(EmptyPayload.INSTANCE)))
+        .blockLast();
+    balancer.dispose();
+  }
+
+  private static RSocketSupplier succeedingFactory(RSocket socket) {
+    RSocketSupplier mock = Mockito.mock(RSocketSupplier.class);
+
+    Mockito.when(mock.availability()).thenReturn(1.0);
+    Mockito.when(mock.get()).thenReturn(Mono.just(socket));
+    Mockito.when(mock.onClose()).thenReturn(Mono.never());
+
+    return mock;
+  }
+
+  private static RSocketSupplier failingClient() {
+    RSocketSupplier mock = Mockito.mock(RSocketSupplier.class);
+
+    Mockito.when(mock.availability()).thenReturn(0.0);
+    Mockito.when(mock.get())
+        .thenAnswer(
+            a -> {
+              Assert.fail();
+              return null;
+            });
+
+    return mock;
+  }
+}
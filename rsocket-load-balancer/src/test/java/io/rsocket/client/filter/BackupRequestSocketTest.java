@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.client.filter;
+
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Availability;
+import io.rsocket.Closeable;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.DefaultPayload;
+import io.rsocket.util.EmptyPayload;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Assert;
+import org.junit.Test;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+public class BackupRequestSocketTest {
+
+  private static final int WARMUP = 20;
+
+  @Test(timeout = 10_000L)
+  public void testBackupWinsAndCancelsTheSlowRequest() {
+    SlowOnceRSocket child = new SlowOnceRSocket();
+    BackupRequestSocket socket = new BackupRequestSocket(child, 0.5, new HedgeBudget(), false);
+    warmup(socket);
+
+    child.slowNext.set(true);
+    int calls = child.calls.get();
+    Payload response = socket.requestResponse(EmptyPayload.INSTANCE).block();
+
+    Assert.assertEquals("fast", response.getDataUtf8());
+    Assert.assertTrue(child.cancelled.get());
+    Assert.assertEquals(calls + 2, child.calls.get());
+  }
+
+  @Test(timeout = 10_000L)
+  public void testBudgetBoundsTheBackupRequests() throws InterruptedException {
+    AtomicInteger calls = new AtomicInteger();
+    AtomicBoolean slow = new AtomicBoolean();
+    RSocket child =
+        new AbstractRSocket() {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            calls.incrementAndGet();
+            if (slow.get()) {
+              return Mono.never();
+            }
+            return Mono.delay(Duration.ofMillis(1)).map(l -> DefaultPayload.create("fast"));
+          }
+        };
+    BackupRequestSocket socket =
+        new BackupRequestSocket(child, 0.5, new HedgeBudget(0.0, 1), false);
+    warmup(socket);
+
+    slow.set(true);
+    List<Disposable> requests = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      requests.add(socket.requestResponse(EmptyPayload.INSTANCE).subscribe());
+    }
+    Thread.sleep(100);
+
+    // a single backup request is allowed, either during the warmup or for a slow request
+    Assert.assertEquals(WARMUP + 3 + 1, calls.get());
+    requests.forEach(Disposable::dispose);
+  }
+
+  @Test(timeout = 10_000L)
+  public void testHedgesTheFirstElementOfStreams() {
+    SlowOnceRSocket child = new SlowOnceRSocket();
+    BackupRequestSocket socket = new BackupRequestSocket(child, 0.5, new HedgeBudget(), true);
+    for (int i = 0; i < WARMUP; i++) {
+      socket.requestStream(EmptyPayload.INSTANCE).blockLast();
+    }
+
+    child.slowNext.set(true);
+    List<Payload> responses = socket.requestStream(EmptyPayload.INSTANCE).collectList().block();
+
+    Assert.assertEquals(5, responses.size());
+    Assert.assertTrue(child.cancelled.get());
+  }
+
+  @Test(timeout = 10_000L)
+  public void testRoutesTheBackupToAnotherSocket() {
+    SlowOnceRSocket fast = new SlowOnceRSocket();
+    SlowOnceRSocket slow = new SlowOnceRSocket();
+    AtomicInteger slowSelections = new AtomicInteger();
+    AtomicInteger selections = new AtomicInteger();
+    TestingBalancer balancer =
+        new TestingBalancer(
+            () -> {
+              selections.incrementAndGet();
+              return slowSelections.getAndDecrement() > 0 ? slow : fast;
+            });
+    BackupRequestSocket socket =
+        BackupRequestSocket.balanced(balancer, 0.5, new HedgeBudget(), false);
+    warmup(socket);
+
+    // the original request and the first selection of the backup land on the slow socket
+    slow.slowNext.set(true);
+    slowSelections.set(2);
+    int before = selections.get();
+    socket.requestResponse(EmptyPayload.INSTANCE).block();
+
+    Assert.assertTrue(slow.cancelled.get());
+    Assert.assertEquals(1, slow.calls.get());
+    Assert.assertEquals(before + 3, selections.get());
+  }
+
+  @Test(timeout = 10_000L)
+  public void testReleasesThePayloadWhenTheBackupSelectionFails() throws InterruptedException {
+    SlowOnceRSocket fast = new SlowOnceRSocket();
+    RSocket slow =
+        new AbstractRSocket() {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            payload.release();
+            return Mono.never();
+          }
+        };
+    AtomicInteger mode = new AtomicInteger();
+    TestingBalancer balancer =
+        new TestingBalancer(
+            () -> {
+              switch (mode.getAndUpdate(m -> m == 0 ? 0 : m + 1)) {
+                case 0:
+                  return fast;
+                case 1:
+                  return slow;
+                default:
+                  throw new IllegalStateException("no socket available");
+              }
+            });
+    BackupRequestSocket socket =
+        BackupRequestSocket.balanced(balancer, 0.5, new HedgeBudget(), false);
+    warmup(socket);
+
+    mode.set(1);
+    Payload payload = ByteBufPayload.create("request");
+    Disposable request = socket.requestResponse(payload).subscribe();
+    // the backup selection fails on the timer thread, which must release the retained payload
+    while (payload.refCnt() != 0) {
+      Thread.sleep(10);
+    }
+    request.dispose();
+    socket.dispose();
+  }
+
+  @Test
+  public void testHedgeBudget() {
+    HedgeBudget budget = new HedgeBudget(0.05, 1);
+    Assert.assertTrue(budget.tryWithdraw());
+    Assert.assertFalse(budget.tryWithdraw());
+
+    for (int i = 0; i < 19; i++) {
+      budget.deposit();
+    }
+    Assert.assertFalse(budget.tryWithdraw());
+    budget.deposit();
+    Assert.assertTrue(budget.tryWithdraw());
+
+    for (int i = 0; i < 1_000; i++) {
+      budget.deposit();
+    }
+    Assert.assertEquals(1.0, budget.balance(), 0.0);
+  }
+
+  private static void warmup(RSocket socket) {
+    for (int i = 0; i < WARMUP; i++) {
+      socket.requestResponse(EmptyPayload.INSTANCE).block();
+    }
+  }
+
+  /** Answers after 1ms, except for the first request after {@code slowNext} is set. */
+  private static class SlowOnceRSocket extends AbstractRSocket {
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicBoolean slowNext = new AtomicBoolean();
+    final AtomicBoolean cancelled = new AtomicBoolean();
+
+    @Override
+    public Mono<Payload> requestResponse(Payload payload) {
+      calls.incrementAndGet();
+      if (slowNext.compareAndSet(true, false)) {
+        return Mono.<Payload>never().doOnCancel(() -> cancelled.set(true));
+      }
+      return Mono.delay(Duration.ofMillis(1)).map(l -> DefaultPayload.create("fast"));
+    }
+
+    @Override
+    public Flux<Payload> requestStream(Payload payload) {
+      calls.incrementAndGet();
+      if (slowNext.compareAndSet(true, false)) {
+        return Flux.<Payload>never().doOnCancel(() -> cancelled.set(true));
+      }
+      return Flux.range(0, 5)
+          .map(i -> DefaultPayload.create("fast"))
+          .delaySubscription(Duration.ofMillis(1));
+    }
+  }
+
+  private static class TestingBalancer extends Mono<RSocket> implements Availability, Closeable {
+    private final Supplier<RSocket> selector;
+    private final MonoProcessor<Void> onClose = MonoProcessor.create();
+
+    TestingBalancer(Supplier<RSocket> selector) {
+      this.selector = selector;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super RSocket> actual) {
+      Mono.fromSupplier(selector).subscribe(actual);
+    }
+
+    @Override
+    public double availability() {
+      return 1.0;
+    }
+
+    @Override
+    public Mono<Void> onClose() {
+      return onClose;
+    }
+
+    @Override
+    public void dispose() {
+      onClose.onComplete();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.stat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AtomicEwmaTest {
+
+  @Test
+  public void testFirstInsertReplacesTheInitialValue() {
+    AtomicEwma ewma = new AtomicEwma(1, TimeUnit.SECONDS, 10.0);
+    Assert.assertEquals(10.0, ewma.value(), 0.0);
+
+    ewma.insert(2.0);
+    Assert.assertEquals(2.0, ewma.value(), 1e-9);
+
+    ewma.reset(5.0);
+    Assert.assertEquals(5.0, ewma.value(), 0.0);
+  }
+
+  @Test
+  public void testMatchesEwma() {
+    Ewma expected = new Ewma(1, TimeUnit.HOURS, 0.0);
+    AtomicEwma ewma = new AtomicEwma(1, TimeUnit.HOURS, 0.0);
+    for (int i = 0; i < 1_000; i++) {
+      expected.insert(i);
+      ewma.insert(i);
+    }
+
+    // both only differ by the few microseconds elapsed between the two inserts
+    Assert.assertEquals(expected.value(), ewma.value(), Math.abs(expected.value()) * 1e-3);
+  }
+
+  @Test(timeout = 10_000L)
+  public void testConcurrentInsertsConverge() throws InterruptedException {
+    AtomicEwma ewma = new AtomicEwma(1, TimeUnit.MILLISECONDS, 0.0);
+    int threads = 8;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      new Thread(
+              () -> {
+                for (int i = 0; i < 100_000; i++) {
+                  ewma.insert(42.0);
+                }
+                done.countDown();
+              })
+          .start();
+    }
+
+    Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(42.0, ewma.value(), 1e-9);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.stat;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LogBucketQuantileTest {
+
+  @Test
+  public void testRelativeAccuracy() {
+    Random rng = new Random("Repeatable tests".hashCode());
+    double accuracy = 0.01;
+    LogBucketQuantile sketch =
+        new LogBucketQuantile(0.5, accuracy, LogBucketQuantile.DEFAULT_MAX_VALUE, 4);
+
+    int n = 100 * 1024;
+    double[] data = new double[n];
+    for (int i = 0; i < n; i++) {
+      // log-normal, like most latency distributions
+      data[i] = Math.exp(8 + 1.5 * rng.nextGaussian());
+      sketch.insert(data[i]);
+    }
+    Arrays.sort(data);
+
+    for (double q : new double[] {0.0, 0.1, 0.5, 0.9, 0.99, 0.999, 1.0}) {
+      double expected = data[(int) (q * (n - 1))];
+      double estimation = sketch.quantile(q);
+      double error = Math.abs(expected - estimation) / expected;
+      Assert.assertTrue(
+          "q=" + q + ", estimation=" + estimation + ", real=" + expected, error <= accuracy);
+    }
+    Assert.assertEquals(n, sketch.count());
+    Assert.assertEquals(sketch.quantile(0.5), sketch.estimation(), 0.0);
+  }
+
+  @Test
+  public void testOutOfRangeValues() {
+    LogBucketQuantile sketch = new LogBucketQuantile(0.5, 0.01, 1000.0, 1);
+    Assert.assertEquals(0.0, sketch.estimation(), 0.0);
+
+    sketch.insert(0.2);
+    sketch.insert(-1.0);
+    sketch.insert(Double.NaN);
+    Assert.assertEquals(0.0, sketch.quantile(1.0), 0.0);
+
+    sketch.insert(1e9);
+    Assert.assertEquals(1000.0, sketch.quantile(1.0), 0.0);
+  }
+
+  @Test
+  public void testMerge() {
+    LogBucketQuantile low = new LogBucketQuantile(0.5);
+    LogBucketQuantile high = new LogBucketQuantile(0.5);
+    for (int i = 1; i <= 1000; i++) {
+      low.insert(i);
+      high.insert(1000 + i);
+    }
+
+    low.merge(high);
+
+    Assert.assertEquals(2000, low.count());
+    Assert.assertEquals(1000.0, low.estimation(), 1000.0 * 0.01);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsIncompatibleMerge() {
+    new LogBucketQuantile(0.5, 0.01, 1000.0, 1).merge(new LogBucketQuantile(0.5, 0.02, 1000.0, 1));
+  }
+
+  @Test(timeout = 10_000L)
+  public void testConcurrentInserts() throws InterruptedException {
+    LogBucketQuantile sketch = new LogBucketQuantile(0.99);
+    int threads = 8;
+    int perThread = 100_000;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      new Thread(
+              () -> {
+                for (int i = 1; i <= perThread; i++) {
+                  sketch.insert(i);
+                }
+                done.countDown();
+              })
+          .start();
+    }
+
+    Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(threads * perThread, sketch.count());
+    Assert.assertEquals(0.99 * perThread, sketch.estimation(), 0.99 * perThread * 0.01);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.micrometer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.rsocket.plugins.ConnectionInstrumentation;
+import io.rsocket.plugins.ConnectionStats;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.ToDoubleFunction;
+import reactor.util.annotation.Nullable;
+
+/**
+ * An implementation of {@link ConnectionInstrumentation} that exposes the internal state of
+ * connections as Micrometer gauges.
+ *
+ * <p>The gauges are called {@code rsocket.connection.[ send.pending | senders | receivers |
+ * channel.processors | reassembly.bytes ]}, expose the largest value among the open connections, so
+ * that a single connection backing up stands out, and are tagged with {@code connection.side}
+ * ({@code client} or {@code server}) and any additional configured tags. The sampled time frames
+ * wait before being written is recorded by the {@code rsocket.connection.send.latency} timer, with
+ * the same tags.
+ *
+ * @see <a href="https://micrometer.io">Micrometer</a>
+ */
+public final class MicrometerConnectionInstrumentation implements ConnectionInstrumentation {
+
+  // the open connections by registry and tags, shared by the instances registering the same gauges
+  // and weakly keyed so that a registry no longer in use can be collected along with its gauges
+  private static final Map<MeterRegistry, ConcurrentMap<Tags, Set<ConnectionStats>>>
+      OPEN_CONNECTIONS = Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final MeterRegistry meterRegistry;
+
+  private final Tag[] tags;
+
+  /**
+   * Creates a new {@link ConnectionInstrumentation}.
+   *
+   * @param meterRegistry the {@link MeterRegistry} to use to create {@link Meter}s.
+   * @param tags the additional tags to attach to each {@link Meter}
+   * @throws NullPointerException if {@code meterRegistry} is {@code null}
+   */
+  public MicrometerConnectionInstrumentation(MeterRegistry meterRegistry, Tag... tags) {
+    this.meterRegistry = Objects.requireNonNull(meterRegistry, "meterRegistry must not be null");
+    this.tags = tags;
+  }
+
+  @Override
+  public LongConsumer instrument(ConnectionStats stats) {
+    Objects.requireNonNull(stats, "stats must not be null");
+
+    Tags sideTags = Tags.of(tags).and("connection.side", stats.side());
+    Set<ConnectionStats> connections =
+        OPEN_CONNECTIONS
+            .computeIfAbsent(meterRegistry, registry -> new ConcurrentHashMap<>())
+            .computeIfAbsent(sideTags, this::registerGauges);
+
+    connections.add(stats);
+    stats.onClose().doFinally(s -> connections.remove(stats)).subscribe(null, e -> {});
+
+    Timer latency =
+        Timer.builder("rsocket.connection.send.latency")
+            .tags(sideTags)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    return nanos -> latency.record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  private Set<ConnectionStats> registerGauges(Tags tags) {
+    Set<ConnectionStats> connections = ConcurrentHashMap.newKeySet();
+    gauge("send.pending", connections, ConnectionStats::pendingSendFrames, tags, null);
+    gauge("senders", connections, ConnectionStats::activeSenders, tags, null);
+    gauge("receivers", connections, ConnectionStats::activeReceivers, tags, null);
+    gauge("channel.processors", connections, ConnectionStats::activeChannelProcessors, tags, null);
+    gauge("reassembly.bytes", connections, ConnectionStats::reassemblyBytes, tags, "bytes");
+    return connections;
+  }
+
+  private void gauge(
+      String name,
+      Set<ConnectionStats> connections,
+      ToDoubleFunction<ConnectionStats> value,
+      Tags tags,
+      @Nullable String baseUnit) {
+
+    Gauge.builder("rsocket.connection." + name, connections, c -> max(c, value))
+        .tags(tags)
+        .baseUnit(baseUnit)
+        .register(meterRegistry);
+  }
+
+  private static double max(
+      Set<ConnectionStats> connections, ToDoubleFunction<ConnectionStats> value) {
+    double max = 0;
+    for (ConnectionStats stats : connections) {
+      max = Math.max(max, value.applyAsDouble(stats));
+    }
+    return max;
+  }
+}
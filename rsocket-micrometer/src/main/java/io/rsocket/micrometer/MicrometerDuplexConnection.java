@@ -16,8 +16,6 @@
 
 package io.rsocket.micrometer;
 
-import static io.rsocket.frame.FrameType.*;
-
 import io.micrometer.core.instrument.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -25,7 +23,17 @@
 import io.rsocket.frame.FrameHeaderFlyweight;
 import io.rsocket.frame.FrameType;
 import io.rsocket.plugins.DuplexConnectionInterceptor.Type;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
@@ -38,10 +46,11 @@
  * metrics about them.
  *
  * <p>The metric is called {@code rsocket.frame} and is tagged with {@code connection.type} ({@link
- * Type}), {@code frame.type} ({@link FrameType}), and any additional configured tags. {@code
- * rsocket.duplex.connection.close} and {@code rsocket.duplex.connection.dispose} metrics, tagged
- * with {@code connection.type} ({@link Type}) and any additional configured tags are also
- * collected.
+ * Type}), {@code frame.type} ({@link FrameType}), and any additional configured tags. The {@code
+ * rsocket.frame.bytes} metric counts the bytes of the frames and is also tagged with {@code
+ * direction} ({@code inbound} or {@code outbound}). {@code rsocket.duplex.connection.close} and
+ * {@code rsocket.duplex.connection.dispose} metrics, tagged with {@code connection.type} ({@link
+ * Type}) and any additional configured tags are also collected.
  *
  * @see <a href="https://micrometer.io">Micrometer</a>
  */
@@ -68,9 +77,40 @@ final class MicrometerDuplexConnection implements DuplexConnection {
   MicrometerDuplexConnection(
       Type connectionType, DuplexConnection delegate, MeterRegistry meterRegistry, Tag... tags) {
 
+    this(
+        connectionType,
+        delegate,
+        meterRegistry,
+        FrameCounters.of(
+            Objects.requireNonNull(connectionType, "connectionType must not be null"),
+            Objects.requireNonNull(meterRegistry, "meterRegistry must not be null"),
+            tags),
+        tags);
+  }
+
+  /**
+   * Creates a new {@link DuplexConnection} counting its frames with existing {@link FrameCounters},
+   * shared by all the connections of the same type.
+   *
+   * @param connectionType the type of connection being monitored
+   * @param delegate the {@link DuplexConnection} to delegate to
+   * @param meterRegistry the {@link MeterRegistry} to use
+   * @param frameCounters the {@link FrameCounters} to use
+   * @param tags additional tags to attach to {@link Meter}s
+   * @throws NullPointerException if {@code connectionType}, {@code delegate}, {@code
+   *     meterRegistry}, or {@code frameCounters} is {@code null}
+   */
+  MicrometerDuplexConnection(
+      Type connectionType,
+      DuplexConnection delegate,
+      MeterRegistry meterRegistry,
+      FrameCounters frameCounters,
+      Tag... tags) {
+
     Objects.requireNonNull(connectionType, "connectionType must not be null");
     this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
     Objects.requireNonNull(meterRegistry, "meterRegistry must not be null");
+    this.frameCounters = Objects.requireNonNull(frameCounters, "frameCounters must not be null");
 
     this.close =
         meterRegistry.counter(
@@ -80,7 +120,6 @@ final class MicrometerDuplexConnection implements DuplexConnection {
         meterRegistry.counter(
             "rsocket.duplex.connection.dispose",
             Tags.of(tags).and("connection.type", connectionType.name()));
-    this.frameCounters = new FrameCounters(connectionType, meterRegistry, tags);
   }
 
   @Override
@@ -101,156 +140,144 @@ public Mono<Void> onClose() {
 
   @Override
   public Flux<ByteBuf> receive() {
-    return delegate.receive().doOnNext(frameCounters);
+    return delegate.receive().doOnNext(frameCounters.inbound);
   }
 
   @Override
   public Mono<Void> send(Publisher<ByteBuf> frames) {
     Objects.requireNonNull(frames, "frames must not be null");
 
-    return delegate.send(Flux.from(frames).doOnNext(frameCounters));
+    return delegate.send(Flux.from(frames).doOnNext(frameCounters.outbound));
   }
 
-  private static final class FrameCounters implements Consumer<ByteBuf> {
-
-    private final Logger logger = LoggerFactory.getLogger(this.getClass());
-
-    private final Counter cancel;
-
-    private final Counter complete;
+  /**
+   * Counts frames and their bytes in {@link LongAdder}s indexed by {@link FrameType} ordinal, so
+   * that counting a frame is an array read and an uncontended add. The adders are registered as
+   * {@link FunctionCounter}s the first time a frame of their type is seen.
+   *
+   * <p>A {@link FunctionCounter} only reports the object it was first registered with, so there is
+   * a single instance per {@link MeterRegistry}, connection type and tags, given by {@link #of}.
+   * The instances are weakly keyed by registry and only hold it weakly, so that a registry no
+   * longer in use can be collected along with its counters.
+   */
+  static final class FrameCounters {
 
-    private final Counter error;
+    private static final Map<MeterRegistry, ConcurrentMap<List<Object>, FrameCounters>> INSTANCES =
+        Collections.synchronizedMap(new WeakHashMap<>());
 
-    private final Counter extension;
+    private static final FrameType[] FRAME_TYPES = FrameType.values();
 
-    private final Counter keepalive;
+    private static final int UNKNOWN = FRAME_TYPES.length;
 
-    private final Counter lease;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    private final Counter metadataPush;
+    private final Type connectionType;
 
-    private final Counter next;
+    private final WeakReference<MeterRegistry> meterRegistry;
 
-    private final Counter nextComplete;
+    private final Tag[] tags;
 
-    private final Counter payload;
+    private final AtomicReferenceArray<LongAdder> frames =
+        new AtomicReferenceArray<>(FRAME_TYPES.length + 1);
 
-    private final Counter requestChannel;
+    final Consumer<ByteBuf> inbound = new Direction("inbound");
 
-    private final Counter requestFireAndForget;
+    final Consumer<ByteBuf> outbound = new Direction("outbound");
 
-    private final Counter requestN;
+    private FrameCounters(Type connectionType, MeterRegistry meterRegistry, Tag... tags) {
+      this.connectionType = connectionType;
+      this.meterRegistry = new WeakReference<>(meterRegistry);
+      this.tags = tags;
+    }
 
-    private final Counter requestResponse;
+    /**
+     * Returns the {@link FrameCounters} of a {@link MeterRegistry}, connection type and tags.
+     *
+     * @param connectionType the type of connection being monitored
+     * @param meterRegistry the {@link MeterRegistry} to use
+     * @param tags additional tags to attach to {@link Meter}s
+     * @return the {@link FrameCounters} registering {@link FunctionCounter}s with these tags
+     */
+    static FrameCounters of(Type connectionType, MeterRegistry meterRegistry, Tag... tags) {
+      return INSTANCES
+          .computeIfAbsent(meterRegistry, registry -> new ConcurrentHashMap<>())
+          .computeIfAbsent(
+              Arrays.asList(connectionType, Tags.of(tags)),
+              key -> new FrameCounters(connectionType, meterRegistry, tags));
+    }
 
-    private final Counter requestStream;
+    private int index(ByteBuf frame) {
+      FrameType frameType = FrameHeaderFlyweight.frameType(frame);
 
-    private final Counter resume;
+      if (frameType == FrameType.RESERVED) {
+        logger.debug("Skipping count of unknown frame type: {}", frameType);
+        return UNKNOWN;
+      }
+      return frameType.ordinal();
+    }
 
-    private final Counter resumeOk;
+    private Tags tags(int index) {
+      String frameType = index == UNKNOWN ? "UNKNOWN" : FRAME_TYPES[index].name();
+      return Tags.of(tags)
+          .and("connection.type", connectionType.name())
+          .and("frame.type", frameType);
+    }
 
-    private final Counter setup;
+    private LongAdder adder(
+        AtomicReferenceArray<LongAdder> adders, int index, String name, Tags tags, String unit) {
 
-    private final Counter unknown;
+      LongAdder adder = adders.get(index);
+      if (adder != null) {
+        return adder;
+      }
 
-    private FrameCounters(Type connectionType, MeterRegistry meterRegistry, Tag... tags) {
-      this.cancel = counter(connectionType, meterRegistry, CANCEL, tags);
-      this.complete = counter(connectionType, meterRegistry, COMPLETE, tags);
-      this.error = counter(connectionType, meterRegistry, ERROR, tags);
-      this.extension = counter(connectionType, meterRegistry, EXT, tags);
-      this.keepalive = counter(connectionType, meterRegistry, KEEPALIVE, tags);
-      this.lease = counter(connectionType, meterRegistry, LEASE, tags);
-      this.metadataPush = counter(connectionType, meterRegistry, METADATA_PUSH, tags);
-      this.next = counter(connectionType, meterRegistry, NEXT, tags);
-      this.nextComplete = counter(connectionType, meterRegistry, NEXT_COMPLETE, tags);
-      this.payload = counter(connectionType, meterRegistry, PAYLOAD, tags);
-      this.requestChannel = counter(connectionType, meterRegistry, REQUEST_CHANNEL, tags);
-      this.requestFireAndForget = counter(connectionType, meterRegistry, REQUEST_FNF, tags);
-      this.requestN = counter(connectionType, meterRegistry, REQUEST_N, tags);
-      this.requestResponse = counter(connectionType, meterRegistry, REQUEST_RESPONSE, tags);
-      this.requestStream = counter(connectionType, meterRegistry, REQUEST_STREAM, tags);
-      this.resume = counter(connectionType, meterRegistry, RESUME, tags);
-      this.resumeOk = counter(connectionType, meterRegistry, RESUME_OK, tags);
-      this.setup = counter(connectionType, meterRegistry, SETUP, tags);
-      this.unknown = counter(connectionType, meterRegistry, "UNKNOWN", tags);
+      adder = new LongAdder();
+      if (!adders.compareAndSet(index, null, adder)) {
+        return adders.get(index);
+      }
+      // the connections counting frames hold the registry, so it is only gone when they are too
+      MeterRegistry meterRegistry = this.meterRegistry.get();
+      if (meterRegistry != null) {
+        FunctionCounter.builder(name, adder, LongAdder::doubleValue)
+            .tags(tags)
+            .baseUnit(unit)
+            .register(meterRegistry);
+      }
+      return adder;
     }
 
-    private static Counter counter(
-        Type connectionType, MeterRegistry meterRegistry, FrameType frameType, Tag... tags) {
+    private final class Direction implements Consumer<ByteBuf> {
 
-      return counter(connectionType, meterRegistry, frameType.name(), tags);
-    }
+      private final String direction;
 
-    private static Counter counter(
-        Type connectionType, MeterRegistry meterRegistry, String frameType, Tag... tags) {
+      private final AtomicReferenceArray<LongAdder> bytes =
+          new AtomicReferenceArray<>(FRAME_TYPES.length + 1);
 
-      return meterRegistry.counter(
-          "rsocket.frame",
-          Tags.of(tags).and("connection.type", connectionType.name()).and("frame.type", frameType));
-    }
-
-    @Override
-    public void accept(ByteBuf frame) {
-      FrameType frameType = FrameHeaderFlyweight.frameType(frame);
+      private Direction(String direction) {
+        this.direction = direction;
+      }
 
-      switch (frameType) {
-        case SETUP:
-          this.setup.increment();
-          break;
-        case LEASE:
-          this.lease.increment();
-          break;
-        case KEEPALIVE:
-          this.keepalive.increment();
-          break;
-        case REQUEST_RESPONSE:
-          this.requestResponse.increment();
-          break;
-        case REQUEST_FNF:
-          this.requestFireAndForget.increment();
-          break;
-        case REQUEST_STREAM:
-          this.requestStream.increment();
-          break;
-        case REQUEST_CHANNEL:
-          this.requestChannel.increment();
-          break;
-        case REQUEST_N:
-          this.requestN.increment();
-          break;
-        case CANCEL:
-          this.cancel.increment();
-          break;
-        case PAYLOAD:
-          this.payload.increment();
-          break;
-        case ERROR:
-          this.error.increment();
-          break;
-        case METADATA_PUSH:
-          this.metadataPush.increment();
-          break;
-        case RESUME:
-          this.resume.increment();
-          break;
-        case RESUME_OK:
-          this.resumeOk.increment();
-          break;
-        case NEXT:
-          this.next.increment();
-          break;
-        case COMPLETE:
-          this.complete.increment();
-          break;
-        case NEXT_COMPLETE:
-          this.nextComplete.increment();
-          break;
-        case EXT:
-          this.extension.increment();
-          break;
-        default:
-          this.logger.debug("Skipping count of unknown frame type: {}", frameType);
-          this.unknown.increment();
+      @Override
+      public void accept(ByteBuf frame) {
+        int index = index(frame);
+
+        LongAdder frames = FrameCounters.this.frames.get(index);
+        if (frames == null) {
+          frames = adder(FrameCounters.this.frames, index, "rsocket.frame", tags(index), null);
+        }
+        frames.increment();
+
+        LongAdder bytes = this.bytes.get(index);
+        if (bytes == null) {
+          bytes =
+              adder(
+                  this.bytes,
+                  index,
+                  "rsocket.frame.bytes",
+                  tags(index).and("direction", direction),
+                  "bytes");
+        }
+        bytes.add(frame.readableBytes());
       }
     }
   }
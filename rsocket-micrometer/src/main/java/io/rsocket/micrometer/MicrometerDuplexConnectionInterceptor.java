@@ -22,6 +22,8 @@
 import io.rsocket.DuplexConnection;
 import io.rsocket.frame.FrameType;
 import io.rsocket.plugins.DuplexConnectionInterceptor;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -29,10 +31,11 @@
  * Micrometer metrics about them.
  *
  * <p>The metric is called {@code rsocket.frame} and is tagged with {@code connection.type} ({@link
- * Type}), {@code frame.type} ({@link FrameType}), and any additional configured tags. {@code
- * rsocket.duplex.connection.close} and {@code rsocket.duplex.connection.dispose} metrics, tagged
- * with {@code connection.type} ({@link Type}) and any additional configured tags are also
- * collected.
+ * Type}), {@code frame.type} ({@link FrameType}), and any additional configured tags. The {@code
+ * rsocket.frame.bytes} metric counts the bytes of the frames and is also tagged with {@code
+ * direction} ({@code inbound} or {@code outbound}). {@code rsocket.duplex.connection.close} and
+ * {@code rsocket.duplex.connection.dispose} metrics, tagged with {@code connection.type} ({@link
+ * Type}) and any additional configured tags are also collected.
  *
  * @see <a href="https://micrometer.io">Micrometer</a>
  */
@@ -42,6 +45,9 @@ public final class MicrometerDuplexConnectionInterceptor implements DuplexConnec
 
   private final Tag[] tags;
 
+  private final Map<Type, MicrometerDuplexConnection.FrameCounters> frameCounters =
+      new EnumMap<>(Type.class);
+
   /**
    * Creates a new {@link DuplexConnectionInterceptor}.
    *
@@ -52,6 +58,12 @@ public final class MicrometerDuplexConnectionInterceptor implements DuplexConnec
   public MicrometerDuplexConnectionInterceptor(MeterRegistry meterRegistry, Tag... tags) {
     this.meterRegistry = Objects.requireNonNull(meterRegistry, "meterRegistry must not be null");
     this.tags = tags;
+
+    for (Type connectionType : Type.values()) {
+      frameCounters.put(
+          connectionType,
+          MicrometerDuplexConnection.FrameCounters.of(connectionType, meterRegistry, tags));
+    }
   }
 
   @Override
@@ -59,6 +71,7 @@ public MicrometerDuplexConnection apply(Type connectionType, DuplexConnection de
     Objects.requireNonNull(connectionType, "connectionType must not be null");
     Objects.requireNonNull(delegate, "delegate must not be null");
 
-    return new MicrometerDuplexConnection(connectionType, delegate, meterRegistry, tags);
+    return new MicrometerDuplexConnection(
+        connectionType, delegate, meterRegistry, frameCounters.get(connectionType), tags);
   }
 }
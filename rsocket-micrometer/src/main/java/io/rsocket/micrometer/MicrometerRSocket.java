@@ -20,22 +20,30 @@
 import static reactor.core.publisher.SignalType.ON_COMPLETE;
 import static reactor.core.publisher.SignalType.ON_ERROR;
 
+import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
-import io.micrometer.core.instrument.Timer.Sample;
 import io.rsocket.Payload;
 import io.rsocket.RSocket;
 import java.util.Objects;
-import java.util.function.BiConsumer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Consumer;
 import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoOperator;
+import reactor.core.publisher.Operators;
 import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
 
 /**
  * An implementation of {@link RSocket} that intercepts interactions and gathers Micrometer metrics
@@ -45,12 +53,21 @@
  * request.response | request.stream ]} and is tagged with {@code signal.type} ({@link SignalType})
  * and any additional configured tags.
  *
+ * <p>Streams and channels are also timed: {@code rsocket.[ request.channel | request.stream
+ * ].duration} is tagged with {@code signal.type}, {@code .first} is the time to the first payload
+ * and {@code .gap} the time between two payloads. The sizes of the received payloads are recorded
+ * by {@code rsocket.[ request.response | request.channel | request.stream ].payload.size}. All the
+ * timers and summaries publish percentile histograms, and are registered once so that timing a
+ * request only reads the clock into a field of its subscriber.
+ *
  * @see <a href="https://micrometer.io">Micrometer</a>
  */
 final class MicrometerRSocket implements RSocket {
 
   private final RSocket delegate;
 
+  private final Clock clock;
+
   private final InteractionCounters metadataPush;
 
   private final InteractionCounters requestChannel;
@@ -61,6 +78,12 @@ final class MicrometerRSocket implements RSocket {
 
   private final InteractionCounters requestStream;
 
+  private final StreamMeters requestResponseMeters;
+
+  private final StreamMeters requestChannelMeters;
+
+  private final StreamMeters requestStreamMeters;
+
   /**
    * Creates a new {@link RSocket}.
    *
@@ -73,11 +96,31 @@ final class MicrometerRSocket implements RSocket {
     this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
     Objects.requireNonNull(meterRegistry, "meterRegistry must not be null");
 
+    this.clock = meterRegistry.config().clock();
     this.metadataPush = new InteractionCounters(meterRegistry, "metadata.push", tags);
     this.requestChannel = new InteractionCounters(meterRegistry, "request.channel", tags);
     this.requestFireAndForget = new InteractionCounters(meterRegistry, "request.fnf", tags);
     this.requestResponse = new InteractionTimers(meterRegistry, "request.response", tags);
     this.requestStream = new InteractionCounters(meterRegistry, "request.stream", tags);
+
+    this.requestResponseMeters =
+        new StreamMeters(meterRegistry, "request.response", false, requestResponse, null, tags);
+    this.requestChannelMeters =
+        new StreamMeters(
+            meterRegistry,
+            "request.channel",
+            true,
+            new InteractionTimers(meterRegistry, "request.channel.duration", tags),
+            requestChannel,
+            tags);
+    this.requestStreamMeters =
+        new StreamMeters(
+            meterRegistry,
+            "request.stream",
+            true,
+            new InteractionTimers(meterRegistry, "request.stream.duration", tags),
+            requestStream,
+            tags);
   }
 
   @Override
@@ -102,24 +145,17 @@ public Mono<Void> onClose() {
 
   @Override
   public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
-    return delegate.requestChannel(payloads).doFinally(requestChannel);
+    return new MeteredFlux(delegate.requestChannel(payloads), clock, requestChannelMeters);
   }
 
   @Override
   public Mono<Payload> requestResponse(Payload payload) {
-    return Mono.defer(
-        () -> {
-          Sample sample = requestResponse.start();
-
-          return delegate
-              .requestResponse(payload)
-              .doFinally(signalType -> requestResponse.accept(sample, signalType));
-        });
+    return new MeteredMono(delegate.requestResponse(payload), clock, requestResponseMeters);
   }
 
   @Override
   public Flux<Payload> requestStream(Payload payload) {
-    return delegate.requestStream(payload).doFinally(requestStream);
+    return new MeteredFlux(delegate.requestStream(payload), clock, requestStreamMeters);
   }
 
   private static final class InteractionCounters implements Consumer<SignalType> {
@@ -159,48 +195,220 @@ private static Counter counter(
     }
   }
 
-  private static final class InteractionTimers implements BiConsumer<Sample, SignalType> {
+  private static final class InteractionTimers {
 
     private final Timer cancel;
 
-    private final MeterRegistry meterRegistry;
-
     private final Timer onComplete;
 
     private final Timer onError;
 
     private InteractionTimers(MeterRegistry meterRegistry, String interactionModel, Tag... tags) {
-      this.meterRegistry = meterRegistry;
-
       this.cancel = timer(meterRegistry, interactionModel, CANCEL, tags);
       this.onComplete = timer(meterRegistry, interactionModel, ON_COMPLETE, tags);
       this.onError = timer(meterRegistry, interactionModel, ON_ERROR, tags);
     }
 
-    @Override
-    public void accept(Sample sample, SignalType signalType) {
+    void record(SignalType signalType, long nanos) {
       switch (signalType) {
         case CANCEL:
-          sample.stop(cancel);
+          cancel.record(nanos, TimeUnit.NANOSECONDS);
           break;
         case ON_COMPLETE:
-          sample.stop(onComplete);
+          onComplete.record(nanos, TimeUnit.NANOSECONDS);
           break;
         case ON_ERROR:
-          sample.stop(onError);
+          onError.record(nanos, TimeUnit.NANOSECONDS);
           break;
       }
     }
 
-    Sample start() {
-      return Timer.start(meterRegistry);
-    }
-
     private static Timer timer(
         MeterRegistry meterRegistry, String interactionModel, SignalType signalType, Tag... tags) {
 
-      return meterRegistry.timer(
-          "rsocket." + interactionModel, Tags.of(tags).and("signal.type", signalType.name()));
+      return Timer.builder("rsocket." + interactionModel)
+          .tags(Tags.of(tags).and("signal.type", signalType.name()))
+          .publishPercentileHistogram()
+          .register(meterRegistry);
+    }
+  }
+
+  /** All the meters of an interaction, looked up once and shared by all its subscribers. */
+  private static final class StreamMeters {
+
+    private final InteractionTimers duration;
+
+    private final InteractionCounters counters;
+
+    private final Timer first;
+
+    private final Timer gap;
+
+    private final DistributionSummary payloadSize;
+
+    private StreamMeters(
+        MeterRegistry meterRegistry,
+        String interactionModel,
+        boolean stream,
+        InteractionTimers duration,
+        InteractionCounters counters,
+        Tag... tags) {
+      this.duration = duration;
+      this.counters = counters;
+      this.first = stream ? timer(meterRegistry, interactionModel + ".first", tags) : null;
+      this.gap = stream ? timer(meterRegistry, interactionModel + ".gap", tags) : null;
+      this.payloadSize =
+          DistributionSummary.builder("rsocket." + interactionModel + ".payload.size")
+              .tags(Tags.of(tags))
+              .baseUnit("bytes")
+              .publishPercentileHistogram()
+              .register(meterRegistry);
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String name, Tag... tags) {
+      return Timer.builder("rsocket." + name)
+          .tags(Tags.of(tags))
+          .publishPercentileHistogram()
+          .register(meterRegistry);
+    }
+  }
+
+  private static final class MeteredFlux extends FluxOperator<Payload, Payload> {
+
+    private final Clock clock;
+
+    private final StreamMeters meters;
+
+    private MeteredFlux(Flux<Payload> source, Clock clock, StreamMeters meters) {
+      super(source);
+      this.clock = clock;
+      this.meters = meters;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super Payload> actual) {
+      source.subscribe(new MeteredSubscriber(actual, clock, meters));
+    }
+  }
+
+  private static final class MeteredMono extends MonoOperator<Payload, Payload> {
+
+    private final Clock clock;
+
+    private final StreamMeters meters;
+
+    private MeteredMono(Mono<Payload> source, Clock clock, StreamMeters meters) {
+      super(source);
+      this.clock = clock;
+      this.meters = meters;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super Payload> actual) {
+      source.subscribe(new MeteredSubscriber(actual, clock, meters));
+    }
+  }
+
+  /** Times an interaction with plain fields, without allocating anything per payload. */
+  private static final class MeteredSubscriber implements CoreSubscriber<Payload>, Subscription {
+
+    private static final AtomicIntegerFieldUpdater<MeteredSubscriber> DONE =
+        AtomicIntegerFieldUpdater.newUpdater(MeteredSubscriber.class, "done");
+
+    private final CoreSubscriber<? super Payload> actual;
+
+    private final Clock clock;
+
+    private final StreamMeters meters;
+
+    private Subscription s;
+
+    private long start;
+
+    private long last;
+
+    private boolean received;
+
+    private volatile int done;
+
+    private MeteredSubscriber(
+        CoreSubscriber<? super Payload> actual, Clock clock, StreamMeters meters) {
+      this.actual = actual;
+      this.clock = clock;
+      this.meters = meters;
+    }
+
+    @Override
+    public Context currentContext() {
+      return actual.currentContext();
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      if (Operators.validate(this.s, s)) {
+        this.s = s;
+        this.start = clock.monotonicTime();
+        actual.onSubscribe(this);
+      }
+    }
+
+    @Override
+    public void onNext(Payload payload) {
+      if (meters.first != null) {
+        long now = clock.monotonicTime();
+        if (received) {
+          meters.gap.record(now - last, TimeUnit.NANOSECONDS);
+        } else {
+          received = true;
+          meters.first.record(now - start, TimeUnit.NANOSECONDS);
+        }
+        last = now;
+      }
+
+      // read the size before the payload is handed over, and possibly released
+      int size = payload.data().readableBytes();
+      if (payload.hasMetadata()) {
+        size += payload.metadata().readableBytes();
+      }
+      meters.payloadSize.record(size);
+
+      actual.onNext(payload);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      if (DONE.compareAndSet(this, 0, 1)) {
+        terminate(ON_ERROR);
+      }
+      actual.onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+      if (DONE.compareAndSet(this, 0, 1)) {
+        terminate(ON_COMPLETE);
+      }
+      actual.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+      s.request(n);
+    }
+
+    @Override
+    public void cancel() {
+      if (DONE.compareAndSet(this, 0, 1)) {
+        terminate(CANCEL);
+      }
+      s.cancel();
+    }
+
+    private void terminate(SignalType signalType) {
+      meters.duration.record(signalType, clock.monotonicTime() - start);
+      if (meters.counters != null) {
+        meters.counters.accept(signalType);
+      }
     }
   }
 }
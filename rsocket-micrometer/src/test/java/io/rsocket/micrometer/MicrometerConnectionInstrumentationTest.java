@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.micrometer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNullPointerException;
+import static org.mockito.Mockito.RETURNS_SMART_NULLS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rsocket.plugins.ConnectionStats;
+import java.util.function.LongConsumer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+final class MicrometerConnectionInstrumentationTest {
+
+  private final ConnectionStats stats = mock(ConnectionStats.class, RETURNS_SMART_NULLS);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @DisplayName("constructor throws NullPointerException with null meterRegistry")
+  @Test
+  void constructorNullMeterRegistry() {
+    assertThatNullPointerException()
+        .isThrownBy(() -> new MicrometerConnectionInstrumentation(null))
+        .withMessage("meterRegistry must not be null");
+  }
+
+  @DisplayName("instrument registers connection gauges")
+  @Test
+  void instrument() {
+    when(stats.side()).thenReturn("client");
+    when(stats.onClose()).thenReturn(Mono.never());
+    when(stats.pendingSendFrames()).thenReturn(1);
+    when(stats.activeSenders()).thenReturn(2);
+    when(stats.activeReceivers()).thenReturn(3);
+    when(stats.activeChannelProcessors()).thenReturn(4);
+    when(stats.reassemblyBytes()).thenReturn(5L);
+
+    new MicrometerConnectionInstrumentation(meterRegistry, Tag.of("test-key", "test-value"))
+        .instrument(stats);
+
+    assertThat(findGauge("send.pending")).isEqualTo(1);
+    assertThat(findGauge("senders")).isEqualTo(2);
+    assertThat(findGauge("receivers")).isEqualTo(3);
+    assertThat(findGauge("channel.processors")).isEqualTo(4);
+    assertThat(findGauge("reassembly.bytes")).isEqualTo(5);
+  }
+
+  @DisplayName("instrument exposes the largest value among the open connections")
+  @Test
+  void instrumentMaxOfOpenConnections() {
+    MonoProcessor<Void> onClose = MonoProcessor.create();
+    ConnectionStats other = mock(ConnectionStats.class, RETURNS_SMART_NULLS);
+    when(stats.side()).thenReturn("client");
+    when(stats.onClose()).thenReturn(onClose);
+    when(stats.activeReceivers()).thenReturn(5);
+    when(other.side()).thenReturn("client");
+    when(other.onClose()).thenReturn(Mono.never());
+    when(other.activeReceivers()).thenReturn(4);
+
+    new MicrometerConnectionInstrumentation(meterRegistry, Tag.of("test-key", "test-value"))
+        .instrument(stats);
+    new MicrometerConnectionInstrumentation(meterRegistry, Tag.of("test-key", "test-value"))
+        .instrument(other);
+
+    assertThat(meterRegistry.find("rsocket.connection.receivers").gauges()).hasSize(1);
+    assertThat(findGauge("receivers")).isEqualTo(5);
+
+    onClose.onComplete();
+    assertThat(findGauge("receivers")).isEqualTo(4);
+  }
+
+  @DisplayName("instrument records sampled send latencies")
+  @Test
+  void instrumentLatency() {
+    when(stats.side()).thenReturn("server");
+    when(stats.onClose()).thenReturn(Mono.never());
+
+    LongConsumer latencyConsumer =
+        new MicrometerConnectionInstrumentation(meterRegistry, Tag.of("test-key", "test-value"))
+            .instrument(stats);
+    latencyConsumer.accept(1_000);
+
+    assertThat(
+            meterRegistry
+                .get("rsocket.connection.send.latency")
+                .tag("connection.side", "server")
+                .tag("test-key", "test-value")
+                .timer()
+                .count())
+        .isEqualTo(1);
+  }
+
+  private double findGauge(String name) {
+    return meterRegistry
+        .get(String.format("rsocket.connection.%s", name))
+        .tag("connection.side", "client")
+        .tag("test-key", "test-value")
+        .gauge()
+        .value();
+  }
+}
@@ -21,11 +21,15 @@
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
 import static org.mockito.Mockito.RETURNS_SMART_NULLS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.rsocket.DuplexConnection;
+import io.rsocket.frame.FrameType;
+import io.rsocket.test.TestFrames;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
 
 final class MicrometerDuplexConnectionInterceptorTest {
 
@@ -40,6 +44,51 @@ void apply() {
         .isInstanceOf(MicrometerDuplexConnection.class);
   }
 
+  @DisplayName("connections of the same type share their frame counters")
+  @Test
+  void applySharesFrameCounters() {
+    when(delegate.receive()).thenReturn(Flux.just(TestFrames.createTestCancelFrame()));
+    MicrometerDuplexConnectionInterceptor interceptor =
+        new MicrometerDuplexConnectionInterceptor(meterRegistry);
+
+    interceptor.apply(CLIENT, delegate).receive().blockLast();
+    interceptor.apply(CLIENT, delegate).receive().blockLast();
+
+    assertThat(
+            meterRegistry
+                .get("rsocket.frame")
+                .tag("connection.type", CLIENT.name())
+                .tag("frame.type", FrameType.CANCEL.name())
+                .functionCounter()
+                .count())
+        .isEqualTo(2);
+  }
+
+  @DisplayName("interceptors with the same registry and tags share their frame counters")
+  @Test
+  void interceptorsShareFrameCounters() {
+    when(delegate.receive()).thenReturn(Flux.just(TestFrames.createTestCancelFrame()));
+
+    new MicrometerDuplexConnectionInterceptor(meterRegistry)
+        .apply(CLIENT, delegate)
+        .receive()
+        .blockLast();
+    new MicrometerDuplexConnectionInterceptor(meterRegistry)
+        .apply(CLIENT, delegate)
+        .receive()
+        .blockLast();
+    new MicrometerDuplexConnection(CLIENT, delegate, meterRegistry).receive().blockLast();
+
+    assertThat(
+            meterRegistry
+                .get("rsocket.frame")
+                .tag("connection.type", CLIENT.name())
+                .tag("frame.type", FrameType.CANCEL.name())
+                .functionCounter()
+                .count())
+        .isEqualTo(3);
+  }
+
   @DisplayName("apply throws NullPointerException with null connectionType")
   @Test
   void applyNullConnectionType() {
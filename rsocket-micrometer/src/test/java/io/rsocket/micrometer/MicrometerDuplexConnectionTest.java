@@ -24,7 +24,7 @@
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
 import static org.mockito.Mockito.*;
 
-import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.netty.buffer.ByteBuf;
@@ -202,12 +202,50 @@ void sendNullFrames() {
         .withMessage("frames must not be null");
   }
 
-  private Counter findCounter(Type connectionType, FrameType frameType) {
+  @DisplayName("frame bytes are counted by direction")
+  @SuppressWarnings("unchecked")
+  @Test
+  void frameBytes() {
+    ArgumentCaptor<Publisher<ByteBuf>> captor = ArgumentCaptor.forClass(Publisher.class);
+    when(delegate.send(captor.capture())).thenReturn(Mono.empty());
+    ByteBuf inbound = createTestCancelFrame();
+    ByteBuf outbound = createTestSetupFrame();
+    when(delegate.receive()).thenReturn(Flux.just(inbound, inbound));
+
+    MicrometerDuplexConnection connection =
+        new MicrometerDuplexConnection(
+            CLIENT, delegate, meterRegistry, Tag.of("test-key", "test-value"));
+    connection.receive().as(StepVerifier::create).expectNextCount(2).verifyComplete();
+    connection.send(Flux.just(outbound)).as(StepVerifier::create).verifyComplete();
+    StepVerifier.create(captor.getValue()).expectNextCount(1).verifyComplete();
+
+    assertThat(findBytes(CLIENT, CANCEL, "inbound").count()).isEqualTo(2 * inbound.readableBytes());
+    assertThat(findBytes(CLIENT, SETUP, "outbound").count()).isEqualTo(outbound.readableBytes());
+    assertThat(
+            meterRegistry
+                .find("rsocket.frame.bytes")
+                .tag("frame.type", CANCEL.name())
+                .tag("direction", "outbound")
+                .functionCounter())
+        .isNull();
+  }
+
+  private FunctionCounter findBytes(Type connectionType, FrameType frameType, String direction) {
+    return meterRegistry
+        .get("rsocket.frame.bytes")
+        .tag("connection.type", connectionType.name())
+        .tag("frame.type", frameType.name())
+        .tag("direction", direction)
+        .tag("test-key", "test-value")
+        .functionCounter();
+  }
+
+  private FunctionCounter findCounter(Type connectionType, FrameType frameType) {
     return meterRegistry
         .get("rsocket.frame")
         .tag("connection.type", connectionType.name())
         .tag("frame.type", frameType.name())
         .tag("test-key", "test-value")
-        .counter();
+        .functionCounter();
   }
 }
@@ -23,6 +23,7 @@
 import static org.mockito.Mockito.when;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
@@ -128,6 +129,66 @@ void requestStream() {
     assertThat(findCounter("request.stream", SignalType.ON_COMPLETE).count()).isEqualTo(1);
   }
 
+  @DisplayName("requestStream records first, gap and duration timers and payload sizes")
+  @Test
+  void requestStreamTimers() {
+    Payload payload = DefaultPayload.create("test-metadata", "test-data");
+    when(delegate.requestStream(payload))
+        .thenReturn(
+            Flux.just(
+                DefaultPayload.create("data", "metadata"),
+                DefaultPayload.create("data"),
+                DefaultPayload.create("data")));
+
+    new MicrometerRSocket(delegate, meterRegistry, Tag.of("test-key", "test-value"))
+        .requestStream(payload)
+        .as(StepVerifier::create)
+        .expectNextCount(3)
+        .verifyComplete();
+
+    assertThat(findTimer("request.stream.first").count()).isEqualTo(1);
+    assertThat(findTimer("request.stream.gap").count()).isEqualTo(2);
+    assertThat(findTimer("request.stream.duration", SignalType.ON_COMPLETE).count()).isEqualTo(1);
+
+    DistributionSummary payloadSize = findSummary("request.stream.payload.size");
+    assertThat(payloadSize.count()).isEqualTo(3);
+    assertThat(payloadSize.totalAmount()).isEqualTo(20);
+  }
+
+  @DisplayName("requestChannel records a cancelled duration once")
+  @Test
+  void requestChannelCancel() {
+    Mono<Payload> payload = Mono.just(DefaultPayload.create("test-metadata", "test-data"));
+    when(delegate.requestChannel(payload)).thenReturn(Flux.never());
+
+    new MicrometerRSocket(delegate, meterRegistry, Tag.of("test-key", "test-value"))
+        .requestChannel(payload)
+        .as(StepVerifier::create)
+        .thenCancel()
+        .verify();
+
+    assertThat(findCounter("request.channel", SignalType.CANCEL).count()).isEqualTo(1);
+    assertThat(findTimer("request.channel.duration", SignalType.CANCEL).count()).isEqualTo(1);
+    assertThat(findTimer("request.channel.first").count()).isZero();
+  }
+
+  @DisplayName("requestResponse records the payload size")
+  @Test
+  void requestResponsePayloadSize() {
+    Payload payload = DefaultPayload.create("test-metadata", "test-data");
+    when(delegate.requestResponse(payload))
+        .thenReturn(Mono.just(DefaultPayload.create("data", "metadata")));
+
+    new MicrometerRSocket(delegate, meterRegistry, Tag.of("test-key", "test-value"))
+        .requestResponse(payload)
+        .as(StepVerifier::create)
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertThat(findTimer("request.response", SignalType.ON_COMPLETE).count()).isEqualTo(1);
+    assertThat(findSummary("request.response.payload.size").totalAmount()).isEqualTo(12);
+  }
+
   private Counter findCounter(String interactionModel, SignalType signalType) {
     return meterRegistry
         .get(String.format("rsocket.%s", interactionModel))
@@ -143,4 +204,18 @@ private Timer findTimer(String interactionModel, SignalType signalType) {
         .tag("test-key", "test-value")
         .timer();
   }
+
+  private Timer findTimer(String name) {
+    return meterRegistry
+        .get(String.format("rsocket.%s", name))
+        .tag("test-key", "test-value")
+        .timer();
+  }
+
+  private DistributionSummary findSummary(String name) {
+    return meterRegistry
+        .get(String.format("rsocket.%s", name))
+        .tag("test-key", "test-value")
+        .summary();
+  }
 }
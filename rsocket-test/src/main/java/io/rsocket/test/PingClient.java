@@ -59,6 +59,26 @@ public Flux<Payload> requestStreamPingPong(int count, final Recorder histogram)
     return pingPong(RSocket::requestStream, count, histogram);
   }
 
+  /**
+   * Opens connections concurrently and records how long each takes to be established, to compare
+   * how accepting connections scales on the server.
+   */
+  public Mono<Void> connectPingPong(int count, int concurrency, final Recorder histogram) {
+    return Flux.range(1, count)
+        .flatMap(
+            i -> {
+              long start = System.nanoTime();
+              return client.doOnNext(
+                  rsocket -> {
+                    histogram.recordValue(System.nanoTime() - start);
+                    rsocket.dispose();
+                  });
+            },
+            concurrency)
+        .doOnError(Throwable::printStackTrace)
+        .then();
+  }
+
   Flux<Payload> pingPong(
       BiFunction<RSocket, ? super Payload, ? extends Publisher<Payload>> interaction,
       int count,
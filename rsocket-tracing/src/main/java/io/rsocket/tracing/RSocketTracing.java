@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.tracing;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.plugins.RSocketInterceptor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import reactor.core.publisher.SignalType;
+import reactor.util.annotation.Nullable;
+
+/**
+ * Propagates trace contexts in the composite metadata of requests and records a span per stream.
+ *
+ * <pre>{@code
+ * RSocketTracing tracing = RSocketTracing.create(reporter, 0.01);
+ * String mimeType = WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString();
+ * RSocketConnector.create()
+ *     .metadataMimeType(mimeType)
+ *     .acceptor(tracing.acceptor(acceptor))
+ *     .interceptors(r -> r.forRequester(tracing.requester(mimeType)))
+ *
+ * RSocketServer.create(tracing.acceptor(acceptor))
+ * }</pre>
+ *
+ * <p>Tracing entries only fit in composite metadata, so nothing is injected nor extracted on
+ * connections whose SETUP declares another metadata mime type: their requests are left untouched.
+ *
+ * <p>The requester samples the traces it starts with the given rate, and follows the decision of
+ * the trace being served otherwise. Sampling is decided before anything is allocated: requests of
+ * unsampled traces are sent unchanged and record no span. The tracing entry of sampled requests is
+ * appended to their metadata without copying it.
+ *
+ * <p>The responder looks the tracing entry up in place and only decodes it, and records a span, for
+ * sampled traces.
+ */
+public final class RSocketTracing {
+  private final SpanReporter reporter;
+  private final double sampleRate;
+  private final ByteBufAllocator allocator;
+
+  private RSocketTracing(SpanReporter reporter, double sampleRate, ByteBufAllocator allocator) {
+    if (sampleRate < 0.0 || sampleRate > 1.0) {
+      throw new IllegalArgumentException("sampleRate must be in [0, 1]: " + sampleRate);
+    }
+    this.reporter = reporter;
+    this.sampleRate = sampleRate;
+    this.allocator = allocator;
+  }
+
+  /**
+   * @param reporter receives the finished spans
+   * @param sampleRate the probability of sampling a new trace, in {@code [0, 1]}
+   */
+  public static RSocketTracing create(SpanReporter reporter, double sampleRate) {
+    return new RSocketTracing(reporter, sampleRate, ByteBufAllocator.DEFAULT);
+  }
+
+  public static RSocketTracing create(
+      SpanReporter reporter, double sampleRate, ByteBufAllocator allocator) {
+    return new RSocketTracing(reporter, sampleRate, allocator);
+  }
+
+  /**
+   * @param metadataMimeType the metadata mime type of the connection, as set on the connector
+   * @return the interceptor propagating the trace contexts of the requests sent, or one leaving
+   *     them untouched unless the metadata is composite
+   */
+  public RSocketInterceptor requester(String metadataMimeType) {
+    return isComposite(metadataMimeType) ? requester() : rSocket -> rSocket;
+  }
+
+  /**
+   * Traces the requests received, and the requests sent through the sending socket, of the
+   * connections whose SETUP declares composite metadata.
+   *
+   * @param acceptor the acceptor to decorate
+   * @return the acceptor continuing the traces of the requests received
+   */
+  public SocketAcceptor acceptor(SocketAcceptor acceptor) {
+    return (setup, sendingSocket) -> {
+      if (!isComposite(setup.metadataMimeType())) {
+        return acceptor.accept(setup, sendingSocket);
+      }
+      return acceptor.accept(setup, requester().apply(sendingSocket)).map(responder()::apply);
+    };
+  }
+
+  RSocketInterceptor requester() {
+    return rSocket -> new TracingRequesterRSocket(rSocket, this);
+  }
+
+  RSocketInterceptor responder() {
+    return rSocket -> new TracingResponderRSocket(rSocket, this);
+  }
+
+  private static boolean isComposite(@Nullable String metadataMimeType) {
+    return WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA
+        .getString()
+        .equals(metadataMimeType);
+  }
+
+  ByteBufAllocator allocator() {
+    return allocator;
+  }
+
+  /**
+   * @param parent the context of the span being served, if any
+   * @return the context of the next client span, or null if the trace is not sampled
+   */
+  @Nullable
+  TraceContext nextSpan(@Nullable TraceContext parent) {
+    if (parent != null) {
+      return parent.isSampled() ? parent.newChild() : null;
+    }
+    if (sampleRate < 1.0 && !(ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+      return null;
+    }
+    return TraceContext.newTrace();
+  }
+
+  SpanRecorder record(TraceContext context, String name, Span.Kind kind) {
+    return new SpanRecorder(context, name, kind);
+  }
+
+  /** Records the span of a stream from its subscription to its termination. */
+  final class SpanRecorder implements Consumer<SignalType> {
+    private final TraceContext context;
+    private final String name;
+    private final Span.Kind kind;
+    private final long timestamp;
+    private final long start;
+    @Nullable private Throwable error;
+
+    private SpanRecorder(TraceContext context, String name, Span.Kind kind) {
+      this.context = context;
+      this.name = name;
+      this.kind = kind;
+      this.timestamp = System.currentTimeMillis() * 1_000L;
+      this.start = System.nanoTime();
+    }
+
+    void onError(Throwable t) {
+      error = t;
+    }
+
+    @Override
+    public void accept(SignalType signalType) {
+      long duration = (System.nanoTime() - start) / 1_000L;
+      reporter.report(new Span(context, name, kind, timestamp, duration, signalType, error));
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.tracing;
+
+import reactor.core.publisher.SignalType;
+import reactor.util.annotation.Nullable;
+
+/** A finished span: one RSocket stream, as seen by either the requester or the responder. */
+public final class Span {
+  public enum Kind {
+    CLIENT,
+    SERVER
+  }
+
+  private final TraceContext context;
+  private final String name;
+  private final Kind kind;
+  private final long timestamp;
+  private final long duration;
+  private final SignalType outcome;
+  @Nullable private final Throwable error;
+
+  Span(
+      TraceContext context,
+      String name,
+      Kind kind,
+      long timestamp,
+      long duration,
+      SignalType outcome,
+      @Nullable Throwable error) {
+    this.context = context;
+    this.name = name;
+    this.kind = kind;
+    this.timestamp = timestamp;
+    this.duration = duration;
+    this.outcome = outcome;
+    this.error = error;
+  }
+
+  public TraceContext context() {
+    return context;
+  }
+
+  /** @return the interaction model of the stream, e.g. {@code request-response} */
+  public String name() {
+    return name;
+  }
+
+  public Kind kind() {
+    return kind;
+  }
+
+  /** @return the start of the span, in microseconds since the epoch */
+  public long timestamp() {
+    return timestamp;
+  }
+
+  /** @return the duration of the span, in microseconds */
+  public long duration() {
+    return duration;
+  }
+
+  /** @return how the stream ended: {@code ON_COMPLETE}, {@code ON_ERROR} or {@code CANCEL} */
+  public SignalType outcome() {
+    return outcome;
+  }
+
+  @Nullable
+  public Throwable error() {
+    return error;
+  }
+
+  @Override
+  public String toString() {
+    return "Span{"
+        + "context="
+        + context
+        + ", name='"
+        + name
+        + '\''
+        + ", kind="
+        + kind
+        + ", timestamp="
+        + timestamp
+        + ", duration="
+        + duration
+        + ", outcome="
+        + outcome
+        + '}';
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.tracing;
+
+/** Receives the sampled spans once finished, e.g. to send them to a tracing system. */
+@FunctionalInterface
+public interface SpanReporter {
+  /**
+   * Called on the thread that finished the stream, implementations should not block.
+   *
+   * @param span the finished span
+   */
+  void report(Span span);
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Identifiers of a span and the sampling decision of its trace, as propagated in the {@link
+ * TracingMetadataFlyweight tracing metadata}.
+ *
+ * <p>The context of the span being served is available to the responder handlers in the Reactor
+ * {@link reactor.util.context.Context Context} under the {@code TraceContext.class} key, so that
+ * the requests they make on behalf of it are recorded as its children.
+ */
+public final class TraceContext {
+  /** The decision not to sample a trace, propagated without identifiers. */
+  public static final TraceContext NOT_SAMPLED = new TraceContext(0L, 0L, 0L, 0L, false, false);
+
+  private final long traceIdHigh;
+  private final long traceId;
+  private final long spanId;
+  private final long parentId;
+  private final boolean sampled;
+  private final boolean debug;
+
+  TraceContext(
+      long traceIdHigh, long traceId, long spanId, long parentId, boolean sampled, boolean debug) {
+    this.traceIdHigh = traceIdHigh;
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.parentId = parentId;
+    this.sampled = sampled;
+    this.debug = debug;
+  }
+
+  /** @return the context of the root span of a new sampled trace, with a 128 bits trace id */
+  public static TraceContext newTrace() {
+    return new TraceContext(nextId(), nextId(), nextId(), 0L, true, false);
+  }
+
+  /** @return the context of a new span of the same trace, child of this one */
+  public TraceContext newChild() {
+    return new TraceContext(traceIdHigh, traceId, nextId(), spanId, sampled, debug);
+  }
+
+  static long nextId() {
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong();
+    } while (id == 0L);
+    return id;
+  }
+
+  /** @return the upper 64 bits of the trace id, 0 for 64 bits trace ids */
+  public long traceIdHigh() {
+    return traceIdHigh;
+  }
+
+  /** @return the lower 64 bits of the trace id */
+  public long traceId() {
+    return traceId;
+  }
+
+  public long spanId() {
+    return spanId;
+  }
+
+  /** @return the id of the parent span, 0 for root spans */
+  public long parentId() {
+    return parentId;
+  }
+
+  /** @return whether the spans of this trace are recorded, always true for debug traces */
+  public boolean isSampled() {
+    return sampled || debug;
+  }
+
+  public boolean isDebug() {
+    return debug;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    TraceContext that = (TraceContext) o;
+    return traceIdHigh == that.traceIdHigh
+        && traceId == that.traceId
+        && spanId == that.spanId
+        && parentId == that.parentId
+        && sampled == that.sampled
+        && debug == that.debug;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(traceId) * 31 + Long.hashCode(spanId);
+  }
+
+  @Override
+  public String toString() {
+    return "TraceContext{"
+        + "traceId="
+        + (traceIdHigh != 0L ? String.format("%016x", traceIdHigh) : "")
+        + String.format("%016x", traceId)
+        + ", spanId="
+        + String.format("%016x", spanId)
+        + ", parentId="
+        + String.format("%016x", parentId)
+        + ", sampled="
+        + sampled
+        + ", debug="
+        + debug
+        + '}';
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.tracing;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.rsocket.metadata.CompositeMetadataFlyweight;
+import io.rsocket.metadata.WellKnownMimeType;
+import reactor.util.annotation.Nullable;
+
+/**
+ * Encodes and decodes the {@link WellKnownMimeType#MESSAGE_RSOCKET_TRACING_ZIPKIN tracing} entry of
+ * composite metadata.
+ *
+ * <p>The entry starts with a byte of flags, followed by the trace id on 8 or 16 bytes, the span id
+ * and the optional parent span id, each on 8 bytes. The entry is decoded in place: looking it up
+ * and reading its flags does not allocate, and a {@link TraceContext} is only created for sampled
+ * traces.
+ */
+public final class TracingMetadataFlyweight {
+  static final int FLAG_IDS_SET = 0b1000_0000;
+  static final int FLAG_DEBUG = 0b0100_0000;
+  static final int FLAG_SAMPLED = 0b0010_0000;
+  static final int FLAG_NOT_SAMPLED = 0b0001_0000;
+  static final int FLAG_EXTENDED_TRACE_ID = 0b0000_1000;
+  static final int FLAG_INCLUDE_PARENT_ID = 0b0000_0100;
+
+  private static final int KNOWN_MIME_MASK = 0x80;
+  private static final byte TRACING_MIME_ID =
+      WellKnownMimeType.MESSAGE_RSOCKET_TRACING_ZIPKIN.getIdentifier();
+
+  private TracingMetadataFlyweight() {}
+
+  /**
+   * Encodes the tracing entry content of a context.
+   *
+   * @param allocator the allocator of the buffer
+   * @param context the context to encode
+   * @return a new buffer holding the entry content, without the composite metadata header
+   */
+  public static ByteBuf encode(ByteBufAllocator allocator, TraceContext context) {
+    if (context.traceId() == 0L) {
+      int flags = context.isSampled() ? FLAG_SAMPLED : FLAG_NOT_SAMPLED;
+      return allocator.buffer(1, 1).writeByte(flags);
+    }
+
+    boolean extended = context.traceIdHigh() != 0L;
+    boolean parent = context.parentId() != 0L;
+    int flags = FLAG_IDS_SET;
+    if (context.isDebug()) {
+      flags |= FLAG_DEBUG;
+    } else {
+      flags |= context.isSampled() ? FLAG_SAMPLED : FLAG_NOT_SAMPLED;
+    }
+    if (extended) {
+      flags |= FLAG_EXTENDED_TRACE_ID;
+    }
+    if (parent) {
+      flags |= FLAG_INCLUDE_PARENT_ID;
+    }
+
+    int size = 17 + (extended ? 8 : 0) + (parent ? 8 : 0);
+    ByteBuf buffer = allocator.buffer(size, size).writeByte(flags);
+    if (extended) {
+      buffer.writeLong(context.traceIdHigh());
+    }
+    buffer.writeLong(context.traceId()).writeLong(context.spanId());
+    if (parent) {
+      buffer.writeLong(context.parentId());
+    }
+    return buffer;
+  }
+
+  /**
+   * Appends the tracing entry of a context to composite metadata, the existing entries are added as
+   * a component and are not copied.
+   *
+   * @param allocator the allocator of the new entry
+   * @param metadata the composite metadata to append to, its ownership is transferred to the
+   *     returned buffer
+   * @param context the context to encode
+   * @return a composite buffer of the existing entries followed by the tracing entry
+   */
+  public static CompositeByteBuf append(
+      ByteBufAllocator allocator, @Nullable ByteBuf metadata, TraceContext context) {
+    CompositeByteBuf composite = allocator.compositeBuffer(3);
+    if (metadata != null) {
+      if (metadata.isReadable()) {
+        composite.addComponent(true, metadata);
+      } else {
+        metadata.release();
+      }
+    }
+    CompositeMetadataFlyweight.encodeAndAddMetadata(
+        composite,
+        allocator,
+        WellKnownMimeType.MESSAGE_RSOCKET_TRACING_ZIPKIN,
+        encode(allocator, context));
+    return composite;
+  }
+
+  /**
+   * Looks up the tracing entry of composite metadata, without moving its reader index nor
+   * allocating.
+   *
+   * @param compositeMetadata the composite metadata to search
+   * @return the index of the tracing entry content, or -1 if there is none or the metadata is
+   *     malformed
+   */
+  public static int find(ByteBuf compositeMetadata) {
+    int index = compositeMetadata.readerIndex();
+    int end = compositeMetadata.writerIndex();
+    while (index < end) {
+      int header = compositeMetadata.getUnsignedByte(index);
+      boolean tracing;
+      int headerLength;
+      if ((header & KNOWN_MIME_MASK) != 0) {
+        tracing = (byte) (header & ~KNOWN_MIME_MASK) == TRACING_MIME_ID;
+        headerLength = 1;
+      } else {
+        // the length of a custom mime type is encoded minus one
+        tracing = false;
+        headerLength = 2 + header;
+      }
+
+      int content = index + headerLength + 3;
+      if (content > end) {
+        return -1;
+      }
+      int length = compositeMetadata.getUnsignedMedium(index + headerLength);
+      if (content + length > end) {
+        return -1;
+      }
+      if (tracing) {
+        return content;
+      }
+      index = content + length;
+    }
+    return -1;
+  }
+
+  /**
+   * @param metadata the buffer holding the tracing entry
+   * @param index the index of the entry content, as returned by {@link #find(ByteBuf)}
+   * @return whether the entry carries the decision to sample the trace
+   */
+  public static boolean isSampled(ByteBuf metadata, int index) {
+    return (metadata.getByte(index) & (FLAG_SAMPLED | FLAG_DEBUG)) != 0;
+  }
+
+  /**
+   * Decodes the tracing entry content.
+   *
+   * @param metadata the buffer holding the tracing entry
+   * @param index the index of the entry content, as returned by {@link #find(ByteBuf)}
+   * @return the decoded context, {@link TraceContext#NOT_SAMPLED} for traces that are not sampled,
+   *     or null if the entry holds no sampling decision or is truncated
+   */
+  @Nullable
+  public static TraceContext decode(ByteBuf metadata, int index) {
+    int flags = metadata.getUnsignedByte(index);
+    boolean debug = (flags & FLAG_DEBUG) != 0;
+    boolean sampled = (flags & FLAG_SAMPLED) != 0;
+    if (!debug && !sampled) {
+      return (flags & FLAG_NOT_SAMPLED) != 0 ? TraceContext.NOT_SAMPLED : null;
+    }
+    if ((flags & FLAG_IDS_SET) == 0) {
+      // a sampling decision without ids cannot be joined
+      return null;
+    }
+
+    boolean extended = (flags & FLAG_EXTENDED_TRACE_ID) != 0;
+    boolean parent = (flags & FLAG_INCLUDE_PARENT_ID) != 0;
+    int size = 17 + (extended ? 8 : 0) + (parent ? 8 : 0);
+    if (index + size > metadata.writerIndex()) {
+      return null;
+    }
+
+    int i = index + 1;
+    long traceIdHigh = 0L;
+    if (extended) {
+      traceIdHigh = metadata.getLong(i);
+      i += 8;
+    }
+    long traceId = metadata.getLong(i);
+    long spanId = metadata.getLong(i + 8);
+    long parentId = parent ? metadata.getLong(i + 16) : 0L;
+    return new TraceContext(traceIdHigh, traceId, spanId, parentId, sampled, debug);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.tracing;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.RSocketProxy;
+import java.util.function.Function;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+import reactor.util.context.Context;
+
+/** Appends the trace context to the metadata of the requests of sampled traces. */
+class TracingRequesterRSocket extends RSocketProxy {
+  private final RSocketTracing tracing;
+
+  TracingRequesterRSocket(RSocket source, RSocketTracing tracing) {
+    super(source);
+    this.tracing = tracing;
+  }
+
+  @Override
+  public Mono<Void> fireAndForget(Payload payload) {
+    return Mono.deferWithContext(
+        ctx -> {
+          TraceContext trace = tracing.nextSpan(parent(ctx));
+          if (trace == null) {
+            return source.fireAndForget(payload);
+          }
+          RSocketTracing.SpanRecorder span =
+              tracing.record(trace, "fire-and-forget", Span.Kind.CLIENT);
+          return source
+              .fireAndForget(inject(payload, trace))
+              .doOnError(span::onError)
+              .doFinally(span);
+        });
+  }
+
+  @Override
+  public Mono<Payload> requestResponse(Payload payload) {
+    return Mono.deferWithContext(
+        ctx -> {
+          TraceContext trace = tracing.nextSpan(parent(ctx));
+          if (trace == null) {
+            return source.requestResponse(payload);
+          }
+          RSocketTracing.SpanRecorder span =
+              tracing.record(trace, "request-response", Span.Kind.CLIENT);
+          return source
+              .requestResponse(inject(payload, trace))
+              .doOnError(span::onError)
+              .doFinally(span);
+        });
+  }
+
+  @Override
+  public Flux<Payload> requestStream(Payload payload) {
+    return Flux.deferWithContext(
+        ctx -> {
+          TraceContext trace = tracing.nextSpan(parent(ctx));
+          if (trace == null) {
+            return source.requestStream(payload);
+          }
+          RSocketTracing.SpanRecorder span =
+              tracing.record(trace, "request-stream", Span.Kind.CLIENT);
+          return source
+              .requestStream(inject(payload, trace))
+              .doOnError(span::onError)
+              .doFinally(span);
+        });
+  }
+
+  @Override
+  public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+    return Flux.deferWithContext(
+        ctx -> {
+          TraceContext trace = tracing.nextSpan(parent(ctx));
+          if (trace == null) {
+            return source.requestChannel(payloads);
+          }
+          RSocketTracing.SpanRecorder span =
+              tracing.record(trace, "request-channel", Span.Kind.CLIENT);
+          return source
+              .requestChannel(Flux.from(payloads).map(new InjectFirst(trace)))
+              .doOnError(span::onError)
+              .doFinally(span);
+        });
+  }
+
+  @Nullable
+  private static TraceContext parent(Context ctx) {
+    return ctx.getOrDefault(TraceContext.class, null);
+  }
+
+  /**
+   * Replaces the payload by one sharing its data and with the tracing entry appended to its
+   * metadata, neither the data nor the existing metadata are copied.
+   */
+  private Payload inject(Payload payload, TraceContext trace) {
+    ByteBuf metadata = payload.hasMetadata() ? payload.sliceMetadata().retain() : null;
+    ByteBuf data = payload.sliceData().retain();
+    payload.release();
+    return ByteBufPayload.create(
+        data, TracingMetadataFlyweight.append(tracing.allocator(), metadata, trace));
+  }
+
+  /** Injects the trace context in the first payload of a channel. */
+  private final class InjectFirst implements Function<Payload, Payload> {
+    private final TraceContext trace;
+    private boolean first = true;
+
+    InjectFirst(TraceContext trace) {
+      this.trace = trace;
+    }
+
+    @Override
+    public Payload apply(Payload payload) {
+      if (first) {
+        first = false;
+        return inject(payload, trace);
+      }
+      return payload;
+    }
+  }
+}
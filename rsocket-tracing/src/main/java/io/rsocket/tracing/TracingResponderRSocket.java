@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.tracing;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.util.RSocketProxy;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.annotation.Nullable;
+
+/**
+ * Continues the traces of the requests received: the span context is exposed to the handler in the
+ * Reactor Context and a server span is recorded for sampled traces.
+ */
+class TracingResponderRSocket extends RSocketProxy {
+  private final RSocketTracing tracing;
+
+  TracingResponderRSocket(RSocket source, RSocketTracing tracing) {
+    super(source);
+    this.tracing = tracing;
+  }
+
+  @Override
+  public Mono<Void> fireAndForget(Payload payload) {
+    TraceContext trace = extract(payload);
+    if (trace == null) {
+      return source.fireAndForget(payload);
+    }
+    return trace(source.fireAndForget(payload), trace, "fire-and-forget");
+  }
+
+  @Override
+  public Mono<Payload> requestResponse(Payload payload) {
+    TraceContext trace = extract(payload);
+    if (trace == null) {
+      return source.requestResponse(payload);
+    }
+    return trace(source.requestResponse(payload), trace, "request-response");
+  }
+
+  @Override
+  public Flux<Payload> requestStream(Payload payload) {
+    TraceContext trace = extract(payload);
+    if (trace == null) {
+      return source.requestStream(payload);
+    }
+    return trace(source.requestStream(payload), trace, "request-stream");
+  }
+
+  @Override
+  public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+    return Flux.from(payloads)
+        .switchOnFirst(
+            (signal, flux) -> {
+              Payload first = signal.get();
+              TraceContext trace = first != null ? extract(first) : null;
+              if (trace == null) {
+                return source.requestChannel(flux);
+              }
+              return trace(source.requestChannel(flux), trace, "request-channel");
+            });
+  }
+
+  private <T> Mono<T> trace(Mono<T> response, TraceContext trace, String name) {
+    if (!trace.isSampled()) {
+      return response.subscriberContext(ctx -> ctx.put(TraceContext.class, trace));
+    }
+    RSocketTracing.SpanRecorder span = tracing.record(trace, name, Span.Kind.SERVER);
+    return response
+        .doOnError(span::onError)
+        .doFinally(span)
+        .subscriberContext(ctx -> ctx.put(TraceContext.class, trace));
+  }
+
+  private Flux<Payload> trace(Flux<Payload> response, TraceContext trace, String name) {
+    if (!trace.isSampled()) {
+      return response.subscriberContext(ctx -> ctx.put(TraceContext.class, trace));
+    }
+    RSocketTracing.SpanRecorder span = tracing.record(trace, name, Span.Kind.SERVER);
+    return response
+        .doOnError(span::onError)
+        .doFinally(span)
+        .subscriberContext(ctx -> ctx.put(TraceContext.class, trace));
+  }
+
+  /** Reads the trace context in place, before the handler may release the payload. */
+  @Nullable
+  private static TraceContext extract(Payload payload) {
+    if (!payload.hasMetadata()) {
+      return null;
+    }
+    ByteBuf metadata = payload.sliceMetadata();
+    int index = TracingMetadataFlyweight.find(metadata);
+    if (index < 0) {
+      return null;
+    }
+    return TracingMetadataFlyweight.decode(metadata, index);
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.rsocket.AbstractRSocket;
+import io.rsocket.ConnectionSetupPayload;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.util.DefaultPayload;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+class RSocketTracingTest {
+  private final List<Span> spans = new CopyOnWriteArrayList<>();
+  private final AtomicReference<TraceContext> served = new AtomicReference<>();
+
+  private final RSocket handler =
+      new AbstractRSocket() {
+        @Override
+        public Mono<Payload> requestResponse(Payload payload) {
+          payload.release();
+          return Mono.subscriberContext()
+              .map(
+                  ctx -> {
+                    served.set(ctx.getOrDefault(TraceContext.class, null));
+                    return DefaultPayload.create("response");
+                  });
+        }
+
+        @Override
+        public Flux<Payload> requestStream(Payload payload) {
+          payload.release();
+          return Flux.error(new IllegalStateException("boom"));
+        }
+
+        @Override
+        public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+          return Flux.from(payloads);
+        }
+      };
+
+  @Test
+  void recordsClientAndServerSpansOfSampledTraces() {
+    RSocketTracing tracing = RSocketTracing.create(spans::add, 1.0);
+    RSocket rSocket = tracing.requester().apply(tracing.responder().apply(handler));
+
+    rSocket.requestResponse(DefaultPayload.create("request")).block();
+
+    assertThat(spans).hasSize(2);
+    Span client = span(Span.Kind.CLIENT);
+    Span server = span(Span.Kind.SERVER);
+    assertThat(client.name()).isEqualTo("request-response");
+    assertThat(client.outcome()).isEqualTo(SignalType.ON_COMPLETE);
+    assertThat(server.context()).isEqualTo(client.context());
+    assertThat(served.get()).isEqualTo(client.context());
+  }
+
+  @Test
+  void recordsErrors() {
+    RSocketTracing tracing = RSocketTracing.create(spans::add, 1.0);
+    RSocket rSocket = tracing.requester().apply(tracing.responder().apply(handler));
+
+    rSocket
+        .requestStream(DefaultPayload.create("request"))
+        .onErrorResume(t -> Flux.empty())
+        .blockLast();
+
+    assertThat(spans)
+        .hasSize(2)
+        .allSatisfy(
+            span -> {
+              assertThat(span.outcome()).isEqualTo(SignalType.ON_ERROR);
+              assertThat(span.error()).hasMessage("boom");
+            });
+  }
+
+  @Test
+  void continuesTheTraceServed() {
+    RSocketTracing tracing = RSocketTracing.create(spans::add, 0.0);
+    RSocket rSocket = tracing.requester().apply(tracing.responder().apply(handler));
+    TraceContext parent = TraceContext.newTrace();
+
+    rSocket
+        .requestResponse(DefaultPayload.create("request"))
+        .subscriberContext(ctx -> ctx.put(TraceContext.class, parent))
+        .block();
+
+    assertThat(spans).hasSize(2);
+    TraceContext child = span(Span.Kind.CLIENT).context();
+    assertThat(child.traceIdHigh()).isEqualTo(parent.traceIdHigh());
+    assertThat(child.traceId()).isEqualTo(parent.traceId());
+    assertThat(child.parentId()).isEqualTo(parent.spanId());
+    assertThat(child.spanId()).isNotEqualTo(parent.spanId());
+  }
+
+  @Test
+  void tracesTheFirstPayloadOfChannels() {
+    RSocketTracing tracing = RSocketTracing.create(spans::add, 1.0);
+    RSocket rSocket = tracing.requester().apply(tracing.responder().apply(handler));
+
+    List<Payload> responses =
+        rSocket
+            .requestChannel(Flux.just(DefaultPayload.create("1"), DefaultPayload.create("2")))
+            .collectList()
+            .block();
+
+    assertThat(responses).hasSize(2);
+    assertThat(responses.get(0).hasMetadata()).isTrue();
+    assertThat(responses.get(1).hasMetadata()).isFalse();
+    assertThat(spans).hasSize(2);
+    assertThat(spans.get(0).name()).isEqualTo("request-channel");
+  }
+
+  @Test
+  void leavesRequestsOfUnsampledTracesUntouched() {
+    RSocketTracing tracing = RSocketTracing.create(spans::add, 0.0);
+    AtomicReference<Payload> received = new AtomicReference<>();
+    RSocket rSocket =
+        tracing
+            .requester()
+            .apply(
+                new AbstractRSocket() {
+                  @Override
+                  public Mono<Payload> requestResponse(Payload payload) {
+                    received.set(payload);
+                    return Mono.just(payload);
+                  }
+                });
+    Payload request = DefaultPayload.create("request");
+
+    rSocket.requestResponse(request).block();
+    rSocket
+        .requestResponse(request)
+        .subscriberContext(ctx -> ctx.put(TraceContext.class, TraceContext.NOT_SAMPLED))
+        .block();
+
+    assertThat(received.get()).isSameAs(request);
+    assertThat(spans).isEmpty();
+  }
+
+  @Test
+  void tracesConnectionsWithCompositeMetadata() {
+    RSocketTracing tracing = RSocketTracing.create(spans::add, 1.0);
+    String mimeType = WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString();
+    RSocket rSocket =
+        tracing
+            .requester(mimeType)
+            .apply(
+                tracing
+                    .acceptor((setup, sendingSocket) -> Mono.just(handler))
+                    .accept(setup(mimeType), new AbstractRSocket() {})
+                    .block());
+
+    rSocket.requestResponse(DefaultPayload.create("request")).block();
+
+    assertThat(spans).hasSize(2);
+    assertThat(served.get()).isEqualTo(span(Span.Kind.CLIENT).context());
+  }
+
+  @Test
+  void leavesConnectionsWithOtherMetadataUntouched() {
+    RSocketTracing tracing = RSocketTracing.create(spans::add, 1.0);
+    String mimeType = WellKnownMimeType.APPLICATION_JSON.getString();
+    RSocket sendingSocket = new AbstractRSocket() {};
+    AtomicReference<RSocket> sent = new AtomicReference<>();
+    RSocket responder =
+        tracing
+            .acceptor(
+                (setup, socket) -> {
+                  sent.set(socket);
+                  return Mono.just(handler);
+                })
+            .accept(setup(mimeType), sendingSocket)
+            .block();
+    RSocket requester = tracing.requester(mimeType).apply(responder);
+    Payload request = DefaultPayload.create("request", "{}");
+
+    requester.requestResponse(request).block();
+
+    assertThat(sent.get()).isSameAs(sendingSocket);
+    assertThat(responder).isSameAs(handler);
+    assertThat(requester).isSameAs(handler);
+    assertThat(spans).isEmpty();
+  }
+
+  private static ConnectionSetupPayload setup(String metadataMimeType) {
+    ConnectionSetupPayload setup = mock(ConnectionSetupPayload.class);
+    when(setup.metadataMimeType()).thenReturn(metadataMimeType);
+    return setup;
+  }
+
+  private Span span(Span.Kind kind) {
+    return spans.stream().filter(span -> span.kind() == kind).findFirst().get();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.metadata.CompositeMetadataFlyweight;
+import io.rsocket.metadata.WellKnownMimeType;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class TracingMetadataFlyweightTest {
+
+  @Test
+  void encodesAndDecodesSampledContexts() {
+    TraceContext root = TraceContext.newTrace();
+    TraceContext child = root.newChild();
+
+    for (TraceContext context : new TraceContext[] {root, child}) {
+      ByteBuf buffer = TracingMetadataFlyweight.encode(ByteBufAllocator.DEFAULT, context);
+
+      assertThat(TracingMetadataFlyweight.isSampled(buffer, 0)).isTrue();
+      assertThat(TracingMetadataFlyweight.decode(buffer, 0)).isEqualTo(context);
+      buffer.release();
+    }
+  }
+
+  @Test
+  void encodesTheDecisionNotToSampleWithoutIds() {
+    ByteBuf buffer =
+        TracingMetadataFlyweight.encode(ByteBufAllocator.DEFAULT, TraceContext.NOT_SAMPLED);
+
+    assertThat(buffer.readableBytes()).isEqualTo(1);
+    assertThat(TracingMetadataFlyweight.isSampled(buffer, 0)).isFalse();
+    assertThat(TracingMetadataFlyweight.decode(buffer, 0)).isSameAs(TraceContext.NOT_SAMPLED);
+    buffer.release();
+  }
+
+  @Test
+  void appendsAfterTheExistingEntriesWithoutCopyingThem() {
+    ByteBuf existing = compositeMetadata();
+    TraceContext context = TraceContext.newTrace();
+
+    CompositeByteBuf metadata =
+        TracingMetadataFlyweight.append(ByteBufAllocator.DEFAULT, existing, context);
+
+    // the existing entries are shared, not copied
+    existing.setByte(4, 'R');
+    int index = TracingMetadataFlyweight.find(metadata);
+    assertThat(index).isGreaterThan(existing.readableBytes());
+    assertThat(TracingMetadataFlyweight.decode(metadata, index)).isEqualTo(context);
+
+    ByteBuf[] routing =
+        CompositeMetadataFlyweight.decodeMimeAndContentBuffersSlices(metadata, 0, false);
+    assertThat(routing[1].toString(StandardCharsets.UTF_8)).isEqualTo("Route");
+    metadata.release();
+    assertThat(existing.refCnt()).isZero();
+  }
+
+  @Test
+  void findsNothingInMetadataWithoutTracingEntry() {
+    ByteBuf metadata = compositeMetadata();
+
+    assertThat(TracingMetadataFlyweight.find(metadata)).isEqualTo(-1);
+    assertThat(TracingMetadataFlyweight.find(Unpooled.EMPTY_BUFFER)).isEqualTo(-1);
+    metadata.release();
+  }
+
+  @Test
+  void findsNothingInMalformedMetadata() {
+    ByteBuf metadata = Unpooled.wrappedBuffer("not composite".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(TracingMetadataFlyweight.find(metadata)).isEqualTo(-1);
+
+    ByteBuf truncated =
+        TracingMetadataFlyweight.append(ByteBufAllocator.DEFAULT, null, TraceContext.newTrace());
+    ByteBuf copy = Unpooled.wrappedBuffer(ByteBufUtil.getBytes(truncated, 0, 10));
+    assertThat(TracingMetadataFlyweight.find(copy)).isEqualTo(-1);
+    truncated.release();
+  }
+
+  private static ByteBuf compositeMetadata() {
+    CompositeByteBuf metadata = ByteBufAllocator.DEFAULT.compositeBuffer();
+    CompositeMetadataFlyweight.encodeAndAddMetadata(
+        metadata,
+        ByteBufAllocator.DEFAULT,
+        WellKnownMimeType.MESSAGE_RSOCKET_ROUTING,
+        ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, "route"));
+    CompositeMetadataFlyweight.encodeAndAddMetadata(
+        metadata,
+        ByteBufAllocator.DEFAULT,
+        "application/x.custom",
+        ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, "custom"));
+    return metadata;
+  }
+}
@@ -16,12 +16,10 @@
 
 package io.rsocket.transport.local;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.rsocket.DuplexConnection;
 import io.rsocket.fragmentation.FragmentationDuplexConnection;
 import io.rsocket.fragmentation.ReassemblyDuplexConnection;
-import io.rsocket.internal.UnboundedProcessor;
 import io.rsocket.transport.ClientTransport;
 import io.rsocket.transport.ServerTransport;
 import io.rsocket.transport.local.LocalServerTransport.ServerDuplexConnectionAcceptor;
@@ -72,7 +70,13 @@ public static LocalClientTransport create(String name, ByteBufAllocator allocato
     return new LocalClientTransport(name, allocator);
   }
 
-  private Mono<DuplexConnection> connect() {
+  @Override
+  public Mono<DuplexConnection> connect(int mtu) {
+    Mono<DuplexConnection> isError = FragmentationDuplexConnection.checkMtu(mtu);
+    if (isError != null) {
+      return isError;
+    }
+
     return Mono.defer(
         () -> {
           ServerDuplexConnectionAcceptor server = LocalServerTransport.findServer(name);
@@ -80,29 +84,22 @@ private Mono<DuplexConnection> connect() {
             return Mono.error(new IllegalArgumentException("Could not find server: " + name));
           }
 
-          UnboundedProcessor<ByteBuf> in = new UnboundedProcessor<>();
-          UnboundedProcessor<ByteBuf> out = new UnboundedProcessor<>();
+          LocalFrameQueue in = new LocalFrameQueue();
+          LocalFrameQueue out = new LocalFrameQueue();
           MonoProcessor<Void> closeNotifier = MonoProcessor.create();
 
-          server.accept(new LocalDuplexConnection(allocator, out, in, closeNotifier));
-
-          return Mono.just(
-              (DuplexConnection) new LocalDuplexConnection(allocator, in, out, closeNotifier));
-        });
-  }
-
-  @Override
-  public Mono<DuplexConnection> connect(int mtu) {
-    Mono<DuplexConnection> isError = FragmentationDuplexConnection.checkMtu(mtu);
-    Mono<DuplexConnection> connect = isError != null ? isError : connect();
+          server.accept(new LocalDuplexConnection(allocator, out, in, closeNotifier), mtu > 0);
 
-    return connect.map(
-        duplexConnection -> {
+          DuplexConnection duplexConnection =
+              new LocalDuplexConnection(allocator, in, out, closeNotifier);
+          // frames only need reassembly when one of the sides fragments them
           if (mtu > 0) {
-            return new FragmentationDuplexConnection(duplexConnection, mtu, false, "client");
-          } else {
-            return new ReassemblyDuplexConnection(duplexConnection, false);
+            duplexConnection =
+                new FragmentationDuplexConnection(duplexConnection, mtu, false, "client");
+          } else if (server.fragments()) {
+            duplexConnection = new ReassemblyDuplexConnection(duplexConnection, false);
           }
+          return Mono.just(duplexConnection);
         });
   }
 }
@@ -21,12 +21,16 @@
 import io.rsocket.DuplexConnection;
 import java.util.Objects;
 import org.reactivestreams.Publisher;
-import org.reactivestreams.Subscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.MonoProcessor;
 
-/** An implementation of {@link DuplexConnection} that connects inside the same JVM. */
+/**
+ * An implementation of {@link DuplexConnection} that connects inside the same JVM.
+ *
+ * <p>Frames are handed to the peer by reference, each {@link #send(Publisher)} through its own
+ * single-producer lane of the outbound {@link LocalFrameQueue}.
+ */
 final class LocalDuplexConnection implements DuplexConnection {
 
   private final ByteBufAllocator allocator;
@@ -34,7 +38,7 @@ final class LocalDuplexConnection implements DuplexConnection {
 
   private final MonoProcessor<Void> onClose;
 
-  private final Subscriber<ByteBuf> out;
+  private final LocalFrameQueue out;
 
   /**
    * Creates a new instance.
@@ -47,7 +51,7 @@ final class LocalDuplexConnection implements DuplexConnection {
   LocalDuplexConnection(
       ByteBufAllocator allocator,
       Flux<ByteBuf> in,
-      Subscriber<ByteBuf> out,
+      LocalFrameQueue out,
       MonoProcessor<Void> onClose) {
     this.allocator = Objects.requireNonNull(allocator, "allocator must not be null");
     this.in = Objects.requireNonNull(in, "in must not be null");
@@ -57,7 +61,7 @@ final class LocalDuplexConnection implements DuplexConnection {
 
   @Override
   public void dispose() {
-    out.onComplete();
+    out.complete();
     onClose.onComplete();
   }
 
@@ -80,13 +84,17 @@ public Flux<ByteBuf> receive() {
   public Mono<Void> send(Publisher<ByteBuf> frames) {
     Objects.requireNonNull(frames, "frames must not be null");
 
-    return Flux.from(frames).doOnNext(out::onNext).then();
+    return Mono.defer(
+        () -> {
+          LocalFrameQueue.Lane lane = out.newLane();
+          return Flux.from(frames).doOnNext(lane::offer).doFinally(s -> lane.complete()).then();
+        });
   }
 
   @Override
   public Mono<Void> sendOne(ByteBuf frame) {
     Objects.requireNonNull(frame, "frame must not be null");
-    out.onNext(frame);
+    out.offer(frame);
     return Mono.empty();
   }
 
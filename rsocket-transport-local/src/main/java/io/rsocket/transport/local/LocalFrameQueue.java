@@ -0,0 +1,299 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.local;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.internal.jctools.queues.MpscUnboundedArrayQueue;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.concurrent.Queues;
+
+/**
+ * The frames flowing in one direction of a pair of {@link LocalDuplexConnection}s.
+ *
+ * <p>A publisher never signals concurrently, so each {@link LocalDuplexConnection#send} gets its
+ * own single-producer single-consumer {@link Lane} and the requester and the responder of a
+ * connection never contend on the same queue. Frames given to {@link #offer(ByteBuf)}, such as the
+ * setup frame, go through a shared multi-producer queue and are delivered before any frame sent
+ * after them.
+ */
+final class LocalFrameQueue extends Flux<ByteBuf> implements Subscription {
+  private static final Lane[] EMPTY = new Lane[0];
+  private static final int CHUNK_SIZE = Queues.SMALL_BUFFER_SIZE;
+
+  private static final AtomicIntegerFieldUpdater<LocalFrameQueue> ONCE =
+      AtomicIntegerFieldUpdater.newUpdater(LocalFrameQueue.class, "once");
+  private static final AtomicIntegerFieldUpdater<LocalFrameQueue> WIP =
+      AtomicIntegerFieldUpdater.newUpdater(LocalFrameQueue.class, "wip");
+  private static final AtomicLongFieldUpdater<LocalFrameQueue> REQUESTED =
+      AtomicLongFieldUpdater.newUpdater(LocalFrameQueue.class, "requested");
+
+  private final Queue<ByteBuf> shared = new MpscUnboundedArrayQueue<>(Queues.SMALL_BUFFER_SIZE);
+  private volatile Lane[] lanes = EMPTY;
+
+  private volatile int once;
+  private volatile CoreSubscriber<? super ByteBuf> actual;
+  private volatile long requested;
+  private volatile int wip;
+  private volatile boolean done;
+  private volatile boolean cancelled;
+  private volatile boolean terminated;
+
+  // the lane polled first, so that busy lanes do not starve the others
+  private int nextLane;
+
+  /** @return a new lane, to be fed by a single producer at a time */
+  Lane newLane() {
+    Lane lane = new Lane();
+    synchronized (this) {
+      Lane[] current = lanes;
+      Lane[] next = Arrays.copyOf(current, current.length + 1);
+      next[current.length] = lane;
+      lanes = next;
+    }
+    return lane;
+  }
+
+  private synchronized void remove(Lane lane) {
+    Lane[] current = lanes;
+    int n = current.length;
+    for (int i = 0; i < n; i++) {
+      if (current[i] == lane) {
+        Lane[] next = n == 1 ? EMPTY : new Lane[n - 1];
+        System.arraycopy(current, 0, next, 0, i);
+        System.arraycopy(current, i + 1, next, i, n - i - 1);
+        lanes = next;
+        return;
+      }
+    }
+  }
+
+  /** Enqueues a frame from any thread. */
+  void offer(ByteBuf frame) {
+    if (done || cancelled) {
+      frame.release();
+      return;
+    }
+    shared.offer(frame);
+    drain();
+  }
+
+  /** Delivers the frames already enqueued, then completes. */
+  void complete() {
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void subscribe(CoreSubscriber<? super ByteBuf> actual) {
+    if (once == 0 && ONCE.compareAndSet(this, 0, 1)) {
+      actual.onSubscribe(this);
+      this.actual = actual;
+      drain();
+    } else {
+      Operators.error(
+          actual, new IllegalStateException("LocalFrameQueue allows only a single Subscriber"));
+    }
+  }
+
+  @Override
+  public void request(long n) {
+    if (Operators.validate(n)) {
+      Operators.addCap(REQUESTED, this, n);
+      drain();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    cancelled = true;
+    drain();
+  }
+
+  private void drain() {
+    if (WIP.getAndIncrement(this) != 0) {
+      return;
+    }
+
+    int missed = 1;
+    for (; ; ) {
+      CoreSubscriber<? super ByteBuf> a = actual;
+      if (cancelled || terminated) {
+        clear();
+      } else if (a != null) {
+        drainRegular(a);
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        return;
+      }
+    }
+  }
+
+  private void drainRegular(CoreSubscriber<? super ByteBuf> a) {
+    long r = requested;
+    long e = 0L;
+
+    for (; ; ) {
+      if (cancelled) {
+        clear();
+        return;
+      }
+
+      boolean d = done;
+      ByteBuf frame = e != r ? poll() : null;
+      if (frame == null) {
+        if (d && isEmpty()) {
+          terminated = true;
+          a.onComplete();
+          clear();
+          return;
+        }
+        break;
+      }
+
+      a.onNext(frame);
+      e++;
+    }
+
+    if (e != 0 && r != Long.MAX_VALUE) {
+      REQUESTED.addAndGet(this, -e);
+    }
+  }
+
+  private ByteBuf poll() {
+    ByteBuf frame = shared.poll();
+    if (frame != null) {
+      return frame;
+    }
+
+    Lane[] lanes = this.lanes;
+    int n = lanes.length;
+    for (int i = 0; i < n; i++) {
+      int index = (nextLane + i) % n;
+      Lane lane = lanes[index];
+      boolean d = lane.done;
+      if (lane.peek() == null) {
+        if (d) {
+          remove(lane);
+        }
+        continue;
+      }
+
+      // whatever was offered before this frame was sent goes first
+      frame = shared.poll();
+      if (frame != null) {
+        return frame;
+      }
+      nextLane = index + 1;
+      return lane.poll();
+    }
+    return null;
+  }
+
+  private boolean isEmpty() {
+    if (!shared.isEmpty()) {
+      return false;
+    }
+    for (Lane lane : lanes) {
+      if (lane.peek() != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void clear() {
+    ByteBuf frame;
+    while ((frame = shared.poll()) != null) {
+      frame.release();
+    }
+    for (Lane lane : lanes) {
+      while ((frame = lane.poll()) != null) {
+        frame.release();
+      }
+    }
+  }
+
+  /**
+   * An unbounded single-producer single-consumer queue of frames, made of linked chunks whose last
+   * slot points to the next chunk.
+   */
+  final class Lane {
+    private AtomicReferenceArray<Object> producerChunk = new AtomicReferenceArray<>(CHUNK_SIZE);
+    private int producerIndex;
+
+    private AtomicReferenceArray<Object> consumerChunk = producerChunk;
+    private int consumerIndex;
+
+    private volatile boolean done;
+
+    /** Enqueues a frame, must not be called concurrently. */
+    void offer(ByteBuf frame) {
+      if (LocalFrameQueue.this.done || cancelled) {
+        frame.release();
+        return;
+      }
+
+      AtomicReferenceArray<Object> chunk = producerChunk;
+      int index = producerIndex;
+      if (index == CHUNK_SIZE - 1) {
+        AtomicReferenceArray<Object> next = new AtomicReferenceArray<>(CHUNK_SIZE);
+        next.lazySet(0, frame);
+        producerChunk = next;
+        producerIndex = 1;
+        chunk.lazySet(index, next);
+      } else {
+        chunk.lazySet(index, frame);
+        producerIndex = index + 1;
+      }
+      drain();
+    }
+
+    /** Marks the end of this lane, which is dropped once drained. */
+    void complete() {
+      done = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ByteBuf peek() {
+      Object o = consumerChunk.get(consumerIndex);
+      if (o instanceof AtomicReferenceArray) {
+        consumerChunk = (AtomicReferenceArray<Object>) o;
+        consumerIndex = 0;
+        o = consumerChunk.get(0);
+      }
+      return (ByteBuf) o;
+    }
+
+    private ByteBuf poll() {
+      ByteBuf frame = peek();
+      if (frame != null) {
+        consumerChunk.lazySet(consumerIndex++, null);
+      }
+      return frame;
+    }
+  }
+}
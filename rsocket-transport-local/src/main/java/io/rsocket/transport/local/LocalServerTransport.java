@@ -162,18 +162,34 @@ static class ServerDuplexConnectionAcceptor implements Consumer<DuplexConnection
 
     @Override
     public void accept(DuplexConnection duplexConnection) {
+      accept(duplexConnection, true);
+    }
+
+    /**
+     * Accepts a connection from a client in the same JVM.
+     *
+     * @param duplexConnection the server side of the connection
+     * @param clientFragments whether the client fragments its frames, if not they are not
+     *     reassembled unless this server fragments too
+     */
+    void accept(DuplexConnection duplexConnection, boolean clientFragments) {
       Objects.requireNonNull(duplexConnection, "duplexConnection must not be null");
 
       if (mtu > 0) {
         duplexConnection =
             new FragmentationDuplexConnection(duplexConnection, mtu, false, "server");
-      } else {
+      } else if (clientFragments) {
         duplexConnection = new ReassemblyDuplexConnection(duplexConnection, false);
       }
 
       acceptor.apply(duplexConnection).subscribe();
     }
 
+    /** @return whether this server fragments the frames it sends */
+    boolean fragments() {
+      return mtu > 0;
+    }
+
     @Override
     public void dispose() {
       if (!registry.remove(address.getName(), this)) {
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.local;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+final class LocalFrameQueueTest {
+
+  @DisplayName("delivers the frames of every lane and completes once drained")
+  @Test
+  void deliversAllLanes() {
+    LocalFrameQueue queue = new LocalFrameQueue();
+    LocalFrameQueue.Lane first = queue.newLane();
+    LocalFrameQueue.Lane second = queue.newLane();
+
+    // enough frames to span several chunks
+    for (int i = 0; i < 1_000; i++) {
+      first.offer(frame(i));
+      second.offer(frame(i));
+    }
+    first.complete();
+    queue.complete();
+
+    queue
+        .map(LocalFrameQueueTest::release)
+        .as(StepVerifier::create)
+        .expectNextCount(2_000)
+        .verifyComplete();
+  }
+
+  @DisplayName("keeps the order of each lane")
+  @Test
+  void keepsLaneOrder() {
+    LocalFrameQueue queue = new LocalFrameQueue();
+    LocalFrameQueue.Lane first = queue.newLane();
+    LocalFrameQueue.Lane second = queue.newLane();
+    for (int i = 0; i < 1_000; i++) {
+      first.offer(frame(i));
+      second.offer(frame(1_000 + i));
+    }
+    queue.complete();
+
+    List<Integer> values = queue.map(LocalFrameQueueTest::release).collectList().block();
+
+    assertThat(values.stream().filter(v -> v < 1_000)).isSorted().hasSize(1_000);
+    assertThat(values.stream().filter(v -> v >= 1_000)).isSorted().hasSize(1_000);
+  }
+
+  @DisplayName("delivers shared frames ahead of the lanes")
+  @Test
+  void sharedFramesFirst() {
+    LocalFrameQueue queue = new LocalFrameQueue();
+    LocalFrameQueue.Lane lane = queue.newLane();
+    lane.offer(frame(1));
+    queue.offer(frame(0));
+    lane.offer(frame(2));
+    queue.complete();
+
+    queue
+        .map(LocalFrameQueueTest::release)
+        .as(StepVerifier::create)
+        .expectNext(0, 1, 2)
+        .verifyComplete();
+  }
+
+  @DisplayName("respects the demand of the subscriber")
+  @Test
+  void respectsDemand() {
+    LocalFrameQueue queue = new LocalFrameQueue();
+    LocalFrameQueue.Lane lane = queue.newLane();
+    for (int i = 0; i < 10; i++) {
+      lane.offer(frame(i));
+    }
+
+    queue
+        .map(LocalFrameQueueTest::release)
+        .as(f -> StepVerifier.create(f, 3))
+        .expectNext(0, 1, 2)
+        .thenRequest(2)
+        .expectNext(3, 4)
+        .thenCancel()
+        .verify();
+  }
+
+  @DisplayName("releases the frames enqueued after cancellation")
+  @Test
+  void releasesOnCancel() {
+    LocalFrameQueue queue = new LocalFrameQueue();
+    LocalFrameQueue.Lane lane = queue.newLane();
+    ByteBuf queued = frame(0);
+    lane.offer(queued);
+
+    StepVerifier.create(queue, 0).thenCancel().verify();
+
+    ByteBuf late = frame(1);
+    lane.offer(late);
+    ByteBuf shared = frame(2);
+    queue.offer(shared);
+
+    assertThat(queued.refCnt()).isZero();
+    assertThat(late.refCnt()).isZero();
+    assertThat(shared.refCnt()).isZero();
+  }
+
+  @DisplayName("delivers frames offered concurrently by several lanes")
+  @Test
+  void concurrentLanes() throws InterruptedException {
+    LocalFrameQueue queue = new LocalFrameQueue();
+    int lanes = 4;
+    int frames = 100_000;
+    CountDownLatch done = new CountDownLatch(lanes);
+    List<Thread> producers = new ArrayList<>();
+    for (int l = 0; l < lanes; l++) {
+      LocalFrameQueue.Lane lane = queue.newLane();
+      producers.add(
+          new Thread(
+              () -> {
+                for (int i = 0; i < frames; i++) {
+                  lane.offer(frame(i));
+                }
+                lane.complete();
+                done.countDown();
+              }));
+    }
+    producers.forEach(Thread::start);
+
+    Flux.from(queue)
+        .map(LocalFrameQueueTest::release)
+        .take(lanes * frames)
+        .as(StepVerifier::create)
+        .expectNextCount(lanes * frames)
+        .verifyComplete();
+    done.await();
+  }
+
+  private static ByteBuf frame(int value) {
+    return Unpooled.buffer(4).writeInt(value);
+  }
+
+  private static int release(ByteBuf frame) {
+    int value = frame.getInt(0);
+    frame.release();
+    return value;
+  }
+}
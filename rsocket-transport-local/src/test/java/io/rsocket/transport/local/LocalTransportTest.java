@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2018 the original author or authors.
+ * Copyright 2015-2020 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,31 +16,27 @@
 
 package io.rsocket.transport.local;
 
-final class LocalTransportTest { // implements TransportTest {
-  /*
-  TODO // think this has a memory leak or something in the local connection now that needs to be checked into. the test
-  TODO // isn't very happy when run from commandline i the command line
-    private static final AtomicInteger UNIQUE_NAME_GENERATOR = new AtomicInteger();
+import io.rsocket.test.TransportTest;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
 
-    private final TransportPair transportPair =
-        new TransportPair<>(
-            () -> "test" + UNIQUE_NAME_GENERATOR.incrementAndGet(),
-            (address, server) -> LocalClientTransport.create(address),
-            LocalServerTransport::create);
+final class LocalTransportTest implements TransportTest {
 
-    @Override
-    @Test
-    public void requestChannel512() {
+  private static final AtomicInteger UNIQUE_NAME_GENERATOR = new AtomicInteger();
 
-    }
+  private final TransportPair transportPair =
+      new TransportPair<>(
+          () -> "test" + UNIQUE_NAME_GENERATOR.incrementAndGet(),
+          (address, server) -> LocalClientTransport.create(address),
+          LocalServerTransport::create);
 
-    @Override
-    public Duration getTimeout() {
-      return Duration.ofSeconds(10);
-    }
+  @Override
+  public Duration getTimeout() {
+    return Duration.ofSeconds(10);
+  }
 
-    @Override
-    public TransportPair getTransportPair() {
-      return transportPair;
-    }*/
+  @Override
+  public TransportPair getTransportPair() {
+    return transportPair;
+  }
 }
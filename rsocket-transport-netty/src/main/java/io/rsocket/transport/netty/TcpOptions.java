@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
+import reactor.core.Disposable;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.tcp.TcpServer;
+
+/**
+ * Tuning of the event loops and sockets of the TCP transports.
+ *
+ * <p>The native epoll transport is preferred on Linux and NIO is used elsewhere. The options that
+ * only exist with epoll, {@link #acceptors(int) SO_REUSEPORT acceptors}, {@link #quickAck(boolean)
+ * TCP_QUICKACK} and the {@link #edgeTriggered(boolean) epoll mode}, are ignored with NIO.
+ *
+ * <pre>{@code
+ * TcpOptions options = TcpOptions.create().eventLoops(8).acceptors(4);
+ * RSocketServer.create(acceptor).bind(TcpServerTransport.create("0.0.0.0", 7878, options));
+ * }</pre>
+ *
+ * <p>The event loops are created when the options are first applied to a transport and are shared
+ * by all the transports the same options are applied to. They are owned by the options, which must
+ * be disposed once these transports are closed.
+ */
+public final class TcpOptions implements Disposable {
+  private int eventLoops = LoopResources.DEFAULT_IO_WORKER_COUNT;
+  private int acceptors = 1;
+  private boolean preferNative = LoopResources.DEFAULT_NATIVE;
+  private boolean edgeTriggered = true;
+  private boolean noDelay = true;
+  private boolean quickAck;
+
+  private LoopResources loopResources;
+  private boolean disposed;
+
+  private TcpOptions() {}
+
+  public static TcpOptions create() {
+    return new TcpOptions();
+  }
+
+  /**
+   * @param eventLoops the number of event loops serving the connections, defaults to the number of
+   *     available processors
+   */
+  public TcpOptions eventLoops(int eventLoops) {
+    if (eventLoops < 1) {
+      throw new IllegalArgumentException("eventLoops must be strictly positive: " + eventLoops);
+    }
+    this.eventLoops = eventLoops;
+    return this;
+  }
+
+  /**
+   * Binds servers with SO_REUSEPORT as many times as there are acceptors, each on its own event
+   * loop, so that the kernel balances the incoming connections over them. Defaults to a single
+   * acceptor.
+   *
+   * @param acceptors the number of listening sockets sharing the server port
+   */
+  public TcpOptions acceptors(int acceptors) {
+    if (acceptors < 1) {
+      throw new IllegalArgumentException("acceptors must be strictly positive: " + acceptors);
+    }
+    this.acceptors = acceptors;
+    return this;
+  }
+
+  /** @param preferNative whether to use epoll when available, defaults to true */
+  public TcpOptions preferNative(boolean preferNative) {
+    this.preferNative = preferNative;
+    return this;
+  }
+
+  /**
+   * @param edgeTriggered whether epoll only reports the sockets that became ready (the default)
+   *     rather than all the ready ones, level-triggered mode trades more system calls for fairer
+   *     reads from busy connections
+   */
+  public TcpOptions edgeTriggered(boolean edgeTriggered) {
+    this.edgeTriggered = edgeTriggered;
+    return this;
+  }
+
+  /** @param noDelay whether to disable Nagle's algorithm, defaults to true */
+  public TcpOptions noDelay(boolean noDelay) {
+    this.noDelay = noDelay;
+    return this;
+  }
+
+  /** @param quickAck whether to send TCP acknowledgements immediately, defaults to false */
+  public TcpOptions quickAck(boolean quickAck) {
+    this.quickAck = quickAck;
+    return this;
+  }
+
+  /** @return whether the transports use epoll */
+  public boolean isNative() {
+    return preferNative && Epoll.isAvailable();
+  }
+
+  /** @return the number of server sockets to bind, 1 unless SO_REUSEPORT is available */
+  public int acceptors() {
+    return isNative() ? acceptors : 1;
+  }
+
+  public TcpServer apply(TcpServer server) {
+    server = server.runOn(loopResources(), preferNative).option(ChannelOption.TCP_NODELAY, noDelay);
+    if (isNative()) {
+      EpollMode mode = edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+      server =
+          server
+              .selectorOption(EpollChannelOption.EPOLL_MODE, mode)
+              .option(EpollChannelOption.EPOLL_MODE, mode)
+              .option(EpollChannelOption.TCP_QUICKACK, quickAck);
+      if (acceptors > 1) {
+        server = server.selectorOption(EpollChannelOption.SO_REUSEPORT, true);
+      }
+    }
+    return server;
+  }
+
+  public TcpClient apply(TcpClient client) {
+    client = client.runOn(loopResources(), preferNative).option(ChannelOption.TCP_NODELAY, noDelay);
+    if (isNative()) {
+      client =
+          client
+              .option(
+                  EpollChannelOption.EPOLL_MODE,
+                  edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED)
+              .option(EpollChannelOption.TCP_QUICKACK, quickAck);
+    }
+    return client;
+  }
+
+  /** Disposes the event loops, the options can no longer be applied to transports. */
+  @Override
+  public synchronized void dispose() {
+    disposed = true;
+    if (loopResources != null) {
+      loopResources.dispose();
+    }
+  }
+
+  @Override
+  public synchronized boolean isDisposed() {
+    return disposed;
+  }
+
+  private synchronized LoopResources loopResources() {
+    if (disposed) {
+      throw new IllegalStateException("TcpOptions have been disposed");
+    }
+    if (loopResources == null) {
+      loopResources = LoopResources.create("rsocket-tcp", acceptors(), eventLoops, true);
+    }
+    return loopResources;
+  }
+
+  @Override
+  public String toString() {
+    return "TcpOptions{"
+        + "eventLoops="
+        + eventLoops
+        + ", acceptors="
+        + acceptors
+        + ", native="
+        + isNative()
+        + ", edgeTriggered="
+        + edgeTriggered
+        + ", noDelay="
+        + noDelay
+        + ", quickAck="
+        + quickAck
+        + '}';
+  }
+}
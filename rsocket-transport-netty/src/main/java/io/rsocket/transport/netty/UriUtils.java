@@ -17,6 +17,8 @@
 package io.rsocket.transport.netty;
 
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Objects;
 
 /** Utilities for dealing with with {@link URI}s */
@@ -50,4 +52,32 @@ public static boolean isSecure(URI uri) {
     Objects.requireNonNull(uri, "uri must not be null");
     return uri.getScheme().equals("wss") || uri.getScheme().equals("https");
   }
+
+  /**
+   * Returns whether the URI designates a Unix domain socket, with the {@code unix} scheme, e.g.
+   * {@code unix:///var/run/rsocket.sock}.
+   *
+   * @param uri the URI to examine
+   * @return whether the URI designates a Unix domain socket
+   * @throws NullPointerException if {@code uri} is {@code null}
+   */
+  public static boolean isUnixDomainSocket(URI uri) {
+    Objects.requireNonNull(uri, "uri must not be null");
+    return "unix".equals(uri.getScheme());
+  }
+
+  /**
+   * Returns the path of the Unix domain socket designated by a URI.
+   *
+   * @param uri the URI to extract the path from
+   * @return the path of the socket
+   * @throws NullPointerException if {@code uri} is {@code null}
+   * @throws IllegalArgumentException if {@code uri} is not a {@code unix} URI with a path
+   */
+  public static Path getUnixDomainSocketPath(URI uri) {
+    if (!isUnixDomainSocket(uri) || uri.getPath() == null || uri.getPath().isEmpty()) {
+      throw new IllegalArgumentException("not a Unix domain socket URI: " + uri);
+    }
+    return Paths.get(uri.getPath());
+  }
 }
@@ -15,12 +15,24 @@
  */
 package io.rsocket.transport.netty;
 
+import static io.rsocket.frame.FrameLengthFlyweight.FRAME_LENGTH_SIZE;
+
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.rsocket.DuplexConnection;
+import io.rsocket.exceptions.ConnectionErrorException;
+import io.rsocket.frame.FrameLengthFlyweight;
 import io.rsocket.internal.BaseDuplexConnection;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -32,10 +44,22 @@
  * <p>rsocket-java strongly assumes that each ByteBuf is encoded with the length. This is not true
  * for message oriented transports so this must be specifically dropped from Frames sent and
  * stitched back on for frames received.
+ *
+ * <p>When both peers agree on the {@link #BATCHING_SUBPROTOCOL} subprotocol, the frames written
+ * between two flushes are instead packed, with their length, into a single WebSocket message. Small
+ * frames then share the WebSocket framing, masking and write of a message.
  */
 public final class WebsocketDuplexConnection extends BaseDuplexConnection {
 
+  /**
+   * The WebSocket subprotocol of connections packing several length-prefixed frames per message.
+   */
+  public static final String BATCHING_SUBPROTOCOL = "rsocket-batch";
+
+  private static final String BATCHING_HANDLER = "rsocket-batch";
+
   private final Connection connection;
+  private final boolean batching;
 
   /**
    * Creates a new instance
@@ -43,7 +67,21 @@ public final class WebsocketDuplexConnection extends BaseDuplexConnection {
    * @param connection the {@link Connection} to for managing the server
    */
   public WebsocketDuplexConnection(Connection connection) {
+    this(connection, false);
+  }
+
+  /**
+   * Creates a new instance
+   *
+   * @param connection the {@link Connection} to for managing the server
+   * @param batching whether the peers agreed on the {@link #BATCHING_SUBPROTOCOL} subprotocol
+   */
+  public WebsocketDuplexConnection(Connection connection, boolean batching) {
     this.connection = Objects.requireNonNull(connection, "connection must not be null");
+    this.batching = batching;
+    if (batching) {
+      connection.addHandlerLast(BATCHING_HANDLER, new BatchingHandler());
+    }
 
     connection
         .channel()
@@ -68,11 +106,23 @@ protected void doOnClose() {
 
   @Override
   public Flux<ByteBuf> receive() {
+    if (batching) {
+      // messages are released once emitted, so the frames are sliced right away
+      return connection
+          .inbound()
+          .receive()
+          .map(WebsocketDuplexConnection::unbatch)
+          .flatMapIterable(Function.identity());
+    }
     return connection.inbound().receive().map(ByteBuf::retain);
   }
 
   @Override
   public Mono<Void> send(Publisher<ByteBuf> frames) {
+    if (batching) {
+      // the BatchingHandler packs the frames written before a flush into a single message
+      return connection.outbound().sendObject(Flux.from(frames).map(this::encode)).then();
+    }
     if (frames instanceof Mono) {
       return connection
           .outbound()
@@ -84,4 +134,104 @@ public Mono<Void> send(Publisher<ByteBuf> frames) {
         .sendObject(Flux.from(frames).map(BinaryWebSocketFrame::new))
         .then();
   }
+
+  private ByteBuf encode(ByteBuf frame) {
+    return FrameLengthFlyweight.encode(alloc(), frame.readableBytes(), frame);
+  }
+
+  static List<ByteBuf> unbatch(ByteBuf message) {
+    List<ByteBuf> frames = new ArrayList<>();
+    while (message.isReadable()) {
+      int readable = message.readableBytes() - FRAME_LENGTH_SIZE;
+      int length = readable < 0 ? -1 : FrameLengthFlyweight.length(message);
+      if (length < 0 || length > readable) {
+        // the frames already sliced are never emitted
+        frames.forEach(ByteBuf::release);
+        throw new ConnectionErrorException("Malformed batch of frames");
+      }
+      message.skipBytes(FRAME_LENGTH_SIZE);
+      frames.add(message.readRetainedSlice(length));
+    }
+    return frames;
+  }
+
+  /**
+   * Packs the length-prefixed frames written between two flushes into {@link BinaryWebSocketFrame}s
+   * of at most {@value #MAX_BATCH_LENGTH} bytes, unless a single frame is larger.
+   */
+  private static final class BatchingHandler extends ChannelOutboundHandlerAdapter {
+    private static final int MAX_BATCH_LENGTH = 64 * 1024;
+    private static final int MAX_BATCH_FRAMES = 1024;
+
+    private final List<ChannelPromise> promises = new ArrayList<>();
+    private CompositeByteBuf batch;
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+      if (!(msg instanceof ByteBuf)) {
+        // control frames keep their place in the stream
+        writeBatch(ctx);
+        ctx.write(msg, promise);
+        return;
+      }
+
+      ByteBuf frame = (ByteBuf) msg;
+      if (batch != null
+          && (batch.readableBytes() + frame.readableBytes() > MAX_BATCH_LENGTH
+              || batch.numComponents() == MAX_BATCH_FRAMES)) {
+        writeBatch(ctx);
+      }
+      if (batch == null) {
+        batch = ctx.alloc().compositeBuffer(MAX_BATCH_FRAMES);
+      }
+      batch.addComponent(true, frame);
+      promises.add(promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+      writeBatch(ctx);
+      ctx.flush();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+      writeBatch(ctx);
+      ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+      if (batch != null) {
+        batch.release();
+        batch = null;
+        ClosedChannelException cause = new ClosedChannelException();
+        promises.forEach(p -> p.tryFailure(cause));
+        promises.clear();
+      }
+    }
+
+    private void writeBatch(ChannelHandlerContext ctx) {
+      if (batch == null) {
+        return;
+      }
+
+      ChannelPromise[] pending = promises.toArray(new ChannelPromise[0]);
+      promises.clear();
+      ChannelPromise promise = ctx.newPromise();
+      promise.addListener(
+          future -> {
+            for (ChannelPromise p : pending) {
+              if (future.isSuccess()) {
+                p.trySuccess();
+              } else {
+                p.tryFailure(future.cause());
+              }
+            }
+          });
+
+      ctx.write(new BinaryWebSocketFrame(batch), promise);
+      batch = null;
+    }
+  }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty.client;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.resolver.NoopAddressResolverGroup;
+import io.rsocket.DuplexConnection;
+import io.rsocket.fragmentation.FragmentationDuplexConnection;
+import io.rsocket.fragmentation.ReassemblyDuplexConnection;
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.transport.ServerTransport;
+import io.rsocket.transport.netty.RSocketLengthCodec;
+import io.rsocket.transport.netty.TcpDuplexConnection;
+import io.rsocket.transport.netty.UriUtils;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Objects;
+import reactor.core.publisher.Mono;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.tcp.TcpResources;
+
+/**
+ * An implementation of {@link ClientTransport} that connects to a {@link ServerTransport} via a
+ * Unix domain socket, framed like TCP.
+ *
+ * <p>Unix domain sockets require the native epoll transport, available on Linux.
+ */
+public final class DomainSocketClientTransport implements ClientTransport {
+
+  private final TcpClient client;
+
+  private DomainSocketClientTransport(TcpClient client) {
+    this.client = client;
+  }
+
+  /**
+   * Creates a new instance
+   *
+   * @param path the path of the socket to connect to
+   * @return a new instance
+   * @throws NullPointerException if {@code path} is {@code null}
+   */
+  public static DomainSocketClientTransport create(Path path) {
+    Objects.requireNonNull(path, "path must not be null");
+
+    DomainSocketAddress address = new DomainSocketAddress(path.toFile());
+    TcpClient client =
+        TcpClient.newConnection()
+            .bootstrap(
+                b ->
+                    b.group(TcpResources.get().onClient(true))
+                        .channel(EpollDomainSocketChannel.class)
+                        .resolver(NoopAddressResolverGroup.INSTANCE)
+                        .option(ChannelOption.TCP_NODELAY, null))
+            .remoteAddress(() -> address);
+    return new DomainSocketClientTransport(client);
+  }
+
+  /**
+   * Creates a new instance
+   *
+   * @param uri the {@code unix} URI of the socket to connect to, e.g. {@code
+   *     unix:///var/run/rsocket.sock}
+   * @return a new instance
+   * @throws NullPointerException if {@code uri} is {@code null}
+   * @throws IllegalArgumentException if {@code uri} is not a {@code unix} URI
+   */
+  public static DomainSocketClientTransport create(URI uri) {
+    return create(UriUtils.getUnixDomainSocketPath(uri));
+  }
+
+  @Override
+  public Mono<DuplexConnection> connect(int mtu) {
+    if (!Epoll.isAvailable()) {
+      return Mono.error(
+          new UnsupportedOperationException(
+              "Unix domain sockets require native epoll", Epoll.unavailabilityCause()));
+    }
+    Mono<DuplexConnection> isError = FragmentationDuplexConnection.checkMtu(mtu);
+    return isError != null
+        ? isError
+        : client
+            .doOnConnected(c -> c.addHandlerLast(new RSocketLengthCodec()))
+            .connect()
+            .map(
+                c -> {
+                  if (mtu > 0) {
+                    return new FragmentationDuplexConnection(
+                        new TcpDuplexConnection(c, false), mtu, true, "client");
+                  } else {
+                    return new ReassemblyDuplexConnection(new TcpDuplexConnection(c), false);
+                  }
+                });
+  }
+}
@@ -23,6 +23,7 @@
 import io.rsocket.transport.ServerTransport;
 import io.rsocket.transport.netty.RSocketLengthCodec;
 import io.rsocket.transport.netty.TcpDuplexConnection;
+import io.rsocket.transport.netty.TcpOptions;
 import java.net.InetSocketAddress;
 import java.util.Objects;
 import reactor.core.publisher.Mono;
@@ -30,6 +31,8 @@
 
 /**
  * An implementation of {@link ClientTransport} that connects to a {@link ServerTransport} via TCP.
+ *
+ * @see TcpOptions
  */
 public final class TcpClientTransport implements ClientTransport {
 
@@ -92,6 +95,36 @@ public static TcpClientTransport create(TcpClient client) {
     return new TcpClientTransport(client);
   }
 
+  /**
+   * Creates a new instance
+   *
+   * @param bindAddress the address to connect to
+   * @param port the port to connect to
+   * @param options the tuning of the event loops and sockets
+   * @return a new instance
+   * @throws NullPointerException if {@code bindAddress} or {@code options} is {@code null}
+   */
+  public static TcpClientTransport create(String bindAddress, int port, TcpOptions options) {
+    Objects.requireNonNull(bindAddress, "bindAddress must not be null");
+
+    return create(TcpClient.create().host(bindAddress).port(port), options);
+  }
+
+  /**
+   * Creates a new instance
+   *
+   * @param client the {@link TcpClient} to use
+   * @param options the tuning of the event loops and sockets, applied to {@code client}
+   * @return a new instance
+   * @throws NullPointerException if {@code client} or {@code options} is {@code null}
+   */
+  public static TcpClientTransport create(TcpClient client, TcpOptions options) {
+    Objects.requireNonNull(client, "client must not be null");
+    Objects.requireNonNull(options, "options must not be null");
+
+    return new TcpClientTransport(options.apply(client));
+  }
+
   @Override
   public Mono<DuplexConnection> connect(int mtu) {
     Mono<DuplexConnection> isError = FragmentationDuplexConnection.checkMtu(mtu);
@@ -19,6 +19,7 @@
 import static io.rsocket.frame.FrameLengthFlyweight.FRAME_LENGTH_MASK;
 import static io.rsocket.transport.netty.UriUtils.getPort;
 import static io.rsocket.transport.netty.UriUtils.isSecure;
+import static io.rsocket.transport.netty.WebsocketDuplexConnection.BATCHING_SUBPROTOCOL;
 
 import io.rsocket.DuplexConnection;
 import io.rsocket.fragmentation.FragmentationDuplexConnection;
@@ -35,6 +36,8 @@
 import java.util.function.Supplier;
 import reactor.core.publisher.Mono;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+import reactor.netty.http.websocket.WebsocketInbound;
 import reactor.netty.tcp.TcpClient;
 
 /**
@@ -51,6 +54,10 @@ public final class WebsocketClientTransport implements ClientTransport, Transpor
 
   private Supplier<Map<String, String>> transportHeaders = Collections::emptyMap;
 
+  private boolean batching;
+
+  private boolean compress;
+
   private WebsocketClientTransport(HttpClient client, String path) {
     this.client = client;
     this.path = path;
@@ -140,6 +147,33 @@ public static WebsocketClientTransport create(HttpClient client, String path) {
     return new WebsocketClientTransport(client, path);
   }
 
+  /**
+   * Packs several frames per WebSocket message, which needs a server supporting the {@link
+   * WebsocketDuplexConnection#BATCHING_SUBPROTOCOL} subprotocol. Small frames then share the
+   * framing, masking and write of a message, at the cost of failing the handshake with servers that
+   * do not support it.
+   *
+   * @param batching whether to request the batching subprotocol
+   * @return this instance
+   */
+  public WebsocketClientTransport batching(boolean batching) {
+    this.batching = batching;
+    return this;
+  }
+
+  /**
+   * Offers the permessage-deflate extension, which compresses the WebSocket messages when the
+   * server supports it. Unlike {@link io.rsocket.compression.PayloadCompression}, it compresses
+   * every message with a context shared by the whole connection.
+   *
+   * @param compress whether to offer the permessage-deflate extension
+   * @return this instance
+   */
+  public WebsocketClientTransport compress(boolean compress) {
+    this.compress = compress;
+    return this;
+  }
+
   private static TcpClient createClient(URI uri) {
     if (isSecure(uri)) {
       return TcpClient.create().secure().host(uri.getHost()).port(getPort(uri, 443));
@@ -155,12 +189,16 @@ public Mono<DuplexConnection> connect(int mtu) {
         ? isError
         : client
             .headers(headers -> transportHeaders.get().forEach(headers::set))
-            .websocket(FRAME_LENGTH_MASK)
+            .websocket(websocketClientSpec())
             .uri(path)
             .connect()
             .map(
                 c -> {
-                  DuplexConnection connection = new WebsocketDuplexConnection(c);
+                  DuplexConnection connection =
+                      new WebsocketDuplexConnection(
+                          c,
+                          BATCHING_SUBPROTOCOL.equals(
+                              ((WebsocketInbound) c).selectedSubprotocol()));
                   if (mtu > 0) {
                     connection =
                         new FragmentationDuplexConnection(connection, mtu, false, "client");
@@ -171,6 +209,15 @@ public Mono<DuplexConnection> connect(int mtu) {
                 });
   }
 
+  private WebsocketClientSpec websocketClientSpec() {
+    WebsocketClientSpec.Builder builder =
+        WebsocketClientSpec.builder().maxFramePayloadLength(FRAME_LENGTH_MASK).compress(compress);
+    if (batching) {
+      builder.protocols(BATCHING_SUBPROTOCOL);
+    }
+    return builder.build();
+  }
+
   @Override
   public void setTransportHeaders(Supplier<Map<String, String>> transportHeaders) {
     this.transportHeaders =
@@ -1,10 +1,13 @@
 package io.rsocket.transport.netty.server;
 
 import static io.netty.channel.ChannelHandler.*;
+import static io.rsocket.frame.FrameLengthFlyweight.FRAME_LENGTH_MASK;
+import static io.rsocket.transport.netty.WebsocketDuplexConnection.BATCHING_SUBPROTOCOL;
 
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
 import io.netty.util.ReferenceCountUtil;
 import io.rsocket.Closeable;
@@ -13,6 +16,8 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.WebsocketServerSpec;
 
 abstract class BaseWebsocketServerTransport<T extends Closeable> implements ServerTransport<T> {
   private static final Logger logger = LoggerFactory.getLogger(BaseWebsocketServerTransport.class);
@@ -24,6 +29,32 @@
               tcpServer ->
                   tcpServer.doOnConnection(connection -> connection.addHandlerLast(pongHandler)));
 
+  boolean compress;
+
+  /**
+   * Only offers the batching subprotocol to the clients asking for it, the handshake of clients
+   * requesting no subprotocol would otherwise never complete.
+   */
+  WebsocketServerSpec websocketServerSpec(HttpServerRequest request) {
+    WebsocketServerSpec.Builder builder =
+        WebsocketServerSpec.builder().maxFramePayloadLength(FRAME_LENGTH_MASK).compress(compress);
+    String protocols = request.requestHeaders().get(HttpHeaderNames.SEC_WEBSOCKET_PROTOCOL);
+    if (protocols != null && offers(protocols, BATCHING_SUBPROTOCOL)) {
+      builder.protocols(BATCHING_SUBPROTOCOL);
+    }
+    return builder.build();
+  }
+
+  /** @return whether the comma-separated list of subprotocols contains the given one */
+  static boolean offers(String protocols, String protocol) {
+    for (String offered : protocols.split(",")) {
+      if (offered.trim().equals(protocol)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Sharable
   private static class PongHandler extends ChannelInboundHandlerAdapter {
     @Override
@@ -18,7 +18,10 @@
 
 import io.rsocket.Closeable;
 import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 import reactor.core.publisher.Mono;
 import reactor.netty.DisposableChannel;
 
@@ -29,6 +32,7 @@
 public final class CloseableChannel implements Closeable {
 
   private DisposableChannel channel;
+  private final List<DisposableChannel> channels;
 
   /**
    * Creates a new instance
@@ -38,6 +42,21 @@ public final class CloseableChannel implements Closeable {
    */
   CloseableChannel(DisposableChannel channel) {
     this.channel = Objects.requireNonNull(channel, "channel must not be null");
+    this.channels = Collections.singletonList(channel);
+  }
+
+  private CloseableChannel(List<DisposableChannel> channels) {
+    this.channel = channels.get(0);
+    this.channels = channels;
+  }
+
+  /**
+   * Creates a new instance wrapping channels listening on the same address
+   *
+   * @param channels the {@link DisposableChannel}s to wrap, closed together
+   */
+  static CloseableChannel of(List<DisposableChannel> channels) {
+    return new CloseableChannel(channels);
   }
 
   /**
@@ -52,16 +71,27 @@ public InetSocketAddress address() {
 
   @Override
   public void dispose() {
-    channel.dispose();
+    for (DisposableChannel channel : channels) {
+      channel.dispose();
+    }
   }
 
   @Override
   public boolean isDisposed() {
-    return channel.isDisposed();
+    for (DisposableChannel channel : channels) {
+      if (!channel.isDisposed()) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public Mono<Void> onClose() {
-    return channel.onDispose();
+    if (channels.size() == 1) {
+      return channel.onDispose();
+    }
+    return Mono.when(
+        channels.stream().map(DisposableChannel::onDispose).collect(Collectors.toList()));
   }
 }
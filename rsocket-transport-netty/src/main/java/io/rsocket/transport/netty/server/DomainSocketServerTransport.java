@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty.server;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.rsocket.DuplexConnection;
+import io.rsocket.fragmentation.FragmentationDuplexConnection;
+import io.rsocket.fragmentation.ReassemblyDuplexConnection;
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.transport.ServerTransport;
+import io.rsocket.transport.netty.RSocketLengthCodec;
+import io.rsocket.transport.netty.TcpDuplexConnection;
+import io.rsocket.transport.netty.UriUtils;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Objects;
+import reactor.core.publisher.Mono;
+import reactor.netty.tcp.TcpResources;
+import reactor.netty.tcp.TcpServer;
+
+/**
+ * An implementation of {@link ServerTransport} that connects to a {@link ClientTransport} via a
+ * Unix domain socket, framed like TCP.
+ *
+ * <p>Unix domain sockets require the native epoll transport, available on Linux. The socket file
+ * must not exist when the server starts, and is deleted when it is closed. {@link
+ * CloseableChannel#address()} is not available for these servers.
+ */
+public final class DomainSocketServerTransport implements ServerTransport<CloseableChannel> {
+
+  private final TcpServer server;
+
+  private DomainSocketServerTransport(TcpServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Creates a new instance
+   *
+   * @param path the path of the socket to bind to
+   * @return a new instance
+   * @throws NullPointerException if {@code path} is {@code null}
+   */
+  public static DomainSocketServerTransport create(Path path) {
+    Objects.requireNonNull(path, "path must not be null");
+
+    DomainSocketAddress address = new DomainSocketAddress(path.toFile());
+    TcpServer server =
+        TcpServer.create()
+            .bootstrap(
+                b ->
+                    b.group(
+                            TcpResources.get().onServerSelect(true),
+                            TcpResources.get().onServer(true))
+                        .channel(EpollServerDomainSocketChannel.class)
+                        .childOption(ChannelOption.TCP_NODELAY, null))
+            .bindAddress(() -> address);
+    return new DomainSocketServerTransport(server);
+  }
+
+  /**
+   * Creates a new instance
+   *
+   * @param uri the {@code unix} URI of the socket to bind to, e.g. {@code
+   *     unix:///var/run/rsocket.sock}
+   * @return a new instance
+   * @throws NullPointerException if {@code uri} is {@code null}
+   * @throws IllegalArgumentException if {@code uri} is not a {@code unix} URI
+   */
+  public static DomainSocketServerTransport create(URI uri) {
+    return create(UriUtils.getUnixDomainSocketPath(uri));
+  }
+
+  @Override
+  public Mono<CloseableChannel> start(ConnectionAcceptor acceptor, int mtu) {
+    Objects.requireNonNull(acceptor, "acceptor must not be null");
+    if (!Epoll.isAvailable()) {
+      return Mono.error(
+          new UnsupportedOperationException(
+              "Unix domain sockets require native epoll", Epoll.unavailabilityCause()));
+    }
+    Mono<CloseableChannel> isError = FragmentationDuplexConnection.checkMtu(mtu);
+    return isError != null
+        ? isError
+        : server
+            .doOnConnection(
+                c -> {
+                  c.addHandlerLast(new RSocketLengthCodec());
+                  DuplexConnection connection;
+                  if (mtu > 0) {
+                    connection =
+                        new FragmentationDuplexConnection(
+                            new TcpDuplexConnection(c, false), mtu, true, "server");
+                  } else {
+                    connection = new ReassemblyDuplexConnection(new TcpDuplexConnection(c), false);
+                  }
+                  acceptor
+                      .apply(connection)
+                      .then(Mono.<Void>never())
+                      .subscribe(c.disposeSubscriber());
+                })
+            .bind()
+            .map(CloseableChannel::new);
+  }
+}
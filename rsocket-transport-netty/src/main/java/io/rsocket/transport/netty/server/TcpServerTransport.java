@@ -23,20 +23,29 @@
 import io.rsocket.transport.ServerTransport;
 import io.rsocket.transport.netty.RSocketLengthCodec;
 import io.rsocket.transport.netty.TcpDuplexConnection;
+import io.rsocket.transport.netty.TcpOptions;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.DisposableChannel;
 import reactor.netty.tcp.TcpServer;
 
 /**
  * An implementation of {@link ServerTransport} that connects to a {@link ClientTransport} via TCP.
+ *
+ * @see TcpOptions
  */
 public final class TcpServerTransport implements ServerTransport<CloseableChannel> {
 
   private final TcpServer server;
+  private final int acceptors;
 
-  private TcpServerTransport(TcpServer server) {
+  private TcpServerTransport(TcpServer server, int acceptors) {
     this.server = server;
+    this.acceptors = acceptors;
   }
 
   /**
@@ -88,33 +97,88 @@ public static TcpServerTransport create(InetSocketAddress address) {
   public static TcpServerTransport create(TcpServer server) {
     Objects.requireNonNull(server, "server must not be null");
 
-    return new TcpServerTransport(server);
+    return new TcpServerTransport(server, 1);
+  }
+
+  /**
+   * Creates a new instance binding to localhost
+   *
+   * @param port the port to bind to
+   * @param options the tuning of the event loops and sockets
+   * @return a new instance
+   * @throws NullPointerException if {@code options} is {@code null}
+   */
+  public static TcpServerTransport create(int port, TcpOptions options) {
+    return create(TcpServer.create().port(port), options);
+  }
+
+  /**
+   * Creates a new instance
+   *
+   * @param bindAddress the address to bind to
+   * @param port the port to bind to
+   * @param options the tuning of the event loops and sockets
+   * @return a new instance
+   * @throws NullPointerException if {@code bindAddress} or {@code options} is {@code null}
+   */
+  public static TcpServerTransport create(String bindAddress, int port, TcpOptions options) {
+    Objects.requireNonNull(bindAddress, "bindAddress must not be null");
+
+    return create(TcpServer.create().host(bindAddress).port(port), options);
+  }
+
+  /**
+   * Creates a new instance
+   *
+   * @param server the {@link TcpServer} to use
+   * @param options the tuning of the event loops and sockets, applied to {@code server}
+   * @return a new instance
+   * @throws NullPointerException if {@code server} or {@code options} is {@code null}
+   */
+  public static TcpServerTransport create(TcpServer server, TcpOptions options) {
+    Objects.requireNonNull(server, "server must not be null");
+    Objects.requireNonNull(options, "options must not be null");
+
+    return new TcpServerTransport(options.apply(server), options.acceptors());
   }
 
   @Override
   public Mono<CloseableChannel> start(ConnectionAcceptor acceptor, int mtu) {
     Objects.requireNonNull(acceptor, "acceptor must not be null");
     Mono<CloseableChannel> isError = FragmentationDuplexConnection.checkMtu(mtu);
-    return isError != null
-        ? isError
-        : server
-            .doOnConnection(
-                c -> {
-                  c.addHandlerLast(new RSocketLengthCodec());
-                  DuplexConnection connection;
-                  if (mtu > 0) {
-                    connection =
-                        new FragmentationDuplexConnection(
-                            new TcpDuplexConnection(c, false), mtu, true, "server");
-                  } else {
-                    connection = new ReassemblyDuplexConnection(new TcpDuplexConnection(c), false);
-                  }
-                  acceptor
-                      .apply(connection)
-                      .then(Mono.<Void>never())
-                      .subscribe(c.disposeSubscriber());
-                })
-            .bind()
-            .map(CloseableChannel::new);
+    if (isError != null) {
+      return isError;
+    }
+    TcpServer server =
+        this.server.doOnConnection(
+            c -> {
+              c.addHandlerLast(new RSocketLengthCodec());
+              DuplexConnection connection;
+              if (mtu > 0) {
+                connection =
+                    new FragmentationDuplexConnection(
+                        new TcpDuplexConnection(c, false), mtu, true, "server");
+              } else {
+                connection = new ReassemblyDuplexConnection(new TcpDuplexConnection(c), false);
+              }
+              acceptor.apply(connection).then(Mono.<Void>never()).subscribe(c.disposeSubscriber());
+            });
+    if (acceptors == 1) {
+      return server.bind().map(CloseableChannel::new);
+    }
+    // the first acceptor resolves the port, in case an ephemeral one is requested
+    return server
+        .bind()
+        .flatMap(
+            first -> {
+              List<DisposableChannel> channels = new ArrayList<>(acceptors);
+              channels.add(first);
+              TcpServer reusePort = server.port(first.port());
+              return Flux.range(1, acceptors - 1)
+                  .concatMap(i -> reusePort.bind())
+                  .doOnNext(channels::add)
+                  .then(Mono.fromCallable(() -> CloseableChannel.of(channels)))
+                  .doOnError(t -> channels.forEach(DisposableChannel::dispose));
+            });
   }
 }
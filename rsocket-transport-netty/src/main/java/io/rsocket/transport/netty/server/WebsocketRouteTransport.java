@@ -16,8 +16,10 @@
 
 package io.rsocket.transport.netty.server;
 
-import static io.rsocket.frame.FrameLengthFlyweight.FRAME_LENGTH_MASK;
+import static io.rsocket.transport.netty.WebsocketDuplexConnection.BATCHING_SUBPROTOCOL;
 
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.rsocket.Closeable;
 import io.rsocket.DuplexConnection;
 import io.rsocket.fragmentation.FragmentationDuplexConnection;
@@ -32,7 +34,6 @@
 import reactor.netty.Connection;
 import reactor.netty.http.server.HttpServer;
 import reactor.netty.http.server.HttpServerRoutes;
-import reactor.netty.http.server.WebsocketServerSpec;
 import reactor.netty.http.websocket.WebsocketInbound;
 import reactor.netty.http.websocket.WebsocketOutbound;
 
@@ -62,6 +63,18 @@ public WebsocketRouteTransport(
     this.path = Objects.requireNonNull(path, "path must not be null");
   }
 
+  /**
+   * Accepts the permessage-deflate extension offered by clients, which compresses the WebSocket
+   * messages with a context shared by the whole connection.
+   *
+   * @param compress whether to accept the permessage-deflate extension
+   * @return this instance
+   */
+  public WebsocketRouteTransport compress(boolean compress) {
+    this.compress = compress;
+    return this;
+  }
+
   @Override
   public Mono<Closeable> start(ConnectionAcceptor acceptor, int mtu) {
     Objects.requireNonNull(acceptor, "acceptor must not be null");
@@ -70,10 +83,20 @@ public Mono<Closeable> start(ConnectionAcceptor acceptor, int mtu) {
         .route(
             routes -> {
               routesBuilder.accept(routes);
-              routes.ws(
+              BiFunction<WebsocketInbound, WebsocketOutbound, Publisher<Void>> handler =
+                  newHandler(acceptor, mtu);
+              // same as HttpServerRoutes#ws, with a spec depending on the requested subprotocols
+              routes.get(
                   path,
-                  newHandler(acceptor, mtu),
-                  WebsocketServerSpec.builder().maxFramePayloadLength(FRAME_LENGTH_MASK).build());
+                  (request, response) -> {
+                    if (request
+                        .requestHeaders()
+                        .containsValue(
+                            HttpHeaderNames.CONNECTION, HttpHeaderValues.UPGRADE, true)) {
+                      return response.sendWebsocket(handler, websocketServerSpec(request));
+                    }
+                    return response.sendNotFound();
+                  });
             })
         .bind()
         .map(CloseableChannel::new);
@@ -102,7 +125,9 @@ public static BiFunction<WebsocketInbound, WebsocketOutbound, Publisher<Void>> n
   public static BiFunction<WebsocketInbound, WebsocketOutbound, Publisher<Void>> newHandler(
       ConnectionAcceptor acceptor, int mtu) {
     return (in, out) -> {
-      DuplexConnection connection = new WebsocketDuplexConnection((Connection) in);
+      DuplexConnection connection =
+          new WebsocketDuplexConnection(
+              (Connection) in, BATCHING_SUBPROTOCOL.equals(in.selectedSubprotocol()));
       if (mtu > 0) {
         connection = new FragmentationDuplexConnection(connection, mtu, false, "server");
       } else {
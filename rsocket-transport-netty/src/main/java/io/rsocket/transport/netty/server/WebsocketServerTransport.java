@@ -16,7 +16,7 @@
 
 package io.rsocket.transport.netty.server;
 
-import static io.rsocket.frame.FrameLengthFlyweight.FRAME_LENGTH_MASK;
+import static io.rsocket.transport.netty.WebsocketDuplexConnection.BATCHING_SUBPROTOCOL;
 
 import io.rsocket.DuplexConnection;
 import io.rsocket.fragmentation.FragmentationDuplexConnection;
@@ -35,7 +35,6 @@
 import reactor.core.publisher.Mono;
 import reactor.netty.Connection;
 import reactor.netty.http.server.HttpServer;
-import reactor.netty.http.server.WebsocketServerSpec;
 
 /**
  * An implementation of {@link ServerTransport} that connects to a {@link ClientTransport} via a
@@ -105,6 +104,18 @@ public static WebsocketServerTransport create(final HttpServer server) {
     return new WebsocketServerTransport(server);
   }
 
+  /**
+   * Accepts the permessage-deflate extension offered by clients, which compresses the WebSocket
+   * messages with a context shared by the whole connection.
+   *
+   * @param compress whether to accept the permessage-deflate extension
+   * @return this instance
+   */
+  public WebsocketServerTransport compress(boolean compress) {
+    this.compress = compress;
+    return this;
+  }
+
   @Override
   public void setTransportHeaders(Supplier<Map<String, String>> transportHeaders) {
     this.transportHeaders =
@@ -125,7 +136,9 @@ public Mono<CloseableChannel> start(ConnectionAcceptor acceptor, int mtu) {
                   return response.sendWebsocket(
                       (in, out) -> {
                         DuplexConnection connection =
-                            new WebsocketDuplexConnection((Connection) in);
+                            new WebsocketDuplexConnection(
+                                (Connection) in,
+                                BATCHING_SUBPROTOCOL.equals(in.selectedSubprotocol()));
                         if (mtu > 0) {
                           connection =
                               new FragmentationDuplexConnection(connection, mtu, false, "server");
@@ -134,9 +147,7 @@ public Mono<CloseableChannel> start(ConnectionAcceptor acceptor, int mtu) {
                         }
                         return acceptor.apply(connection).then(out.neverComplete());
                       },
-                      WebsocketServerSpec.builder()
-                          .maxFramePayloadLength(FRAME_LENGTH_MASK)
-                          .build());
+                      websocketServerSpec(request));
                 })
             .bind()
             .map(CloseableChannel::new);
@@ -27,17 +27,22 @@
 import org.HdrHistogram.Recorder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @PerfTest
 public final class TcpPing {
   private static final int INTERACTIONS_COUNT = 1_000_000_000;
   private static final int port = Integer.valueOf(System.getProperty("RSOCKET_TEST_PORT", "7878"));
+  private static final int connections =
+      Integer.valueOf(System.getProperty("RSOCKET_TEST_CONNECTIONS", "8"));
+  private static final TcpOptions options = TcpPongServer.options();
 
   @BeforeEach
   void setUp() {
     System.out.println("Starting ping-pong test (TCP transport)");
     System.out.println("port: " + port);
+    System.out.println("options: " + options);
   }
 
   @Test
@@ -73,6 +78,29 @@ void requestStreamResumableTest() {
         .blockLast();
   }
 
+  @Test
+  void requestResponseConnectionsTest() {
+    System.out.println("connections: " + connections);
+    PingClient pingClient = newPingClient();
+    Recorder recorder = pingClient.startTracker(Duration.ofSeconds(1));
+
+    Flux.range(0, connections)
+        .flatMap(
+            i -> pingClient.requestResponsePingPong(INTERACTIONS_COUNT / connections, recorder),
+            connections)
+        .doOnTerminate(() -> System.out.println("Sent " + INTERACTIONS_COUNT + " messages."))
+        .blockLast();
+  }
+
+  @Test
+  void connectTest() {
+    System.out.println("connections: " + connections);
+    PingClient pingClient = newPingClient();
+    Recorder recorder = pingClient.startTracker(Duration.ofSeconds(1));
+
+    pingClient.connectPingPong(1_000_000, connections, recorder).block();
+  }
+
   private static PingClient newPingClient() {
     return newPingClient(false);
   }
@@ -90,7 +118,7 @@ private static PingClient newPingClient(boolean isResumable) {
         connector
             .payloadDecoder(PayloadDecoder.ZERO_COPY)
             .keepAlive(Duration.ofMinutes(1), Duration.ofMinutes(30))
-            .connect(TcpClientTransport.create(port));
+            .connect(TcpClientTransport.create("localhost", port, options));
 
     return new PingClient(rSocket);
   }
@@ -31,6 +31,8 @@ public static void main(String... args) {
     System.out.println("Starting TCP ping-pong server");
     System.out.println("port: " + port);
     System.out.println("resume enabled: " + isResume);
+    TcpOptions options = options();
+    System.out.println("options: " + options);
 
     RSocketServer server = RSocketServer.create(new PingHandler());
     if (isResume) {
@@ -38,9 +40,21 @@ public static void main(String... args) {
     }
     server
         .payloadDecoder(PayloadDecoder.ZERO_COPY)
-        .bind(TcpServerTransport.create("localhost", port))
+        .bind(TcpServerTransport.create("localhost", port, options))
         .block()
         .onClose()
         .block();
+    options.dispose();
+  }
+
+  static TcpOptions options() {
+    return TcpOptions.create()
+        .preferNative(Boolean.valueOf(System.getProperty("RSOCKET_TEST_NATIVE", "true")))
+        .eventLoops(
+            Integer.valueOf(
+                System.getProperty(
+                    "RSOCKET_TEST_EVENT_LOOPS",
+                    String.valueOf(Runtime.getRuntime().availableProcessors()))))
+        .acceptors(Integer.valueOf(System.getProperty("RSOCKET_TEST_ACCEPTORS", "1")));
   }
 }
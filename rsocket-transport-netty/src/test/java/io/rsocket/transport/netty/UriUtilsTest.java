@@ -17,9 +17,11 @@
 package io.rsocket.transport.netty;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
 
 import java.net.URI;
+import java.nio.file.Paths;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -64,4 +66,25 @@ void isSecureNullUri() {
         .isThrownBy(() -> UriUtils.isSecure(null))
         .withMessage("uri must not be null");
   }
+
+  @DisplayName("returns whether the URI designates a Unix domain socket")
+  @Test
+  void isUnixDomainSocket() {
+    assertThat(UriUtils.isUnixDomainSocket(URI.create("tcp://localhost:7000"))).isFalse();
+    assertThat(UriUtils.isUnixDomainSocket(URI.create("unix:///tmp/rsocket.sock"))).isTrue();
+  }
+
+  @DisplayName("returns the Unix domain socket path")
+  @Test
+  void getUnixDomainSocketPath() {
+    assertThat(UriUtils.getUnixDomainSocketPath(URI.create("unix:///tmp/rsocket.sock")))
+        .isEqualTo(Paths.get("/tmp/rsocket.sock"));
+  }
+
+  @DisplayName("getUnixDomainSocketPath throws IllegalArgumentException with other URIs")
+  @Test
+  void getUnixDomainSocketPathOtherUri() {
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> UriUtils.getUnixDomainSocketPath(URI.create("ws://localhost/path")));
+  }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.rsocket.exceptions.ConnectionErrorException;
+import io.rsocket.frame.FrameLengthFlyweight;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+final class WebsocketDuplexConnectionTest {
+
+  @DisplayName("unbatches the length-prefixed frames of a message")
+  @Test
+  void unbatch() {
+    ByteBuf message = batch(Unpooled.wrappedBuffer(new byte[] {1, 2}), Unpooled.buffer(0));
+
+    List<ByteBuf> frames = WebsocketDuplexConnection.unbatch(message);
+
+    assertThat(frames).hasSize(2);
+    assertThat(frames.get(0).readableBytes()).isEqualTo(2);
+    assertThat(frames.get(1).readableBytes()).isZero();
+    frames.forEach(ByteBuf::release);
+    assertThat(message.release()).isTrue();
+  }
+
+  @DisplayName("unbatch rejects lengths beyond the message and releases the frames sliced")
+  @Test
+  void unbatchTruncated() {
+    ByteBuf message = batch(Unpooled.wrappedBuffer(new byte[] {1, 2}));
+    message.writeMedium(10).writeByte(3);
+
+    assertThatThrownBy(() -> WebsocketDuplexConnection.unbatch(message))
+        .isInstanceOf(ConnectionErrorException.class);
+    assertThat(message.refCnt()).isEqualTo(1);
+    message.release();
+  }
+
+  @DisplayName("unbatch rejects a partial length prefix")
+  @Test
+  void unbatchPartialLength() {
+    ByteBuf message = batch(Unpooled.wrappedBuffer(new byte[] {1, 2}));
+    message.writeByte(0);
+
+    assertThatThrownBy(() -> WebsocketDuplexConnection.unbatch(message))
+        .isInstanceOf(ConnectionErrorException.class);
+    assertThat(message.refCnt()).isEqualTo(1);
+    message.release();
+  }
+
+  private static ByteBuf batch(ByteBuf... frames) {
+    ByteBuf message = Unpooled.buffer();
+    for (ByteBuf frame : frames) {
+      ByteBuf encoded =
+          FrameLengthFlyweight.encode(ByteBufAllocator.DEFAULT, frame.readableBytes(), frame);
+      message.writeBytes(encoded);
+      encoded.release();
+    }
+    return message;
+  }
+}
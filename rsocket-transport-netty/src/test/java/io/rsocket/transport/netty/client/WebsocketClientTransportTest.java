@@ -17,13 +17,24 @@
 package io.rsocket.transport.netty.client;
 
 import static io.rsocket.frame.FrameLengthFlyweight.FRAME_LENGTH_MASK;
+import static io.rsocket.frame.FrameLengthFlyweight.FRAME_LENGTH_SIZE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
 
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.rsocket.DuplexConnection;
+import io.rsocket.frame.FrameLengthFlyweight;
+import io.rsocket.transport.netty.WebsocketDuplexConnection;
 import io.rsocket.transport.netty.server.WebsocketServerTransport;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
@@ -32,8 +43,12 @@
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.WebsocketServerSpec;
 import reactor.test.StepVerifier;
 
 @ExtendWith(MockitoExtension.class)
@@ -215,4 +230,80 @@ void setTransportHeadersNullHeaders() {
         .isThrownBy(() -> WebsocketClientTransport.create(8000).setTransportHeaders(null))
         .withMessage("transportHeaders must not be null");
   }
+
+  @DisplayName("packs the frames sent together into a single message when batching")
+  @Test
+  void batching() throws InterruptedException {
+    AtomicInteger messages = new AtomicInteger();
+    CountDownLatch frames = new CountDownLatch(100);
+    DisposableServer server =
+        HttpServer.create()
+            .host("localhost")
+            .port(0)
+            .handle(
+                (request, response) ->
+                    response.sendWebsocket(
+                        (in, out) ->
+                            in.receive()
+                                .doOnNext(
+                                    message -> {
+                                      messages.incrementAndGet();
+                                      while (message.isReadable()) {
+                                        int length = FrameLengthFlyweight.length(message);
+                                        message.skipBytes(FRAME_LENGTH_SIZE + length);
+                                        frames.countDown();
+                                      }
+                                    })
+                                .then(),
+                        WebsocketServerSpec.builder()
+                            .protocols(WebsocketDuplexConnection.BATCHING_SUBPROTOCOL)
+                            .build()))
+            .bindNow();
+
+    try {
+      DuplexConnection connection =
+          WebsocketClientTransport.create(server.address()).batching(true).connect(0).block();
+      connection
+          .send(Flux.range(0, 100).map(i -> Unpooled.buffer(8).writeLong(i)))
+          .block(Duration.ofSeconds(5));
+
+      assertThat(frames.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(messages.get()).isLessThan(100);
+      connection.dispose();
+    } finally {
+      server.disposeNow();
+    }
+  }
+
+  @DisplayName("offers the permessage-deflate extension when compressing")
+  @Test
+  void compress() throws InterruptedException {
+    AtomicReference<String> extensions = new AtomicReference<>();
+    CountDownLatch received = new CountDownLatch(1);
+    DisposableServer server =
+        HttpServer.create()
+            .host("localhost")
+            .port(0)
+            .handle(
+                (request, response) -> {
+                  extensions.set(
+                      request.requestHeaders().get(HttpHeaderNames.SEC_WEBSOCKET_EXTENSIONS));
+                  return response.sendWebsocket(
+                      (in, out) -> in.receive().doOnNext(message -> received.countDown()).then(),
+                      WebsocketServerSpec.builder().compress(true).build());
+                })
+            .bindNow();
+
+    try {
+      DuplexConnection connection =
+          WebsocketClientTransport.create(server.address()).compress(true).connect(0).block();
+      connection.sendOne(Unpooled.buffer(1024).writeZero(1024)).block(Duration.ofSeconds(5));
+
+      assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(extensions.get()).contains("permessage-deflate");
+      connection.dispose();
+    } finally {
+      server.disposeNow();
+    }
+  }
 }
@@ -17,8 +17,10 @@
 package io.rsocket.transport.netty.server;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
 
+import io.rsocket.transport.netty.TcpOptions;
 import java.net.InetSocketAddress;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -93,6 +95,44 @@ void start() {
         .verifyComplete();
   }
 
+  @DisplayName("starts server with SO_REUSEPORT acceptors")
+  @Test
+  void startAcceptors() {
+    TcpOptions options = TcpOptions.create().eventLoops(2).acceptors(2);
+
+    CloseableChannel channel =
+        TcpServerTransport.create("localhost", 0, options)
+            .start(duplexConnection -> Mono.empty(), 0)
+            .block();
+
+    assertThat(channel.address().getPort()).isPositive();
+    channel.dispose();
+    channel.onClose().as(StepVerifier::create).verifyComplete();
+    assertThat(channel.isDisposed()).isTrue();
+    options.dispose();
+  }
+
+  @DisplayName("create throws IllegalStateException with disposed options")
+  @Test
+  void createDisposedOptions() {
+    TcpOptions options = TcpOptions.create();
+    TcpServerTransport.create("localhost", 0, options);
+    options.dispose();
+
+    assertThat(options.isDisposed()).isTrue();
+    assertThatIllegalStateException()
+        .isThrownBy(() -> TcpServerTransport.create("localhost", 0, options))
+        .withMessage("TcpOptions have been disposed");
+  }
+
+  @DisplayName("create throws NullPointerException with null options")
+  @Test
+  void createNullOptions() {
+    assertThatNullPointerException()
+        .isThrownBy(() -> TcpServerTransport.create(8000, null))
+        .withMessage("options must not be null");
+  }
+
   @DisplayName("start throws NullPointerException with null acceptor")
   @Test
   void startNullAcceptor() {
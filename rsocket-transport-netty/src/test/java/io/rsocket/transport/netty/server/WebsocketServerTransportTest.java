@@ -20,7 +20,9 @@
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
 
+import io.netty.handler.codec.http.HttpHeaderNames;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.function.BiFunction;
 import org.junit.jupiter.api.DisplayName;
@@ -28,6 +30,8 @@
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
 import reactor.netty.http.server.HttpServer;
 import reactor.netty.http.server.HttpServerRequest;
 import reactor.netty.http.server.HttpServerResponse;
@@ -185,4 +189,40 @@ void startNullAcceptor() {
         .isThrownBy(() -> WebsocketServerTransport.create(8000).start(null, 0))
         .withMessage("acceptor must not be null");
   }
+
+  @DisplayName("accepts the permessage-deflate extension when compressing")
+  @Test
+  void compress() {
+    CloseableChannel server =
+        WebsocketServerTransport.create("localhost", 0)
+            .compress(true)
+            .start(duplexConnection -> Mono.never(), 0)
+            .block();
+
+    try {
+      String extensions =
+          HttpClient.create()
+              .websocket(WebsocketClientSpec.builder().compress(true).build())
+              .uri("ws://localhost:" + server.address().getPort() + "/")
+              .handle(
+                  (in, out) ->
+                      Mono.justOrEmpty(in.headers().get(HttpHeaderNames.SEC_WEBSOCKET_EXTENSIONS)))
+              .blockFirst(Duration.ofSeconds(5));
+
+      assertThat(extensions).contains("permessage-deflate");
+    } finally {
+      server.dispose();
+    }
+  }
+
+  @DisplayName("only negotiates the batching subprotocol when it is offered as a token")
+  @Test
+  void offersBatchingSubprotocol() {
+    assertThat(BaseWebsocketServerTransport.offers("rsocket-batch", "rsocket-batch")).isTrue();
+    assertThat(BaseWebsocketServerTransport.offers("chat, rsocket-batch ", "rsocket-batch"))
+        .isTrue();
+    assertThat(BaseWebsocketServerTransport.offers("rsocket-batch-v2", "rsocket-batch")).isFalse();
+    assertThat(BaseWebsocketServerTransport.offers("x-rsocket-batch,chat", "rsocket-batch"))
+        .isFalse();
+  }
 }
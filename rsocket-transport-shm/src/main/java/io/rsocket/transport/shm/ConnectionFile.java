@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import static io.rsocket.internal.jctools.util.UnsafeAccess.UNSAFE;
+
+import io.netty.util.internal.PlatformDependent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The memory mapped file shared by the two ends of a connection.
+ *
+ * <p>The file starts with a header: a magic number, the ring capacity, whether the server accepted
+ * the connection and whether each side closed it, each flag on its own cache line. It is followed
+ * by the ring written by the client and the ring written by the server.
+ */
+final class ConnectionFile {
+  static final int MIN_CAPACITY = 4096;
+
+  private static final int MAGIC = 0x52534F43; // "RSOC"
+  private static final int MAGIC_OFFSET = 0;
+  private static final int CAPACITY_OFFSET = 4;
+  private static final int ACCEPTED_OFFSET = 64;
+  private static final int CLIENT_CLOSED_OFFSET = 128;
+  private static final int SERVER_CLOSED_OFFSET = 192;
+  private static final int HEADER_LENGTH = 256;
+
+  private final Path path;
+  private final MappedByteBuffer buffer;
+  private final long address;
+  private final int capacity;
+
+  private ConnectionFile(Path path, MappedByteBuffer buffer) {
+    this.path = path;
+    this.buffer = buffer;
+    this.address = PlatformDependent.directBufferAddress(buffer);
+    this.capacity = buffer.getInt(CAPACITY_OFFSET);
+  }
+
+  /**
+   * Creates and maps a new file, the caller publishes it once created.
+   *
+   * @param path the file to create
+   * @param capacity the capacity of each ring, a power of 2
+   */
+  static ConnectionFile create(Path path, int capacity) throws IOException {
+    if (capacity < MIN_CAPACITY || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+          "capacity must be a power of 2, at least " + MIN_CAPACITY + ": " + capacity);
+    }
+    MappedByteBuffer buffer;
+    try (FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length(capacity));
+    }
+    buffer.putInt(CAPACITY_OFFSET, capacity);
+    buffer.putInt(MAGIC_OFFSET, MAGIC);
+    return new ConnectionFile(path, buffer);
+  }
+
+  /**
+   * Maps an existing file.
+   *
+   * @param path the file created by a client
+   */
+  static ConnectionFile open(Path path) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long size = channel.size();
+      if (size < HEADER_LENGTH) {
+        throw new IOException("Not a connection file: " + path);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    if (buffer.getInt(MAGIC_OFFSET) != MAGIC
+        || buffer.capacity() != length(buffer.getInt(CAPACITY_OFFSET))) {
+      PlatformDependent.freeDirectBuffer(buffer);
+      throw new IOException("Not a connection file: " + path);
+    }
+    return new ConnectionFile(path, buffer);
+  }
+
+  private static long length(int capacity) {
+    return HEADER_LENGTH + 2L * (RingBuffer.HEADER_LENGTH + capacity);
+  }
+
+  /**
+   * Moves the file, the mapping is not affected.
+   *
+   * @param target the new path of the file
+   * @return the file at its new path
+   */
+  ConnectionFile move(Path target) throws IOException {
+    Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+    return new ConnectionFile(target, buffer);
+  }
+
+  /** Deletes the file, the mapping is not affected. */
+  void delete() {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // the file is only used to establish the connection
+    }
+  }
+
+  /**
+   * Unmaps the file right away rather than when the buffer is collected. Neither this instance nor
+   * its rings may be used afterwards.
+   */
+  void unmap() {
+    PlatformDependent.freeDirectBuffer(buffer);
+  }
+
+  /** @return the ring written by the client, read by the server */
+  RingBuffer clientRing() {
+    return ring(0);
+  }
+
+  /** @return the ring written by the server, read by the client */
+  RingBuffer serverRing() {
+    return ring(1);
+  }
+
+  private RingBuffer ring(int index) {
+    int offset = HEADER_LENGTH + index * (RingBuffer.HEADER_LENGTH + capacity);
+    ByteBuffer ring = buffer.duplicate();
+    ring.position(offset).limit(offset + RingBuffer.HEADER_LENGTH + capacity);
+    return new RingBuffer(ring, address + offset);
+  }
+
+  void accept() {
+    UNSAFE.putLongVolatile(null, address + ACCEPTED_OFFSET, 1L);
+  }
+
+  boolean isAccepted() {
+    return UNSAFE.getLongVolatile(null, address + ACCEPTED_OFFSET) != 0L;
+  }
+
+  void close(boolean client) {
+    UNSAFE.putLongVolatile(null, address + closedOffset(client), 1L);
+  }
+
+  boolean isClosed(boolean client) {
+    return UNSAFE.getLongVolatile(null, address + closedOffset(client)) != 0L;
+  }
+
+  private static int closedOffset(boolean client) {
+    return client ? CLIENT_CLOSED_OFFSET : SERVER_CLOSED_OFFSET;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import static io.rsocket.internal.jctools.util.UnsafeAccess.UNSAFE;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+
+/**
+ * Single producer, single consumer ring of length-prefixed records in shared memory.
+ *
+ * <p>The ring starts with a header holding the consumer position (head) and the producer position
+ * (tail) on separate cache lines, followed by the records. Positions only grow, their index in the
+ * ring is the position modulo the capacity. A record is an int header, its length and whether the
+ * record continues in the next one, followed by its bytes and padded to 8 bytes. A record never
+ * wraps: when it does not fit before the end of the ring, a padding marker skips to the start.
+ *
+ * <p>The producer publishes records with an ordered store of the tail, and the consumer frees them
+ * with an ordered store of the head, so that the data is always visible before the position.
+ */
+final class RingBuffer {
+  static final int HEADER_LENGTH = 256;
+  private static final int HEAD_OFFSET = 0;
+  private static final int TAIL_OFFSET = 128;
+
+  private static final int PADDING = -1;
+  private static final int CONTINUED = 1 << 30;
+  private static final int RECORD_HEADER_LENGTH = 4;
+
+  /** Receives the records read from the ring. */
+  interface RecordHandler {
+    /**
+     * @param data the bytes of the record, between the position and the limit of the buffer
+     * @param continued whether the next record continues this one
+     */
+    void onRecord(ByteBuffer data, boolean continued);
+  }
+
+  private final ByteBuffer data;
+  private final long headAddress;
+  private final long tailAddress;
+  private final int capacity;
+  private final int mask;
+  private final int maxRecordLength;
+
+  // the tail for the producer, the head for the consumer
+  private long position;
+  // the last head read by the producer
+  private long cachedHead;
+
+  /**
+   * @param buffer the ring, header included, between its position and limit
+   * @param address the memory address of the ring header
+   */
+  RingBuffer(ByteBuffer buffer, long address) {
+    this.capacity = buffer.remaining() - HEADER_LENGTH;
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a power of 2: " + capacity);
+    }
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(buffer.position() + HEADER_LENGTH);
+    this.data = duplicate.slice();
+    this.headAddress = address + HEAD_OFFSET;
+    this.tailAddress = address + TAIL_OFFSET;
+    this.mask = capacity - 1;
+    this.maxRecordLength = capacity / 4;
+  }
+
+  /** @return the largest number of bytes a record can hold */
+  int maxRecordLength() {
+    return maxRecordLength;
+  }
+
+  /**
+   * Writes a record, only called by the producer.
+   *
+   * @param source the buffer holding the bytes of the record
+   * @param index the index of the first byte in {@code source}
+   * @param length the number of bytes, at most {@link #maxRecordLength()}
+   * @param continued whether the next record continues this one
+   * @return false if the ring is too full for the record
+   */
+  boolean offer(ByteBuf source, int index, int length, boolean continued) {
+    long tail = position;
+    int recordLength = align(RECORD_HEADER_LENGTH + length);
+    int offset = (int) (tail & mask);
+    int contiguous = capacity - offset;
+    int required = recordLength > contiguous ? contiguous + recordLength : recordLength;
+    if (tail + required - cachedHead > capacity) {
+      cachedHead = UNSAFE.getLongVolatile(null, headAddress);
+      if (tail + required - cachedHead > capacity) {
+        return false;
+      }
+    }
+
+    if (recordLength > contiguous) {
+      data.putInt(offset, PADDING);
+      tail += contiguous;
+      offset = 0;
+    }
+
+    data.limit(offset + RECORD_HEADER_LENGTH + length).position(offset + RECORD_HEADER_LENGTH);
+    source.getBytes(index, data);
+    data.clear();
+    data.putInt(offset, continued ? length | CONTINUED : length);
+
+    position = tail + recordLength;
+    UNSAFE.putOrderedLong(null, tailAddress, position);
+    return true;
+  }
+
+  /**
+   * Reads the available records, only called by the consumer.
+   *
+   * @param handler receives the records, which must be copied before returning
+   * @return the number of records read
+   */
+  int read(RecordHandler handler) {
+    long head = position;
+    long tail = UNSAFE.getLongVolatile(null, tailAddress);
+    if (head == tail) {
+      return 0;
+    }
+
+    int count = 0;
+    while (head < tail) {
+      int offset = (int) (head & mask);
+      int header = data.getInt(offset);
+      if (header == PADDING) {
+        head += capacity - offset;
+        continue;
+      }
+
+      int length = header & ~CONTINUED;
+      data.limit(offset + RECORD_HEADER_LENGTH + length).position(offset + RECORD_HEADER_LENGTH);
+      try {
+        handler.onRecord(data, (header & CONTINUED) != 0);
+      } finally {
+        data.clear();
+      }
+      head += align(RECORD_HEADER_LENGTH + length);
+      count++;
+    }
+
+    position = head;
+    UNSAFE.putOrderedLong(null, headAddress, head);
+    return count;
+  }
+
+  private static int align(int length) {
+    return (length + 7) & ~7;
+  }
+}
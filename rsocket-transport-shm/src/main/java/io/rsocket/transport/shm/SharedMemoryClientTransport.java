@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.DuplexConnection;
+import io.rsocket.fragmentation.FragmentationDuplexConnection;
+import io.rsocket.fragmentation.ReassemblyDuplexConnection;
+import io.rsocket.transport.ClientTransport;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * An implementation of {@link ClientTransport} that connects to a {@link
+ * SharedMemoryServerTransport} of another process on the same host.
+ *
+ * <p>The client creates the memory mapped file of the connection in the directory of the server and
+ * waits for the server to accept it.
+ */
+public final class SharedMemoryClientTransport implements ClientTransport {
+  static final String CONNECTION_SUFFIX = ".rsocket";
+  private static final String PENDING_SUFFIX = ".pending";
+
+  /** The default capacity of each of the two rings of a connection. */
+  public static final int DEFAULT_CAPACITY = 1 << 20;
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+  private static final Duration ACCEPT_POLL_INTERVAL = Duration.ofMillis(1);
+
+  private final Path directory;
+  private final int capacity;
+  private final WaitStrategy waitStrategy;
+  private final ByteBufAllocator allocator;
+
+  private SharedMemoryClientTransport(
+      Path directory, int capacity, WaitStrategy waitStrategy, ByteBufAllocator allocator) {
+    this.directory = directory;
+    this.capacity = capacity;
+    this.waitStrategy = waitStrategy;
+    this.allocator = allocator;
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param directory the directory of the server to connect to
+   * @return a new instance
+   * @throws NullPointerException if {@code directory} is {@code null}
+   */
+  public static SharedMemoryClientTransport create(Path directory) {
+    return create(directory, DEFAULT_CAPACITY, WaitStrategy.backoff());
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param directory the directory of the server to connect to
+   * @param capacity the capacity in bytes of each of the two rings, a power of 2 of at least 4096
+   * @param waitStrategy how the threads of both ends of the connection wait for frames
+   * @return a new instance
+   * @throws NullPointerException if {@code directory} or {@code waitStrategy} is {@code null}
+   */
+  public static SharedMemoryClientTransport create(
+      Path directory, int capacity, WaitStrategy waitStrategy) {
+    Objects.requireNonNull(directory, "directory must not be null");
+    Objects.requireNonNull(waitStrategy, "waitStrategy must not be null");
+    if (capacity < ConnectionFile.MIN_CAPACITY || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+          "capacity must be a power of 2, at least "
+              + ConnectionFile.MIN_CAPACITY
+              + ": "
+              + capacity);
+    }
+
+    return new SharedMemoryClientTransport(
+        directory, capacity, waitStrategy, ByteBufAllocator.DEFAULT);
+  }
+
+  private Mono<DuplexConnection> connect() {
+    return Mono.fromCallable(this::createFile)
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(
+            file ->
+                Flux.interval(Duration.ZERO, ACCEPT_POLL_INTERVAL)
+                    .filter(i -> file.isAccepted())
+                    .next()
+                    .timeout(CONNECT_TIMEOUT)
+                    .onErrorMap(
+                        TimeoutException.class,
+                        e -> {
+                          file.close(true);
+                          file.delete();
+                          file.unmap();
+                          return new IllegalStateException(
+                              "Connection not accepted by server: " + directory);
+                        })
+                    .map(
+                        i ->
+                            (DuplexConnection)
+                                new SharedMemoryDuplexConnection(
+                                    file, true, waitStrategy, allocator)));
+  }
+
+  private ConnectionFile createFile() throws IOException {
+    if (!Files.isDirectory(directory)) {
+      throw new IOException("Could not find server: " + directory);
+    }
+    String name = UUID.randomUUID().toString();
+    Path pending = directory.resolve(name + PENDING_SUFFIX);
+    // the server only sees the file once fully initialized
+    return ConnectionFile.create(pending, capacity)
+        .move(directory.resolve(name + CONNECTION_SUFFIX));
+  }
+
+  @Override
+  public Mono<DuplexConnection> connect(int mtu) {
+    Mono<DuplexConnection> isError = FragmentationDuplexConnection.checkMtu(mtu);
+    Mono<DuplexConnection> connect = isError != null ? isError : connect();
+
+    return connect.map(
+        duplexConnection -> {
+          if (mtu > 0) {
+            return new FragmentationDuplexConnection(duplexConnection, mtu, false, "client");
+          } else {
+            return new ReassemblyDuplexConnection(duplexConnection, false);
+          }
+        });
+  }
+}
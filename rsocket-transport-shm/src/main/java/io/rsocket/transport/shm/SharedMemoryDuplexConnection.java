@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.DuplexConnection;
+import io.rsocket.internal.UnboundedProcessor;
+import io.rsocket.internal.jctools.queues.MpscUnboundedArrayQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.util.annotation.Nullable;
+
+/**
+ * An implementation of {@link DuplexConnection} over a pair of rings in a memory mapped file.
+ *
+ * <p>Each connection has a thread that reads the inbound ring and writes the frames queued by
+ * {@link #send(Publisher)} to the outbound ring, waiting with the {@link WaitStrategy} when there
+ * is nothing to do. Writes never block the senders, so that two peers filling each other's rings
+ * cannot deadlock. Frames larger than a ring record are split over several records. The thread is
+ * the only one accessing the file, it marks the connection closed and unmaps the file as it exits.
+ */
+final class SharedMemoryDuplexConnection implements DuplexConnection, RingBuffer.RecordHandler {
+  private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+  private static final AtomicIntegerFieldUpdater<SharedMemoryDuplexConnection> DISPOSED =
+      AtomicIntegerFieldUpdater.newUpdater(SharedMemoryDuplexConnection.class, "disposed");
+
+  private final ConnectionFile file;
+  private final boolean client;
+  private final RingBuffer inbound;
+  private final RingBuffer outbound;
+  private final WaitStrategy waitStrategy;
+  private final ByteBufAllocator allocator;
+
+  private final Queue<ByteBuf> sendQueue = new MpscUnboundedArrayQueue<>(256);
+  private final UnboundedProcessor<ByteBuf> receiveProcessor = new UnboundedProcessor<>();
+  private final MonoProcessor<Void> onClose = MonoProcessor.create();
+  private final Thread thread;
+
+  private volatile int disposed;
+  private volatile boolean parked;
+  // set once the thread exited, after which the senders release the queued frames themselves
+  private volatile boolean terminated;
+
+  // only accessed by the connection thread
+  @Nullable private ByteBuf sending;
+  private int sendingIndex;
+  @Nullable private ByteBuf receiving;
+
+  /**
+   * Creates a new instance and starts its thread.
+   *
+   * @param file the file shared with the peer
+   * @param client whether this is the client end of the connection
+   * @param waitStrategy how the connection thread waits
+   * @param allocator the allocator of the received frames
+   */
+  SharedMemoryDuplexConnection(
+      ConnectionFile file, boolean client, WaitStrategy waitStrategy, ByteBufAllocator allocator) {
+    this.file = file;
+    this.client = client;
+    this.inbound = client ? file.serverRing() : file.clientRing();
+    this.outbound = client ? file.clientRing() : file.serverRing();
+    this.waitStrategy = Objects.requireNonNull(waitStrategy, "waitStrategy must not be null");
+    this.allocator = Objects.requireNonNull(allocator, "allocator must not be null");
+    this.thread =
+        new Thread(
+            this::run,
+            "rsocket-shm-" + (client ? "client-" : "server-") + THREAD_COUNTER.incrementAndGet());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void run() {
+    int idleCount = 0;
+    try {
+      while (disposed == 0) {
+        int work = inbound.read(this) + flush();
+        if (work > 0) {
+          idleCount = 0;
+          continue;
+        }
+        if (file.isClosed(!client)) {
+          break;
+        }
+        parked = true;
+        // frames queued since the flush are written right away, unless the outbound ring is full
+        if ((sending != null || sendQueue.isEmpty()) && disposed == 0) {
+          waitStrategy.idle(++idleCount);
+        }
+        parked = false;
+      }
+    } catch (Throwable t) {
+      receiveProcessor.onError(t);
+    } finally {
+      // the thread is the only one accessing the mapping once the connection is established
+      file.close(client);
+      dispose();
+      release();
+      file.unmap();
+    }
+  }
+
+  /** Writes the queued frames while the outbound ring has room for them. */
+  private int flush() {
+    int count = 0;
+    int maxRecordLength = outbound.maxRecordLength();
+    for (; ; ) {
+      ByteBuf frame = sending;
+      if (frame == null) {
+        frame = sendQueue.poll();
+        if (frame == null) {
+          return count;
+        }
+        sending = frame;
+        sendingIndex = frame.readerIndex();
+      }
+
+      int remaining = frame.writerIndex() - sendingIndex;
+      int length = Math.min(remaining, maxRecordLength);
+      boolean continued = length < remaining;
+      if (!outbound.offer(frame, sendingIndex, length, continued)) {
+        return count;
+      }
+      count++;
+      sendingIndex += length;
+      if (!continued) {
+        sending = null;
+        frame.release();
+      }
+    }
+  }
+
+  @Override
+  public void onRecord(ByteBuffer data, boolean continued) {
+    ByteBuf frame = receiving;
+    if (frame == null) {
+      frame = allocator.buffer(data.remaining());
+    }
+    frame.writeBytes(data);
+    if (continued) {
+      receiving = frame;
+    } else {
+      receiving = null;
+      receiveProcessor.onNext(frame);
+    }
+  }
+
+  private void release() {
+    if (sending != null) {
+      sending.release();
+      sending = null;
+    }
+    if (receiving != null) {
+      receiving.release();
+      receiving = null;
+    }
+    synchronized (sendQueue) {
+      terminated = true;
+      releaseQueued();
+    }
+  }
+
+  private void releaseQueued() {
+    ByteBuf frame;
+    while ((frame = sendQueue.poll()) != null) {
+      frame.release();
+    }
+  }
+
+  @Override
+  public Mono<Void> send(Publisher<ByteBuf> frames) {
+    Objects.requireNonNull(frames, "frames must not be null");
+
+    return Flux.from(frames)
+        .<Void>handle(
+            (frame, sink) -> {
+              if (!enqueue(frame)) {
+                sink.error(new ClosedChannelException());
+              }
+            })
+        .then();
+  }
+
+  @Override
+  public Mono<Void> sendOne(ByteBuf frame) {
+    Objects.requireNonNull(frame, "frame must not be null");
+
+    return enqueue(frame) ? Mono.empty() : Mono.error(new ClosedChannelException());
+  }
+
+  private boolean enqueue(ByteBuf frame) {
+    if (disposed != 0) {
+      frame.release();
+      return false;
+    }
+    sendQueue.offer(frame);
+    if (terminated) {
+      // the thread exited between the check and the offer
+      synchronized (sendQueue) {
+        releaseQueued();
+      }
+    } else if (parked) {
+      LockSupport.unpark(thread);
+    }
+    return true;
+  }
+
+  @Override
+  public Flux<ByteBuf> receive() {
+    return receiveProcessor;
+  }
+
+  @Override
+  public ByteBufAllocator alloc() {
+    return allocator;
+  }
+
+  @Override
+  public void dispose() {
+    if (DISPOSED.compareAndSet(this, 0, 1)) {
+      // the thread tells the peer and unmaps the file once it exits
+      LockSupport.unpark(thread);
+      receiveProcessor.onComplete();
+      onClose.onComplete();
+    }
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return onClose.isDisposed();
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return onClose;
+  }
+}
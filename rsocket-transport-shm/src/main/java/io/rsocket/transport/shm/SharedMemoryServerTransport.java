@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.Closeable;
+import io.rsocket.DuplexConnection;
+import io.rsocket.fragmentation.FragmentationDuplexConnection;
+import io.rsocket.fragmentation.ReassemblyDuplexConnection;
+import io.rsocket.transport.ServerTransport;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * An implementation of {@link ServerTransport} that accepts connections from {@link
+ * SharedMemoryClientTransport}s of other processes on the same host.
+ *
+ * <p>The server watches a directory for the connection files created by the clients, and claims
+ * each one by moving it atomically, so that a file is accepted once even if several servers watch
+ * the same directory. Closing the server closes the connections it accepted.
+ */
+public final class SharedMemoryServerTransport implements ServerTransport<Closeable> {
+  private static final Logger logger = LoggerFactory.getLogger(SharedMemoryServerTransport.class);
+
+  private static final Duration ACCEPT_INTERVAL = Duration.ofMillis(10);
+
+  private static final String CLAIMED_SUFFIX = ".claimed";
+
+  private final Path directory;
+  private final WaitStrategy waitStrategy;
+  private final ByteBufAllocator allocator;
+
+  private SharedMemoryServerTransport(
+      Path directory, WaitStrategy waitStrategy, ByteBufAllocator allocator) {
+    this.directory = directory;
+    this.waitStrategy = waitStrategy;
+    this.allocator = allocator;
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param directory the directory clients connect to, created if needed
+   * @return a new instance
+   * @throws NullPointerException if {@code directory} is {@code null}
+   */
+  public static SharedMemoryServerTransport create(Path directory) {
+    return create(directory, WaitStrategy.backoff());
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param directory the directory clients connect to, created if needed
+   * @param waitStrategy how the threads of the server end of the connections wait for frames
+   * @return a new instance
+   * @throws NullPointerException if {@code directory} or {@code waitStrategy} is {@code null}
+   */
+  public static SharedMemoryServerTransport create(Path directory, WaitStrategy waitStrategy) {
+    Objects.requireNonNull(directory, "directory must not be null");
+    Objects.requireNonNull(waitStrategy, "waitStrategy must not be null");
+
+    return new SharedMemoryServerTransport(directory, waitStrategy, ByteBufAllocator.DEFAULT);
+  }
+
+  @Override
+  public Mono<Closeable> start(ConnectionAcceptor acceptor, int mtu) {
+    Objects.requireNonNull(acceptor, "acceptor must not be null");
+
+    Mono<Closeable> isError = FragmentationDuplexConnection.checkMtu(mtu);
+    return isError != null
+        ? isError
+        : Mono.<Closeable>fromCallable(
+                () -> {
+                  Files.createDirectories(directory);
+                  return new Server(acceptor, mtu);
+                })
+            .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  /** Polls the directory for new connections. */
+  private final class Server implements Closeable {
+    private final ConnectionAcceptor acceptor;
+    private final int mtu;
+    private final String id = UUID.randomUUID().toString();
+    private final Set<DuplexConnection> connections = ConcurrentHashMap.newKeySet();
+    private final MonoProcessor<Void> onClose = MonoProcessor.create();
+    private final Disposable polling;
+
+    Server(ConnectionAcceptor acceptor, int mtu) {
+      this.acceptor = acceptor;
+      this.mtu = mtu;
+      this.polling =
+          Flux.interval(ACCEPT_INTERVAL, Schedulers.boundedElastic())
+              .onBackpressureDrop()
+              .subscribe(i -> poll());
+    }
+
+    private void poll() {
+      try (DirectoryStream<Path> files =
+          Files.newDirectoryStream(
+              directory, "*" + SharedMemoryClientTransport.CONNECTION_SUFFIX)) {
+        for (Path path : files) {
+          accept(path);
+        }
+      } catch (IOException e) {
+        logger.warn("Failed to list connections in {}", directory, e);
+      }
+    }
+
+    private void accept(Path path) {
+      Path claimed = path.resolveSibling(path.getFileName() + "." + id + CLAIMED_SUFFIX);
+      try {
+        Files.move(path, claimed, StandardCopyOption.ATOMIC_MOVE);
+      } catch (NoSuchFileException e) {
+        // claimed by another server, or deleted by the client giving up
+        return;
+      } catch (IOException e) {
+        logger.warn("Failed to claim connection file {}", path, e);
+        return;
+      }
+
+      ConnectionFile file;
+      try {
+        file = ConnectionFile.open(claimed);
+      } catch (IOException e) {
+        logger.warn("Ignoring invalid connection file {}", path, e);
+        try {
+          Files.deleteIfExists(claimed);
+        } catch (IOException ignored) {
+          // the file is never listed again
+        }
+        return;
+      }
+      // the mapping outlives the file
+      file.delete();
+      if (file.isClosed(true)) {
+        // the client gave up waiting
+        file.unmap();
+        return;
+      }
+
+      DuplexConnection shared =
+          new SharedMemoryDuplexConnection(file, false, waitStrategy, allocator);
+      connections.add(shared);
+      shared.onClose().doFinally(s -> connections.remove(shared)).subscribe();
+      file.accept();
+
+      DuplexConnection connection;
+      if (mtu > 0) {
+        connection = new FragmentationDuplexConnection(shared, mtu, false, "server");
+      } else {
+        connection = new ReassemblyDuplexConnection(shared, false);
+      }
+      acceptor
+          .apply(connection)
+          .then(Mono.<Void>never())
+          .subscribe(null, e -> connection.dispose());
+    }
+
+    @Override
+    public void dispose() {
+      polling.dispose();
+      connections.forEach(DuplexConnection::dispose);
+      onClose.onComplete();
+    }
+
+    @Override
+    public boolean isDisposed() {
+      return onClose.isDisposed();
+    }
+
+    @Override
+    public Mono<Void> onClose() {
+      return onClose;
+    }
+  }
+}
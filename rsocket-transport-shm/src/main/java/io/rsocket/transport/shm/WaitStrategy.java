@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How the thread of a shared memory connection waits when there is nothing to read nor write.
+ *
+ * <p>The peer process cannot wake the thread up, so the wait strategy trades CPU for latency: a
+ * busy spinning thread reacts to new frames immediately but keeps a core busy, a parked thread only
+ * notices new frames when it wakes up.
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+
+  /**
+   * Waits once.
+   *
+   * @param idleCount the number of consecutive idle iterations, starting from 1
+   */
+  void idle(int idleCount);
+
+  /** @return a strategy polling continuously, for the lowest latency */
+  static WaitStrategy busySpin() {
+    return idleCount -> {};
+  }
+
+  /** @return a strategy yielding the processor between polls */
+  static WaitStrategy yielding() {
+    return idleCount -> Thread.yield();
+  }
+
+  /**
+   * Spins, then yields, then parks for exponentially longer periods, up to {@code maxPark}.
+   *
+   * @param maxPark the longest period to park for
+   * @return a backing off strategy
+   */
+  static WaitStrategy backoff(Duration maxPark) {
+    long maxParkNanos = maxPark.toNanos();
+    return idleCount -> {
+      if (idleCount <= 100) {
+        return;
+      }
+      if (idleCount <= 200) {
+        Thread.yield();
+        return;
+      }
+      int shift = Math.min(idleCount - 200, 20);
+      LockSupport.parkNanos(Math.min(maxParkNanos, 1_000L << shift));
+    };
+  }
+
+  /** @return a strategy backing off up to a millisecond, the default */
+  static WaitStrategy backoff() {
+    return backoff(Duration.ofMillis(1));
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.PlatformDependent;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+final class RingBufferTest {
+  private static final int CAPACITY = 4096;
+
+  private final ByteBuffer memory = ByteBuffer.allocateDirect(RingBuffer.HEADER_LENGTH + CAPACITY);
+  private final RingBuffer producer =
+      new RingBuffer(memory, PlatformDependent.directBufferAddress(memory));
+  private final RingBuffer consumer =
+      new RingBuffer(memory, PlatformDependent.directBufferAddress(memory));
+
+  private final List<String> records = new ArrayList<>();
+  private final List<Boolean> continuations = new ArrayList<>();
+
+  @Test
+  void readsRecordsInOrder() {
+    assertThat(producer.offer(buffer("a"), 0, 1, false)).isTrue();
+    assertThat(producer.offer(buffer("bcd"), 0, 3, true)).isTrue();
+
+    assertThat(consumer.read(this::onRecord)).isEqualTo(2);
+    assertThat(records).containsExactly("a", "bcd");
+    assertThat(continuations).containsExactly(false, true);
+    assertThat(consumer.read(this::onRecord)).isZero();
+  }
+
+  @Test
+  void rejectsRecordsUntilTheConsumerFreesSpace() {
+    ByteBuf record = Unpooled.wrappedBuffer(new byte[producer.maxRecordLength()]);
+    int offered = 0;
+    while (producer.offer(record, 0, record.readableBytes(), false)) {
+      offered++;
+    }
+    assertThat(offered).isEqualTo(3);
+
+    assertThat(consumer.read(this::onRecord)).isEqualTo(3);
+    assertThat(producer.offer(record, 0, record.readableBytes(), false)).isTrue();
+  }
+
+  @Test
+  void wrapsRecordsAroundTheEndOfTheRing() {
+    String data = "0123456789";
+    for (int i = 0; i < 1_000; i++) {
+      String record = data.substring(0, i % data.length() + 1);
+      assertThat(producer.offer(buffer(record), 0, record.length(), false)).isTrue();
+      assertThat(consumer.read(this::onRecord)).isEqualTo(1);
+      assertThat(records.get(i)).isEqualTo(record);
+    }
+  }
+
+  private void onRecord(ByteBuffer data, boolean continued) {
+    byte[] bytes = new byte[data.remaining()];
+    data.get(bytes);
+    records.add(new String(bytes));
+    continuations.add(continued);
+  }
+
+  private static ByteBuf buffer(String s) {
+    return ByteBufUtil.writeAscii(ByteBufAllocator.DEFAULT, s);
+  }
+}
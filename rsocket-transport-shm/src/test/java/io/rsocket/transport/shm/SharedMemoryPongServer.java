@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import io.rsocket.core.RSocketServer;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.test.PingHandler;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public final class SharedMemoryPongServer {
+  static final Path directory =
+      Paths.get(
+          System.getProperty(
+              "RSOCKET_TEST_DIRECTORY", System.getProperty("java.io.tmpdir") + "/rsocket-ping"));
+
+  public static void main(String... args) {
+    System.out.println("Starting shared memory ping-pong server");
+    System.out.println("directory: " + directory);
+
+    RSocketServer.create(new PingHandler())
+        .payloadDecoder(PayloadDecoder.ZERO_COPY)
+        .bind(SharedMemoryServerTransport.create(directory, WaitStrategy.busySpin()))
+        .block()
+        .onClose()
+        .block();
+  }
+}